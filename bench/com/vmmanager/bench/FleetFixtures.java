@@ -0,0 +1,102 @@
+package com.vmmanager.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Sinh payload JSON giống Proxmox cho một fleet giả lập.
+ */
+public final class FleetFixtures {
+
+    private static final long GB = 1024L * 1024 * 1024;
+
+    private FleetFixtures() {
+    }
+
+    public static String nodeName(int i) {
+        return "pve" + (i + 1);
+    }
+
+    /** /cluster/resources với vmCount VM (10% template), nodeCount node, 3 storage mỗi node */
+    public static byte[] clusterResources(int vmCount, int nodeCount, long seed) {
+        Random rnd = new Random(seed);
+        StringBuilder sb = new StringBuilder(vmCount * 330);
+        sb.append("{\"data\":[");
+
+        boolean first = true;
+        for (int n = 0; n < nodeCount; n++) {
+            first = comma(sb, first);
+            sb.append("{\"id\":\"node/").append(nodeName(n)).append("\",\"type\":\"node\",\"node\":\"")
+              .append(nodeName(n)).append("\",\"status\":\"online\",\"maxcpu\":64,\"cpu\":0.12,")
+              .append("\"maxmem\":").append(512 * GB).append(",\"mem\":").append(128 * GB)
+              .append(",\"uptime\":864000,\"level\":\"\"}");
+
+            for (String st : new String[]{"local", "local-lvm", "ceph-pool"}) {
+                first = comma(sb, first);
+                sb.append("{\"id\":\"storage/").append(nodeName(n)).append('/').append(st)
+                  .append("\",\"type\":\"storage\",\"node\":\"").append(nodeName(n))
+                  .append("\",\"storage\":\"").append(st)
+                  .append("\",\"status\":\"available\",\"plugintype\":\"lvmthin\",\"shared\":0,")
+                  .append("\"maxdisk\":").append(4000 * GB).append(",\"disk\":").append(1200 * GB)
+                  .append(",\"content\":\"images,rootdir\"}");
+            }
+        }
+
+        for (int i = 0; i < vmCount; i++) {
+            first = comma(sb, first);
+            appendQemu(sb, rnd, 100 + i, nodeName(i % nodeCount), true);
+        }
+
+        sb.append("]}");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** /nodes/{node}/qemu với vmCount VM */
+    public static byte[] qemuList(int vmCount, long seed) {
+        Random rnd = new Random(seed);
+        StringBuilder sb = new StringBuilder(vmCount * 300);
+        sb.append("{\"data\":[");
+
+        for (int i = 0; i < vmCount; i++) {
+            if (i > 0) sb.append(',');
+            appendQemu(sb, rnd, 100 + i, null, false);
+        }
+
+        sb.append("]}");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendQemu(StringBuilder sb, Random rnd, int vmid, String node, boolean clusterFormat) {
+        boolean template = vmid % 10 == 0;
+        boolean running = !template && rnd.nextInt(100) < 70;
+        int cores = 1 << rnd.nextInt(4);
+
+        sb.append('{');
+        if (clusterFormat) {
+            sb.append("\"id\":\"qemu/").append(vmid).append("\",\"type\":\"qemu\",\"node\":\"")
+              .append(node).append("\",\"maxcpu\":").append(cores).append(',');
+        } else {
+            sb.append("\"cpus\":").append(cores).append(',');
+        }
+        sb.append("\"vmid\":").append(vmid)
+          .append(",\"name\":\"").append(template ? "tpl-" : "vm-").append(vmid).append('"')
+          .append(",\"status\":\"").append(running ? "running" : "stopped").append('"')
+          .append(",\"maxmem\":").append((long) (1 << rnd.nextInt(5)) * GB)
+          .append(",\"mem\":").append(running ? rnd.nextInt(1 << 30) : 0)
+          .append(",\"maxdisk\":").append((long) (16 + rnd.nextInt(200)) * GB)
+          .append(",\"disk\":0,\"cpu\":").append(running ? rnd.nextDouble() : 0)
+          .append(",\"netin\":").append(rnd.nextInt(1 << 30))
+          .append(",\"netout\":").append(rnd.nextInt(1 << 30))
+          .append(",\"diskread\":").append(rnd.nextInt(1 << 30))
+          .append(",\"diskwrite\":").append(rnd.nextInt(1 << 30))
+          .append(",\"uptime\":").append(running ? 1 + rnd.nextInt(1_000_000) : 0)
+          .append(",\"template\":").append(template ? 1 : 0)
+          .append(",\"tags\":\"web;prod\"")
+          .append('}');
+    }
+
+    private static boolean comma(StringBuilder sb, boolean first) {
+        if (!first) sb.append(',');
+        return false;
+    }
+}
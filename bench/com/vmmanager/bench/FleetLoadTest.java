@@ -0,0 +1,591 @@
+package com.vmmanager.bench;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.vmmanager.bench.stub.ProxmoxStubServer;
+import com.vmmanager.bench.stub.StubConfig;
+import com.vmmanager.config.GlobalConfig;
+import com.vmmanager.controllers.UserNotifier;
+import com.vmmanager.controllers.VMController;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Load test end-to-end cho cả đội VM: đi qua đúng đường của GUI
+ * (VMController → ProxmoxVMService → ProxmoxAPIClient) nhưng không mở cửa sổ nào.
+ *
+ * Kịch bản:
+ * - refresh: tải lại inventory mỗi N giây trong một khoảng thời gian
+ * - power: start/stop hàng loạt VM (VM đang chạy thì stop, đang tắt thì start)
+ * - clone: clone hàng loạt VM từ một template, tuỳ chọn xoá lại sau đó
+ *
+ * Mặc định chạy với stub HTTPS nhúng; --host trỏ tới Proxmox thật hoặc stub chạy riêng.
+ * Latency của start/stop/clone tính tới khi task Proxmox kết thúc và VM đã được cập nhật.
+ *
+ * <pre>
+ * java -p lib:bin:bench-bin -m iacGUI.bench/com.vmmanager.bench.FleetLoadTest --vms 5000 --power 500 --clone 100
+ * java -p lib:bin:bench-bin -m iacGUI.bench/com.vmmanager.bench.FleetLoadTest --host pve:8006 --user root --password ... -f json -o load.json
+ * </pre>
+ */
+public class FleetLoadTest {
+
+    // Giữ stdout lúc khởi tạo: LoggerUtil cũng in ra console
+    private static final PrintStream OUT = System.out;
+    private static final PrintStream LOG = System.err;
+
+    // ===== tham số =====
+    private String host;
+    private String user = "root";
+    private String password;
+    private String realm = "pam";
+    private String tokenId;
+    private String tokenSecret;
+    private int maxConnections;
+
+    private int stubVms = 5_000;
+    private int stubNodes = 8;
+    private double stubErrorRate;
+
+    private String scenarios = "refresh,power,clone";
+    private int refreshIntervalSec = 5;
+    private int refreshDurationSec = 30;
+    private int powerCount = 500;
+    private int cloneCount = 100;
+    private String template;
+    private boolean cleanup;
+    private int maxOutstanding;
+    private long opTimeoutSec = 600;
+
+    private String format = "text";
+    private Path output;
+    private boolean quiet = true;
+
+    // ===== kết quả =====
+    private final Map<String, Recorder> recorders = new LinkedHashMap<>();
+    private final ResourceSampler resources = new ResourceSampler();
+
+    public static void main(String[] args) throws Exception {
+        FleetLoadTest test = new FleetLoadTest();
+        test.parse(args);
+        System.exit(test.run() ? 0 : 1);
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            switch (a) {
+                case "--host" -> host = args[++i];
+                case "--user" -> user = args[++i];
+                case "--password" -> password = args[++i];
+                case "--realm" -> realm = args[++i];
+                case "--token-id" -> tokenId = args[++i];
+                case "--token-secret" -> tokenSecret = args[++i];
+                case "--max-connections" -> maxConnections = Integer.parseInt(args[++i]);
+                case "--vms" -> stubVms = Integer.parseInt(args[++i]);
+                case "--nodes" -> stubNodes = Integer.parseInt(args[++i]);
+                case "--error-rate" -> stubErrorRate = Double.parseDouble(args[++i]);
+                case "--scenarios" -> scenarios = args[++i];
+                case "--refresh-interval" -> refreshIntervalSec = Integer.parseInt(args[++i]);
+                case "--refresh-duration" -> refreshDurationSec = Integer.parseInt(args[++i]);
+                case "--power" -> powerCount = Integer.parseInt(args[++i]);
+                case "--clone" -> cloneCount = Integer.parseInt(args[++i]);
+                case "--template" -> template = args[++i];
+                case "--cleanup" -> cleanup = true;
+                case "--max-outstanding" -> maxOutstanding = Integer.parseInt(args[++i]);
+                case "--op-timeout" -> opTimeoutSec = Long.parseLong(args[++i]);
+                case "--verbose" -> quiet = false;
+                case "-f" -> format = args[++i];
+                case "-o" -> output = Path.of(args[++i]);
+                default -> LOG.println("Bỏ qua tham số: " + a);
+            }
+        }
+    }
+
+    // =========================================================
+    // RUN
+    // =========================================================
+
+    private boolean run() throws Exception {
+        ProxmoxStubServer stub = null;
+        VMController controller = new VMController();
+        controller.setNotifier(UserNotifier.LOG);
+
+        // LoggerUtil in từng request ra console → tắt trong lúc đo, app.log vẫn được ghi
+        if (quiet) System.setOut(new PrintStream(java.io.OutputStream.nullOutputStream()));
+
+        try {
+            if (host == null) {
+                StubConfig cfg = new StubConfig().withFleet(stubVms, stubNodes);
+                cfg.errorRate = stubErrorRate;
+                stub = ProxmoxStubServer.start(cfg);
+                host = stub.getHost();
+                password = cfg.password;
+                user = cfg.user;
+                realm = cfg.realm;
+                LOG.println("# Stub nhúng: " + host + " (" + stubVms + " VM, " + stubNodes + " node)");
+            }
+
+            resources.start();
+
+            // ==== CONNECT ====
+            LOG.println("# connect " + host);
+            long t0 = System.nanoTime();
+            controller.setGlobalConfig(globalConfig());
+            long connectNanos = System.nanoTime() - t0;
+
+            // setGlobalConfig nuốt lỗi và rơi về dữ liệu mock → kiểm tra lại bằng một lần tải
+            boolean connected = controller.getConnectionPoolStats() != null && controller.refreshInventory();
+            recorder("connect").record(connectNanos, connected);
+            if (!connected) {
+                LOG.println("Không kết nối được Proxmox tại " + host + " (xem app.log)");
+                return false;
+            }
+            LOG.println("  " + controller.getVMTableData().length + " VM");
+
+            for (String s : scenarios.split(",")) {
+                switch (s.trim()) {
+                    case "refresh" -> refreshScenario(controller);
+                    case "power" -> powerScenario(controller);
+                    case "clone" -> cloneScenario(controller);
+                    case "" -> { }
+                    default -> LOG.println("Bỏ qua kịch bản: " + s);
+                }
+            }
+
+            resources.stop();
+            write(report(controller, stub));
+            return true;
+
+        } finally {
+            resources.stop();
+            controller.shutdown();
+            if (stub != null) stub.close();
+            System.setOut(OUT);
+        }
+    }
+
+    private GlobalConfig globalConfig() {
+        GlobalConfig cfg = new GlobalConfig();
+        cfg.useRealApi = true;
+        cfg.proxmoxHost = host;
+        cfg.proxmoxUser = user;
+        cfg.proxmoxPassword = password;
+        cfg.proxmoxRealm = realm;
+        cfg.proxmoxTokenId = tokenId;
+        cfg.proxmoxTokenSecret = tokenSecret;
+        if (maxConnections > 0) {
+            cfg.proxmoxMaxConnections = maxConnections;
+            cfg.proxmoxMaxConnectionsPerHost = maxConnections;
+        }
+        return cfg;
+    }
+
+    // ==== REFRESH: tải lại inventory định kỳ như người dùng để GUI mở ====
+    private void refreshScenario(VMController controller) throws InterruptedException {
+        LOG.println("# refresh mỗi " + refreshIntervalSec + "s trong " + refreshDurationSec + "s");
+        Recorder r = recorder("refresh");
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(refreshDurationSec);
+        long interval = TimeUnit.SECONDS.toNanos(refreshIntervalSec);
+
+        r.begin();
+        long next = System.nanoTime();
+        do {
+            long start = System.nanoTime();
+            boolean ok = controller.refreshInventory();
+            r.record(System.nanoTime() - start, ok);
+
+            // Lịch cố định: refresh chậm hơn interval thì chạy lượt kế ngay, không dồn
+            next += interval;
+            long sleep = next - System.nanoTime();
+            if (sleep > 0) TimeUnit.NANOSECONDS.sleep(sleep);
+            else next = System.nanoTime();
+        } while (System.nanoTime() < end);
+        r.end();
+        LOG.println("  " + r.count() + " lần, p50=" + fmt(r.percentileMs(50)) + "ms");
+    }
+
+    // ==== POWER: start/stop hàng loạt ====
+    private void powerScenario(VMController controller) throws InterruptedException {
+        List<String[]> targets = new ArrayList<>();
+        for (Object[] row : controller.getVMTableData()) {
+            if (targets.size() >= powerCount) break;
+            String status = String.valueOf(row[6]);
+            if ("RUNNING".equals(status)) targets.add(new String[]{String.valueOf(row[0]), "stop"});
+            else if ("STOPPED".equals(status)) targets.add(new String[]{String.valueOf(row[0]), "start"});
+        }
+        LOG.println("# power " + targets.size() + " VM");
+
+        List<Supplier<CompletableFuture<Boolean>>> ops = new ArrayList<>();
+        List<Recorder> opRecorders = new ArrayList<>();
+        for (String[] t : targets) {
+            boolean start = "start".equals(t[1]);
+            ops.add(() -> start ? controller.startVMAsync(t[0]) : controller.stopVMAsync(t[0]));
+            opRecorders.add(recorder(start ? "start" : "stop"));
+        }
+        runBulk("power", ops, opRecorders);
+    }
+
+    // ==== CLONE: tạo hàng loạt VM từ template ====
+    private void cloneScenario(VMController controller) throws InterruptedException {
+        String tpl = template != null ? template : first(controller.getAllTemplates());
+        String storage = first(controller.getAllStorages());
+        String node = first(controller.getAllNodes());
+        if (tpl == null) {
+            LOG.println("# clone: không có template, bỏ qua");
+            return;
+        }
+
+        int maxId = 100;
+        for (Object[] row : controller.getVMTableData()) maxId = Math.max(maxId, (Integer) row[0]);
+        int firstId = maxId + 1;
+        LOG.println("# clone " + cloneCount + " VM từ template " + tpl + " (vmid " + firstId + "..)");
+
+        List<Supplier<CompletableFuture<Boolean>>> ops = new ArrayList<>();
+        List<Recorder> opRecorders = new ArrayList<>();
+        Recorder clone = recorder("clone");
+        for (int i = 0; i < cloneCount; i++) {
+            int vmid = firstId + i;
+            ops.add(() -> controller.createVMAsync("load-" + vmid, vmid, 2, 2, 16,
+                    "linux", tpl, storage, "vmbr0", node));
+            opRecorders.add(clone);
+        }
+        runBulk("clone", ops, opRecorders);
+
+        if (!cleanup) return;
+
+        ops.clear();
+        opRecorders.clear();
+        Recorder delete = recorder("delete");
+        for (int i = 0; i < cloneCount; i++) {
+            String vmid = String.valueOf(firstId + i);
+            if (controller.findVM(vmid) == null) continue;
+            ops.add(() -> controller.deleteVMAsync(vmid));
+            opRecorders.add(delete);
+        }
+        LOG.println("# cleanup " + ops.size() + " VM");
+        runBulk("delete", ops, opRecorders);
+    }
+
+    /**
+     * Gửi tất cả op cùng lúc như thao tác hàng loạt trên GUI (limiter của client tự điều tiết);
+     * --max-outstanding giới hạn số op đang chạy nếu muốn mô phỏng người dùng chậm hơn.
+     */
+    private void runBulk(String label, List<Supplier<CompletableFuture<Boolean>>> ops,
+                         List<Recorder> opRecorders) throws InterruptedException {
+        Semaphore outstanding = new Semaphore(maxOutstanding > 0 ? maxOutstanding : Integer.MAX_VALUE);
+        List<CompletableFuture<?>> all = new ArrayList<>(ops.size());
+
+        for (Recorder r : opRecorders) r.begin();
+        long begin = System.nanoTime();
+
+        for (int i = 0; i < ops.size(); i++) {
+            outstanding.acquire();
+            Recorder r = opRecorders.get(i);
+            long start = System.nanoTime();
+
+            CompletableFuture<Boolean> f;
+            try {
+                f = ops.get(i).get();
+            } catch (RuntimeException e) {
+                f = CompletableFuture.failedFuture(e);
+            }
+            all.add(f.whenComplete((ok, ex) -> {
+                r.record(System.nanoTime() - start, ex == null && Boolean.TRUE.equals(ok));
+                outstanding.release();
+            }));
+        }
+
+        try {
+            CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0]))
+                    .get(opTimeoutSec, TimeUnit.SECONDS);
+        } catch (java.util.concurrent.ExecutionException e) {
+            // Lỗi từng op đã được ghi nhận ở trên
+        } catch (java.util.concurrent.TimeoutException e) {
+            int pending = 0;
+            for (int i = 0; i < all.size(); i++) {
+                if (all.get(i).isDone()) continue;
+                opRecorders.get(i).timedOut();
+                pending++;
+            }
+            LOG.println("  timeout: còn " + pending + " op chưa xong sau " + opTimeoutSec + "s");
+        }
+
+        for (Recorder r : opRecorders) r.end();
+        LOG.printf(Locale.ROOT, "  %s: %d op trong %.1fs%n",
+                label, ops.size(), (System.nanoTime() - begin) / 1e9);
+    }
+
+    private static String first(String[] values) {
+        return values != null && values.length > 0 ? values[0] : null;
+    }
+
+    private Recorder recorder(String op) {
+        return recorders.computeIfAbsent(op, Recorder::new);
+    }
+
+    // =========================================================
+    // RECORDER
+    // =========================================================
+
+    /** Latency từng op (ns) + số lỗi; đủ nhỏ để giữ toàn bộ mẫu và tính percentile chính xác */
+    private static final class Recorder {
+        final String op;
+        private long[] samples = new long[256];
+        private int size;
+        private long errors;
+        private long timeouts;
+        private long firstBegin = -1;
+        private long lastEnd = -1;
+
+        Recorder(String op) {
+            this.op = op;
+        }
+
+        synchronized void begin() {
+            if (firstBegin < 0) firstBegin = System.nanoTime();
+        }
+
+        synchronized void end() {
+            lastEnd = System.nanoTime();
+        }
+
+        synchronized void record(long nanos, boolean ok) {
+            if (firstBegin < 0) firstBegin = System.nanoTime() - nanos;
+            if (size == samples.length) samples = Arrays.copyOf(samples, size * 2);
+            samples[size++] = nanos;
+            if (!ok) errors++;
+            lastEnd = System.nanoTime();
+        }
+
+        // Op chưa xong khi hết thời gian chờ → tính là lỗi
+        synchronized void timedOut() {
+            timeouts++;
+        }
+
+        synchronized int count() {
+            return size;
+        }
+
+        synchronized long errors() {
+            return errors + timeouts;
+        }
+
+        synchronized double wallSeconds() {
+            return firstBegin < 0 || lastEnd < firstBegin ? 0 : (lastEnd - firstBegin) / 1e9;
+        }
+
+        synchronized double throughput() {
+            double s = wallSeconds();
+            return s > 0 ? size / s : 0;
+        }
+
+        // Nearest-rank percentile
+        synchronized double percentileMs(double p) {
+            if (size == 0) return 0;
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(p / 100.0 * size);
+            return sorted[Math.max(0, Math.min(size - 1, rank - 1))] / 1e6;
+        }
+
+        synchronized double meanMs() {
+            if (size == 0) return 0;
+            long sum = 0;
+            for (int i = 0; i < size; i++) sum += samples[i];
+            return sum / 1e6 / size;
+        }
+    }
+
+    // =========================================================
+    // RESOURCES
+    // =========================================================
+
+    /** Lấy mẫu thread, heap và socket đang mở của tiến trình trong lúc chạy */
+    private static final class ResourceSampler {
+        private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final Path fdDir = Path.of("/proc/self/fd");
+        private ScheduledExecutorService timer;
+
+        volatile int maxThreads;
+        volatile long maxHeap;
+        volatile int maxSockets = -1;
+        volatile int lastThreads;
+        volatile long lastHeap;
+        volatile int lastSockets = -1;
+
+        synchronized void start() {
+            if (timer != null) return;
+            timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "load-resource-sampler");
+                t.setDaemon(true);
+                return t;
+            });
+            timer.scheduleAtFixedRate(this::sample, 0, 250, TimeUnit.MILLISECONDS);
+        }
+
+        synchronized void stop() {
+            if (timer == null) return;
+            timer.shutdownNow();
+            timer = null;
+            sample();
+        }
+
+        private void sample() {
+            lastThreads = threads.getThreadCount();
+            lastHeap = memory.getHeapMemoryUsage().getUsed();
+            lastSockets = openSockets();
+            maxThreads = Math.max(maxThreads, lastThreads);
+            maxHeap = Math.max(maxHeap, lastHeap);
+            maxSockets = Math.max(maxSockets, lastSockets);
+        }
+
+        // Linux: đếm fd trỏ tới socket; hệ khác trả -1
+        private int openSockets() {
+            if (!Files.isDirectory(fdDir)) return -1;
+            int n = 0;
+            try (DirectoryStream<Path> fds = Files.newDirectoryStream(fdDir)) {
+                for (Path fd : fds) {
+                    try {
+                        if (Files.readSymbolicLink(fd).toString().startsWith("socket:")) n++;
+                    } catch (IOException e) {
+                        // fd vừa đóng
+                    }
+                }
+            } catch (IOException e) {
+                return -1;
+            }
+            return n;
+        }
+    }
+
+    // =========================================================
+    // OUTPUT
+    // =========================================================
+
+    private JsonObject report(VMController controller, ProxmoxStubServer stub) {
+        JsonObject doc = new JsonObject();
+        doc.addProperty("timestamp", Instant.now().toString());
+        doc.addProperty("host", host);
+        doc.addProperty("embeddedStub", stub != null);
+        doc.addProperty("jvm", System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+        doc.addProperty("cpus", Runtime.getRuntime().availableProcessors());
+        doc.addProperty("fleet", controller.getVMTableData().length);
+
+        JsonArray ops = new JsonArray();
+        for (Recorder r : recorders.values()) {
+            JsonObject o = new JsonObject();
+            o.addProperty("op", r.op);
+            o.addProperty("count", r.count());
+            o.addProperty("errors", r.errors());
+            o.addProperty("throughputPerSec", r.throughput());
+            o.addProperty("meanMs", r.meanMs());
+            o.addProperty("p50Ms", r.percentileMs(50));
+            o.addProperty("p99Ms", r.percentileMs(99));
+            o.addProperty("p999Ms", r.percentileMs(99.9));
+            o.addProperty("maxMs", r.percentileMs(100));
+            ops.add(o);
+        }
+        doc.add("operations", ops);
+
+        JsonObject res = new JsonObject();
+        res.addProperty("threadsMax", resources.maxThreads);
+        res.addProperty("threadsEnd", resources.lastThreads);
+        res.addProperty("heapMaxBytes", resources.maxHeap);
+        res.addProperty("heapEndBytes", resources.lastHeap);
+        res.addProperty("socketsMax", resources.maxSockets);
+        res.addProperty("socketsEnd", resources.lastSockets);
+        doc.add("resources", res);
+
+        JsonObject client = new JsonObject();
+        client.addProperty("pool", controller.getConnectionPoolStats());
+        client.addProperty("cache", controller.getResponseCacheStats());
+        client.addProperty("limiter", controller.getRequestLimiterStats());
+        doc.add("client", client);
+
+        if (stub != null) doc.addProperty("stub", stub.describe());
+        return doc;
+    }
+
+    private void write(JsonObject doc) throws IOException {
+        String text = "json".equals(format)
+                ? new GsonBuilder().setPrettyPrinting().create().toJson(doc) + "\n"
+                : toText(doc);
+
+        if (output == null) {
+            OUT.print(text);
+            OUT.flush();
+        } else {
+            try (Writer w = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+                w.write(text);
+            }
+            LOG.println("Đã ghi báo cáo vào " + output);
+        }
+    }
+
+    private static String toText(JsonObject doc) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Host: ").append(doc.get("host").getAsString())
+          .append(doc.get("embeddedStub").getAsBoolean() ? " (stub nhúng)" : "")
+          .append(", fleet=").append(doc.get("fleet").getAsInt()).append(" VM\n\n");
+
+        sb.append(String.format(Locale.ROOT, "%-10s %7s %7s %10s %10s %10s %10s %10s%n",
+                "Op", "Count", "Errors", "ops/s", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+        for (var e : doc.getAsJsonArray("operations")) {
+            JsonObject o = e.getAsJsonObject();
+            sb.append(String.format(Locale.ROOT, "%-10s %7d %7d %10.1f %10s %10s %10s %10s%n",
+                    o.get("op").getAsString(),
+                    o.get("count").getAsInt(),
+                    o.get("errors").getAsLong(),
+                    o.get("throughputPerSec").getAsDouble(),
+                    fmt(o.get("p50Ms").getAsDouble()),
+                    fmt(o.get("p99Ms").getAsDouble()),
+                    fmt(o.get("p999Ms").getAsDouble()),
+                    fmt(o.get("maxMs").getAsDouble())));
+        }
+
+        JsonObject res = doc.getAsJsonObject("resources");
+        sb.append(String.format(Locale.ROOT, "%nThreads: max %d, cuối %d%n",
+                res.get("threadsMax").getAsInt(), res.get("threadsEnd").getAsInt()));
+        sb.append(String.format(Locale.ROOT, "Heap:    max %.1f MB, cuối %.1f MB%n",
+                res.get("heapMaxBytes").getAsLong() / 1048576.0, res.get("heapEndBytes").getAsLong() / 1048576.0));
+        int sockets = res.get("socketsMax").getAsInt();
+        sb.append("Sockets: ").append(sockets < 0 ? "n/a"
+                : "max " + sockets + ", cuối " + res.get("socketsEnd").getAsInt()).append('\n');
+
+        JsonObject client = doc.getAsJsonObject("client");
+        for (String k : new String[]{"pool", "cache", "limiter"}) {
+            if (client.has(k) && !client.get(k).isJsonNull())
+                sb.append(k).append(": ").append(client.get(k).getAsString()).append('\n');
+        }
+        if (doc.has("stub")) sb.append("stub: ").append(doc.get("stub").getAsString()).append('\n');
+        return sb.toString();
+    }
+
+    private static String fmt(double ms) {
+        return String.format(Locale.ROOT, ms < 10 ? "%.2f" : "%.1f", ms);
+    }
+}
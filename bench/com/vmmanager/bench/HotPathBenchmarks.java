@@ -0,0 +1,180 @@
+package com.vmmanager.bench;
+
+import com.vmmanager.controllers.VMController;
+import com.vmmanager.inventory.InventorySync;
+import com.vmmanager.inventory.VMRegistry;
+import com.vmmanager.models.ClusterInventory;
+import com.vmmanager.models.ProxmoxVM;
+import com.vmmanager.services.proxmox.ProxmoxJson;
+import com.vmmanager.services.proxmox.ProxmoxTransport;
+import com.vmmanager.ui.VMTableModel;
+import com.vmmanager.utils.LoggerUtil;
+
+import javax.swing.table.DefaultTableModel;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmark các hot path của client, model và tầng hiển thị.
+ *
+ * Chạy (từ thư mục tạm, LoggerUtil ghi app.log vào thư mục hiện tại):
+ * <pre>
+ * java -p lib:bin:bench-bin -m iacGUI.bench/com.vmmanager.bench.HotPathBenchmarks -f json -o bench.json
+ * java -p lib:bin:bench-bin -m iacGUI.bench/com.vmmanager.bench.HotPathBenchmarks -f csv decode
+ * </pre>
+ */
+public class HotPathBenchmarks {
+
+    private static final int[] FLEET_SIZES = {100, 10_000, 100_000};
+    private static final int NODES = 8;
+
+    public static void main(String[] args) throws Exception {
+        MicroBench bench = new MicroBench(args);
+
+        for (int vms : FLEET_SIZES) {
+            Map<String, String> p = params(vms);
+
+            // ==== JSON DECODE ====
+            bench.add("decode.qemuList", p, () -> {
+                byte[] payload = FleetFixtures.qemuList(vms, 42);
+                return () -> ProxmoxTransport.decode(payload, ProxmoxJson.qemuList("pve1"));
+            });
+            bench.add("decode.clusterResources", p, () -> {
+                byte[] payload = FleetFixtures.clusterResources(vms, NODES, 42);
+                return () -> ProxmoxTransport.decode(payload, ProxmoxJson.INVENTORY);
+            });
+
+            // ==== CONTROLLER ====
+            bench.add("controller.getVMTableData", p, () -> {
+                VMController controller = controllerWith(vms);
+                return controller::getVMTableData;
+            });
+            bench.add("controller.findVM", p, () -> {
+                VMController controller = controllerWith(vms);
+                String[] ids = randomIds(vms, 1024);
+                int[] i = {0};
+                return () -> controller.findVM(ids[i[0]++ & 1023]);
+            });
+            bench.add("controller.isVMIDExists", p, () -> {
+                VMController controller = controllerWith(vms);
+                String[] ids = randomIds(vms, 1024);
+                int[] i = {0};
+                return () -> controller.isVMIDExists(Integer.parseInt(ids[i[0]++ & 1023]));
+            });
+
+            // ==== INVENTORY ====
+            bench.add("inventory.replaceAll", p, () -> {
+                VMRegistry registry = new VMRegistry();
+                List<ProxmoxVM> fleet = inventory(vms).getVMs();
+                return () -> {
+                    registry.replaceAll(fleet);
+                    return registry;
+                };
+            });
+            bench.add("inventory.sync.unchanged", p, () -> {
+                VMRegistry registry = new VMRegistry();
+                registry.replaceAll(inventory(vms).getVMs());
+                InventorySync sync = new InventorySync(registry);
+                List<ProxmoxVM> fresh = inventory(vms).getVMs();
+                return () -> sync.sync(fresh, vm -> false);
+            });
+
+            // ==== TABLE ====
+            bench.add("table.defaultModel.rebuild", p, () -> {
+                // Cách cũ của MainFrame.refreshVMTable: setRowCount(0) + addRow từng dòng
+                VMController controller = controllerWith(vms);
+                DefaultTableModel model = new DefaultTableModel(
+                        new String[]{"ID", "Name", "CPU", "RAM", "Disk", "IP", "Status", "Node"}, 0);
+                return () -> {
+                    model.setRowCount(0);
+                    for (Object[] row : controller.getVMTableData()) model.addRow(row);
+                    return model;
+                };
+            });
+            bench.add("table.vmModel.reload", p, () -> {
+                List<ProxmoxVM> fleet = inventory(vms).getVMs();
+                VMTableModel model = new VMTableModel();
+                return () -> {
+                    model.reload(fleet);
+                    return model;
+                };
+            });
+            bench.add("table.vmModel.sort.name", p, () -> {
+                List<ProxmoxVM> fleet = inventory(vms).getVMs();
+                VMTableModel model = new VMTableModel();
+                return () -> {
+                    model.toggleSort(VMTableModel.COL_NAME, fleet);
+                    return model;
+                };
+            });
+
+            // ==== MODEL ====
+            bench.add("model.generateTerraformConfig.fleet", p, () -> {
+                List<ProxmoxVM> fleet = inventory(vms).getVMs();
+                return () -> {
+                    long chars = 0;
+                    for (ProxmoxVM vm : fleet) chars += vm.generateTerraformConfig().length();
+                    return chars;
+                };
+            });
+        }
+
+        // ==== LOGGER ====
+        bench.add("logger.info", () -> {
+            int[] i = {0};
+            return () -> {
+                LoggerUtil.info("VM " + (i[0]++) + " started on pve1");
+                return i;
+            };
+        });
+
+        // DEBUG tắt (mặc định): Supplier không được gọi, không dựng chuỗi
+        bench.add("logger.debug.disabled", () -> {
+            int[] i = {0};
+            return () -> {
+                LoggerUtil.debug(() -> "Proxmox auth response: " + (i[0]++) + " bytes");
+                return i;
+            };
+        });
+
+        // LoggerUtil in ra console: chuyển stdout vào null để đo chính logger, không đo terminal
+        PrintStream realOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            bench.run();
+        } finally {
+            System.setOut(realOut);
+        }
+    }
+
+    private static Map<String, String> params(int vms) {
+        Map<String, String> p = new LinkedHashMap<>();
+        p.put("vms", String.valueOf(vms));
+        return p;
+    }
+
+    static ClusterInventory inventory(int vms) throws Exception {
+        return ProxmoxTransport.decode(FleetFixtures.clusterResources(vms, NODES, 42), ProxmoxJson.INVENTORY);
+    }
+
+    static VMController controllerWith(int vms) throws Exception {
+        VMController controller = new VMController();
+        controller.applyInventory(inventory(vms));
+        return controller;
+    }
+
+    // Một nửa id có trong fleet, một nửa không (tra cứu trượt phải duyệt hết danh sách)
+    private static String[] randomIds(int vms, int count) {
+        String[] ids = new String[count];
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for (int i = 0; i < count; i++) {
+            ids[i] = String.valueOf(100 + rnd.nextInt(vms * 2));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,124 @@
+package com.vmmanager.bench;
+
+import com.vmmanager.inventory.ColumnarInventory;
+import com.vmmanager.models.ProxmoxVM;
+import com.vmmanager.models.enums.VMStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Đo heap giữ lại (retained) cho mỗi VM: object ProxmoxVM so với inventory dạng cột.
+ *
+ * Đo bằng chênh lệch heap sau GC trước / sau khi dựng cấu trúc, nên chạy với heap cố định
+ * và không có việc khác song song:
+ * <pre>
+ * java -Xms2g -Xmx2g -p lib:bin:bench-bin -m iacGUI.bench/com.vmmanager.bench.InventoryHeapBenchmark 100000
+ * </pre>
+ */
+public class InventoryHeapBenchmark {
+
+    private static Object retained;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length > 0
+                ? java.util.Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{10_000, 100_000};
+
+        System.out.printf(Locale.ROOT, "%-34s %9s %14s %10s%n", "Structure", "VMs", "Retained", "B/VM");
+
+        for (int vms : sizes) {
+            double objects = measure("ProxmoxVM objects", vms, () -> fleet(vms));
+            double table = measure("ProxmoxVM + Object[][] table", vms, () -> {
+                List<ProxmoxVM> fleet = fleet(vms);
+                return new Object[]{fleet, tableData(fleet)};
+            });
+            double columnar = measure("ColumnarInventory", vms, () -> new ColumnarInventory(fleet(vms)));
+            double views = measure("ColumnarInventory + views", vms, () -> {
+                ColumnarInventory store = new ColumnarInventory(fleet(vms));
+                return store.views();
+            });
+
+            ColumnarInventory store = new ColumnarInventory(fleet(vms));
+            System.out.printf(Locale.ROOT, "  estimateHeapBytes: %.1f B/VM%n", (double) store.estimateHeapBytes() / vms);
+            System.out.printf(Locale.ROOT, "  giảm: cột %.0f%%, cột + view %.0f%% so với object (bảng Object[][]: +%.0f B/VM)%n%n",
+                    100 * (1 - columnar / objects), 100 * (1 - views / objects), table - objects);
+        }
+    }
+
+    // Fleet như sau khi controller tải xong: decode từ /cluster/resources, VM đang chạy có IP
+    private static List<ProxmoxVM> fleet(int vms) {
+        try {
+            List<ProxmoxVM> list = new ArrayList<>(HotPathBenchmarks.inventory(vms).getVMs());
+            for (ProxmoxVM vm : list) {
+                if (vm.getStatus() == VMStatus.RUNNING) {
+                    int id = vm.getVmid();
+                    vm.setIpAddress("10." + ((id >> 16) & 0xff) + "." + ((id >> 8) & 0xff) + "." + (id & 0xff));
+                }
+            }
+            return list;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Giống VMController.getVMTableData
+    private static Object[][] tableData(List<ProxmoxVM> fleet) {
+        Object[][] data = new Object[fleet.size()][8];
+        for (int i = 0; i < fleet.size(); i++) {
+            ProxmoxVM vm = fleet.get(i);
+            data[i][0] = vm.getVmid();
+            data[i][1] = vm.getName();
+            data[i][2] = vm.getCpuCores();
+            data[i][3] = vm.getMemoryGB();
+            data[i][4] = vm.getDiskGB();
+            data[i][5] = vm.getIpAddress();
+            data[i][6] = vm.getStatus().name();
+            data[i][7] = vm.getNode();
+        }
+        return data;
+    }
+
+    private static double measure(String label, int vms, Supplier<Object> build) {
+        // Một lượt khởi động để class / JIT / cache của decoder không bị tính vào
+        retained = build.get();
+        retained = null;
+
+        long before = usedAfterGc();
+        retained = build.get();
+        long after = usedAfterGc();
+        retained = null;
+
+        double perVm = (double) (after - before) / vms;
+        System.out.printf(Locale.ROOT, "%-34s %9d %11.1f MB %10.1f%n",
+                label, vms, (after - before) / 1048576.0, perVm);
+        return perVm;
+    }
+
+    private static long usedAfterGc() {
+        Runtime rt = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        int stable = 0;
+        // Object có finalizer / Cleaner có thể cần vài lượt GC mới được dọn:
+        // chỉ tin số đo khi heap không giảm thêm qua 3 lượt liên tiếp
+        for (int i = 0; i < 20 && stable < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            long now = rt.totalMemory() - rt.freeMemory();
+            if (now < used - 1024) {
+                used = now;
+                stable = 0;
+            } else {
+                stable++;
+            }
+        }
+        return used;
+    }
+}
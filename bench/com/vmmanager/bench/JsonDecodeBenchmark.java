@@ -0,0 +1,116 @@
+package com.vmmanager.bench;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.vmmanager.models.ClusterInventory;
+import com.vmmanager.models.ProxmoxVM;
+import com.vmmanager.services.proxmox.ProxmoxJson;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * So sánh decode /cluster/resources theo 2 cách:
+ * - tree: String body → JsonParser → JsonObject → get(...) (cách cũ)
+ * - streaming: JsonReader trên InputStream → ProxmoxJson.INVENTORY
+ *
+ * Chạy: java -p lib:bin:bench-bin -m iacGUI.bench/com.vmmanager.bench.JsonDecodeBenchmark [số VM...]
+ */
+public class JsonDecodeBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length > 0
+                ? java.util.Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{1_000, 10_000, 100_000};
+
+        System.out.printf("%-10s %-10s %10s %12s %14s%n", "vms", "mode", "bytes", "ms/op", "alloc MB/op");
+
+        for (int size : sizes) {
+            byte[] payload = FleetFixtures.clusterResources(size, 8, 42);
+            int iterations = Math.max(5, 2_000_000 / Math.max(size, 1) / 10);
+
+            report(size, "tree", payload, iterations, JsonDecodeBenchmark::decodeTree);
+            report(size, "streaming", payload, iterations, JsonDecodeBenchmark::decodeStreaming);
+        }
+
+        if (sink == 42) System.out.println();
+    }
+
+    private interface Decode {
+        ClusterInventory run(byte[] payload) throws IOException;
+    }
+
+    private static void report(int size, String mode, byte[] payload, int iterations, Decode decode)
+            throws IOException {
+        for (int i = 0; i < iterations; i++) {
+            sink += decode.run(payload).getVMs().size();
+        }
+
+        long tid = Thread.currentThread().getId();
+        long allocBefore = THREADS.getThreadAllocatedBytes(tid);
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++) {
+            sink += decode.run(payload).getVMs().size();
+        }
+
+        long elapsed = System.nanoTime() - start;
+        long alloc = THREADS.getThreadAllocatedBytes(tid) - allocBefore;
+
+        System.out.printf("%-10d %-10s %10d %12.3f %14.2f%n",
+                size, mode, payload.length,
+                elapsed / 1e6 / iterations,
+                alloc / 1024.0 / 1024.0 / iterations);
+    }
+
+    static ClusterInventory decodeStreaming(byte[] payload) throws IOException {
+        try (JsonReader reader = new JsonReader(
+                new InputStreamReader(new ByteArrayInputStream(payload), StandardCharsets.UTF_8))) {
+            return ProxmoxJson.INVENTORY.decode(reader);
+        }
+    }
+
+    // Đường cũ: EntityUtils.toString + JsonParser.parseString + cây JsonObject
+    static ClusterInventory decodeTree(byte[] payload) {
+        String body = new String(payload, StandardCharsets.UTF_8);
+        JsonArray data = JsonParser.parseString(body).getAsJsonObject().getAsJsonArray("data");
+        ClusterInventory inventory = new ClusterInventory();
+
+        for (int i = 0; i < data.size(); i++) {
+            JsonObject item = data.get(i).getAsJsonObject();
+            String type = item.has("type") ? item.get("type").getAsString() : "";
+
+            switch (type) {
+                case "node" -> inventory.addNode(item.get("node").getAsString());
+                case "storage" -> inventory.addStorage(
+                        item.get("node").getAsString(), item.get("storage").getAsString());
+                case "qemu" -> {
+                    ProxmoxVM vm = new ProxmoxVM();
+                    vm.setVmid(item.get("vmid").getAsInt());
+                    vm.setName(item.get("name").getAsString());
+                    vm.setNode(item.get("node").getAsString());
+                    vm.setCpuCores(item.get("maxcpu").getAsInt());
+                    vm.setMemoryGB((int) (item.get("maxmem").getAsLong() >> 30));
+                    vm.setDiskGB((int) (item.get("maxdisk").getAsLong() >> 30));
+                    vm.setStatus(ProxmoxJson.parseStatus(item.get("status").getAsString()));
+                    vm.setUptime(item.get("uptime").getAsLong());
+                    if (item.get("template").getAsInt() == 1) inventory.addTemplate(vm);
+                    else inventory.addVM(vm);
+                }
+                default -> {
+                }
+            }
+        }
+        return inventory;
+    }
+}
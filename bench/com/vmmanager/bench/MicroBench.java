@@ -0,0 +1,296 @@
+package com.vmmanager.bench;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Harness benchmark nhỏ theo kiểu JMH (không có build tool để kéo JMH vào).
+ *
+ * - Warmup theo thời gian rồi đo nhiều iteration, mỗi iteration chạy op tới hết thời gian
+ * - Kết quả: ns/op trung bình, sai số 99.9% (xấp xỉ chuẩn), allocation bytes/op
+ * - Kết quả trả về của op được "ăn" qua {@link #consume} để JIT không loại bỏ
+ * - Xuất JSON (gần format JMH: benchmark, params, primaryMetric) hoặc CSV
+ *
+ * Tham số dòng lệnh: [-f json|csv|text] [-o file] [-w warmupIterations] [-i iterations]
+ * [-t iterationMs] [filter regex]
+ */
+public final class MicroBench {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // z cho khoảng tin cậy 99.9%
+    private static final double Z_999 = 3.29;
+
+    private static volatile int sink;
+
+    /** Một benchmark: chạy một op và trả kết quả để consume */
+    @FunctionalInterface
+    public interface Op {
+        Object run() throws Exception;
+    }
+
+    /** Tạo op sau khi chuẩn bị dữ liệu (phần setup không bị tính giờ) */
+    @FunctionalInterface
+    public interface Setup {
+        Op prepare() throws Exception;
+    }
+
+    /** Kết quả một benchmark */
+    public static final class Result {
+        public String benchmark;
+        public Map<String, String> params;
+        public String mode = "avgt";
+        public int samples;
+        public Metric primaryMetric = new Metric();
+        public Metric allocation = new Metric();
+    }
+
+    public static final class Metric {
+        public double score;
+        public double scoreError;
+        public String scoreUnit;
+        public double[] rawData;
+    }
+
+    private static final class Entry {
+        final String name;
+        final Map<String, String> params;
+        final Setup setup;
+
+        Entry(String name, Map<String, String> params, Setup setup) {
+            this.name = name;
+            this.params = params;
+            this.setup = setup;
+        }
+
+        String label() {
+            return params.isEmpty() ? name : name + params;
+        }
+    }
+
+    // Giữ stdout lúc khởi tạo: benchmark logger có thể chuyển hướng System.out
+    private final PrintStream out = System.out;
+    private final List<Entry> entries = new ArrayList<>();
+    private String format = "text";
+    private Path output;
+    private int warmupIterations = 3;
+    private int iterations = 5;
+    private long iterationMs = 1_000;
+    private Pattern filter;
+
+    public MicroBench(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-f" -> format = args[++i];
+                case "-o" -> output = Path.of(args[++i]);
+                case "-w" -> warmupIterations = Integer.parseInt(args[++i]);
+                case "-i" -> iterations = Integer.parseInt(args[++i]);
+                case "-t" -> iterationMs = Long.parseLong(args[++i]);
+                default -> filter = Pattern.compile(args[i]);
+            }
+        }
+    }
+
+    public MicroBench add(String name, Setup setup) {
+        return add(name, new LinkedHashMap<>(), setup);
+    }
+
+    public MicroBench add(String name, Map<String, String> params, Setup setup) {
+        entries.add(new Entry(name, params, setup));
+        return this;
+    }
+
+    /** Ngăn JIT loại bỏ kết quả */
+    public static void consume(Object o) {
+        if (o != null) sink += System.identityHashCode(o);
+    }
+
+    // =========================================================
+    // RUN
+    // =========================================================
+
+    public List<Result> run() throws Exception {
+        List<Result> results = new ArrayList<>();
+        PrintStream log = System.err;
+
+        for (Entry e : entries) {
+            if (filter != null && !filter.matcher(e.label()).find()) continue;
+
+            log.println("# " + e.label());
+            Op op = e.setup.prepare();
+
+            for (int i = 0; i < warmupIterations; i++) {
+                double[] m = iteration(op);
+                log.printf(Locale.ROOT, "  warmup %d: %.1f ns/op%n", i + 1, m[0]);
+            }
+
+            double[] nsPerOp = new double[iterations];
+            double[] bytesPerOp = new double[iterations];
+            for (int i = 0; i < iterations; i++) {
+                double[] m = iteration(op);
+                nsPerOp[i] = m[0];
+                bytesPerOp[i] = m[1];
+                log.printf(Locale.ROOT, "  iter %d: %.1f ns/op, %.0f B/op%n", i + 1, m[0], m[1]);
+            }
+
+            Result r = new Result();
+            r.benchmark = e.name;
+            r.params = e.params;
+            r.samples = iterations;
+            fill(r.primaryMetric, nsPerOp, "ns/op");
+            fill(r.allocation, bytesPerOp, "B/op");
+            results.add(r);
+        }
+
+        write(results);
+        return results;
+    }
+
+    // Chạy op liên tục trong iterationMs → {ns/op, bytes/op}
+    private double[] iteration(Op op) throws Exception {
+        long tid = Thread.currentThread().getId();
+        long deadline = System.nanoTime() + iterationMs * 1_000_000;
+        long ops = 0;
+
+        long allocBefore = THREADS.getThreadAllocatedBytes(tid);
+        long start = System.nanoTime();
+        long now;
+        do {
+            consume(op.run());
+            ops++;
+            now = System.nanoTime();
+        } while (now < deadline);
+        long alloc = THREADS.getThreadAllocatedBytes(tid) - allocBefore;
+
+        return new double[]{(double) (now - start) / ops, (double) alloc / ops};
+    }
+
+    private static void fill(Metric m, double[] samples, String unit) {
+        double mean = 0;
+        for (double s : samples) mean += s;
+        mean /= samples.length;
+
+        double var = 0;
+        for (double s : samples) var += (s - mean) * (s - mean);
+        double sd = samples.length > 1 ? Math.sqrt(var / (samples.length - 1)) : 0;
+
+        m.score = mean;
+        m.scoreError = Z_999 * sd / Math.sqrt(samples.length);
+        m.scoreUnit = unit;
+        m.rawData = samples;
+    }
+
+    // =========================================================
+    // OUTPUT
+    // =========================================================
+
+    private void write(List<Result> results) throws IOException {
+        String text = switch (format) {
+            case "json" -> toJson(results);
+            case "csv" -> toCsv(results);
+            default -> toText(results);
+        };
+
+        if (output == null) {
+            out.print(text);
+            out.flush();
+        } else {
+            try (Writer w = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+                w.write(text);
+            }
+            System.err.println("Đã ghi " + results.size() + " kết quả vào " + output);
+        }
+    }
+
+    // Dựng cây JSON thủ công: module không mở package bench cho Gson reflection
+    private static String toJson(List<Result> results) {
+        JsonObject doc = new JsonObject();
+        doc.addProperty("timestamp", Instant.now().toString());
+        doc.addProperty("jvm", System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+        doc.addProperty("os", System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+        doc.addProperty("cpus", Runtime.getRuntime().availableProcessors());
+
+        JsonArray array = new JsonArray();
+        for (Result r : results) {
+            JsonObject o = new JsonObject();
+            o.addProperty("benchmark", r.benchmark);
+            JsonObject params = new JsonObject();
+            r.params.forEach(params::addProperty);
+            o.add("params", params);
+            o.addProperty("mode", r.mode);
+            o.addProperty("samples", r.samples);
+            o.add("primaryMetric", toJson(r.primaryMetric));
+            o.add("allocation", toJson(r.allocation));
+            array.add(o);
+        }
+        doc.add("results", array);
+
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        return gson.toJson(doc) + "\n";
+    }
+
+    private static JsonObject toJson(Metric m) {
+        JsonObject o = new JsonObject();
+        o.addProperty("score", m.score);
+        o.addProperty("scoreError", m.scoreError);
+        o.addProperty("scoreUnit", m.scoreUnit);
+        JsonArray raw = new JsonArray();
+        for (double d : m.rawData) raw.add(d);
+        o.add("rawData", raw);
+        return o;
+    }
+
+    private static String toCsv(List<Result> results) {
+        StringBuilder sb = new StringBuilder("benchmark,params,mode,samples,score,scoreError,unit,allocBytesPerOp\n");
+        for (Result r : results) {
+            sb.append(r.benchmark).append(',')
+              .append('"').append(paramString(r.params)).append('"').append(',')
+              .append(r.mode).append(',')
+              .append(r.samples).append(',')
+              .append(String.format(Locale.ROOT, "%.3f,%.3f,", r.primaryMetric.score, r.primaryMetric.scoreError))
+              .append(r.primaryMetric.scoreUnit).append(',')
+              .append(String.format(Locale.ROOT, "%.1f", r.allocation.score))
+              .append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String toText(List<Result> results) {
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT, "%-32s %-14s %16s %12s %14s%n",
+                "Benchmark", "Params", "Score", "Error", "Alloc B/op"));
+        for (Result r : results) {
+            sb.append(String.format(Locale.ROOT, "%-32s %-14s %16.1f %12.1f %14.0f  %s%n",
+                    r.benchmark, paramString(r.params),
+                    r.primaryMetric.score, r.primaryMetric.scoreError,
+                    r.allocation.score, r.primaryMetric.scoreUnit));
+        }
+        return sb.toString();
+    }
+
+    private static String paramString(Map<String, String> params) {
+        StringBuilder sb = new StringBuilder();
+        params.forEach((k, v) -> {
+            if (sb.length() > 0) sb.append(';');
+            sb.append(k).append('=').append(v);
+        });
+        return sb.toString();
+    }
+}
@@ -0,0 +1,55 @@
+package com.vmmanager.bench.stub;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Phân phối latency cho một endpoint của stub.
+ *
+ * Dùng log-normal theo median và p99 (giống latency thật của pveproxy:
+ * phần lớn nhanh, đuôi dài khi node bận).
+ */
+public final class LatencyModel {
+
+    // z-score của p99 trong phân phối chuẩn
+    private static final double Z_99 = 2.326;
+
+    public static final LatencyModel NONE = new LatencyModel(0, 0, 0);
+
+    private final double fixedMs;
+    private final double mu;
+    private final double sigma;
+
+    private LatencyModel(double fixedMs, double mu, double sigma) {
+        this.fixedMs = fixedMs;
+        this.mu = mu;
+        this.sigma = sigma;
+    }
+
+    public static LatencyModel fixed(double ms) {
+        return new LatencyModel(ms, 0, 0);
+    }
+
+    /**
+     * @param medianMs Latency trung vị
+     * @param p99Ms    Latency p99 (>= median)
+     */
+    public static LatencyModel logNormal(double medianMs, double p99Ms) {
+        if (medianMs <= 0) return NONE;
+        double mu = Math.log(medianMs);
+        double sigma = Math.max(0, (Math.log(Math.max(p99Ms, medianMs)) - mu) / Z_99);
+        return new LatencyModel(0, mu, sigma);
+    }
+
+    /** Lấy một mẫu latency (ms) */
+    public long sampleMs() {
+        if (mu == 0 && sigma == 0) return (long) fixedMs;
+        double gaussian = ThreadLocalRandom.current().nextGaussian();
+        return (long) (fixedMs + Math.exp(mu + sigma * gaussian));
+    }
+
+    @Override
+    public String toString() {
+        if (mu == 0 && sigma == 0) return fixedMs + "ms";
+        return "median " + Math.round(Math.exp(mu)) + "ms, p99 " + Math.round(Math.exp(mu + sigma * Z_99)) + "ms";
+    }
+}
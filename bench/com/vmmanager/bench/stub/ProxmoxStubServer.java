@@ -0,0 +1,470 @@
+package com.vmmanager.bench.stub;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * HTTPS server chạy trong process, giả lập phần PVE API mà app dùng.
+ *
+ * - Fleet tuỳ cỡ (hàng nghìn VM), trạng thái thay đổi theo clone/start/stop/delete
+ * - Ticket có hạn (ticketLifetimeMs), CSRF bắt buộc cho request ghi, hỗ trợ API token
+ * - Latency và tỉ lệ lỗi 503 theo từng route
+ *
+ * Dùng trong benchmark:
+ * <pre>
+ * try (ProxmoxStubServer stub = ProxmoxStubServer.start(new StubConfig().withFleet(5000, 4))) {
+ *     ProxmoxVMService svc = new ProxmoxVMService(stub.getHost(), "root", "stub", "pam", null);
+ * }
+ * </pre>
+ * Chạy riêng: java -p lib:bin:bench-bin -m iacGUI.bench/com.vmmanager.bench.stub.ProxmoxStubServer --vms 5000 --port 8006
+ */
+public class ProxmoxStubServer implements AutoCloseable {
+
+    private static final String API_PREFIX = "/api2/json";
+
+    /** Handler của một route; ném ApiError để trả lỗi như pveproxy */
+    private interface Handler {
+        String handle(HttpExchange ex, Matcher m, Map<String, String> params) throws StubCluster.ApiError;
+    }
+
+    private static final class Route {
+        final String method;
+        final String name;
+        final Pattern pattern;
+        final boolean mutating;
+        final Handler handler;
+
+        Route(String method, String path, Handler handler) {
+            this.method = method;
+            this.name = method + " " + path;
+            this.pattern = Pattern.compile(path
+                    .replace("{node}", "([^/]+)")
+                    .replace("{vmid}", "(\\d+)")
+                    .replace("{upid}", "([^/]+)"));
+            this.mutating = !"GET".equals(method);
+            this.handler = handler;
+        }
+    }
+
+    private static final class Ticket {
+        final String csrf;
+        final long issuedAt;
+
+        Ticket(String csrf, long issuedAt) {
+            this.csrf = csrf;
+            this.issuedAt = issuedAt;
+        }
+    }
+
+    private final StubConfig config;
+    private final StubCluster cluster;
+    private final HttpsServer server;
+    private final ExecutorService workers;
+    private final List<Route> routes = new ArrayList<>();
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    private final Map<String, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong unauthorized = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private ProxmoxStubServer(StubConfig config) throws IOException {
+        this.config = config;
+        this.cluster = new StubCluster(config);
+        registerRoutes();
+
+        AtomicInteger seq = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, config.workers), r -> {
+            Thread t = new Thread(r, "pve-stub-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        this.server = HttpsServer.create(new InetSocketAddress("127.0.0.1", config.port), 512);
+        server.setHttpsConfigurator(new HttpsConfigurator(StubTls.serverContext()));
+        server.setExecutor(workers);
+        server.createContext(API_PREFIX, this::dispatch);
+    }
+
+    public static ProxmoxStubServer start(StubConfig config) throws IOException {
+        ProxmoxStubServer stub = new ProxmoxStubServer(config);
+        stub.server.start();
+        return stub;
+    }
+
+    /** "127.0.0.1:port", truyền thẳng làm host cho ProxmoxAPIClient */
+    public String getHost() {
+        return "127.0.0.1:" + getPort();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public StubConfig getConfig() {
+        return config;
+    }
+
+    public int getVmCount() {
+        return cluster.vmCount();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        workers.shutdownNow();
+    }
+
+    // =========================================================
+    // ROUTES
+    // =========================================================
+
+    /** Tên các route, dùng làm key cho latency / error rate trong {@link StubConfig} */
+    public static final List<String> ROUTE_NAMES = new ArrayList<>();
+
+    private void registerRoutes() {
+        route("POST", "/access/ticket", (ex, m, p) -> login(p));
+
+        route("GET", "/version", (ex, m, p) -> "{\"version\":\"8.2.4\",\"release\":\"8.2\",\"repoid\":\"stub\"}");
+        route("GET", "/nodes", (ex, m, p) -> cluster.nodesJson());
+        route("GET", "/nodes/{node}/status", (ex, m, p) -> {
+            requireNode(m.group(1));
+            return "{\"uptime\":864000,\"cpu\":0.12,\"memory\":{\"total\":549755813888}}";
+        });
+        route("GET", "/nodes/{node}/qemu", (ex, m, p) -> cluster.qemuListJson(requireNode(m.group(1))));
+        route("GET", "/nodes/{node}/storage", (ex, m, p) -> {
+            requireNode(m.group(1));
+            return StubCluster.storagesJson();
+        });
+        route("GET", "/nodes/{node}/network", (ex, m, p) -> {
+            requireNode(m.group(1));
+            return StubCluster.networkJson();
+        });
+        route("GET", "/nodes/{node}/qemu/{vmid}/status/current",
+                (ex, m, p) -> cluster.vmStatusJson(m.group(1), vmid(m)));
+        route("GET", "/nodes/{node}/qemu/{vmid}/agent/network-get-interfaces",
+                (ex, m, p) -> cluster.agentInterfacesJson(m.group(1), vmid(m)));
+        route("GET", "/nodes/{node}/tasks/{upid}/status",
+                (ex, m, p) -> cluster.taskStatusJson(URLDecoder.decode(m.group(2), StandardCharsets.UTF_8)));
+
+        route("GET", "/cluster/resources", (ex, m, p) -> cluster.clusterResourcesJson());
+        route("GET", "/cluster/nextid", (ex, m, p) -> String.valueOf(cluster.nextId()));
+        route("GET", "/cluster/tasks", (ex, m, p) -> cluster.clusterTasksJson());
+
+        route("POST", "/nodes/{node}/qemu/{vmid}/clone", (ex, m, p) -> {
+            String newid = p.get("newid");
+            if (newid == null) throw new StubCluster.ApiError(400, "Parameter verification failed: newid");
+            return quote(cluster.cloneVm(m.group(1), vmid(m), Integer.parseInt(newid), p.get("name"), p.get("target")));
+        });
+        route("POST", "/nodes/{node}/qemu/{vmid}/status/start",
+                (ex, m, p) -> quote(cluster.startVm(m.group(1), vmid(m))));
+        route("POST", "/nodes/{node}/qemu/{vmid}/status/shutdown",
+                (ex, m, p) -> quote(cluster.stopVm(m.group(1), vmid(m), "qmshutdown")));
+        route("POST", "/nodes/{node}/qemu/{vmid}/status/stop",
+                (ex, m, p) -> quote(cluster.stopVm(m.group(1), vmid(m), "qmstop")));
+        route("DELETE", "/nodes/{node}/qemu/{vmid}",
+                (ex, m, p) -> quote(cluster.deleteVm(m.group(1), vmid(m))));
+    }
+
+    private void route(String method, String path, Handler handler) {
+        Route r = new Route(method, path, handler);
+        routes.add(r);
+        synchronized (ROUTE_NAMES) {
+            if (!ROUTE_NAMES.contains(r.name)) ROUTE_NAMES.add(r.name);
+        }
+    }
+
+    // =========================================================
+    // DISPATCH
+    // =========================================================
+
+    private void dispatch(HttpExchange ex) throws IOException {
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+        try {
+            String path = ex.getRequestURI().getRawPath().substring(API_PREFIX.length());
+            String method = ex.getRequestMethod();
+
+            for (Route r : routes) {
+                if (!r.method.equals(method)) continue;
+                Matcher m = r.pattern.matcher(path);
+                if (m.matches()) {
+                    handle(ex, r, m);
+                    return;
+                }
+            }
+            reply(ex, 501, "{\"data\":null,\"message\":\"Method '" + method + " " + path + "' not implemented\"}");
+
+        } catch (RuntimeException e) {
+            reply(ex, 500, "{\"data\":null,\"message\":" + quote(String.valueOf(e.getMessage())) + "}");
+        } finally {
+            inFlight.decrementAndGet();
+            ex.close();
+        }
+    }
+
+    private void handle(HttpExchange ex, Route r, Matcher m) throws IOException {
+        requestCounts.computeIfAbsent(r.name, k -> new AtomicLong()).incrementAndGet();
+        Map<String, String> params = readParams(ex);
+
+        // Latency chiếm worker giống pveproxy bận
+        sleep(config.latencyFor(r.name).sampleMs());
+
+        double errorRate = config.errorRateFor(r.name);
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            injectedErrors.incrementAndGet();
+            reply(ex, 503, "{\"data\":null}");
+            return;
+        }
+
+        if (!r.name.equals("POST /access/ticket") && !authorized(ex, r.mutating)) {
+            unauthorized.incrementAndGet();
+            reply(ex, 401, "{\"data\":null}");
+            return;
+        }
+
+        try {
+            reply(ex, 200, "{\"data\":" + r.handler.handle(ex, m, params) + "}");
+        } catch (StubCluster.ApiError e) {
+            reply(ex, e.status, "{\"data\":null,\"message\":" + quote(e.getMessage()) + "}");
+        }
+    }
+
+    private static void reply(HttpExchange ex, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json;charset=UTF-8");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // =========================================================
+    // AUTH
+    // =========================================================
+
+    private String login(Map<String, String> p) throws StubCluster.ApiError {
+        String username = p.getOrDefault("username", "");
+        String password = p.getOrDefault("password", "");
+        String realm = p.get("realm");
+        String fullUser = username.contains("@") ? username : username + "@" + (realm != null ? realm : config.realm);
+
+        // Gia hạn: password là ticket còn hạn
+        boolean renewal = isValidTicket(password);
+        boolean passwordOk = fullUser.equals(config.user + "@" + config.realm) && password.equals(config.password);
+        if (!renewal && !passwordOk) {
+            throw new StubCluster.ApiError(401, "authentication failure");
+        }
+
+        long now = System.currentTimeMillis();
+        String ticket = "PVE:" + fullUser + ":" + Long.toHexString(now / 1000).toUpperCase() + "::" + token(48);
+        String csrf = Long.toHexString(now / 1000).toUpperCase() + ":" + token(32);
+        tickets.put(ticket, new Ticket(csrf, now));
+
+        return "{\"username\":\"" + fullUser + "\",\"ticket\":" + quote(ticket)
+                + ",\"CSRFPreventionToken\":" + quote(csrf) + "}";
+    }
+
+    private boolean authorized(HttpExchange ex, boolean mutating) {
+        String auth = ex.getRequestHeaders().getFirst("Authorization");
+        if (auth != null && auth.startsWith("PVEAPIToken=")) {
+            return true;
+        }
+
+        String ticket = cookie(ex.getRequestHeaders().getFirst("Cookie"), "PVEAuthCookie");
+        if (!isValidTicket(ticket)) return false;
+        if (!mutating) return true;
+
+        String csrf = ex.getRequestHeaders().getFirst("CSRFPreventionToken");
+        return csrf != null && csrf.equals(tickets.get(ticket).csrf);
+    }
+
+    private boolean isValidTicket(String ticket) {
+        if (ticket == null) return false;
+        Ticket t = tickets.get(ticket);
+        if (t == null) return false;
+        if (System.currentTimeMillis() - t.issuedAt > config.ticketLifetimeMs) {
+            tickets.remove(ticket);
+            return false;
+        }
+        return true;
+    }
+
+    private static String cookie(String header, String name) {
+        if (header == null) return null;
+        for (String part : header.split(";")) {
+            String kv = part.trim();
+            if (kv.startsWith(name + "=")) {
+                // Trình duyệt gửi ticket đã encode (%3A), client API gửi nguyên dạng có '+'
+                String value = kv.substring(name.length() + 1);
+                return value.contains("%")
+                        ? URLDecoder.decode(value.replace("+", "%2B"), StandardCharsets.UTF_8)
+                        : value;
+            }
+        }
+        return null;
+    }
+
+    private String token(int bytes) {
+        byte[] b = new byte[bytes];
+        random.nextBytes(b);
+        return Base64.getEncoder().withoutPadding().encodeToString(b);
+    }
+
+    // =========================================================
+    // HELPERS
+    // =========================================================
+
+    // Tham số từ query string và body (form-urlencoded hoặc JSON như app gửi)
+    private static Map<String, String> readParams(HttpExchange ex) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseForm(ex.getRequestURI().getRawQuery(), params);
+
+        byte[] body = ex.getRequestBody().readAllBytes();
+        if (body.length == 0) return params;
+
+        String text = new String(body, StandardCharsets.UTF_8);
+        String type = ex.getRequestHeaders().getFirst("Content-Type");
+
+        if (type != null && type.startsWith("application/json")) {
+            JsonElement json = JsonParser.parseString(text);
+            if (json.isJsonObject()) {
+                JsonObject obj = json.getAsJsonObject();
+                for (String key : obj.keySet()) {
+                    JsonElement v = obj.get(key);
+                    params.put(key, v.isJsonPrimitive() ? v.getAsString() : v.toString());
+                }
+            }
+        } else {
+            parseForm(text, params);
+        }
+        return params;
+    }
+
+    private static void parseForm(String raw, Map<String, String> params) {
+        if (raw == null || raw.isEmpty()) return;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+    }
+
+    private String requireNode(String node) throws StubCluster.ApiError {
+        if (!cluster.hasNode(node)) throw new StubCluster.ApiError(595, "no such node '" + node + "'");
+        return node;
+    }
+
+    private static int vmid(Matcher m) {
+        return Integer.parseInt(m.group(2));
+    }
+
+    private static String quote(String s) {
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static void sleep(long ms) {
+        if (ms <= 0) return;
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // =========================================================
+    // STATS
+    // =========================================================
+
+    public long getRequestCount(String route) {
+        AtomicLong c = requestCounts.get(route);
+        return c != null ? c.get() : 0;
+    }
+
+    public long getTotalRequests() {
+        return requestCounts.values().stream().mapToLong(AtomicLong::get).sum();
+    }
+
+    public long getInjectedErrors() {
+        return injectedErrors.get();
+    }
+
+    public long getUnauthorizedCount() {
+        return unauthorized.get();
+    }
+
+    /** Số request đồng thời lớn nhất server từng thấy */
+    public int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    public String describe() {
+        StringBuilder sb = new StringBuilder("Stub " + getHost() + ": " + getTotalRequests() + " requests, "
+                + injectedErrors.get() + " injected 503, " + unauthorized.get() + " 401, max in-flight "
+                + maxInFlight.get());
+        new TreeMap<>(requestCounts).forEach((k, v) -> sb.append("\n  ").append(k).append(" = ").append(v.get()));
+        return sb.toString();
+    }
+
+    // =========================================================
+    // MAIN
+    // =========================================================
+
+    public static void main(String[] args) throws Exception {
+        StubConfig config = new StubConfig();
+        config.port = 8006;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String v = args[i + 1];
+            switch (args[i]) {
+                case "--vms" -> config.vms = Integer.parseInt(v);
+                case "--nodes" -> config.nodes = Integer.parseInt(v);
+                case "--port" -> config.port = Integer.parseInt(v);
+                case "--workers" -> config.workers = Integer.parseInt(v);
+                case "--latency-ms" -> config.defaultLatency = LatencyModel.logNormal(Double.parseDouble(v), Double.parseDouble(v) * 8);
+                case "--error-rate" -> config.errorRate = Double.parseDouble(v);
+                case "--ticket-lifetime-s" -> config.ticketLifetimeMs = Long.parseLong(v) * 1000;
+                default -> System.err.println("Bỏ qua tham số: " + args[i]);
+            }
+        }
+
+        ProxmoxStubServer stub = start(config);
+        System.out.println("Proxmox stub: https://" + stub.getHost() + API_PREFIX
+                + " (" + config.vms + " VM, " + config.nodes + " node)");
+        System.out.println("Đăng nhập: " + config.user + "@" + config.realm + " / " + config.password);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println(stub.describe());
+            stub.close();
+        }));
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,377 @@
+package com.vmmanager.bench.stub;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Trạng thái cluster giả lập: node, VM, task. Mọi thao tác đều synchronized.
+ *
+ * Task không chạy nền: mỗi lần đọc trạng thái, task đã tới hạn sẽ được
+ * kết thúc và áp dụng thay đổi (tạo VM, đổi status...).
+ */
+final class StubCluster {
+
+    private static final long GB = 1024L * 1024 * 1024;
+    private static final String[] STORAGES = {"local", "local-lvm", "ceph-pool"};
+    private static final int MAX_TASK_HISTORY = 1_000;
+
+    static final class VM {
+        final int vmid;
+        String node;
+        String name;
+        boolean template;
+        boolean running;
+        boolean agent;
+        int cpus;
+        long maxmem;
+        long maxdisk;
+        long startedAt;
+
+        VM(int vmid) {
+            this.vmid = vmid;
+        }
+
+        long uptime(long now) {
+            return running ? Math.max(1, (now - startedAt) / 1000) : 0;
+        }
+    }
+
+    static final class Task {
+        final String upid;
+        final String node;
+        final long startedAt;
+        final long endsAt;
+        final Effect effect;
+        String exitStatus;
+        long endedAt;
+
+        Task(String upid, String node, long startedAt, long endsAt, Effect effect) {
+            this.upid = upid;
+            this.node = node;
+            this.startedAt = startedAt;
+            this.endsAt = endsAt;
+            this.effect = effect;
+        }
+    }
+
+    /** Lỗi nghiệp vụ, trả về HTTP 500 như pveproxy */
+    static final class ApiError extends Exception {
+        final int status;
+
+        ApiError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private final StubConfig config;
+    private final List<String> nodes = new ArrayList<>();
+    private final TreeMap<Integer, VM> vms = new TreeMap<>();
+    private final Set<Integer> reserved = new HashSet<>();
+    private final Map<String, Task> tasks = new HashMap<>();
+    private final Deque<Task> taskHistory = new ArrayDeque<>();
+    private int pid = 1000;
+
+    StubCluster(StubConfig config) {
+        this.config = config;
+
+        for (int i = 0; i < Math.max(1, config.nodes); i++) {
+            nodes.add("pve" + (i + 1));
+        }
+
+        Random rnd = new Random(config.seed);
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < config.vms; i++) {
+            VM vm = new VM(100 + i);
+            vm.node = nodes.get(i % nodes.size());
+            vm.template = config.templateEvery > 0 && i % config.templateEvery == 0;
+            vm.name = (vm.template ? "tpl-" : "vm-") + vm.vmid;
+            vm.running = !vm.template && rnd.nextDouble() < config.runningRatio;
+            vm.agent = rnd.nextDouble() < config.agentRatio;
+            vm.cpus = 1 << rnd.nextInt(4);
+            vm.maxmem = (1L << rnd.nextInt(5)) * GB;
+            vm.maxdisk = (16L + rnd.nextInt(200)) * GB;
+            vm.startedAt = now - rnd.nextInt(1_000_000) * 1000L;
+            vms.put(vm.vmid, vm);
+        }
+    }
+
+    // =========================================================
+    // READ
+    // =========================================================
+
+    synchronized List<String> nodes() {
+        return nodes;
+    }
+
+    synchronized boolean hasNode(String node) {
+        return nodes.contains(node);
+    }
+
+    synchronized int vmCount() {
+        return vms.size();
+    }
+
+    synchronized String nodesJson() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < nodes.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"node\":\"").append(nodes.get(i))
+              .append("\",\"status\":\"online\",\"maxcpu\":64,\"maxmem\":").append(512 * GB)
+              .append(",\"uptime\":864000,\"type\":\"node\"}");
+        }
+        return sb.append(']').toString();
+    }
+
+    synchronized String clusterResourcesJson() {
+        advance();
+        long now = System.currentTimeMillis();
+        StringBuilder sb = new StringBuilder(vms.size() * 260 + 1024).append('[');
+        boolean first = true;
+
+        for (String node : nodes) {
+            first = comma(sb, first);
+            sb.append("{\"id\":\"node/").append(node).append("\",\"type\":\"node\",\"node\":\"").append(node)
+              .append("\",\"status\":\"online\",\"maxcpu\":64,\"maxmem\":").append(512 * GB).append('}');
+
+            for (String st : STORAGES) {
+                first = comma(sb, first);
+                sb.append("{\"id\":\"storage/").append(node).append('/').append(st)
+                  .append("\",\"type\":\"storage\",\"node\":\"").append(node)
+                  .append("\",\"storage\":\"").append(st).append("\",\"status\":\"available\"}");
+            }
+        }
+
+        for (VM vm : vms.values()) {
+            first = comma(sb, first);
+            sb.append("{\"id\":\"qemu/").append(vm.vmid).append("\",\"type\":\"qemu\",\"node\":\"").append(vm.node)
+              .append("\",\"maxcpu\":").append(vm.cpus).append(',');
+            appendVmFields(sb, vm, now);
+            sb.append('}');
+        }
+
+        return sb.append(']').toString();
+    }
+
+    synchronized String qemuListJson(String node) {
+        advance();
+        long now = System.currentTimeMillis();
+        StringBuilder sb = new StringBuilder(vms.size() / nodes.size() * 220 + 16).append('[');
+        boolean first = true;
+
+        for (VM vm : vms.values()) {
+            if (!vm.node.equals(node)) continue;
+            first = comma(sb, first);
+            sb.append("{\"cpus\":").append(vm.cpus).append(',');
+            appendVmFields(sb, vm, now);
+            sb.append('}');
+        }
+
+        return sb.append(']').toString();
+    }
+
+    synchronized String vmStatusJson(String node, int vmid) throws ApiError {
+        advance();
+        VM vm = requireVm(node, vmid);
+        StringBuilder sb = new StringBuilder("{\"cpus\":").append(vm.cpus).append(',');
+        appendVmFields(sb, vm, System.currentTimeMillis());
+        sb.append(",\"qmpstatus\":\"").append(vm.running ? "running" : "stopped").append("\"}");
+        return sb.toString();
+    }
+
+    synchronized String agentInterfacesJson(String node, int vmid) throws ApiError {
+        advance();
+        VM vm = requireVm(node, vmid);
+        if (!vm.running) throw new ApiError(500, "VM " + vmid + " is not running");
+        if (!vm.agent) throw new ApiError(500, "QEMU guest agent is not running");
+
+        return "{\"result\":[{\"name\":\"lo\",\"ip-addresses\":[{\"ip-address\":\"127.0.0.1\","
+                + "\"ip-address-type\":\"ipv4\",\"prefix\":8}]},{\"name\":\"eth0\",\"ip-addresses\":["
+                + "{\"ip-address\":\"" + ipOf(vmid) + "\",\"ip-address-type\":\"ipv4\",\"prefix\":16},"
+                + "{\"ip-address\":\"fe80::1\",\"ip-address-type\":\"ipv6\",\"prefix\":64}]}]}";
+    }
+
+    synchronized int nextId() {
+        int id = 100;
+        while (vms.containsKey(id) || reserved.contains(id)) id++;
+        return id;
+    }
+
+    static String storagesJson() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < STORAGES.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"storage\":\"").append(STORAGES[i])
+              .append("\",\"type\":\"lvmthin\",\"active\":1,\"enabled\":1,\"content\":\"images,rootdir\"}");
+        }
+        return sb.append(']').toString();
+    }
+
+    static String networkJson() {
+        return "[{\"iface\":\"eno1\",\"type\":\"eth\",\"active\":1},"
+                + "{\"iface\":\"vmbr0\",\"type\":\"bridge\",\"active\":1,\"bridge_ports\":\"eno1\"},"
+                + "{\"iface\":\"vmbr1\",\"type\":\"bridge\",\"active\":1}]";
+    }
+
+    synchronized String taskStatusJson(String upid) throws ApiError {
+        advance();
+        Task t = tasks.get(upid);
+        if (t == null) throw new ApiError(500, "no such task");
+
+        StringBuilder sb = new StringBuilder("{\"upid\":\"").append(upid).append("\",\"node\":\"").append(t.node)
+                .append("\",\"status\":\"").append(t.exitStatus != null ? "stopped" : "running").append('"');
+        if (t.exitStatus != null) sb.append(",\"exitstatus\":\"").append(t.exitStatus).append('"');
+        return sb.append('}').toString();
+    }
+
+    synchronized String clusterTasksJson() {
+        advance();
+        StringBuilder sb = new StringBuilder("[");
+        boolean first = true;
+        for (Task t : taskHistory) {
+            first = comma(sb, first);
+            sb.append("{\"upid\":\"").append(t.upid).append("\",\"node\":\"").append(t.node)
+              .append("\",\"starttime\":").append(t.startedAt / 1000);
+            if (t.exitStatus != null) {
+                sb.append(",\"endtime\":").append(t.endedAt / 1000)
+                  .append(",\"status\":\"").append(t.exitStatus).append('"');
+            }
+            sb.append('}');
+        }
+        return sb.append(']').toString();
+    }
+
+    // =========================================================
+    // WRITE (tạo task)
+    // =========================================================
+
+    synchronized String cloneVm(String node, int templateId, int newId, String name, String target) throws ApiError {
+        VM tpl = requireVm(node, templateId);
+        if (vms.containsKey(newId) || reserved.contains(newId)) {
+            throw new ApiError(500, "unable to create VM " + newId + " - VM " + newId + " already exists on node");
+        }
+        String targetNode = target != null ? target : node;
+        if (!nodes.contains(targetNode)) throw new ApiError(500, "no such node '" + targetNode + "'");
+
+        reserved.add(newId);
+        return startTask(node, "qmclone", templateId, config.cloneTaskMs, () -> {
+            reserved.remove(newId);
+            VM vm = new VM(newId);
+            vm.node = targetNode;
+            vm.name = name != null ? name : "vm-" + newId;
+            vm.cpus = tpl.cpus;
+            vm.maxmem = tpl.maxmem;
+            vm.maxdisk = tpl.maxdisk;
+            vm.agent = true;
+            vms.put(newId, vm);
+            return null;
+        });
+    }
+
+    synchronized String startVm(String node, int vmid) throws ApiError {
+        VM vm = requireVm(node, vmid);
+        if (vm.template) throw new ApiError(500, "you can't start a vm if it's a template");
+
+        return startTask(node, "qmstart", vmid, config.powerTaskMs, () -> {
+            if (vm.running) return "VM " + vmid + " already running";
+            vm.running = true;
+            vm.startedAt = System.currentTimeMillis();
+            return null;
+        });
+    }
+
+    synchronized String stopVm(String node, int vmid, String type) throws ApiError {
+        VM vm = requireVm(node, vmid);
+
+        return startTask(node, type, vmid, config.powerTaskMs, () -> {
+            vm.running = false;
+            return null;
+        });
+    }
+
+    synchronized String deleteVm(String node, int vmid) throws ApiError {
+        VM vm = requireVm(node, vmid);
+
+        return startTask(node, "qmdestroy", vmid, config.deleteTaskMs, () -> {
+            if (vm.running) return "VM is running - destroy failed";
+            vms.remove(vmid);
+            return null;
+        });
+    }
+
+    // =========================================================
+    // TASK
+    // =========================================================
+
+    /** Hiệu ứng của task, trả null nếu OK hoặc thông báo lỗi */
+    interface Effect {
+        String apply();
+    }
+
+    private String startTask(String node, String type, int id, long durationMs, Effect effect) {
+        long now = System.currentTimeMillis();
+        pid++;
+        String upid = String.format("UPID:%s:%08X:%08X:%08X:%s:%d:%s@%s:",
+                node, pid, pid * 7, now / 1000, type, id, config.user, config.realm);
+
+        Task t = new Task(upid, node, now, now + durationMs, effect);
+        tasks.put(upid, t);
+        taskHistory.addFirst(t);
+        while (taskHistory.size() > MAX_TASK_HISTORY) {
+            tasks.remove(taskHistory.removeLast().upid);
+        }
+        return upid;
+    }
+
+    // Kết thúc các task đã tới hạn (gọi trong synchronized)
+    private void advance() {
+        long now = System.currentTimeMillis();
+        for (Task t : taskHistory) {
+            if (t.exitStatus == null && now >= t.endsAt) {
+                String error = t.effect.apply();
+                t.exitStatus = error != null ? error : "OK";
+                t.endedAt = now;
+            }
+        }
+    }
+
+    // =========================================================
+    // HELPERS
+    // =========================================================
+
+    private VM requireVm(String node, int vmid) throws ApiError {
+        VM vm = vms.get(vmid);
+        if (vm == null || !vm.node.equals(node)) {
+            throw new ApiError(500, "Configuration file 'nodes/" + node + "/qemu-server/" + vmid + ".conf' does not exist");
+        }
+        return vm;
+    }
+
+    private static void appendVmFields(StringBuilder sb, VM vm, long now) {
+        sb.append("\"vmid\":").append(vm.vmid)
+          .append(",\"name\":\"").append(vm.name).append('"')
+          .append(",\"status\":\"").append(vm.running ? "running" : "stopped").append('"')
+          .append(",\"maxmem\":").append(vm.maxmem)
+          .append(",\"maxdisk\":").append(vm.maxdisk)
+          .append(",\"uptime\":").append(vm.uptime(now));
+        if (vm.template) sb.append(",\"template\":1");
+    }
+
+    static String ipOf(int vmid) {
+        return "10." + ((vmid >> 16) & 0xFF) + "." + ((vmid >> 8) & 0xFF) + "." + (vmid & 0xFF);
+    }
+
+    private static boolean comma(StringBuilder sb, boolean first) {
+        if (!first) sb.append(',');
+        return false;
+    }
+}
@@ -0,0 +1,86 @@
+package com.vmmanager.bench.stub;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cấu hình của {@link ProxmoxStubServer}.
+ *
+ * Latency và tỉ lệ lỗi có thể đặt riêng theo route, tên route có dạng
+ * "GET /nodes/{node}/qemu" (xem {@link ProxmoxStubServer#ROUTE_NAMES}).
+ */
+public class StubConfig {
+
+    // ==== FLEET ====
+    public int vms = 1_000;
+    public int nodes = 4;
+    /** Cứ mỗi templateEvery VM có một template */
+    public int templateEvery = 10;
+    /** Tỉ lệ VM (đang chạy) có guest agent trả IP */
+    public double agentRatio = 0.8;
+    public double runningRatio = 0.7;
+    public long seed = 42;
+
+    // ==== SERVER ====
+    /** 0 = chọn port trống */
+    public int port = 0;
+    /** Số worker xử lý request (pveproxy mặc định 3) */
+    public int workers = 8;
+
+    // ==== AUTH ====
+    public String user = "root";
+    public String realm = "pam";
+    public String password = "stub";
+    public long ticketLifetimeMs = 2 * 60 * 60 * 1000L;
+
+    // ==== TASK ====
+    public long cloneTaskMs = 3_000;
+    public long powerTaskMs = 500;
+    public long deleteTaskMs = 1_000;
+
+    // ==== LATENCY / FAULT ====
+    public LatencyModel defaultLatency = LatencyModel.logNormal(5, 40);
+    public final Map<String, LatencyModel> latency = new HashMap<>();
+    /** Tỉ lệ request trả 503 cho mọi route */
+    public double errorRate = 0;
+    public final Map<String, Double> errorRates = new HashMap<>();
+
+    public StubConfig() {
+        // Guest agent và clone chậm hơn hẳn các GET thường
+        latency.put("GET /nodes/{node}/qemu/{vmid}/agent/network-get-interfaces", LatencyModel.logNormal(40, 800));
+        latency.put("POST /nodes/{node}/qemu/{vmid}/clone", LatencyModel.logNormal(30, 200));
+    }
+
+    public LatencyModel latencyFor(String route) {
+        return latency.getOrDefault(route, defaultLatency);
+    }
+
+    public double errorRateFor(String route) {
+        return errorRates.getOrDefault(route, errorRate);
+    }
+
+    // Builder kiểu fluent cho benchmark
+
+    public StubConfig withFleet(int vms, int nodes) {
+        this.vms = vms;
+        this.nodes = nodes;
+        return this;
+    }
+
+    public StubConfig withLatency(String route, LatencyModel model) {
+        if (route == null) defaultLatency = model;
+        else latency.put(route, model);
+        return this;
+    }
+
+    public StubConfig withErrorRate(String route, double rate) {
+        if (route == null) errorRate = rate;
+        else errorRates.put(route, rate);
+        return this;
+    }
+
+    public StubConfig withTicketLifetime(long ms) {
+        this.ticketLifetimeMs = ms;
+        return this;
+    }
+}
@@ -0,0 +1,80 @@
+package com.vmmanager.bench.stub;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+
+/**
+ * Tạo SSLContext với chứng chỉ tự ký cho stub.
+ *
+ * JDK không có API công khai để sinh chứng chỉ nên gọi keytool một lần
+ * và giữ keystore trong thư mục tạm cho các lần chạy sau.
+ */
+final class StubTls {
+
+    private static final char[] PASSWORD = "changeit".toCharArray();
+    private static final Path KEYSTORE = Path.of(System.getProperty("java.io.tmpdir"), "proxmox-stub.p12");
+
+    private StubTls() {
+    }
+
+    static synchronized SSLContext serverContext() throws IOException {
+        try {
+            if (!Files.exists(KEYSTORE)) {
+                generate();
+            }
+
+            KeyStore ks = KeyStore.getInstance("PKCS12");
+            try (InputStream in = new FileInputStream(KEYSTORE.toFile())) {
+                ks.load(in, PASSWORD);
+            }
+
+            KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            kmf.init(ks, PASSWORD);
+
+            SSLContext ctx = SSLContext.getInstance("TLS");
+            ctx.init(kmf.getKeyManagers(), null, null);
+            return ctx;
+
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Không tạo được SSLContext cho stub", e);
+        }
+    }
+
+    private static void generate() throws IOException, InterruptedException {
+        String keytool = System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool";
+        Path tmp = Files.createTempFile("proxmox-stub", ".p12");
+        Files.delete(tmp);
+
+        Process p = new ProcessBuilder(
+                keytool, "-genkeypair",
+                "-alias", "stub",
+                "-keyalg", "RSA", "-keysize", "2048",
+                "-validity", "3650",
+                "-dname", "CN=localhost",
+                "-ext", "SAN=dns:localhost,ip:127.0.0.1",
+                "-storetype", "PKCS12",
+                "-keystore", tmp.toString(),
+                "-storepass", new String(PASSWORD),
+                "-keypass", new String(PASSWORD))
+                .redirectErrorStream(true)
+                .start();
+
+        String output = new String(p.getInputStream().readAllBytes());
+        if (!p.waitFor(60, TimeUnit.SECONDS) || p.exitValue() != 0) {
+            throw new IOException("keytool thất bại: " + output);
+        }
+
+        // Đổi tên sau cùng để tiến trình khác không đọc keystore đang ghi dở
+        Files.move(tmp, KEYSTORE, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+    }
+}
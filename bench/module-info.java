@@ -0,0 +1,15 @@
+/**
+ * Benchmark, load test và Proxmox stub server; build riêng, không nằm trong bản build app.
+ *
+ * javac -d bin --module-path lib $(find src -name '*.java')
+ * javac -d bench-bin --module-path lib:bin $(find bench -name '*.java')
+ * java -p lib:bin:bench-bin -m iacGUI.bench/com.vmmanager.bench.HotPathBenchmarks
+ */
+module iacGUI.bench {
+    requires iacGUI;
+    requires java.desktop;
+    requires java.management;
+    requires jdk.management;
+    requires jdk.httpserver;
+    requires com.google.gson;
+}
@@ -7,11 +7,23 @@ public class GlobalConfig {
     public String proxmoxUser;
     public String proxmoxPassword;
     public String proxmoxRealm = "pam";
+    // API token (root@pam!iac) - nếu có thì dùng thay cho user/password
+    public String proxmoxTokenId;
+    public String proxmoxTokenSecret;
+    public int proxmoxMaxConnections = 50;
+    public int proxmoxMaxConnectionsPerHost = 20;
 
     // Ansible
     public String ansibleUser;
     public String ansibleKey;
+    // Số playbook chạy song song (mỗi lần chạy có inventory riêng)
+    public int ansibleMaxParallel = 4;
 
     // App
     public boolean useRealApi;
+    // Giữ inventory dạng cột (ít heap hơn cho fleet hàng chục nghìn VM)
+    public boolean compactInventory;
+    // Poll nền inventory (giây, 0 = tắt) và ngân sách request của poller
+    public int inventoryPollSeconds = 15;
+    public double inventoryPollRequestsPerSecond = 5;
 }
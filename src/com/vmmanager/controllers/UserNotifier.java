@@ -0,0 +1,52 @@
+package com.vmmanager.controllers;
+
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+
+import com.vmmanager.utils.LoggerUtil;
+
+/**
+ * Kênh báo lỗi / thông tin của controller tới người dùng.
+ *
+ * GUI dùng hộp thoại; công cụ chạy headless (load test, script) chỉ ghi log.
+ */
+public interface UserNotifier {
+
+    void error(String message);
+
+    void info(String message);
+
+    /** Hộp thoại Swing (mặc định của ứng dụng); gọi từ thread nền thì hiện qua EDT, không chặn */
+    UserNotifier DIALOG = new UserNotifier() {
+        @Override
+        public void error(String message) {
+            show(message, "Error", JOptionPane.ERROR_MESSAGE);
+        }
+
+        @Override
+        public void info(String message) {
+            show(message, "Info", JOptionPane.INFORMATION_MESSAGE);
+        }
+
+        private void show(String message, String title, int type) {
+            if (SwingUtilities.isEventDispatchThread()) {
+                JOptionPane.showMessageDialog(null, message, title, type);
+            } else {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, message, title, type));
+            }
+        }
+    };
+
+    /** Chỉ ghi log, không mở cửa sổ nào */
+    UserNotifier LOG = new UserNotifier() {
+        @Override
+        public void error(String message) {
+            LoggerUtil.error(message);
+        }
+
+        @Override
+        public void info(String message) {
+            LoggerUtil.info(message);
+        }
+    };
+}
@@ -3,28 +3,51 @@ package com.vmmanager.controllers;
 import java.util.ArrayList;
 import java.io.File;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
 
-import javax.swing.JOptionPane;
 
 import com.vmmanager.config.GlobalConfig;
+import com.vmmanager.inventory.ColumnarInventory;
+import com.vmmanager.inventory.InventoryPoller;
+import com.vmmanager.inventory.InventorySync;
+import com.vmmanager.inventory.VMRegistry;
+import com.vmmanager.models.ClusterInventory;
 import com.vmmanager.models.ProxmoxVM;
 import com.vmmanager.models.enums.VMStatus;
 import com.vmmanager.models.enums.OSType;
+import com.vmmanager.services.proxmox.ProxmoxCredentials;
+import com.vmmanager.services.proxmox.ProxmoxTask;
+import com.vmmanager.services.proxmox.ProxmoxTransport;
 import com.vmmanager.services.proxmox.ProxmoxVMService;
+import com.vmmanager.services.ansible.AnsibleJobEngine;
 import com.vmmanager.services.ansible.AnsibleService;
 import com.vmmanager.utils.LoggerUtil;
 
 public class VMController {
 
-    private final List<ProxmoxVM> vmList = new ArrayList<>();
+    private final VMRegistry registry = new VMRegistry();
+    private final InventorySync inventorySync = new InventorySync(registry);
+    private final Set<Integer> busyVMs = ConcurrentHashMap.newKeySet();
+    // Config được áp từ thread nền trong khi task async / poller đang đọc:
+    // các field dưới là volatile, nơi dùng đọc một lần vào biến local
+    private volatile ClusterInventory inventory;
+    // Tải bởi người dùng và poller nền không chạy chồng lên nhau
+    private final Object loadLock = new Object();
+    private volatile InventoryPoller poller;
 
-    private ProxmoxVMService proxmoxService;
-    private AnsibleService ansibleService;
+    private volatile ProxmoxVMService proxmoxService;
+    private volatile AnsibleService ansibleService;
 
-    private boolean useRealAPI = false;
-    private String currentNode = "mock";
+    private volatile boolean useRealAPI = false;
+    private volatile boolean compactInventory = false;
+    private volatile String currentNode = "mock";
 
     private GlobalConfig config;
+    private volatile UserNotifier notifier = UserNotifier.DIALOG;
 
     // ================= CONSTRUCTOR =================
     public VMController() {
@@ -32,7 +55,11 @@ public class VMController {
     }
 
     // ================= GLOBAL CONFIG =================
-    public void setGlobalConfig(GlobalConfig cfg) {
+    /**
+     * Áp config mới (chặn: test connection + tải inventory). GUI gọi từ thread nền;
+     * hai lần áp config chồng nhau được xếp hàng.
+     */
+    public synchronized void setGlobalConfig(GlobalConfig cfg) {
 
         try {
             if (cfg == null) {
@@ -42,21 +69,34 @@ public class VMController {
 
             this.config = cfg;
             this.useRealAPI = cfg.useRealApi;
+            this.compactInventory = cfg.compactInventory;
 
             LoggerUtil.info("🔄 Applying GlobalConfig (real=" + useRealAPI + ")");
 
+            stopPoller();
+
+            // Ansible cũ: không nhận job mới, job đang chạy vẫn chạy xong
+            AnsibleService oldAnsible = ansibleService;
+            ansibleService = null;
+            if (oldAnsible != null) oldAnsible.close();
+
+            // Đóng service cũ để trả connection pool (gỡ khỏi field trước khi đóng)
+            ProxmoxVMService oldService = proxmoxService;
+            proxmoxService = null;
+            if (oldService != null) oldService.close();
+            inventory = null;
+
             if (!useRealAPI) {
-                proxmoxService = null;
-                ansibleService = null;
                 currentNode = "mock";
                 loadSampleData();
                 return;
             }
 
             // ==== VALIDATE PROXMOX ====
+            boolean useToken = !isBlank(cfg.proxmoxTokenId) && !isBlank(cfg.proxmoxTokenSecret);
+
             if (isBlank(cfg.proxmoxHost) ||
-                isBlank(cfg.proxmoxUser) ||
-                isBlank(cfg.proxmoxPassword)) {
+                (!useToken && (isBlank(cfg.proxmoxUser) || isBlank(cfg.proxmoxPassword)))) {
 
                 LoggerUtil.error("Missing Proxmox config");
                 loadSampleData();
@@ -64,33 +104,45 @@ public class VMController {
             }
 
             // ==== INIT PROXMOX ====
-            proxmoxService = new ProxmoxVMService(
+            ProxmoxTransport.Settings http = new ProxmoxTransport.Settings();
+            if (cfg.proxmoxMaxConnections > 0) http.maxTotal = cfg.proxmoxMaxConnections;
+            if (cfg.proxmoxMaxConnectionsPerHost > 0) http.maxPerRoute = cfg.proxmoxMaxConnectionsPerHost;
+
+            ProxmoxCredentials credentials = useToken
+                    ? ProxmoxCredentials.apiToken(cfg.proxmoxTokenId.trim(), cfg.proxmoxTokenSecret.trim())
+                    : ProxmoxCredentials.password(cfg.proxmoxUser, cfg.proxmoxPassword,
+                            isBlank(cfg.proxmoxRealm) ? "pam" : cfg.proxmoxRealm);
+
+            ProxmoxVMService service = new ProxmoxVMService(
                     cfg.proxmoxHost,
-                    cfg.proxmoxUser,
-                    cfg.proxmoxPassword,
-                    "pam",
-                    null
+                    credentials,
+                    null,
+                    http
             );
+            proxmoxService = service;
 
-            currentNode = proxmoxService.getCurrentNode();
+            currentNode = service.getCurrentNode();
 
             // ==== INIT ANSIBLE ====
             if (!isBlank(cfg.ansibleUser) && !isBlank(cfg.ansibleKey)) {
+                AnsibleJobEngine.Settings jobs = new AnsibleJobEngine.Settings();
+                if (cfg.ansibleMaxParallel > 0) jobs.workers = cfg.ansibleMaxParallel;
                 ansibleService = new AnsibleService(
                         cfg.ansibleUser,
-                        cfg.ansibleKey
+                        cfg.ansibleKey,
+                        jobs
                 );
             }
 
             // ==== TEST CONNECTION ====
-            if (!proxmoxService.testConnection()) {
+            if (!service.testConnection()) {
                 LoggerUtil.error("❌ Proxmox connection failed");
                 loadSampleData();
                 return;
             }
 
             // ==== LOAD REAL DATA ====
-            loadVMsFromProxmox();
+            if (loadVMsFromProxmox()) startPoller(cfg);
             LoggerUtil.info("✅ Connected Proxmox node=" + currentNode);
 
         } catch (Exception e) {
@@ -103,19 +155,117 @@ public class VMController {
         return s == null || s.isBlank();
     }
 
+    // Service thật đang dùng, null khi chạy mock hoặc đang áp config
+    private ProxmoxVMService realService() {
+        return useRealAPI ? proxmoxService : null;
+    }
+
+    private ClusterInventory realInventory() {
+        return useRealAPI ? inventory : null;
+    }
+
     // ================= LOAD =================
-    private void loadVMsFromProxmox() {
+    private boolean loadVMsFromProxmox() {
+        return loadVMsFromProxmox(() -> true);
+    }
+
+    // Poll nền: request hỏi IP (guest agent) tính vào ngân sách của poller
+    private boolean pollVMsFromProxmox() {
+        InventoryPoller p = poller;
+        return loadVMsFromProxmox(p != null ? p::tryAcquire : () -> true);
+    }
+
+    private boolean loadVMsFromProxmox(BooleanSupplier ipPermit) {
+        synchronized (loadLock) {
+            return loadVMsLocked(ipPermit);
+        }
+    }
+
+    private boolean loadVMsLocked(BooleanSupplier ipPermit) {
+        ProxmoxVMService service = proxmoxService;
+        if (service == null) return false;
         try {
-            vmList.clear();
-            vmList.addAll(proxmoxService.listVMs());
+            // 1 request /cluster/resources cho VM, template, storage, node (+ IP các VM chưa có cache)
+            ClusterInventory snapshot = service.loadInventory(ipPermit);
+            if (inventory == null) {
+                applyInventory(snapshot);
+            } else {
+                syncInventory(snapshot);
+            }
+            return true;
         } catch (Exception e) {
             LoggerUtil.error("Load VM error", e);
-            loadSampleData();
+            // Lỗi tạm thời (đã retry / circuit open) → giữ danh sách cũ thay vì làm trống bảng
+            if (inventory == null) loadSampleData();
+            return false;
         }
     }
 
+    /**
+     * Thay toàn bộ danh sách VM bằng snapshot inventory (dùng cả cho benchmark, không cần API)
+     */
+    public void applyInventory(ClusterInventory snapshot) {
+        if (compactInventory) {
+            // Chuyển sang cột, bỏ object ProxmoxVM đầy đủ vừa decode
+            snapshot.replaceVMs(new ColumnarInventory(snapshot.getVMs()).views());
+        }
+        inventory = snapshot;
+        registry.replaceAll(snapshot.getVMs());
+    }
+
+    /**
+     * Chỉ áp phần khác so với registry: VM không đổi giữ nguyên object, không phát sự kiện
+     */
+    public InventorySync.Result syncInventory(ClusterInventory snapshot) {
+        InventorySync.Result result = inventorySync.sync(snapshot.getVMs(), vm -> busyVMs.contains(vm.getVmid()));
+        // Snapshot giữ object của registry, không giữ bản vừa decode
+        snapshot.replaceVMs(registry.all());
+        inventory = snapshot;
+        LoggerUtil.debug(() -> "Inventory sync: " + result);
+        return result;
+    }
+
+    public boolean refreshInventory() {
+        ProxmoxVMService service = realService();
+        if (service != null) {
+            // Refresh do người dùng bấm → bỏ qua cache
+            service.invalidateCache();
+            return loadVMsFromProxmox();
+        }
+        return false;
+    }
+
+    // ================= POLLER =================
+    private void startPoller(GlobalConfig cfg) {
+        if (cfg.inventoryPollSeconds <= 0) return;
+
+        InventoryPoller.Settings settings = new InventoryPoller.Settings();
+        settings.baseIntervalMs = cfg.inventoryPollSeconds * 1000L;
+        settings.maxIntervalMs = Math.max(settings.baseIntervalMs, settings.baseIntervalMs * 4);
+        if (cfg.inventoryPollRequestsPerSecond > 0) settings.requestsPerSecond = cfg.inventoryPollRequestsPerSecond;
+
+        // Poll nền đi qua cache response (TTL ngắn), không invalidate như nút Refresh
+        poller = new InventoryPoller(registry, settings,
+                this::pollVMsFromProxmox,
+                this::refreshVM,
+                vm -> busyVMs.contains(vm.getVmid()));
+        poller.start();
+    }
+
+    private void stopPoller() {
+        if (poller != null) {
+            poller.close();
+            poller = null;
+        }
+    }
+
+    public String getPollerStats() {
+        InventoryPoller p = poller;
+        return p != null ? p.describe() : null;
+    }
+
     private void loadSampleData() {
-        vmList.clear();
+        inventory = null;
 
         ProxmoxVM vm = new ProxmoxVM();
         vm.setVmid(100);
@@ -127,16 +277,26 @@ public class VMController {
         vm.setNode("mock");
         vm.setIpAddress("192.168.1.10");
 
-        vmList.add(vm);
+        registry.replaceAll(List.of(vm));
     }
 
     // ================= CREATE =================
     public boolean createVM(String name, int vmid, int cpu, int ram, int disk,
                             String osType, String template, String storage,
                             String bridge, String node) {
+        return accepted(createVMAsync(name, vmid, cpu, ram, disk, osType, template, storage, bridge, node));
+    }
+
+    /**
+     * Như createVM nhưng trả future hoàn tất khi clone xong và VM đã được cập nhật
+     * (true = thành công). Request bị từ chối ngay → future đã xong với false.
+     */
+    public CompletableFuture<Boolean> createVMAsync(String name, int vmid, int cpu, int ram, int disk,
+                                                    String osType, String template, String storage,
+                                                    String bridge, String node) {
 
-        if (!validateVMInput(name, cpu, ram, disk)) return false;
-        if (isVMIDExists(vmid)) return error("VM ID exists: " + vmid);
+        if (!validateVMInput(name, cpu, ram, disk)) return done(false);
+        if (isVMIDExists(vmid)) return rejected("VM ID exists: " + vmid);
 
         ProxmoxVM vm = new ProxmoxVM();
         vm.setVmid(vmid);
@@ -151,107 +311,197 @@ public class VMController {
         vm.setNetworkBridge(bridge);
         vm.setNode(node != null ? node : currentNode);
 
-        if (!useRealAPI || proxmoxService == null) {
-            vmList.add(vm);
-            return info("MOCK create: " + name);
+        ProxmoxVMService service = realService();
+        if (service == null) {
+            registry.add(vm);
+            return done(info("MOCK create: " + name));
         }
 
-        try {
-            boolean ok = proxmoxService.createVM(vm);
-            if (!ok) return error("Create VM failed");
-
-            Thread.sleep(2000);
-            loadVMsFromProxmox();
-            return info("Created VM: " + name);
-
-        } catch (Exception e) {
-            LoggerUtil.error("Create VM error", e);
-            return error(e.getMessage());
-        }
+        if (template == null || template.isBlank()) return rejected("Template missing");
+
+        // Clone chạy nền: VM hiện PENDING, cập nhật khi task Proxmox kết thúc
+        markBusy(vm);
+        registry.add(vm);
+        CompletableFuture<Boolean> result = whileBusy(vm, service.cloneVMTask(vm)
+                .handle((task, ex) -> {
+                    if (ex != null || !task.isOk()) {
+                        LoggerUtil.error("❌ Clone VM failed: " + name + " - "
+                                + (ex != null ? ex.getMessage() : task.getExitStatus()));
+                        registry.update(vm, v -> v.setStatus(VMStatus.ERROR));
+                        return done(false);
+                    }
+                    LoggerUtil.info("✅ Created VM: " + name + " (" + task.getDuration().toMillis() + "ms)");
+                    return refreshVM(vm).thenApply(r -> true);
+                })
+                .thenCompose(f -> f));
+
+        info("Cloning VM: " + name);
+        return result;
     }
 
     // ================= START =================
     public boolean startVM(String vmId) {
+        return accepted(startVMAsync(vmId));
+    }
+
+    /** Như startVM, future hoàn tất khi task xong và trạng thái VM đã cập nhật */
+    public CompletableFuture<Boolean> startVMAsync(String vmId) {
         ProxmoxVM vm = findVM(vmId);
-        if (vm == null) return error("VM not found");
+        if (vm == null) return rejected("VM not found");
 
-        if (!useRealAPI || proxmoxService == null) {
-            vm.setStatus(VMStatus.RUNNING);
-            return info("MOCK start " + vmId);
+        ProxmoxVMService service = realService();
+        if (service == null) {
+            registry.update(vm, v -> v.setStatus(VMStatus.RUNNING));
+            return done(info("MOCK start " + vmId));
         }
 
-        try {
-            boolean ok = proxmoxService.startVM(vm.getVmid());
-            if (ok) vm.setStatus(VMStatus.RUNNING);
-            return ok;
-        } catch (Exception e) {
-            LoggerUtil.error("Start VM", e);
-            return error(e.getMessage());
-        }
+        VMStatus before = vm.getStatus();
+        markBusy(vm);
+        registry.update(vm, v -> v.setStatus(VMStatus.PENDING));
+        return whileBusy(vm, service.startVMTask(vm.getNode(), vm.getVmid())
+                .handle((task, ex) -> onPowerTaskDone(vm, before, "Start", task, ex))
+                .thenCompose(f -> f));
     }
 
     // ================= STOP =================
     public boolean stopVM(String vmId) {
+        return accepted(stopVMAsync(vmId));
+    }
+
+    /** Như stopVM, future hoàn tất khi task xong và trạng thái VM đã cập nhật */
+    public CompletableFuture<Boolean> stopVMAsync(String vmId) {
         ProxmoxVM vm = findVM(vmId);
-        if (vm == null) return error("VM not found");
+        if (vm == null) return rejected("VM not found");
 
-        if (!useRealAPI || proxmoxService == null) {
-            vm.setStatus(VMStatus.STOPPED);
-            return info("MOCK stop " + vmId);
+        ProxmoxVMService service = realService();
+        if (service == null) {
+            registry.update(vm, v -> v.setStatus(VMStatus.STOPPED));
+            return done(info("MOCK stop " + vmId));
         }
 
-        try {
-            boolean ok = proxmoxService.stopVM(vm.getVmid());
-            if (ok) vm.setStatus(VMStatus.STOPPED);
-            return ok;
-        } catch (Exception e) {
-            LoggerUtil.error("Stop VM", e);
-            return error(e.getMessage());
-        }
+        VMStatus before = vm.getStatus();
+        markBusy(vm);
+        registry.update(vm, v -> v.setStatus(VMStatus.PENDING));
+        return whileBusy(vm, service.stopVMTask(vm.getNode(), vm.getVmid())
+                .handle((task, ex) -> onPowerTaskDone(vm, before, "Stop", task, ex))
+                .thenCompose(f -> f));
     }
 
     // ================= DELETE =================
     public boolean deleteVM(String vmId) {
+        return accepted(deleteVMAsync(vmId));
+    }
+
+    /** Như deleteVM, future hoàn tất khi task xoá kết thúc */
+    public CompletableFuture<Boolean> deleteVMAsync(String vmId) {
         ProxmoxVM vm = findVM(vmId);
-        if (vm == null) return error("VM not found");
+        if (vm == null) return rejected("VM not found");
 
-        if (!useRealAPI || proxmoxService == null) {
-            vmList.remove(vm);
-            return info("MOCK delete " + vmId);
+        ProxmoxVMService service = realService();
+        if (service == null) {
+            registry.remove(vm);
+            return done(info("MOCK delete " + vmId));
         }
 
-        try {
-            boolean ok = proxmoxService.deleteVM(vm.getVmid());
-            if (ok) vmList.remove(vm);
-            return ok;
-        } catch (Exception e) {
-            LoggerUtil.error("Delete VM", e);
-            return error(e.getMessage());
+        VMStatus before = vm.getStatus();
+        markBusy(vm);
+        registry.update(vm, v -> v.setStatus(VMStatus.PENDING));
+        return whileBusy(vm, service.deleteVMTask(vm.getNode(), vm.getVmid())
+                .handle((task, ex) -> {
+                    boolean ok = ex == null && task.isOk();
+                    if (!ok) {
+                        LoggerUtil.error("❌ Delete VM failed: " + vmId + " - "
+                                + (ex != null ? ex.getMessage() : task.getExitStatus()));
+                        registry.update(vm, v -> v.setStatus(before));
+                    } else {
+                        registry.remove(vm);
+                    }
+                    return ok;
+                }));
+    }
+
+    // ================= TASK CALLBACKS =================
+    // VM có task đang chạy: sync không ghi đè trạng thái PENDING, không xoá clone chưa lên API
+    private void markBusy(ProxmoxVM vm) {
+        busyVMs.add(vm.getVmid());
+    }
+
+    private CompletableFuture<Boolean> whileBusy(ProxmoxVM vm, CompletableFuture<Boolean> op) {
+        return op.whenComplete((r, ex) -> busyVMs.remove(vm.getVmid()));
+    }
+
+    private CompletableFuture<Boolean> onPowerTaskDone(ProxmoxVM vm, VMStatus before, String action,
+                                                       ProxmoxTask task, Throwable ex) {
+        if (ex != null || !task.isOk()) {
+            LoggerUtil.error("❌ " + action + " VM failed: " + vm.getVmid() + " - "
+                    + (ex != null ? ex.getMessage() : task.getExitStatus()));
+            registry.update(vm, v -> v.setStatus(before));
+            return done(false);
         }
+        // Task đã thành công; lỗi đọc lại trạng thái chỉ được log
+        return refreshVM(vm).thenApply(r -> true);
+    }
+
+    // Cập nhật riêng VM vừa thay đổi từ /status/current, không tải lại cả danh sách
+    private CompletableFuture<Boolean> refreshVM(ProxmoxVM vm) {
+        ProxmoxVMService service = proxmoxService;
+        if (service == null) return done(false);
+
+        return service.getVMStatusAsync(vm.getNode(), vm.getVmid())
+                .handle((fresh, ex) -> {
+                    boolean ok = ex == null && fresh != null;
+                    if (!ok) {
+                        LoggerUtil.error("Refresh VM " + vm.getVmid() + " error"
+                                + (ex != null ? ": " + ex.getMessage() : ""));
+                    } else {
+                        registry.update(vm, v -> {
+                            v.setStatus(fresh.getStatus());
+                            v.setCpuCores(fresh.getCpuCores());
+                            v.setMemoryGB(fresh.getMemoryGB());
+                            v.setDiskGB(fresh.getDiskGB());
+                            v.setUptime(fresh.getUptime());
+                            if (fresh.getStatus() != VMStatus.RUNNING) v.setIpAddress(null);
+                        });
+                    }
+                    return ok;
+                });
+    }
+
+    private static CompletableFuture<Boolean> done(boolean ok) {
+        return CompletableFuture.completedFuture(ok);
+    }
+
+    private CompletableFuture<Boolean> rejected(String m) {
+        return done(error(m));
+    }
+
+    // Kết quả cho API boolean: task còn chạy nền coi như đã nhận
+    private static boolean accepted(CompletableFuture<Boolean> f) {
+        return !f.isDone() || f.getNow(false);
     }
 
     // ================= FIND =================
-    private ProxmoxVM findVM(String vmId) {
-        try {
-            int id = Integer.parseInt(vmId);
-            return vmList.stream()
-                    .filter(v -> v.getVmid() == id)
-                    .findFirst()
-                    .orElse(null);
-        } catch (Exception e) {
-            return null;
-        }
+    public ProxmoxVM findVM(String vmId) {
+        return registry.find(vmId);
+    }
+
+    public boolean isVMIDExists(int id) {
+        return registry.contains(id);
     }
 
-    private boolean isVMIDExists(int id) {
-        return vmList.stream().anyMatch(v -> v.getVmid() == id);
+    /**
+     * Registry có index của fleet (đọc không khoá, dùng được từ poller / UI)
+     */
+    public VMRegistry getRegistry() {
+        return registry;
     }
 
     // ================= TABLE =================
     public Object[][] getVMTableData() {
-        Object[][] data = new Object[vmList.size()][8];
-        for (int i = 0; i < vmList.size(); i++) {
-            ProxmoxVM vm = vmList.get(i);
+        List<ProxmoxVM> snapshot = registry.all();
+        Object[][] data = new Object[snapshot.size()][8];
+        for (int i = 0; i < snapshot.size(); i++) {
+            ProxmoxVM vm = snapshot.get(i);
             data[i][0] = vm.getVmid();
             data[i][1] = vm.getName();
             data[i][2] = vm.getCpuCores();
@@ -265,15 +515,18 @@ public class VMController {
     }
 
     // ================= REAL OPTIONS =================
+    // Node / template / storage lấy từ snapshot inventory, không gọi API thêm
     public String[] getAllNodes() {
-        if (useRealAPI && proxmoxService != null)
-            return proxmoxService.getAllNodes().toArray(new String[0]);
+        ClusterInventory inv = realInventory();
+        if (inv != null)
+            return inv.getNodes().toArray(new String[0]);
         return new String[]{"mock"};
     }
 
     public String[] getAllTemplates() {
-        if (useRealAPI && proxmoxService != null)
-            return proxmoxService.listTemplates()
+        ClusterInventory inv = realInventory();
+        if (inv != null)
+            return inv.getTemplates()
                     .stream()
                     .map(t -> String.valueOf(t.getVmid()))
                     .toArray(String[]::new);
@@ -281,14 +534,16 @@ public class VMController {
     }
 
     public String[] getAllStorages() {
-        if (useRealAPI && proxmoxService != null)
-            return proxmoxService.listStorages().toArray(new String[0]);
+        ClusterInventory inv = realInventory();
+        if (inv != null)
+            return inv.getStorages().toArray(new String[0]);
         return new String[]{"local-lvm"};
     }
 
     public String[] getAllNetworks() {
-        if (useRealAPI && proxmoxService != null)
-            return proxmoxService.listBridges().toArray(new String[0]);
+        ProxmoxVMService service = realService();
+        if (service != null)
+            return service.listBridges().toArray(new String[0]);
         return new String[]{"vmbr0"};
     }
 
@@ -337,8 +592,9 @@ public class VMController {
         List<String> list = new ArrayList<>();
 
         // ===== BUILT-IN =====
-        if (ansibleService != null) {
-            list.addAll(ansibleService.listPlaybooks());
+        AnsibleService ansible = ansibleService;
+        if (ansible != null) {
+            list.addAll(ansible.listPlaybooks());
         }
 
         // ===== CUSTOM =====
@@ -355,58 +611,102 @@ public class VMController {
 
 
     public String[] getRunningVMsForAnsible() {
-        return vmList.stream()
-                .filter(v -> v.getStatus() == VMStatus.RUNNING)
+        return registry.byStatus(VMStatus.RUNNING).stream()
                 .filter(v -> v.getIpAddress() != null)
                 .map(v -> v.getVmid() + " (" + v.getIpAddress() + ")")
                 .toArray(String[]::new);
     }
 
     public boolean runPlaybookOnVM(String vmId, String playbook, String extraVars) {
+        try {
+            return runPlaybookOnVMAsync(vmId, playbook, extraVars).join();
+        } catch (CancellationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Xếp playbook chạy trên VM vào job engine (chạy song song với các job khác).
+     * Huỷ future trả về = huỷ job (kill ansible-playbook nếu đang chạy).
+     */
+    public CompletableFuture<Boolean> runPlaybookOnVMAsync(String vmId, String playbook, String extraVars) {
+
+        ProxmoxVM vm = findVM(vmId);
+        if (vm == null) return CompletableFuture.completedFuture(error("VM not found"));
+
+        if (vm.getIpAddress() == null || vm.getIpAddress().isBlank())
+            return CompletableFuture.completedFuture(error("VM chưa có IP"));
+
+        AnsibleService service = ansibleService;
+        if (service == null) return CompletableFuture.completedFuture(error("Ansible chưa được cấu hình"));
+
+        try {
+            // ===== resolve playbook (AnsibleService tự ghép thư mục playbooks / custom) =====
+            String name = playbook.startsWith("[Custom] ")
+                    ? "custom/" + playbook.substring("[Custom] ".length())
+                    : playbook;
+
+            LoggerUtil.info("▶ Run Ansible playbook: " + name + " on " + vm.getIpAddress());
+
+            return service.submitPlaybook(vm.getIpAddress(), name, extraVars).getFuture();
+
+        } catch (Exception e) {
+            LoggerUtil.error("Run ansible", e);
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    /** Huỷ mọi job Ansible đang chờ / đang chạy */
+    public void cancelPlaybook() {
+        AnsibleService service = ansibleService;
+        if (service != null) service.getJobEngine().cancelAll();
+    }
 
-		ProxmoxVM vm = findVM(vmId);
-		if (vm == null) return error("VM not found");
-		
-		if (vm.getIpAddress() == null || vm.getIpAddress().isBlank())
-			return error("VM chưa có IP");
-		
-		try {
-			// ===== resolve playbook path =====
-			String playbookPath;
-			
-			if (playbook.startsWith("[Custom] ")) {
-				String name = playbook.replace("[Custom] ", "");
-				playbookPath = "ansible/custom/" + name;
-			} else {
-				playbookPath = "ansible/playbooks/" + playbook;
-			}
-			
-			LoggerUtil.info("▶ Run Ansible playbook: " + playbookPath + " on " + vm.getIpAddress());
-			
-			return ansibleService.runPlaybook(
-				vm.getIpAddress(),
-				playbookPath,
-				extraVars
-			);
-		
-		} catch (Exception e) {
-			LoggerUtil.error("Run ansible", e);
-			return false;
-		}
-	}
+    public String getAnsibleStats() {
+        AnsibleService service = ansibleService;
+        return service != null ? service.getJobEngine().describe() : null;
+    }
 
     public String getCurrentNode() {
         return currentNode;
     }
 
+    public String getConnectionPoolStats() {
+        ProxmoxVMService service = realService();
+        if (service != null)
+            return service.describePoolStats();
+        return null;
+    }
+
+    public String getRequestLimiterStats() {
+        ProxmoxVMService service = realService();
+        if (service != null)
+            return service.describeLimiterStats();
+        return null;
+    }
+
+    public String getResponseCacheStats() {
+        ProxmoxVMService service = realService();
+        if (service != null)
+            return service.describeCacheStats();
+        return null;
+    }
+
     // ================= UI =================
+    /**
+     * Đổi cách báo lỗi / thông tin cho người dùng (mặc định: hộp thoại Swing)
+     */
+    public void setNotifier(UserNotifier notifier) {
+        this.notifier = notifier != null ? notifier : UserNotifier.DIALOG;
+    }
+
     private boolean error(String m) {
-        JOptionPane.showMessageDialog(null, m, "Error", JOptionPane.ERROR_MESSAGE);
+        notifier.error(m);
         return false;
     }
 
     private boolean info(String m) {
-        JOptionPane.showMessageDialog(null, m, "Info", JOptionPane.INFORMATION_MESSAGE);
+        notifier.info(m);
         return true;
     }
 
@@ -418,16 +718,22 @@ public class VMController {
 
     // ================= SHUTDOWN =================
     public void cleanup() {
-        if (proxmoxService != null) proxmoxService.close();
+        stopPoller();
+        ProxmoxVMService service = proxmoxService;
+        if (service != null) service.close();
     }
     
     public void shutdown() {
 
-        if (ansibleService != null)
-            ansibleService.shutdown();
+        stopPoller();
+
+        AnsibleService ansible = ansibleService;
+        if (ansible != null)
+            ansible.shutdown();
 
-        if (proxmoxService != null)
-            proxmoxService.close();
+        ProxmoxVMService service = proxmoxService;
+        if (service != null)
+            service.close();
     }
 
 }
@@ -0,0 +1,348 @@
+package com.vmmanager.inventory;
+
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import com.vmmanager.models.ProxmoxVM;
+import com.vmmanager.models.enums.OSType;
+import com.vmmanager.models.enums.VMStatus;
+
+/**
+ * Inventory dạng cột (struct-of-arrays) cho fleet rất lớn.
+ *
+ * Mỗi VM là một hàng trong các mảng nguyên thuỷ: vmid, cores, RAM / disk (GB, như ProxmoxVM), trạng thái và
+ * OS (ordinal), IPv4 đóng gói, uptime. Chuỗi lặp nhiều (node, storage, bridge, template, tên)
+ * được mã hoá qua từ điển, mỗi giá trị chỉ giữ một lần.
+ *
+ * {@link #view(int)} trả ProxmoxVM flyweight đọc / ghi thẳng vào cột, nên code cũ
+ * (registry, controller, Terraform) dùng được mà không giữ object đầy đủ cho từng VM.
+ * {@link #cursor()} là view di động, dùng khi duyệt tuần tự không cần giữ tham chiếu.
+ *
+ * Số hàng cố định sau khi dựng. View chỉ được tạo ở lần nạp đầu (VMController.applyInventory);
+ * VM xuất hiện về sau qua syncInventory (VM mới, clone) vẫn là ProxmoxVM đầy đủ nằm ngoài store,
+ * nên phần tiết kiệm bộ nhớ chỉ áp cho snapshot ban đầu.
+ * Ghi vào cột được tuần tự hoá bởi VMRegistry.update giống object thường.
+ */
+public class ColumnarInventory {
+
+    private static final int NULL_CODE = -1;
+    private static final long NO_IP = -1L;
+    private static final long IP_DICT = 1L << 32;   // >= mốc này: mã từ điển cho IP không phải IPv4
+
+    private final int size;
+    private final int[] vmid;
+    private final short[] cores;
+    private final int[] memoryGb;
+    private final int[] diskGb;
+    private final byte[] statusOrd;
+    private final byte[] osOrd;
+    private final long[] ip;
+    private final long[] uptime;
+    private final int[] nameId;
+    private final int[] nodeId;
+    private final int[] storageId;
+    private final int[] bridgeId;
+    private final int[] templateId;
+
+    private final Dictionary names = new Dictionary();
+    private final Dictionary values = new Dictionary();   // node, storage, bridge, template, IP lạ
+
+    // Mọi view dùng chung một createdDate: thời điểm dựng store
+    private final LocalDateTime createdAt = LocalDateTime.now();
+
+    private static final VMStatus[] STATUSES = VMStatus.values();
+    private static final OSType[] OS_TYPES = OSType.values();
+
+    public ColumnarInventory(Collection<? extends ProxmoxVM> vms) {
+        size = vms.size();
+        vmid = new int[size];
+        cores = new short[size];
+        memoryGb = new int[size];
+        diskGb = new int[size];
+        statusOrd = new byte[size];
+        osOrd = new byte[size];
+        ip = new long[size];
+        uptime = new long[size];
+        nameId = new int[size];
+        nodeId = new int[size];
+        storageId = new int[size];
+        bridgeId = new int[size];
+        templateId = new int[size];
+
+        int row = 0;
+        for (ProxmoxVM vm : vms) {
+            vmid[row] = vm.getVmid();
+            cores[row] = (short) vm.getCpuCores();
+            memoryGb[row] = vm.getMemoryGB();
+            diskGb[row] = vm.getDiskGB();
+            statusOrd[row] = ordinal(vm.getStatus());
+            osOrd[row] = ordinal(vm.getOsType());
+            ip[row] = encodeIp(vm.getIpAddress());
+            uptime[row] = vm.getUptime();
+            nameId[row] = names.encode(vm.getName());
+            nodeId[row] = values.encode(vm.getNode());
+            storageId[row] = values.encode(vm.getStorage());
+            bridgeId[row] = values.encode(vm.getNetworkBridge());
+            templateId[row] = values.encode(vm.getTemplate());
+            row++;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * View cố định vào một hàng; mỗi lần gọi tạo một object nhỏ (không kèm chuỗi hay LocalDateTime)
+     */
+    public ProxmoxVM view(int row) {
+        checkRow(row);
+        return new View(row);
+    }
+
+    /** Tất cả VM dưới dạng view, tạo sẵn một lần */
+    public List<ProxmoxVM> views() {
+        List<ProxmoxVM> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) list.add(new View(i));
+        return list;
+    }
+
+    /** View di động: gọi {@link Cursor#moveTo} rồi đọc như ProxmoxVM; không được giữ lại */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /** Danh sách chỉ đọc duyệt bằng một cursor dùng chung (không cấp phát mỗi phần tử) */
+    public List<ProxmoxVM> cursorList() {
+        Cursor c = new Cursor();
+        return new AbstractList<>() {
+            @Override
+            public ProxmoxVM get(int index) {
+                return c.moveTo(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    // =========================================================
+    // COLUMN ACCESS (cho bảng / bộ lọc không cần view)
+    // =========================================================
+
+    public int vmidAt(int row) { return vmid[row]; }
+    public String nameAt(int row) { return names.decode(nameId[row]); }
+    public int coresAt(int row) { return cores[row]; }
+    public int memoryGbAt(int row) { return memoryGb[row]; }
+    public int diskGbAt(int row) { return diskGb[row]; }
+    public VMStatus statusAt(int row) { return statusOrd[row] < 0 ? null : STATUSES[statusOrd[row]]; }
+    public String ipAt(int row) { return decodeIp(ip[row]); }
+    public String nodeAt(int row) { return values.decode(nodeId[row]); }
+
+    /**
+     * Ước lượng byte heap của store (mảng cột + từ điển), để so với object ProxmoxVM
+     */
+    public long estimateHeapBytes() {
+        long bytes = 0;
+        bytes += arrayBytes(size, 4) * 8;   // vmid, memory, disk, name, node, storage, bridge, template
+        bytes += arrayBytes(size, 2);
+        bytes += arrayBytes(size, 1) * 2;
+        bytes += arrayBytes(size, 8) * 2;
+        return bytes + names.estimateHeapBytes() + values.estimateHeapBytes();
+    }
+
+    private static long arrayBytes(int length, int elementBytes) {
+        return 16 + (long) length * elementBytes;
+    }
+
+    // =========================================================
+    // ENCODING
+    // =========================================================
+
+    private static byte ordinal(Enum<?> e) {
+        return e == null ? -1 : (byte) e.ordinal();
+    }
+
+    private long encodeIp(String s) {
+        if (s == null) return NO_IP;
+        long v = parseIpv4(s);
+        return v >= 0 ? v : IP_DICT + values.encode(s);
+    }
+
+    private String decodeIp(long v) {
+        if (v == NO_IP) return null;
+        if (v >= IP_DICT) return values.decode((int) (v - IP_DICT));
+        return ((v >>> 24) & 0xff) + "." + ((v >>> 16) & 0xff) + "." + ((v >>> 8) & 0xff) + "." + (v & 0xff);
+    }
+
+    // "a.b.c.d" → 32 bit không dấu; -1 nếu không phải IPv4 chuẩn (giữ nguyên chuỗi qua từ điển)
+    static long parseIpv4(String s) {
+        long v = 0;
+        int part = 0, digits = 0, dots = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '.') {
+                if (digits == 0 || ++dots > 3) return -1;
+                v = (v << 8) | part;
+                part = 0;
+                digits = 0;
+            } else if (c >= '0' && c <= '9') {
+                // Số 0 đứng đầu ("010") không tái tạo được chuỗi gốc
+                if (digits == 1 && part == 0) return -1;
+                part = part * 10 + (c - '0');
+                if (++digits > 3 || part > 255) return -1;
+            } else {
+                return -1;
+            }
+        }
+        if (dots != 3 || digits == 0) return -1;
+        return (v << 8) | part;
+    }
+
+    /**
+     * Từ điển chuỗi ↔ mã int. Chỉ thêm, không xoá; decode đọc mảng đã publish nên không cần khoá.
+     *
+     * Tra ngược chuỗi → mã dùng bảng băm open addressing trên int[] thay cho HashMap:
+     * với cột gần như duy nhất (tên VM) HashMap tốn thêm một node + một Integer cho mỗi giá trị.
+     */
+    private static final class Dictionary {
+        private volatile String[] strings = new String[16];
+        private int[] table = new int[32];   // mã + 1; 0 = ô trống
+        private int count;
+
+        synchronized int encode(String s) {
+            if (s == null) return NULL_CODE;
+
+            int mask = table.length - 1;
+            int i = mix(s.hashCode()) & mask;
+            String[] arr = strings;
+            while (table[i] != 0) {
+                int code = table[i] - 1;
+                if (arr[code].equals(s)) return code;
+                i = (i + 1) & mask;
+            }
+
+            if (count == arr.length) arr = Arrays.copyOf(arr, count * 2);
+            arr[count] = s;
+            strings = arr;
+            table[i] = count + 1;
+            count++;
+            if (count * 2 > table.length) rehash();
+            return count - 1;
+        }
+
+        String decode(int code) {
+            return code == NULL_CODE ? null : strings[code];
+        }
+
+        // Giữ hệ số tải ≤ 0.5
+        private void rehash() {
+            int[] next = new int[table.length * 2];
+            int mask = next.length - 1;
+            String[] arr = strings;
+            for (int code = 0; code < count; code++) {
+                int i = mix(arr[code].hashCode()) & mask;
+                while (next[i] != 0) i = (i + 1) & mask;
+                next[i] = code + 1;
+            }
+            table = next;
+        }
+
+        private static int mix(int h) {
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        synchronized long estimateHeapBytes() {
+            long bytes = arrayBytes(strings.length, 4) + arrayBytes(table.length, 4);
+            // String ~ 24B + byte[] (16B + 1B/ký tự Latin-1, làm tròn 8)
+            for (int i = 0; i < count; i++) bytes += 24 + ((16 + strings[i].length() + 7) & ~7);
+            return bytes;
+        }
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException("row " + row + " / " + size);
+    }
+
+    // =========================================================
+    // FLYWEIGHT
+    // =========================================================
+
+    /**
+     * ProxmoxVM đọc / ghi vào cột của một hàng. Trường của lớp cha không được dùng.
+     */
+    private class View extends ProxmoxVM {
+        int row;
+
+        View(int row) {
+            super(createdAt);
+            this.row = row;
+        }
+
+        @Override public String getId() { return String.valueOf(vmid[row]); }
+        @Override public void setId(String id) { vmid[row] = Integer.parseInt(id); }
+
+        @Override public int getVmid() { return vmid[row]; }
+        @Override public void setVmid(int id) { vmid[row] = id; }
+
+        @Override public String getName() { return names.decode(nameId[row]); }
+        @Override public void setName(String n) { nameId[row] = names.encode(n); }
+
+        @Override public int getCpuCores() { return cores[row]; }
+        @Override public void setCpuCores(int c) { cores[row] = (short) c; }
+
+        @Override public int getMemoryGB() { return memoryGb[row]; }
+        @Override public void setMemoryGB(int gb) { memoryGb[row] = gb; }
+
+        @Override public int getDiskGB() { return diskGb[row]; }
+        @Override public void setDiskGB(int gb) { diskGb[row] = gb; }
+
+        @Override public VMStatus getStatus() { return statusAt(row); }
+        @Override public void setStatus(VMStatus s) { statusOrd[row] = ordinal(s); }
+
+        @Override public OSType getOsType() { return osOrd[row] < 0 ? null : OS_TYPES[osOrd[row]]; }
+        @Override public void setOsType(OSType os) { osOrd[row] = ordinal(os); }
+
+        @Override public String getIpAddress() { return decodeIp(ip[row]); }
+        @Override public void setIpAddress(String s) { ip[row] = encodeIp(s); }
+
+        @Override public long getUptime() { return uptime[row]; }
+        @Override public void setUptime(long u) { uptime[row] = u; }
+
+        @Override public String getNode() { return values.decode(nodeId[row]); }
+        @Override public void setNode(String n) { nodeId[row] = values.encode(n); }
+
+        @Override public String getStorage() { return values.decode(storageId[row]); }
+        @Override public void setStorage(String s) { storageId[row] = values.encode(s); }
+
+        @Override public String getNetworkBridge() { return values.decode(bridgeId[row]); }
+        @Override public void setNetworkBridge(String b) { bridgeId[row] = values.encode(b); }
+
+        @Override public String getTemplate() { return values.decode(templateId[row]); }
+        @Override public void setTemplate(String t) { templateId[row] = values.encode(t); }
+    }
+
+    /** View di động trên store */
+    public final class Cursor extends View {
+        private Cursor() {
+            super(0);
+        }
+
+        public Cursor moveTo(int row) {
+            checkRow(row);
+            this.row = row;
+            return this;
+        }
+
+        public int row() {
+            return row;
+        }
+    }
+}
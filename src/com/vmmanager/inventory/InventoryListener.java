@@ -0,0 +1,14 @@
+package com.vmmanager.inventory;
+
+import java.util.List;
+
+/**
+ * Nhận thay đổi của {@link VMRegistry}, mỗi lần ghi (hoặc mỗi lượt sync) một lô.
+ *
+ * Được gọi trên thread ghi, trong khoá của registry: phải nhanh, không ghi ngược vào registry
+ * (UI chỉ nên chuyển lô sang EDT).
+ */
+@FunctionalInterface
+public interface InventoryListener {
+    void inventoryChanged(List<VMChange> changes);
+}
@@ -0,0 +1,352 @@
+package com.vmmanager.inventory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import com.vmmanager.models.ProxmoxVM;
+import com.vmmanager.models.enums.VMStatus;
+import com.vmmanager.utils.LoggerUtil;
+
+/**
+ * Poll nền giữ inventory luôn mới mà không dội API.
+ *
+ * - Toàn cluster: một lần tải (/cluster/resources, qua cache) mỗi baseInterval;
+ *   không có gì đổi thì giãn dần tới maxInterval, có thay đổi thì quay lại baseInterval
+ * - Từng VM: VM vừa đổi trạng thái / vừa thêm / đang PENDING được poll riêng (/status/current)
+ *   từ vmMinInterval, giãn gấp đôi tới vmMaxInterval, bỏ theo dõi sau vài lượt không đổi
+ * - Mọi hẹn giờ có jitter ±20% để các VM không dồn vào cùng thời điểm
+ * - Ngân sách request chung (token bucket): hết token thì lượt poll VM bị lùi sang tick sau;
+ *   request phụ của lượt poll cluster (hỏi IP qua guest agent) cũng lấy token qua {@link #tryAcquire()}
+ *
+ * Nguồn dữ liệu do controller cung cấp, poller không biết tới ProxmoxVMService.
+ */
+public class InventoryPoller implements AutoCloseable {
+
+    /** Cấu hình poller */
+    public static class Settings {
+        public long baseIntervalMs = 15_000;
+        public long maxIntervalMs = 60_000;
+        public long vmMinIntervalMs = 1_000;
+        public long vmMaxIntervalMs = 10_000;
+        /** Số lượt poll VM liên tiếp không thay đổi trước khi thôi theo dõi */
+        public int stablePolls = 3;
+        /** Ngân sách request của poller (không tính request của người dùng) */
+        public double requestsPerSecond = 5;
+        public int requestBurst = 10;
+        public long tickMs = 250;
+        public double jitter = 0.2;
+    }
+
+    private final VMRegistry registry;
+    private final Settings settings;
+    private final BooleanSupplier clusterPoll;
+    private final Function<ProxmoxVM, CompletableFuture<Boolean>> vmPoll;
+    private final Predicate<ProxmoxVM> skip;
+
+    private final Map<Integer, Watch> watches = new ConcurrentHashMap<>();
+    private final InventoryListener listener = this::onChanges;
+
+    private final ScheduledExecutorService ticker;
+    private final ExecutorService clusterExecutor;
+    private final AtomicBoolean clusterInFlight = new AtomicBoolean();
+
+    // ===== trạng thái poll cluster (thread ticker ghi; pollSoon / describe đọc ghi từ thread khác) =====
+    private volatile boolean changedSinceClusterPoll;
+    private volatile long clusterInterval;
+    private volatile long nextClusterPoll;
+
+    // ===== token bucket (guarded by budgetLock: ticker và thread poll cluster cùng lấy) =====
+    private final Object budgetLock = new Object();
+    private double tokens;
+    private long lastRefill = now();
+
+    // ===== thống kê =====
+    private final AtomicLong clusterPolls = new AtomicLong();
+    private final AtomicLong vmPolls = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /** Một VM đang được theo dõi sát */
+    private static final class Watch {
+        final ProxmoxVM vm;
+        long interval;
+        long nextDue;
+        int stable;
+        boolean inFlight;
+
+        Watch(ProxmoxVM vm) {
+            this.vm = vm;
+        }
+    }
+
+    /**
+     * @param clusterPoll tải + sync toàn cluster (blocking), true nếu thành công
+     * @param vmPoll      làm mới một VM tại chỗ, future xong khi đã cập nhật registry
+     * @param skip        VM không được poll lúc này (vd. có task đang chạy, trạng thái do task quyết định)
+     */
+    public InventoryPoller(VMRegistry registry, Settings settings,
+                           BooleanSupplier clusterPoll,
+                           Function<ProxmoxVM, CompletableFuture<Boolean>> vmPoll,
+                           Predicate<ProxmoxVM> skip) {
+        this.registry = registry;
+        this.settings = settings;
+        this.clusterPoll = clusterPoll;
+        this.vmPoll = vmPoll;
+        this.skip = skip;
+        this.tokens = settings.requestBurst;
+        this.clusterInterval = settings.baseIntervalMs;
+
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "inventory-poller"));
+        this.clusterExecutor = Executors.newSingleThreadExecutor(r -> daemon(r, "inventory-poller-cluster"));
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    public void start() {
+        registry.addListener(listener);
+        // VM đang PENDING lúc bắt đầu cũng cần theo dõi
+        for (ProxmoxVM vm : registry.byStatus(VMStatus.PENDING)) watch(vm);
+        nextClusterPoll = now() + jittered(settings.baseIntervalMs);
+        ticker.scheduleWithFixedDelay(this::tick, settings.tickMs, settings.tickMs, TimeUnit.MILLISECONDS);
+        LoggerUtil.info("▶ Inventory poller started (" + settings.baseIntervalMs / 1000 + "s, "
+                + settings.requestsPerSecond + " req/s)");
+    }
+
+    @Override
+    public void close() {
+        registry.removeListener(listener);
+        ticker.shutdownNow();
+        clusterExecutor.shutdownNow();
+        watches.clear();
+    }
+
+    /** Poll cluster ngay ở tick tới (vd. sau khi người dùng thao tác hàng loạt) */
+    public void pollSoon() {
+        changedSinceClusterPoll = true;
+        nextClusterPoll = 0;
+    }
+
+    // =========================================================
+    // EVENTS
+    // =========================================================
+
+    // Gọi trong khoá registry: chỉ ghi nhận, không gọi API
+    private void onChanges(List<VMChange> changes) {
+        for (VMChange c : changes) {
+            switch (c.getType()) {
+                case ADDED -> watch(c.getVm());
+                case REMOVED -> watches.remove(c.getVm().getVmid());
+                case CHANGED -> {
+                    if (c.changed(VMChange.STATUS | VMChange.NODE)) watch(c.getVm());
+                    else if (c.getVm().getStatus() == VMStatus.PENDING) watch(c.getVm());
+                }
+                case RESET -> watches.clear();
+            }
+        }
+        changedSinceClusterPoll = true;
+    }
+
+    // Bắt đầu (hoặc làm lại từ đầu) theo dõi sát một VM
+    private void watch(ProxmoxVM vm) {
+        Watch w = watches.computeIfAbsent(vm.getVmid(), id -> new Watch(vm));
+        synchronized (w) {
+            w.interval = settings.vmMinIntervalMs;
+            w.stable = 0;
+            w.nextDue = now() + jittered(w.interval);
+        }
+    }
+
+    // =========================================================
+    // TICK
+    // =========================================================
+
+    private void tick() {
+        try {
+            long now = now();
+            refill(now);
+
+            if (now >= nextClusterPoll) pollCluster(now);
+
+            // VM đến hạn, hạn sớm nhất trước
+            List<Watch> due = new ArrayList<>();
+            for (Watch w : watches.values()) {
+                synchronized (w) {
+                    if (!w.inFlight && w.nextDue <= now) due.add(w);
+                }
+            }
+            due.sort((a, b) -> Long.compare(a.nextDue, b.nextDue));
+
+            for (Watch w : due) {
+                if (registry.get(w.vm.getVmid()) != w.vm) {
+                    watches.remove(w.vm.getVmid(), w);
+                    continue;
+                }
+                if (skip.test(w.vm)) {
+                    // Task đang quyết định trạng thái: xem lại sau, không tốn request
+                    synchronized (w) {
+                        w.nextDue = now + jittered(w.interval);
+                    }
+                    continue;
+                }
+                if (!take()) {
+                    deferred.addAndGet(due.size() - due.indexOf(w));
+                    break;
+                }
+                pollVM(w);
+            }
+        } catch (RuntimeException e) {
+            LoggerUtil.error("Inventory poller tick error", e);
+        }
+    }
+
+    private void pollCluster(long now) {
+        if (!clusterInFlight.compareAndSet(false, true)) return;
+        if (!take()) {
+            clusterInFlight.set(false);
+            deferred.incrementAndGet();
+            return;
+        }
+
+        // Có thay đổi kể từ lượt trước → giữ nhịp nhanh; không thì giãn ra
+        boolean active = changedSinceClusterPoll;
+        changedSinceClusterPoll = false;
+        clusterInterval = active
+                ? settings.baseIntervalMs
+                : Math.min(settings.maxIntervalMs, clusterInterval * 3 / 2);
+        nextClusterPoll = now + jittered(clusterInterval);
+
+        clusterExecutor.execute(() -> {
+            try {
+                clusterPolls.incrementAndGet();
+                if (!clusterPoll.getAsBoolean()) failures.incrementAndGet();
+            } catch (RuntimeException e) {
+                failures.incrementAndGet();
+                LoggerUtil.error("Inventory cluster poll error", e);
+            } finally {
+                clusterInFlight.set(false);
+            }
+        });
+    }
+
+    private void pollVM(Watch w) {
+        long before = InventorySync.fingerprint(w.vm);
+        synchronized (w) {
+            w.inFlight = true;
+        }
+        vmPolls.incrementAndGet();
+
+        CompletableFuture<Boolean> f;
+        try {
+            f = vmPoll.apply(w.vm);
+        } catch (RuntimeException e) {
+            f = CompletableFuture.failedFuture(e);
+        }
+
+        f.whenComplete((ok, ex) -> {
+            boolean success = ex == null && Boolean.TRUE.equals(ok);
+            if (!success) failures.incrementAndGet();
+            boolean changed = InventorySync.fingerprint(w.vm) != before;
+
+            synchronized (w) {
+                w.inFlight = false;
+                if (changed) {
+                    w.interval = settings.vmMinIntervalMs;
+                    w.stable = 0;
+                } else {
+                    w.interval = Math.min(settings.vmMaxIntervalMs, w.interval * 2);
+                    // Lỗi không tính là "ổn định": VM lỗi vẫn được thử lại với nhịp chậm
+                    if (success) w.stable++;
+                }
+
+                if (w.stable >= settings.stablePolls && w.vm.getStatus() != VMStatus.PENDING) {
+                    watches.remove(w.vm.getVmid(), w);
+                } else {
+                    w.nextDue = now() + jittered(w.interval);
+                }
+            }
+        });
+    }
+
+    // =========================================================
+    // BUDGET
+    // =========================================================
+
+    private void refill(long now) {
+        synchronized (budgetLock) {
+            double elapsed = (now - lastRefill) / 1000.0;
+            lastRefill = now;
+            tokens = Math.min(settings.requestBurst, tokens + elapsed * settings.requestsPerSecond);
+        }
+    }
+
+    private boolean take() {
+        synchronized (budgetLock) {
+            if (tokens < 1) return false;
+            tokens -= 1;
+            return true;
+        }
+    }
+
+    /**
+     * Lấy một token cho request phụ của lượt poll nền (vd. hỏi IP qua guest agent).
+     * false = hết ngân sách, request đó để lượt sau.
+     */
+    public boolean tryAcquire() {
+        refill(now());
+        if (take()) return true;
+        deferred.incrementAndGet();
+        return false;
+    }
+
+    private long jittered(long interval) {
+        double j = settings.jitter;
+        return (long) (interval * (1 - j + ThreadLocalRandom.current().nextDouble() * 2 * j));
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1_000_000;
+    }
+
+    // =========================================================
+    // STATS
+    // =========================================================
+
+    public int getWatchedCount() {
+        return watches.size();
+    }
+
+    public long getClusterPolls() {
+        return clusterPolls.get();
+    }
+
+    public long getVmPolls() {
+        return vmPolls.get();
+    }
+
+    public long getDeferred() {
+        return deferred.get();
+    }
+
+    public String describe() {
+        return String.format("Poller: cluster %.0fs, watch %d VM, %d cluster / %d VM polls, %d deferred, %d failed",
+                clusterInterval / 1000.0, watches.size(), clusterPolls.get(), vmPolls.get(),
+                deferred.get(), failures.get());
+    }
+}
@@ -0,0 +1,171 @@
+package com.vmmanager.inventory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import com.vmmanager.models.ProxmoxVM;
+
+/**
+ * Đồng bộ tăng dần: so snapshot mới với registry và chỉ áp phần khác.
+ *
+ * - Mỗi VM có fingerprint 64 bit trên các trường hiển thị (tên, CPU, RAM, disk, trạng thái, IP, node)
+ * - Fingerprint bằng nhau → bỏ qua, không đụng object, không phát sự kiện
+ * - Khác nhau → chép tại chỗ đúng các trường đã đổi (object, selection, IP đã resolve được giữ)
+ * - VM mới / biến mất → thêm / xoá trong một lần dựng lại registry
+ *
+ * Uptime đổi ở mọi lượt poll với VM đang chạy nên không nằm trong fingerprint;
+ * nó được chép lặng lẽ (không có index, không sự kiện).
+ */
+public class InventorySync {
+
+    private final VMRegistry registry;
+
+    public InventorySync(VMRegistry registry) {
+        this.registry = registry;
+    }
+
+    /** Kết quả một lượt sync */
+    public static final class Result {
+        public final int added;
+        public final int removed;
+        public final int changed;
+        public final int unchanged;
+        public final int skipped;
+        public final long nanos;
+        public final List<VMChange> changes;
+
+        Result(int added, int removed, int changed, int unchanged, int skipped, long nanos, List<VMChange> changes) {
+            this.added = added;
+            this.removed = removed;
+            this.changed = changed;
+            this.unchanged = unchanged;
+            this.skipped = skipped;
+            this.nanos = nanos;
+            this.changes = changes;
+        }
+
+        public boolean isEmpty() {
+            return added == 0 && removed == 0 && changed == 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("+%d -%d ~%d =%d (bỏ qua %d) trong %.1fms",
+                    added, removed, changed, unchanged, skipped, nanos / 1e6);
+        }
+    }
+
+    /**
+     * @param fresh danh sách VM mới nhất từ API
+     * @param keep  VM cục bộ không được sync chạm vào (vd. đang có task chạy, clone chưa xuất hiện trên API)
+     */
+    public Result sync(Collection<? extends ProxmoxVM> fresh, Predicate<ProxmoxVM> keep) {
+        long start = System.nanoTime();
+
+        List<ProxmoxVM> added = new ArrayList<>();
+        Map<ProxmoxVM, ProxmoxVM> changed = new LinkedHashMap<>();
+        int unchanged = 0, skipped = 0;
+
+        // Đánh dấu vmid còn tồn tại bằng bảng int (không boxing)
+        IntSet seen = new IntSet(fresh.size());
+
+        for (ProxmoxVM vm : fresh) {
+            seen.add(vm.getVmid());
+            ProxmoxVM current = registry.get(vm.getVmid());
+
+            if (current == null) {
+                added.add(vm);
+            } else if (keep.test(current)) {
+                skipped++;
+            } else if (fingerprint(current) != fingerprint(vm)) {
+                changed.put(current, vm);
+            } else {
+                unchanged++;
+                if (current.getUptime() != vm.getUptime()) current.setUptime(vm.getUptime());
+            }
+        }
+
+        List<ProxmoxVM> removed = new ArrayList<>();
+        for (ProxmoxVM vm : registry.all()) {
+            if (!seen.contains(vm.getVmid()) && !keep.test(vm)) removed.add(vm);
+        }
+
+        List<VMChange> changes = (added.isEmpty() && removed.isEmpty() && changed.isEmpty())
+                ? List.of()
+                : registry.applyDelta(added, removed, changed);
+
+        return new Result(added.size(), removed.size(), changed.size(), unchanged, skipped,
+                System.nanoTime() - start, changes);
+    }
+
+    /**
+     * Fingerprint các trường hiển thị của VM: FNV-1a 64 bit trên từng ký tự / số
+     * (không qua String.hashCode 32 bit, để hai giá trị khác nhau gần như không thể trùng).
+     */
+    public static long fingerprint(ProxmoxVM vm) {
+        long h = FNV_OFFSET;
+        h = mix(h, vm.getName());
+        h = mix(h, vm.getCpuCores());
+        h = mix(h, vm.getMemoryGB());
+        h = mix(h, vm.getDiskGB());
+        h = mix(h, vm.getStatus() != null ? vm.getStatus().ordinal() : -1);
+        h = mix(h, vm.getIpAddress());
+        h = mix(h, vm.getNode());
+        return h;
+    }
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static long mix(long h, String s) {
+        if (s == null) return mix(h, 0x5bd1e995);
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * FNV_PRIME;
+        }
+        // Độ dài làm dấu phân cách giữa các trường ("ab","c" ≠ "a","bc")
+        return mix(h, s.length());
+    }
+
+    private static long mix(long h, int v) {
+        for (int i = 0; i < 4; i++) {
+            h = (h ^ (v & 0xff)) * FNV_PRIME;
+            v >>>= 8;
+        }
+        return h;
+    }
+
+    // Tập int open addressing, chỉ dùng trong một lượt sync
+    private static final class IntSet {
+        private final int[] keys;
+        private final boolean[] used;
+        private final int mask;
+
+        IntSet(int expected) {
+            int cap = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+            keys = new int[cap];
+            used = new boolean[cap];
+            mask = cap - 1;
+        }
+
+        void add(int k) {
+            int i = slot(k);
+            keys[i] = k;
+            used[i] = true;
+        }
+
+        boolean contains(int k) {
+            return used[slot(k)];
+        }
+
+        private int slot(int k) {
+            int h = k * 0x9E3779B9;
+            int i = (h ^ (h >>> 16)) & mask;
+            while (used[i] && keys[i] != k) i = (i + 1) & mask;
+            return i;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.vmmanager.inventory;
+
+import java.util.Objects;
+
+import com.vmmanager.models.ProxmoxVM;
+import com.vmmanager.models.enums.VMStatus;
+
+/**
+ * Một thay đổi trong registry: VM được thêm, bị xoá, hoặc đổi một số trường (bitmask).
+ *
+ * RESET nghĩa là cả danh sách đã bị thay (refresh đầy đủ / đổi cấu hình), vm = null.
+ */
+public final class VMChange {
+
+    public enum Type { ADDED, REMOVED, CHANGED, RESET }
+
+    // ===== trường đã đổi (CHANGED) =====
+    public static final int NAME = 1;
+    public static final int CPU = 1 << 1;
+    public static final int MEMORY = 1 << 2;
+    public static final int DISK = 1 << 3;
+    public static final int STATUS = 1 << 4;
+    public static final int IP = 1 << 5;
+    public static final int NODE = 1 << 6;
+    public static final int UPTIME = 1 << 7;
+
+    public static final VMChange RESET = new VMChange(Type.RESET, null, 0);
+
+    private final Type type;
+    private final ProxmoxVM vm;
+    private final int fields;
+
+    VMChange(Type type, ProxmoxVM vm, int fields) {
+        this.type = type;
+        this.vm = vm;
+        this.fields = fields;
+    }
+
+    public Type getType() { return type; }
+    public ProxmoxVM getVm() { return vm; }
+    public int getFields() { return fields; }
+
+    public boolean changed(int field) {
+        return (fields & field) != 0;
+    }
+
+    /**
+     * Gộp một CHANGED xảy ra sau đó của cùng VM vào thay đổi này:
+     * ADDED giữ nguyên (dòng mới đọc giá trị mới nhất), CHANGED cộng dồn các trường.
+     */
+    public VMChange absorb(VMChange later) {
+        if (type == Type.ADDED) return this;
+        return new VMChange(Type.CHANGED, vm, fields | later.fields);
+    }
+
+    @Override
+    public String toString() {
+        return type + (vm != null ? " " + vm.getVmid() : "") + (type == Type.CHANGED ? " fields=" + fields : "");
+    }
+
+    // =========================================================
+    // SO SÁNH / SAO CHÉP TRƯỜNG
+    // =========================================================
+
+    /** Các trường khác nhau giữa hai VM (bitmask) */
+    public static int diff(ProxmoxVM a, ProxmoxVM b) {
+        int mask = 0;
+        if (!Objects.equals(a.getName(), b.getName())) mask |= NAME;
+        if (a.getCpuCores() != b.getCpuCores()) mask |= CPU;
+        if (a.getMemoryGB() != b.getMemoryGB()) mask |= MEMORY;
+        if (a.getDiskGB() != b.getDiskGB()) mask |= DISK;
+        if (a.getStatus() != b.getStatus()) mask |= STATUS;
+        if (!Objects.equals(a.getIpAddress(), b.getIpAddress())) mask |= IP;
+        if (!Objects.equals(a.getNode(), b.getNode())) mask |= NODE;
+        if (a.getUptime() != b.getUptime()) mask |= UPTIME;
+        return mask;
+    }
+
+    /** Giá trị các trường tại một thời điểm, để tính mask sau khi sửa tại chỗ */
+    static final class Fields {
+        private final String name;
+        private final int cpu;
+        private final int memory;
+        private final int disk;
+        private final VMStatus status;
+        private final String ip;
+        private final String node;
+        private final long uptime;
+
+        Fields(ProxmoxVM vm) {
+            name = vm.getName();
+            cpu = vm.getCpuCores();
+            memory = vm.getMemoryGB();
+            disk = vm.getDiskGB();
+            status = vm.getStatus();
+            ip = vm.getIpAddress();
+            node = vm.getNode();
+            uptime = vm.getUptime();
+        }
+
+        int diff(ProxmoxVM vm) {
+            int mask = 0;
+            if (!Objects.equals(name, vm.getName())) mask |= NAME;
+            if (cpu != vm.getCpuCores()) mask |= CPU;
+            if (memory != vm.getMemoryGB()) mask |= MEMORY;
+            if (disk != vm.getDiskGB()) mask |= DISK;
+            if (status != vm.getStatus()) mask |= STATUS;
+            if (!Objects.equals(ip, vm.getIpAddress())) mask |= IP;
+            if (!Objects.equals(node, vm.getNode())) mask |= NODE;
+            if (uptime != vm.getUptime()) mask |= UPTIME;
+            return mask;
+        }
+    }
+
+    /** Chép các trường trong mask từ from sang to (giữ nguyên object to) */
+    static void copy(ProxmoxVM from, ProxmoxVM to, int mask) {
+        if ((mask & NAME) != 0) to.setName(from.getName());
+        if ((mask & CPU) != 0) to.setCpuCores(from.getCpuCores());
+        if ((mask & MEMORY) != 0) to.setMemoryGB(from.getMemoryGB());
+        if ((mask & DISK) != 0) to.setDiskGB(from.getDiskGB());
+        if ((mask & STATUS) != 0) to.setStatus(from.getStatus());
+        if ((mask & IP) != 0) to.setIpAddress(from.getIpAddress());
+        if ((mask & NODE) != 0) to.setNode(from.getNode());
+        if ((mask & UPTIME) != 0) to.setUptime(from.getUptime());
+    }
+}
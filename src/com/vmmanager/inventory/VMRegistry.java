@@ -0,0 +1,551 @@
+package com.vmmanager.inventory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import com.vmmanager.models.ProxmoxVM;
+import com.vmmanager.models.enums.VMStatus;
+import com.vmmanager.utils.LoggerUtil;
+
+/**
+ * Danh sách VM có index, an toàn đa luồng.
+ *
+ * - Tra theo vmid: bảng băm open addressing trên int[] (không boxing), O(1)
+ * - Index phụ theo tên, IP, node và trạng thái: tra / đếm không cần duyệt cả fleet
+ * - Đọc không khoá: bảng vmid và index phụ nằm trong một {@link State} bất biến, publish qua biến volatile
+ * - Ghi tuần tự (synchronized), copy-on-write: mỗi lần ghi dựng State mới rồi gán một lần,
+ *   reader luôn thấy trọn bản cũ hoặc trọn bản mới (không có lúc VM vắng mặt khỏi index)
+ *
+ * VM là object mutable: đổi tên / IP / node / trạng thái phải đi qua {@link #update}
+ * (hoặc gọi {@link #reindex} sau khi sửa) để index phụ không bị lệch. vmid là khoá, không đổi.
+ *
+ * Thêm / xoá từng VM dựng lại bảng vmid (O(n)); index phụ chỉ chép map ngoài và các tập bị chạm.
+ * Nhiều thay đổi cùng lúc (sync) đi qua {@link #applyDelta} để chỉ chép / dựng lại một lần mỗi lô.
+ *
+ * Mọi lần ghi phát {@link VMChange} tới {@link InventoryListener} (xem lưu ý ở đó).
+ */
+public class VMRegistry {
+
+    private static final Comparator<ProxmoxVM> BY_VMID = Comparator.comparingInt(ProxmoxVM::getVmid);
+
+    private volatile State state = new State(new ProxmoxVM[0]);
+    private final List<InventoryListener> listeners = new CopyOnWriteArrayList<>();
+
+    // =========================================================
+    // READ (không khoá)
+    // =========================================================
+
+    public ProxmoxVM get(int vmid) {
+        Entry e = state.table.get(vmid);
+        return e != null ? e.vm : null;
+    }
+
+    /**
+     * Tra theo vmid dạng chuỗi (từ bảng / combobox); chuỗi không phải số → null, không ném exception
+     */
+    public ProxmoxVM find(String vmid) {
+        int id = parseVmid(vmid);
+        return id >= 0 ? get(id) : null;
+    }
+
+    public boolean contains(int vmid) {
+        return state.table.get(vmid) != null;
+    }
+
+    public int size() {
+        return state.table.size;
+    }
+
+    /** Toàn bộ VM theo thứ tự thêm vào (view bất biến của snapshot hiện tại) */
+    public List<ProxmoxVM> all() {
+        return state.table.view;
+    }
+
+    public List<ProxmoxVM> byName(String name) {
+        return state.indexes.byName.lookup(name);
+    }
+
+    public List<ProxmoxVM> byIp(String ip) {
+        return state.indexes.byIp.lookup(ip);
+    }
+
+    public List<ProxmoxVM> byNode(String node) {
+        return state.indexes.byNode.lookup(node);
+    }
+
+    public List<ProxmoxVM> byStatus(VMStatus status) {
+        return state.indexes.byStatus.lookup(status);
+    }
+
+    public int countByStatus(VMStatus status) {
+        return state.indexes.byStatus.count(status);
+    }
+
+    public int countByNode(String node) {
+        return state.indexes.byNode.count(node);
+    }
+
+    // =========================================================
+    // WRITE (tuần tự)
+    // =========================================================
+
+    /**
+     * Thay toàn bộ danh sách (refresh inventory). Reader thấy danh sách cũ hoặc mới, không thấy nửa vời.
+     * vmid trùng: giữ VM xuất hiện sau.
+     */
+    public synchronized void replaceAll(Collection<? extends ProxmoxVM> vms) {
+        state = new State(vms.toArray(new ProxmoxVM[0]));
+        fire(List.of(VMChange.RESET));
+    }
+
+    /** Thêm VM; vmid đã có → thay VM cũ */
+    public synchronized void add(ProxmoxVM vm) {
+        State s = state;
+        Indexes idx = s.indexes.edit();
+        Entry old = s.table.get(vm.getVmid());
+        if (old != null) idx.unindex(old);
+
+        ProxmoxVM[] vms = s.table.toArray();
+        if (old != null) {
+            vms[old.slot] = vm;
+        } else {
+            vms = Arrays.copyOf(vms, vms.length + 1);
+            vms[vms.length - 1] = vm;
+        }
+        publish(s, vms, idx);
+
+        VMChange added = new VMChange(VMChange.Type.ADDED, vm, 0);
+        fire(old != null ? List.of(new VMChange(VMChange.Type.REMOVED, old.vm, 0), added) : List.of(added));
+    }
+
+    public synchronized boolean remove(ProxmoxVM vm) {
+        State s = state;
+        Entry e = s.table.get(vm.getVmid());
+        if (e == null || e.vm != vm) return false;
+
+        Indexes idx = s.indexes.edit();
+        idx.unindex(e);
+        ProxmoxVM[] vms = s.table.toArray();
+        ProxmoxVM[] next = new ProxmoxVM[vms.length - 1];
+        System.arraycopy(vms, 0, next, 0, e.slot);
+        System.arraycopy(vms, e.slot + 1, next, e.slot, vms.length - e.slot - 1);
+        publish(s, next, idx);
+        fire(List.of(new VMChange(VMChange.Type.REMOVED, vm, 0)));
+        return true;
+    }
+
+    public synchronized void clear() {
+        state = new State(new ProxmoxVM[0]);
+        fire(List.of(VMChange.RESET));
+    }
+
+    /**
+     * Áp một lô thay đổi (từ {@link InventorySync}) với một lần dựng lại bảng vmid và một sự kiện.
+     *
+     * @param added   VM mới (vmid đã có thì bỏ qua)
+     * @param removed VM đang có cần xoá
+     * @param changed VM đang có → giá trị mới; chỉ các trường khác nhau được chép, object cũ được giữ
+     * @return các thay đổi đã áp (cũng là lô gửi cho listener)
+     */
+    public synchronized List<VMChange> applyDelta(Collection<? extends ProxmoxVM> added,
+                                                  Collection<? extends ProxmoxVM> removed,
+                                                  Map<ProxmoxVM, ProxmoxVM> changed) {
+        State s = state;
+        Indexes idx = s.indexes.edit();
+        List<VMChange> changes = new ArrayList<>(added.size() + removed.size() + changed.size());
+
+        // ==== CHANGED: sửa tại chỗ ====
+        for (Map.Entry<ProxmoxVM, ProxmoxVM> c : changed.entrySet()) {
+            ProxmoxVM vm = c.getKey();
+            Entry e = s.table.get(vm.getVmid());
+            if (e == null || e.vm != vm) continue;
+
+            int mask = VMChange.diff(vm, c.getValue());
+            if (mask == 0) continue;
+            VMChange.copy(c.getValue(), vm, mask);
+            idx.reindex(e);
+            changes.add(new VMChange(VMChange.Type.CHANGED, vm, mask));
+        }
+
+        // ==== ADDED / REMOVED: dựng lại bảng một lần ====
+        if (!added.isEmpty() || !removed.isEmpty()) {
+            ProxmoxVM[] current = s.table.toArray();
+            List<ProxmoxVM> next = new ArrayList<>(current.length + added.size());
+            Set<ProxmoxVM> gone = Collections.newSetFromMap(new java.util.IdentityHashMap<>());
+            for (ProxmoxVM vm : removed) {
+                Entry e = s.table.get(vm.getVmid());
+                if (e == null || e.vm != vm || !gone.add(vm)) continue;
+                idx.unindex(e);
+                changes.add(new VMChange(VMChange.Type.REMOVED, vm, 0));
+            }
+            for (ProxmoxVM vm : current) {
+                if (!gone.contains(vm)) next.add(vm);
+            }
+            for (ProxmoxVM vm : added) {
+                Entry e = s.table.get(vm.getVmid());
+                if (e != null && !gone.contains(e.vm)) continue;
+                next.add(vm);
+                changes.add(new VMChange(VMChange.Type.ADDED, vm, 0));
+            }
+            publish(s, next.toArray(new ProxmoxVM[0]), idx);
+        } else if (!changes.isEmpty()) {
+            state = new State(s.table, idx);
+        }
+
+        if (!changes.isEmpty()) fire(changes);
+        return changes;
+    }
+
+    /**
+     * Sửa VM rồi cập nhật index phụ. VM không (còn) thuộc registry → vẫn sửa nhưng không index.
+     */
+    public synchronized void update(ProxmoxVM vm, Consumer<ProxmoxVM> change) {
+        VMChange.Fields before = new VMChange.Fields(vm);
+        change.accept(vm);
+        reindex(vm, before.diff(vm));
+    }
+
+    /** Cập nhật index phụ sau khi VM bị sửa trực tiếp (sự kiện chỉ biết các trường có index) */
+    public synchronized void reindex(ProxmoxVM vm) {
+        reindex(vm, -1);
+    }
+
+    private void reindex(ProxmoxVM vm, int mask) {
+        State s = state;
+        Entry e = s.table.get(vm.getVmid());
+        if (e == null || e.vm != vm) return;
+
+        if (mask < 0) {
+            mask = 0;
+            if (!Objects.equals(e.name, vm.getName())) mask |= VMChange.NAME;
+            if (!Objects.equals(e.ip, vm.getIpAddress())) mask |= VMChange.IP;
+            if (!Objects.equals(e.node, vm.getNode())) mask |= VMChange.NODE;
+            if (e.status != vm.getStatus()) mask |= VMChange.STATUS;
+        }
+        Indexes idx = s.indexes.edit();
+        idx.reindex(e);
+        state = new State(s.table, idx);
+        if (mask != 0) fire(List.of(new VMChange(VMChange.Type.CHANGED, vm, mask)));
+    }
+
+    // =========================================================
+    // LISTENERS
+    // =========================================================
+
+    public void addListener(InventoryListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(InventoryListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Gọi trong khoá ghi → thứ tự sự kiện đúng thứ tự ghi
+    private void fire(List<VMChange> changes) {
+        for (InventoryListener l : listeners) {
+            try {
+                l.inventoryChanged(changes);
+            } catch (RuntimeException ex) {
+                LoggerUtil.error("Inventory listener error", ex);
+            }
+        }
+    }
+
+    // Bảng vmid mới; index phụ là bản đang sửa của State trước, chỉ thêm các VM mới
+    private void publish(State s, ProxmoxVM[] vms, Indexes idx) {
+        IntTable table = new IntTable(vms, s.table);
+        for (Entry e : table.entries) {
+            Entry prev = s.table.get(e.vm.getVmid());
+            if (prev == null || prev.vm != e.vm) idx.index(e);
+        }
+        state = new State(table, idx);
+    }
+
+    // =========================================================
+    // STATE
+    // =========================================================
+
+    /** Snapshot bất biến sau khi publish: bảng vmid + index phụ */
+    private static final class State {
+        final IntTable table;
+        final Indexes indexes;
+
+        // Dựng mới toàn bộ
+        State(ProxmoxVM[] vms) {
+            this.table = new IntTable(vms);
+            this.indexes = new Indexes();
+            for (Entry e : table.entries) indexes.index(e);
+            indexes.seal();
+        }
+
+        State(IntTable table, Indexes indexes) {
+            this.table = table;
+            this.indexes = indexes;
+            indexes.seal();
+        }
+    }
+
+    /** Bốn index phụ; {@link #edit} cho bản sửa được, dùng chung dữ liệu với bản gốc tới khi bị ghi */
+    private static final class Indexes {
+        final Index<String> byName;
+        final Index<String> byIp;
+        final Index<String> byNode;
+        final Index<VMStatus> byStatus;
+
+        Indexes() {
+            this(new Index<>(), new Index<>(), new Index<>(), new Index<>());
+        }
+
+        private Indexes(Index<String> byName, Index<String> byIp, Index<String> byNode, Index<VMStatus> byStatus) {
+            this.byName = byName;
+            this.byIp = byIp;
+            this.byNode = byNode;
+            this.byStatus = byStatus;
+        }
+
+        Indexes edit() {
+            return new Indexes(byName.edit(), byIp.edit(), byNode.edit(), byStatus.edit());
+        }
+
+        void seal() {
+            byName.seal();
+            byIp.seal();
+            byNode.seal();
+            byStatus.seal();
+        }
+
+        void index(Entry e) {
+            byName.add(e.name, e.vm);
+            byIp.add(e.ip, e.vm);
+            byNode.add(e.node, e.vm);
+            byStatus.add(e.status, e.vm);
+        }
+
+        void unindex(Entry e) {
+            byName.remove(e.name, e.vm);
+            byIp.remove(e.ip, e.vm);
+            byNode.remove(e.node, e.vm);
+            byStatus.remove(e.status, e.vm);
+        }
+
+        // Chụp lại khoá của VM; chỉ index có khoá đổi mới bị chép
+        void reindex(Entry e) {
+            String name = e.name, ip = e.ip, node = e.node;
+            VMStatus status = e.status;
+            e.capture();
+            byName.move(name, e.name, e.vm);
+            byIp.move(ip, e.ip, e.vm);
+            byNode.move(node, e.node, e.vm);
+            byStatus.move(status, e.status, e.vm);
+        }
+    }
+
+    /** VM + các khoá đã dùng để index (để gỡ đúng chỗ khi VM đổi) */
+    private static final class Entry {
+        final ProxmoxVM vm;
+        final int slot;
+        // Chỉ writer đọc / ghi (trong khoá); reader không dùng tới
+        String name;
+        String ip;
+        String node;
+        VMStatus status;
+
+        Entry(ProxmoxVM vm, int slot) {
+            this.vm = vm;
+            this.slot = slot;
+            capture();
+        }
+
+        // Giữ nguyên khoá index từ entry cũ khi chỉ dựng lại bảng vmid
+        Entry(Entry prev, int slot) {
+            this.vm = prev.vm;
+            this.slot = slot;
+            this.name = prev.name;
+            this.ip = prev.ip;
+            this.node = prev.node;
+            this.status = prev.status;
+        }
+
+        void capture() {
+            name = vm.getName();
+            ip = vm.getIpAddress();
+            node = vm.getNode();
+            status = vm.getStatus();
+        }
+    }
+
+    /**
+     * Index phụ: khoá → tập VM, copy-on-write. Bản đã publish không bao giờ bị sửa;
+     * bản từ {@link #edit} chép map ngoài ở lần ghi đầu và chép từng tập ở lần đầu chạm tới khoá đó.
+     */
+    private static final class Index<K> {
+        private Map<K, Set<ProxmoxVM>> map;
+        private boolean shared;   // map ngoài còn là của bản trước
+        private Set<K> owned;     // khoá có tập đã chép riêng; null = đã seal, chỉ đọc
+
+        Index() {
+            this(new HashMap<>(), false);
+        }
+
+        private Index(Map<K, Set<ProxmoxVM>> map, boolean shared) {
+            this.map = map;
+            this.shared = shared;
+            this.owned = new HashSet<>();
+        }
+
+        Index<K> edit() {
+            return new Index<>(map, true);
+        }
+
+        void seal() {
+            owned = null;
+        }
+
+        void add(K key, ProxmoxVM vm) {
+            if (key == null) return;
+            writable(key).add(vm);
+        }
+
+        void remove(K key, ProxmoxVM vm) {
+            if (key == null) return;
+            Set<ProxmoxVM> set = map.get(key);
+            if (set == null || !set.contains(vm)) return;
+            set = writable(key);
+            set.remove(vm);
+            if (set.isEmpty()) map.remove(key);
+        }
+
+        void move(K from, K to, ProxmoxVM vm) {
+            if (Objects.equals(from, to)) return;
+            remove(from, vm);
+            add(to, vm);
+        }
+
+        private Set<ProxmoxVM> writable(K key) {
+            if (shared) {
+                map = new HashMap<>(map);
+                shared = false;
+            }
+            Set<ProxmoxVM> set = map.get(key);
+            if (owned.add(key) || set == null) {
+                set = set != null ? new HashSet<>(set) : new HashSet<>();
+                map.put(key, set);
+            }
+            return set;
+        }
+
+        int count(K key) {
+            Set<ProxmoxVM> set = key != null ? map.get(key) : null;
+            return set != null ? set.size() : 0;
+        }
+
+        // Sắp theo vmid để kết quả ổn định giữa các lần gọi
+        List<ProxmoxVM> lookup(K key) {
+            Set<ProxmoxVM> set = key != null ? map.get(key) : null;
+            if (set == null || set.isEmpty()) return Collections.emptyList();
+            List<ProxmoxVM> list = new ArrayList<>(set);
+            list.sort(BY_VMID);
+            return list;
+        }
+    }
+
+    /**
+     * Bảng băm vmid → Entry, linear probing trên int[], hệ số tải ≤ 0.5. Bất biến sau khi dựng.
+     */
+    private static final class IntTable {
+        final Entry[] entries;
+        final List<ProxmoxVM> view;
+        final int size;
+        private final int[] keys;
+        private final int[] slots;   // vị trí trong entries + 1; 0 = ô trống
+        private final int mask;
+
+        IntTable(ProxmoxVM[] vms) {
+            this(vms, null);
+        }
+
+        IntTable(ProxmoxVM[] vms, IntTable prev) {
+            int cap = Integer.highestOneBit(Math.max(4, vms.length * 2 - 1)) << 1;
+            keys = new int[cap];
+            slots = new int[cap];
+            mask = cap - 1;
+
+            Entry[] built = new Entry[vms.length];
+            int n = 0;
+            for (ProxmoxVM vm : vms) {
+                int i = probe(vm.getVmid());
+                if (slots[i] != 0) {
+                    // vmid trùng: VM sau thắng, giữ vị trí cũ
+                    int at = slots[i] - 1;
+                    built[at] = entry(vm, at, prev);
+                    continue;
+                }
+                keys[i] = vm.getVmid();
+                slots[i] = n + 1;
+                built[n] = entry(vm, n, prev);
+                n++;
+            }
+            entries = n == built.length ? built : Arrays.copyOf(built, n);
+            size = n;
+
+            ProxmoxVM[] ordered = new ProxmoxVM[n];
+            for (int i = 0; i < n; i++) ordered[i] = entries[i].vm;
+            view = Collections.unmodifiableList(Arrays.asList(ordered));
+        }
+
+        private static Entry entry(ProxmoxVM vm, int slot, IntTable prev) {
+            Entry old = prev != null ? prev.get(vm.getVmid()) : null;
+            return old != null && old.vm == vm ? new Entry(old, slot) : new Entry(vm, slot);
+        }
+
+        Entry get(int vmid) {
+            int s = slots[probe(vmid)];
+            return s != 0 ? entries[s - 1] : null;
+        }
+
+        // Ô chứa vmid, hoặc ô trống đầu tiên nếu chưa có
+        private int probe(int vmid) {
+            int i = mix(vmid) & mask;
+            while (slots[i] != 0 && keys[i] != vmid) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        private static int mix(int k) {
+            int h = k * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        ProxmoxVM[] toArray() {
+            ProxmoxVM[] out = new ProxmoxVM[size];
+            for (int i = 0; i < size; i++) out[i] = entries[i].vm;
+            return out;
+        }
+    }
+
+    // Parse số không cấp phát / không ném exception; -1 nếu không hợp lệ
+    static int parseVmid(String s) {
+        if (s == null) return -1;
+        int len = s.length();
+        if (len == 0 || len > 9) return -1;
+        int v = 0;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+}
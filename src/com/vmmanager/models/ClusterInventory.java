@@ -0,0 +1,80 @@
+package com.vmmanager.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Snapshot toàn cluster lấy từ một lần gọi /cluster/resources:
+ * VM, template, storage và node, mỗi VM mang đúng node của nó.
+ */
+public class ClusterInventory {
+
+    private final List<ProxmoxVM> vms = new ArrayList<>();
+    private final List<ProxmoxVM> templates = new ArrayList<>();
+    private final Set<String> nodes = new LinkedHashSet<>();
+    private final Map<String, List<String>> storagesByNode = new LinkedHashMap<>();
+    private final long loadedAt;
+
+    public ClusterInventory() {
+        this.loadedAt = System.currentTimeMillis();
+    }
+
+    public void addVM(ProxmoxVM vm) {
+        vms.add(vm);
+    }
+
+    public void addTemplate(ProxmoxVM template) {
+        templates.add(template);
+    }
+
+    public void addNode(String node) {
+        nodes.add(node);
+    }
+
+    public void addStorage(String node, String storage) {
+        storagesByNode.computeIfAbsent(node, k -> new ArrayList<>()).add(storage);
+    }
+
+    /**
+     * Thay danh sách VM (vd. bằng view của inventory dạng cột) để snapshot không giữ object cũ
+     */
+    public void replaceVMs(List<ProxmoxVM> replacement) {
+        vms.clear();
+        vms.addAll(replacement);
+    }
+
+    public List<ProxmoxVM> getVMs() {
+        return Collections.unmodifiableList(vms);
+    }
+
+    public List<ProxmoxVM> getTemplates() {
+        return Collections.unmodifiableList(templates);
+    }
+
+    public List<String> getNodes() {
+        return new ArrayList<>(nodes);
+    }
+
+    /**
+     * Tên storage không trùng lặp trên toàn cluster (storage shared xuất hiện ở mọi node).
+     */
+    public List<String> getStorages() {
+        Set<String> all = new LinkedHashSet<>();
+        for (List<String> list : storagesByNode.values()) all.addAll(list);
+        return new ArrayList<>(all);
+    }
+
+    public List<String> getStorages(String node) {
+        List<String> list = storagesByNode.get(node);
+        return list != null ? new ArrayList<>(list) : new ArrayList<>();
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+}
@@ -1,6 +1,7 @@
 package com.vmmanager.models;
 
 import com.vmmanager.models.enums.OSType;
+import java.time.LocalDateTime;
 
 public class ProxmoxVM extends VM {
     private int vmid;
@@ -9,24 +10,35 @@ public class ProxmoxVM extends VM {
     private String template;
     private String networkBridge;
     private String sshKey;
+    private long uptime;
     
     public ProxmoxVM() {
         super();
         this.node = "pve1";
         this.networkBridge = "vmbr0";
     }
+
+    // View flyweight: dữ liệu nằm ngoài object, getter/setter được override
+    protected ProxmoxVM(LocalDateTime createdDate) {
+        super(createdDate);
+    }
     
     @Override
     public boolean validate() {
+        String name = getName();
         if (name == null || name.trim().isEmpty()) return false;
-        if (cpuCores < 1 || cpuCores > 32) return false;
-        if (memoryGB < 1 || memoryGB > 128) return false;
-        if (diskGB < 10 || diskGB > 2000) return false;
+        if (getCpuCores() < 1 || getCpuCores() > 32) return false;
+        if (getMemoryGB() < 1 || getMemoryGB() > 128) return false;
+        if (getDiskGB() < 10 || getDiskGB() > 2000) return false;
         return true;
     }
     
     @Override
     public String generateTerraformConfig() {
+        // Đọc qua getter để view flyweight cũng sinh đúng cấu hình
+        String name = getName();
+        String template = getTemplate();
+        String storage = getStorage();
         StringBuilder config = new StringBuilder();
         
         config.append(String.format("""
@@ -58,14 +70,14 @@ public class ProxmoxVM extends VM {
             name,
             name.toLowerCase().replace(" ", "_"),
             name,
-            id,
-            node,
-            cpuCores,
-            memoryGB * 1024,
+            getVmid(),
+            getNode(),
+            getCpuCores(),
+            getMemoryGB() * 1024,
             template != null ? template : "local:vztmpl/ubuntu-22.04-standard",
             storage != null ? storage : "local-lvm",
-            diskGB,
-            networkBridge
+            getDiskGB(),
+            getNetworkBridge()
         ));
         
         return config.toString();
@@ -94,4 +106,7 @@ public class ProxmoxVM extends VM {
     
     public String getSshKey() { return sshKey; }
     public void setSshKey(String sshKey) { this.sshKey = sshKey; }
+    
+    public long getUptime() { return uptime; }
+    public void setUptime(long uptime) { this.uptime = uptime; }
 }
\ No newline at end of file
@@ -16,7 +16,12 @@ public abstract class VM {
     protected String ipAddress;
     
     public VM() {
-        this.createdDate = LocalDateTime.now();
+        this(LocalDateTime.now());
+    }
+
+    // Cho view dùng chung một createdDate (không cấp phát LocalDateTime cho mỗi VM)
+    protected VM(LocalDateTime createdDate) {
+        this.createdDate = createdDate;
         this.status = VMStatus.PENDING;
     }
     
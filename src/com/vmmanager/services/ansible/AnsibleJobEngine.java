@@ -0,0 +1,425 @@
+package com.vmmanager.services.ansible;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.vmmanager.utils.AppLogger;
+import com.vmmanager.utils.LoggerUtil;
+
+/**
+ * Chạy ansible-playbook song song trên một pool worker giới hạn, mỗi lần chạy là một job.
+ *
+ * - Job có id, trạng thái QUEUED → RUNNING → SUCCEEDED / FAILED / CANCELLED
+ * - Mỗi job dùng inventory tạm riêng (ansible/inventory/job-&lt;id&gt;-*.ini), xoá khi job xong,
+ *   nên các lần chạy đồng thời không ghi đè inventory của nhau; output ghi qua file tạm cùng chỗ
+ * - Hàng đợi có giới hạn: đầy thì job bị từ chối (FAILED) ngay, không chặn thread gọi
+ * - Huỷ từng job (hoặc huỷ future của job): job đang chờ bỏ khỏi hàng, job đang chạy bị kill
+ *   cả cây process (ssh con của ansible-playbook); shutdown() kill tất cả
+ */
+public class AnsibleJobEngine {
+
+    private static final AppLogger LOG = LoggerUtil.getLogger("ansible");
+
+    public enum State { QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED }
+
+    private static final long TAIL_INTERVAL_MS = 200;
+
+    /** Cấu hình engine */
+    public static class Settings {
+        public int workers = 4;
+        public int maxQueued = 32;
+        /** Thời gian chờ process thoát sau khi huỷ trước khi kill cưỡng bức */
+        public long killGraceMs = 5_000;
+        /** Số job đã xong giữ lại để hiển thị */
+        public int historySize = 50;
+    }
+
+    /** Một lần chạy playbook trên một host */
+    public final class Job {
+        private final long id;
+        private final String host;
+        private final Path playbook;
+        private final String extraVars;
+        private final long submittedAt = System.currentTimeMillis();
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        // Trạng thái đổi dưới khoá của job
+        private State state = State.QUEUED;
+        private Process process;
+        private volatile long startedAt;
+        private volatile long finishedAt;
+        private volatile int exitCode = -1;
+
+        private Job(long id, String host, Path playbook, String extraVars) {
+            this.id = id;
+            this.host = host;
+            this.playbook = playbook;
+            this.extraVars = extraVars;
+            // Huỷ future (vd TaskRunner huỷ việc) = huỷ job
+            future.whenComplete((ok, ex) -> {
+                if (ex instanceof CancellationException) cancel();
+            });
+        }
+
+        public long getId() { return id; }
+        public String getHost() { return host; }
+        public Path getPlaybook() { return playbook; }
+        public int getExitCode() { return exitCode; }
+
+        public synchronized State getState() { return state; }
+
+        /** Hoàn tất với true khi playbook thoát mã 0; false khi lỗi / bị từ chối; bị huỷ thì cancelled */
+        public CompletableFuture<Boolean> getFuture() { return future; }
+
+        public long getElapsedMs() {
+            long start = startedAt != 0 ? startedAt : submittedAt;
+            long end = finishedAt != 0 ? finishedAt : System.currentTimeMillis();
+            return end - start;
+        }
+
+        /** Huỷ job; false nếu job đã kết thúc */
+        public boolean cancel() {
+            return cancel(false);
+        }
+
+        private boolean cancel(boolean force) {
+            Process p;
+            synchronized (this) {
+                if (isDone(state)) return false;
+                boolean queued = state == State.QUEUED;
+                state = State.CANCELLED;
+                p = process;
+                if (queued) {
+                    // Worker sẽ bỏ qua job khi tới lượt; trả chỗ trong hàng đợi ngay
+                    executor.remove(runner);
+                }
+            }
+            LOG.info("⏹ Ansible job #" + id + " cancelled");
+            if (p != null) kill(p, force ? 0 : settings.killGraceMs);
+            finish(this, false);
+            return true;
+        }
+
+        // Runnable gửi vào pool (giữ tham chiếu để gỡ khỏi hàng đợi khi huỷ)
+        private final Runnable runner = () -> run(this);
+
+        @Override
+        public synchronized String toString() {
+            return "#" + id + " " + playbook.getFileName() + " → " + host + " " + state
+                    + (isDone(state) ? " in " + getElapsedMs() / 1000 + "s" : "");
+        }
+    }
+
+    private final Settings settings;
+    private final String sshUser;
+    private final String sshKey;
+    private final Path inventoryDir;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong ids = new AtomicLong();
+    private final Map<Long, Job> active = new LinkedHashMap<>();
+    private final Deque<Job> history = new ArrayDeque<>();
+
+    // ===== thống kê =====
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public AnsibleJobEngine(Settings settings, String sshUser, String sshKey, Path inventoryDir) {
+        this.settings = settings;
+        this.sshUser = sshUser;
+        this.sshKey = sshKey;
+        this.inventoryDir = inventoryDir;
+
+        AtomicInteger n = new AtomicInteger();
+        int workers = Math.max(1, settings.workers);
+        this.executor = new ThreadPoolExecutor(workers, workers, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, settings.maxQueued)), r -> {
+                    Thread t = new Thread(r, "ansible-job-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    // =========================================================
+    // SUBMIT / CANCEL
+    // =========================================================
+
+    /** Xếp job vào hàng đợi; hàng đợi đầy / engine đã đóng thì job FAILED ngay */
+    public Job submit(String host, Path playbook, String extraVars) {
+        Job job = new Job(ids.incrementAndGet(), host, playbook, extraVars);
+        submitted.incrementAndGet();
+        synchronized (active) {
+            active.put(job.id, job);
+        }
+        try {
+            executor.execute(job.runner);
+            LOG.info("▶ Ansible job #" + job.id + " queued: " + playbook.getFileName() + " → " + host);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            LOG.error("Ansible job #" + job.id + " rejected (queue full or engine stopped)");
+            synchronized (job) {
+                job.state = State.FAILED;
+            }
+            finish(job, false);
+        }
+        return job;
+    }
+
+    public boolean cancel(long id) {
+        Job job;
+        synchronized (active) {
+            job = active.get(id);
+        }
+        return job != null && job.cancel();
+    }
+
+    /** Huỷ mọi job đang chờ / đang chạy */
+    public void cancelAll() {
+        for (Job job : getActive()) job.cancel();
+    }
+
+    // =========================================================
+    // WORKER
+    // =========================================================
+
+    private void run(Job job) {
+        synchronized (job) {
+            if (job.state != State.QUEUED) return; // đã huỷ khi còn chờ
+            job.state = State.RUNNING;
+        }
+        job.startedAt = System.currentTimeMillis();
+
+        Path inventory = null;
+        Path output = null;
+        boolean ok = false;
+        try {
+            inventory = createInventory(job);
+            output = Files.createTempFile(inventoryDir, "job-" + job.id + "-", ".out");
+            List<String> cmd = buildCommand(job, inventory);
+            LoggerUtil.info("▶ Running Ansible job #" + job.id + ": " + cmd);
+
+            // Output ghi ra file rồi đọc đuôi: process con còn giữ stdout (ssh ControlPersist...)
+            // không làm job treo như khi đọc pipe tới EOF
+            ProcessBuilder pb = new ProcessBuilder(cmd);
+            pb.redirectErrorStream(true);
+            pb.redirectOutput(output.toFile());
+            Process p = pb.start();
+
+            synchronized (job) {
+                job.process = p;
+                // Bị huỷ trong lúc khởi động process
+                if (job.state == State.CANCELLED) kill(p, 0);
+            }
+
+            tailOutput(job, p, output);
+            job.exitCode = p.waitFor();
+            ok = job.exitCode == 0;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            if (job.getState() != State.CANCELLED) LoggerUtil.error("Ansible job #" + job.id + " error", e);
+        } finally {
+            deleteQuietly(inventory);
+            deleteQuietly(output);
+        }
+
+        synchronized (job) {
+            job.process = null;
+            if (job.state != State.RUNNING) return; // đã huỷ: cancel() đã hoàn tất job
+            job.state = ok ? State.SUCCEEDED : State.FAILED;
+        }
+        LOG.info((ok ? "✅" : "❌") + " Ansible job #" + job.id + " " + job.getState()
+                + " (exit " + job.exitCode + ", " + job.getElapsedMs() / 1000 + "s)");
+        finish(job, ok);
+    }
+
+    // Log từng dòng output mới tới khi process thoát (dòng chưa có '\n' chờ lượt đọc sau)
+    private static void tailOutput(Job job, Process p, Path output) throws IOException, InterruptedException {
+        String prefix = "[#" + job.id + "] ";
+        StringBuilder line = new StringBuilder();
+        char[] buf = new char[8192];
+
+        try (Reader reader = new InputStreamReader(Files.newInputStream(output), StandardCharsets.UTF_8)) {
+            while (true) {
+                boolean exited = !p.isAlive();
+                int n;
+                while ((n = reader.read(buf)) > 0) {
+                    for (int i = 0; i < n; i++) {
+                        char c = buf[i];
+                        if (c == '\n') {
+                            LOG.info(prefix + line);
+                            line.setLength(0);
+                        } else if (c != '\r') {
+                            line.append(c);
+                        }
+                    }
+                }
+                if (exited) break;
+                p.waitFor(TAIL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (line.length() > 0) LOG.info(prefix + line);
+    }
+
+    private List<String> buildCommand(Job job, Path inventory) {
+        List<String> cmd = new ArrayList<>();
+        cmd.add("ansible-playbook");
+        cmd.add("-i");
+        cmd.add(inventory.toString());
+        cmd.add(job.playbook.toString());
+        cmd.add("--private-key");
+        cmd.add(sshKey);
+
+        // ⭐ tránh host key error + askpass
+        cmd.add("--ssh-common-args");
+        cmd.add("-o StrictHostKeyChecking=no -o UserKnownHostsFile=/dev/null");
+
+        if (job.extraVars != null && !job.extraVars.isBlank()) {
+            cmd.add("--extra-vars");
+            cmd.add(job.extraVars.replace("\n", " "));
+        }
+        return cmd;
+    }
+
+    // Inventory riêng của job, chỉ chủ sở hữu đọc được (có đường dẫn key SSH)
+    private Path createInventory(Job job) throws IOException {
+        Files.createDirectories(inventoryDir);
+        Path file;
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            file = Files.createTempFile(inventoryDir, "job-" + job.id + "-", ".ini",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            file = Files.createTempFile(inventoryDir, "job-" + job.id + "-", ".ini");
+        }
+
+        String content =
+                "[targets]\n" +
+                job.host +
+                " ansible_user=" + sshUser +
+                " ansible_ssh_private_key_file=" + sshKey +
+                " ansible_ssh_common_args='-o StrictHostKeyChecking=no -o UserKnownHostsFile=/dev/null'\n";
+        Files.writeString(file, content);
+        return file;
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LoggerUtil.warn("Không xoá được inventory tạm " + file + ": " + e.getMessage());
+        }
+    }
+
+    // Dừng cả cây process (ssh con của ansible-playbook); quá graceMs thì kill cưỡng bức
+    private static void kill(Process p, long graceMs) {
+        List<ProcessHandle> tree = new ArrayList<>();
+        p.descendants().forEach(tree::add);
+        tree.add(p.toHandle());
+
+        if (graceMs <= 0) {
+            for (ProcessHandle h : tree) h.destroyForcibly();
+            return;
+        }
+        for (ProcessHandle h : tree) h.destroy();
+        CompletableFuture.delayedExecutor(graceMs, TimeUnit.MILLISECONDS).execute(() -> {
+            for (ProcessHandle h : tree) {
+                if (h.isAlive()) h.destroyForcibly();
+            }
+        });
+    }
+
+    private void finish(Job job, boolean ok) {
+        job.finishedAt = System.currentTimeMillis();
+        switch (job.getState()) {
+            case SUCCEEDED -> succeeded.incrementAndGet();
+            case CANCELLED -> cancelled.incrementAndGet();
+            default -> failed.incrementAndGet();
+        }
+        synchronized (active) {
+            active.remove(job.id);
+            history.addLast(job);
+            while (history.size() > settings.historySize) history.pollFirst();
+        }
+        if (job.getState() != State.CANCELLED) job.future.complete(ok);
+        else job.future.cancel(false);
+    }
+
+    private static boolean isDone(State s) {
+        return s == State.SUCCEEDED || s == State.FAILED || s == State.CANCELLED;
+    }
+
+    // =========================================================
+    // TRẠNG THÁI / ĐÓNG
+    // =========================================================
+
+    /** Job đang chờ / đang chạy, theo thứ tự gửi */
+    public List<Job> getActive() {
+        synchronized (active) {
+            return new ArrayList<>(active.values());
+        }
+    }
+
+    /** Job đã kết thúc gần đây (cũ trước) */
+    public List<Job> getHistory() {
+        synchronized (active) {
+            return new ArrayList<>(history);
+        }
+    }
+
+    public String describe() {
+        int running = 0, queued = 0;
+        for (Job j : getActive()) {
+            if (j.getState() == State.RUNNING) running++;
+            else queued++;
+        }
+        return String.format("Ansible: %d running, %d queued (%d workers), %d ok, %d failed, %d cancelled, %d rejected",
+                running, queued, executor.getMaximumPoolSize(), succeeded.get(), failed.get(),
+                cancelled.get(), rejected.get());
+    }
+
+    /** Không nhận job mới; job đang chờ / đang chạy vẫn chạy tới khi xong */
+    public void close() {
+        executor.shutdown();
+    }
+
+    /** Huỷ mọi job và kill mọi process ansible-playbook (khi tắt app) */
+    public void shutdown() {
+        executor.shutdown();
+        List<Job> jobs = getActive();
+        if (!jobs.isEmpty()) LoggerUtil.info("Stopping " + jobs.size() + " ansible job(s)...");
+        for (Job job : jobs) job.cancel(true);
+        executor.shutdownNow();
+        // Cho worker dọn inventory / output tạm trước khi JVM thoát
+        try {
+            executor.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -5,24 +5,23 @@ import com.vmmanager.utils.LoggerUtil;
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 
 public class AnsibleService {
 
-    private final String sshUser;
-    private final String sshKey;
-
     private final Path ansibleDir;
     private final Path playbookDir;
     private final Path customDir;
     private final Path inventoryDir;
 
-    // ⭐ process đang chạy (để kill khi tắt app)
-    private Process currentProcess;
+    // ⭐ các lần chạy playbook (song song, inventory riêng, huỷ / kill được từng job)
+    private final AnsibleJobEngine engine;
 
     public AnsibleService(String sshUser, String sshKey) {
+        this(sshUser, sshKey, new AnsibleJobEngine.Settings());
+    }
 
-        this.sshUser = sshUser;
-        this.sshKey = sshKey;
+    public AnsibleService(String sshUser, String sshKey, AnsibleJobEngine.Settings jobs) {
 
         this.ansibleDir = Paths.get("ansible");
         this.playbookDir = ansibleDir.resolve("playbooks");
@@ -36,6 +35,8 @@ public class AnsibleService {
         } catch (IOException e) {
             LoggerUtil.error("Create ansible dirs error", e);
         }
+
+        this.engine = new AnsibleJobEngine(jobs, sshUser, sshKey, inventoryDir);
     }
 
     // ======================================================
@@ -72,57 +73,29 @@ public class AnsibleService {
     // ======================================================
     // RUN PLAYBOOK
     // ======================================================
-    public boolean runPlaybook(String vmIP, String playbookName, String extraVars) {
-
-        try {
-
-            Path playbookPath = resolvePlaybookPath(playbookName);
-            Path inventory = createRuntimeInventory(vmIP);
-
-            List<String> cmd = new ArrayList<>();
-            cmd.add("ansible-playbook");
-            cmd.add("-i");
-            cmd.add(inventory.toString());
-            cmd.add(playbookPath.toString());
-            cmd.add("--private-key");
-            cmd.add(sshKey);
-
-            // ⭐ tránh host key error + askpass
-            cmd.add("--ssh-common-args");
-            cmd.add("-o StrictHostKeyChecking=no -o UserKnownHostsFile=/dev/null");
-
-            if (extraVars != null && !extraVars.isBlank()) {
-                cmd.add("--extra-vars");
-                cmd.add(extraVars.replace("\n", " "));
-            }
-
-            LoggerUtil.info("▶ Running Ansible: " + cmd);
-
-            ProcessBuilder pb = new ProcessBuilder(cmd);
-            pb.redirectErrorStream(true);
-
-            currentProcess = pb.start();
-
-            BufferedReader reader =
-                    new BufferedReader(
-                            new InputStreamReader(currentProcess.getInputStream()));
 
-            String line;
-            while ((line = reader.readLine()) != null) {
-                LoggerUtil.info("[ANSIBLE] " + line);
-            }
-
-            int exit = currentProcess.waitFor();
-            currentProcess = null;
+    /** Xếp một lần chạy playbook vào engine; kết quả qua job.getFuture() */
+    public AnsibleJobEngine.Job submitPlaybook(String vmIP, String playbookName, String extraVars) {
+        return engine.submit(vmIP, resolvePlaybookPath(playbookName), extraVars);
+    }
 
-            return exit == 0;
+    /** Chạy và chờ playbook xong (true khi exit 0) */
+    public boolean runPlaybook(String vmIP, String playbookName, String extraVars) {
 
+        try {
+            return submitPlaybook(vmIP, playbookName, extraVars).getFuture().join();
+        } catch (CancellationException e) {
+            return false;
         } catch (Exception e) {
             LoggerUtil.error("Run playbook error", e);
             return false;
         }
     }
 
+    public AnsibleJobEngine getJobEngine() {
+        return engine;
+    }
+
     // ======================================================
     // RESOLVE PLAYBOOK PATH
     // ======================================================
@@ -146,43 +119,21 @@ public class AnsibleService {
     }
 
     // ======================================================
-    // CREATE INVENTORY
+    // SHUTDOWN
     // ======================================================
-    private Path createRuntimeInventory(String ip) throws IOException {
-
-        Path file = inventoryDir.resolve("runtime.ini");
-
-        String content =
-                "[targets]\n" +
-                ip +
-                " ansible_user=" + sshUser +
-                " ansible_ssh_private_key_file=" + sshKey +
-                " ansible_ssh_common_args='-o StrictHostKeyChecking=no -o UserKnownHostsFile=/dev/null'\n";
-
-        Files.writeString(
-                file,
-                content,
-                StandardOpenOption.CREATE,
-                StandardOpenOption.TRUNCATE_EXISTING
-        );
 
-        return file;
+    /** Không nhận job mới; job đang chạy vẫn chạy tới khi xong (khi đổi cấu hình) */
+    public void close() {
+        engine.close();
     }
 
-    // ======================================================
-    // SHUTDOWN (kill running ansible)
-    // ======================================================
+    /** Huỷ mọi job, kill mọi process ansible-playbook (khi tắt app) */
     public void shutdown() {
 
         try {
-            if (currentProcess != null && currentProcess.isAlive()) {
-                LoggerUtil.info("Stopping ansible process...");
-                currentProcess.destroyForcibly();
-            }
+            engine.shutdown();
         } catch (Exception e) {
             LoggerUtil.error("Stop ansible error", e);
         }
     }
-    
-    
 }
@@ -0,0 +1,145 @@
+package com.vmmanager.services.proxmox;
+
+import com.vmmanager.utils.LoggerUtil;
+
+/**
+ * Circuit breaker cho một host Proxmox.
+ *
+ * CLOSED    → request đi bình thường, đếm lỗi host liên tiếp
+ * OPEN      → sau {@code failureThreshold} lỗi liên tiếp: từ chối ngay bằng {@link CircuitOpenException}
+ * HALF_OPEN → hết {@code openMs}: cho đúng một request thăm dò; thành công thì đóng lại,
+ *             lỗi thì mở tiếp với thời gian gấp đôi (tối đa {@code maxOpenMs})
+ *
+ * Mỗi lần đổi trạng thái tăng generation; {@link #acquire()} trả {@link Permit} ghi generation
+ * lúc được phép. Kết quả của request cấp ở trạng thái cũ (vd. xong muộn sau khi breaker
+ * đã mở) bị bỏ qua, nên không đóng breaker hay nhả lượt thăm dò của request khác.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /** Quyền gửi một request; trả lại qua đúng một trong onSuccess / onFailure / onIgnored */
+    public static final class Permit {
+        private final long generation;
+        private final boolean probe;
+
+        private Permit(long generation, boolean probe) {
+            this.generation = generation;
+            this.probe = probe;
+        }
+
+        public boolean isProbe() {
+            return probe;
+        }
+    }
+
+    private final String host;
+    private final int failureThreshold;
+    private final long baseOpenMs;
+    private final long maxOpenMs;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openUntil;
+    private long currentOpenMs;
+    private boolean probeInFlight;
+    private long generation;
+    private long rejected;
+
+    public CircuitBreaker(String host, int failureThreshold, long openMs, long maxOpenMs) {
+        this.host = host;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.baseOpenMs = Math.max(100, openMs);
+        this.maxOpenMs = Math.max(this.baseOpenMs, maxOpenMs);
+        this.currentOpenMs = this.baseOpenMs;
+    }
+
+    /**
+     * Xin phép gửi request.
+     * @throws CircuitOpenException nếu breaker đang mở hoặc đã có request thăm dò
+     */
+    public synchronized Permit acquire() throws CircuitOpenException {
+        long now = System.currentTimeMillis();
+
+        if (state == State.OPEN) {
+            if (now < openUntil) {
+                rejected++;
+                throw new CircuitOpenException(host, openUntil - now);
+            }
+            state = State.HALF_OPEN;
+            generation++;
+            probeInFlight = false;
+            LoggerUtil.info("Circuit " + host + " half-open, thử lại một request");
+        }
+
+        if (state == State.HALF_OPEN) {
+            if (probeInFlight) {
+                rejected++;
+                throw new CircuitOpenException(host, 0);
+            }
+            probeInFlight = true;
+            return new Permit(generation, true);
+        }
+        return new Permit(generation, false);
+    }
+
+    // Permit được cấp trong trạng thái hiện tại (chưa có lần đổi trạng thái nào từ lúc đó)
+    private boolean current(Permit permit) {
+        return permit.generation == generation;
+    }
+
+    /** Request nhận được response từ host (kể cả lỗi nghiệp vụ 4xx) */
+    public synchronized void onSuccess(Permit permit) {
+        if (!current(permit)) return;
+        if (state == State.HALF_OPEN) {
+            LoggerUtil.info("Circuit " + host + " closed");
+            state = State.CLOSED;
+            generation++;
+            currentOpenMs = baseOpenMs;
+            probeInFlight = false;
+        }
+        consecutiveFailures = 0;
+    }
+
+    /** Request lỗi do host (timeout, connection refused, 502/503...) */
+    public synchronized void onFailure(Permit permit, Throwable cause) {
+        if (!current(permit)) return;
+        consecutiveFailures++;
+
+        if (state == State.HALF_OPEN) {
+            currentOpenMs = Math.min(maxOpenMs, currentOpenMs * 2);
+            open(cause);
+        } else if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+            open(cause);
+        }
+    }
+
+    /** Request không xác định được host sống hay chết (ví dụ thread bị ngắt) */
+    public synchronized void onIgnored(Permit permit) {
+        if (permit.probe && current(permit)) probeInFlight = false;
+    }
+
+    private void open(Throwable cause) {
+        state = State.OPEN;
+        generation++;
+        probeInFlight = false;
+        openUntil = System.currentTimeMillis() + currentOpenMs;
+        LoggerUtil.warn("Circuit " + host + " open " + currentOpenMs + "ms sau "
+                + consecutiveFailures + " lỗi liên tiếp: " + cause.getMessage());
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() >= openUntil) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized long getRejectedCount() {
+        return rejected;
+    }
+
+    public synchronized String describe() {
+        return getState() + (consecutiveFailures > 0 ? " (" + consecutiveFailures + " lỗi)" : "");
+    }
+}
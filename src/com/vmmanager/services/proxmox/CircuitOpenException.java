@@ -0,0 +1,21 @@
+package com.vmmanager.services.proxmox;
+
+import java.io.IOException;
+
+/**
+ * Circuit breaker đang mở: request bị từ chối ngay, không chờ TCP timeout.
+ */
+public class CircuitOpenException extends IOException {
+
+    private final long retryAfterMs;
+
+    public CircuitOpenException(String host, long retryAfterMs) {
+        super("Proxmox " + host + " tạm thời không khả dụng, thử lại sau " + (retryAfterMs / 1000 + 1) + "s");
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    /** Thời gian còn lại tới lần thử (half-open) tiếp theo */
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+}
@@ -0,0 +1,12 @@
+package com.vmmanager.services.proxmox;
+
+import com.google.gson.stream.JsonReader;
+import java.io.IOException;
+
+/**
+ * Đọc response JSON trực tiếp từ stream, không dựng cây JsonObject.
+ */
+@FunctionalInterface
+public interface JsonDecoder<T> {
+    T decode(JsonReader reader) throws IOException;
+}
@@ -1,100 +1,99 @@
 package com.vmmanager.services.proxmox;
 
 import java.io.IOException;
-import java.security.cert.X509Certificate;
-import javax.net.ssl.*;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.*;
-import org.apache.http.conn.ssl.NoopHostnameVerifier;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
-import org.apache.http.conn.ssl.TrustStrategy;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.ssl.SSLContextBuilder;
-import org.apache.http.util.EntityUtils;
-import com.google.gson.JsonArray;
+import org.apache.http.pool.PoolStats;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
-import com.google.gson.JsonSyntaxException;
+import com.vmmanager.utils.AppLogger;
 import com.vmmanager.utils.LoggerUtil;
 
 public class ProxmoxAPIClient {
+    private static final AppLogger LOG = LoggerUtil.getLogger("proxmox.api");
+    
     private String apiUrl;
-    private String ticket;
-    private String csrfToken;
-    private CloseableHttpClient httpClient;
+    private final ProxmoxTransport transport;
+    private final ProxmoxAuth auth;
+    private final ProxmoxResponseCache cache;
+    private final RetryPolicy retryPolicy;
+    private final CircuitBreaker circuitBreaker;
+    private final RequestLimiter limiter;
+    private final ExecutorService asyncExecutor;
     private String nodeName; // Lưu tên node sau khi lấy được
     
     public ProxmoxAPIClient(String host, String user, String password, String realm) {
-        this.apiUrl = "https://" + host + ":8006/api2/json";
-        this.httpClient = createHttpClientAcceptingAllCerts();
-        authenticate(user, password, realm);
+        this(host, user, password, realm, new ProxmoxTransport.Settings());
+    }
+    
+    public ProxmoxAPIClient(String host, String user, String password, String realm,
+                            ProxmoxTransport.Settings settings) {
+        this(host, ProxmoxCredentials.password(user, password, realm), settings);
+    }
+    
+    public ProxmoxAPIClient(String host, ProxmoxCredentials credentials, ProxmoxTransport.Settings settings) {
+        this.apiUrl = "https://" + withDefaultPort(host) + "/api2/json";
+        this.transport = new ProxmoxTransport(settings);
+        this.asyncExecutor = createAsyncExecutor(transport.getSettings().maxInFlight);
+        
+        ProxmoxTransport.Settings s = transport.getSettings();
+        this.retryPolicy = new RetryPolicy(s.maxAttempts, s.retryBaseDelayMs, s.retryMaxDelayMs);
+        this.circuitBreaker = new CircuitBreaker(host, s.breakerFailureThreshold, s.breakerOpenMs, s.breakerMaxOpenMs);
+        this.limiter = new RequestLimiter(s);
+        this.auth = new ProxmoxAuth(credentials, apiUrl, transport);
+        this.cache = new ProxmoxResponseCache(
+                transport.getSettings().responseCacheMaxEntries,
+                transport.getSettings().responseCacheMaxBytes);
+        authenticate();
         
         // Sau khi đăng nhập thành công, lấy thông tin node
         this.nodeName = getFirstNodeName();
     }
     
-    // Tạo HTTP Client chấp nhận tất cả chứng chỉ SSL
-    private CloseableHttpClient createHttpClientAcceptingAllCerts() {
-        try {
-            // Tạo TrustStrategy chấp nhận tất cả certificate
-            TrustStrategy acceptingTrustStrategy = (X509Certificate[] chain, String authType) -> true;
-            
-            // Tạo SSLContext với trust strategy trên
-            SSLContext sslContext = SSLContextBuilder.create()
-                    .loadTrustMaterial(null, acceptingTrustStrategy)
-                    .build();
-            
-            // Tạo socket factory bỏ qua hostname verification
-            SSLConnectionSocketFactory socketFactory = new SSLConnectionSocketFactory(
-                    sslContext, 
-                    NoopHostnameVerifier.INSTANCE);
-            
-            // Tạo HttpClient với socket factory
-            return HttpClients.custom()
-                    .setSSLSocketFactory(socketFactory)
-                    .setConnectionTimeToLive(30, java.util.concurrent.TimeUnit.SECONDS)
-                    .build();
-            
-        } catch (Exception e) {
-            LoggerUtil.error("Lỗi tạo HTTP client với SSL", e);
-            return HttpClients.createDefault(); // fallback
-        }
+    // "pve1" → "pve1:8006"; giữ nguyên nếu đã có port ("127.0.0.1:18006", "[::1]:8006")
+    static String withDefaultPort(String host) {
+        String h = host.trim();
+        boolean hasPort = h.startsWith("[")
+                ? h.contains("]:")
+                : h.indexOf(':') > 0 && h.indexOf(':') == h.lastIndexOf(':');
+        return hasPort ? h : h + ":8006";
     }
     
-    private void authenticate(String user, String password, String realm) {
+    // Pool thread cho API async, số thread = số request đồng thời tối đa
+    private static ExecutorService createAsyncExecutor(int maxInFlight) {
+        int threads = Math.max(1, maxInFlight);
+        AtomicInteger seq = new AtomicInteger();
+        
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads, threads,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "proxmox-async-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+    
+    private void authenticate() {
         try {
-            HttpPost post = new HttpPost(apiUrl + "/access/ticket");
-            
-            String body = String.format("username=%s&password=%s&realm=%s", 
-                user, password, realm);
-            post.setEntity(new StringEntity(body));
-            post.setHeader("Content-Type", "application/x-www-form-urlencoded");
-            
-            LoggerUtil.info("Đang đăng nhập Proxmox: " + user + "@" + realm);
-            
-            CloseableHttpResponse response = httpClient.execute(post);
-            String jsonResponse = EntityUtils.toString(response.getEntity());
-            
-            // Log response để debug
-            LoggerUtil.debug("Proxmox auth response: " + jsonResponse);
-            
-            JsonObject json = JsonParser.parseString(jsonResponse).getAsJsonObject();
-            
-            if (!json.has("data")) {
-                String errorMsg = json.has("errors") ? 
-                    json.getAsJsonObject("errors").toString() : 
-                    "Không có data trong response";
-                throw new RuntimeException("Đăng nhập thất bại: " + errorMsg);
-            }
-            
-            JsonObject data = json.getAsJsonObject("data");
-            
-            this.ticket = data.get("ticket").getAsString();
-            this.csrfToken = data.get("CSRFPreventionToken").getAsString();
-            
-            LoggerUtil.info("Đăng nhập Proxmox thành công: " + user);
-            
+            auth.login();
         } catch (Exception e) {
             LoggerUtil.error("Lỗi đăng nhập Proxmox", e);
             throw new RuntimeException("Không thể xác thực với Proxmox: " + e.getMessage(), e);
@@ -107,24 +106,12 @@ public class ProxmoxAPIClient {
      */
     public String getFirstNodeName() {
         try {
-            String response = getRequest("/nodes");
-            LoggerUtil.debug("Nodes response: " + response);
+            List<String> nodes = getRequest("/nodes", ProxmoxJson.NODE_NAMES);
+            LOG.debug(() -> "Nodes: " + nodes);
             
-            JsonObject json = JsonParser.parseString(response).getAsJsonObject();
-            
-            if (!json.has("data")) {
-                LoggerUtil.error("Không có data trong response nodes");
-                return null;
-            }
-            
-            JsonArray data = json.getAsJsonArray("data");
-            
-            if (data != null && data.size() > 0) {
-                JsonObject firstNode = data.get(0).getAsJsonObject();
-                String nodeName = firstNode.get("node").getAsString();
-                String nodeStatus = firstNode.has("status") ? firstNode.get("status").getAsString() : "unknown";
-                
-                LoggerUtil.info("Tìm thấy node Proxmox: " + nodeName + " (status: " + nodeStatus + ")");
+            if (!nodes.isEmpty()) {
+                String nodeName = nodes.get(0);
+                LoggerUtil.info("Tìm thấy node Proxmox: " + nodeName);
                 return nodeName;
             } else {
                 LoggerUtil.error("Không tìm thấy node nào trong Proxmox");
@@ -134,7 +121,7 @@ public class ProxmoxAPIClient {
         } catch (IOException e) {
             LoggerUtil.error("Lỗi IO khi lấy danh sách node", e);
             return null;
-        } catch (JsonSyntaxException e) {
+        } catch (JsonParseException | IllegalStateException e) {
             LoggerUtil.error("Lỗi parse JSON khi lấy danh sách node", e);
             return null;
         } catch (Exception e) {
@@ -149,23 +136,7 @@ public class ProxmoxAPIClient {
      */
     public String[] getAllNodeNames() {
         try {
-            String response = getRequest("/nodes");
-            JsonObject json = JsonParser.parseString(response).getAsJsonObject();
-            
-            if (!json.has("data")) {
-                return new String[0];
-            }
-            
-            JsonArray data = json.getAsJsonArray("data");
-            String[] nodeNames = new String[data.size()];
-            
-            for (int i = 0; i < data.size(); i++) {
-                JsonObject node = data.get(i).getAsJsonObject();
-                nodeNames[i] = node.get("node").getAsString();
-            }
-            
-            return nodeNames;
-            
+            return getRequest("/nodes", ProxmoxJson.NODE_NAMES).toArray(new String[0]);
         } catch (Exception e) {
             LoggerUtil.error("Lỗi lấy danh sách node", e);
             return new String[0];
@@ -195,48 +166,220 @@ public class ProxmoxAPIClient {
     }
     
     public String getRequest(String endpoint) throws IOException {
+        return new String(cachedGet(endpoint, 0), StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * GET với timeout riêng cho request này
+     * @param timeoutMs Timeout đọc response (ms)
+     */
+    public String getRequest(String endpoint, int timeoutMs) throws IOException {
+        return new String(cachedGet(endpoint, timeoutMs), StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * GET và decode streaming thẳng vào model
+     * @param decoder Decoder đọc từ JsonReader (xem {@link ProxmoxJson})
+     */
+    public <T> T getRequest(String endpoint, JsonDecoder<T> decoder) throws IOException {
+        return getRequest(endpoint, 0, decoder);
+    }
+    
+    public <T> T getRequest(String endpoint, int timeoutMs, JsonDecoder<T> decoder) throws IOException {
+        // Endpoint được cache: decode từ byte[] đã lưu; còn lại đọc thẳng từ socket
+        if (cache.isCacheable(endpoint)) {
+            return ProxmoxTransport.decode(cachedGet(endpoint, timeoutMs), decoder);
+        }
+        return send(newGet(endpoint, timeoutMs), false, ProxmoxTransport.streaming(decoder));
+    }
+    
+    private byte[] cachedGet(String endpoint, int timeoutMs) throws IOException {
+        return cache.get(endpoint, () -> send(newGet(endpoint, timeoutMs), false, ProxmoxTransport.BYTE_BODY));
+    }
+    
+    private HttpGet newGet(String endpoint, int timeoutMs) {
         HttpGet get = new HttpGet(apiUrl + endpoint);
-        get.setHeader("Cookie", "PVEAuthCookie=" + ticket);
-        
-        CloseableHttpResponse response = httpClient.execute(get);
-        return EntityUtils.toString(response.getEntity());
+        if (timeoutMs > 0) {
+            get.setConfig(transport.requestConfigWithTimeout(timeoutMs));
+        }
+        return get;
     }
     
     public String postRequest(String endpoint, JsonObject data) throws IOException {
         HttpPost post = new HttpPost(apiUrl + endpoint);
-        post.setHeader("Cookie", "PVEAuthCookie=" + ticket);
-        post.setHeader("CSRFPreventionToken", csrfToken);
         post.setHeader("Content-Type", "application/json");
         
         if (data != null) {
-            post.setEntity(new StringEntity(data.toString()));
+            post.setEntity(new StringEntity(data.toString(), StandardCharsets.UTF_8));
         }
         
-        CloseableHttpResponse response = httpClient.execute(post);
-        return EntityUtils.toString(response.getEntity());
+        return write(endpoint, post);
     }
     
     public String putRequest(String endpoint, JsonObject data) throws IOException {
         HttpPut put = new HttpPut(apiUrl + endpoint);
-        put.setHeader("Cookie", "PVEAuthCookie=" + ticket);
-        put.setHeader("CSRFPreventionToken", csrfToken);
         put.setHeader("Content-Type", "application/json");
         
         if (data != null) {
-            put.setEntity(new StringEntity(data.toString()));
+            put.setEntity(new StringEntity(data.toString(), StandardCharsets.UTF_8));
         }
         
-        CloseableHttpResponse response = httpClient.execute(put);
-        return EntityUtils.toString(response.getEntity());
+        return write(endpoint, put);
     }
     
     public String deleteRequest(String endpoint) throws IOException {
-        HttpDelete delete = new HttpDelete(apiUrl + endpoint);
-        delete.setHeader("Cookie", "PVEAuthCookie=" + ticket);
-        delete.setHeader("CSRFPreventionToken", csrfToken);
+        return write(endpoint, new HttpDelete(apiUrl + endpoint));
+    }
+    
+    // Request ghi luôn làm cũ cache, kể cả khi lỗi (Proxmox có thể đã tạo task)
+    private String write(String endpoint, HttpRequestBase request) throws IOException {
+        try {
+            return send(request, true, ProxmoxTransport.STRING_BODY);
+        } finally {
+            cache.onWrite(endpoint);
+        }
+    }
+    
+    // Gửi request với retry theo RetryPolicy (GET: lỗi tạm thời, ghi: chỉ lỗi kết nối)
+    private <T> T send(HttpRequestBase request, boolean mutating, ResponseHandler<T> handler) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return sendOnce(request, mutating, handler);
+            } catch (IOException e) {
+                if (isProbeTimeout(request, e) || !retryPolicy.shouldRetry(e, mutating, attempt)) throw e;
+                
+                long delay = retryPolicy.backoffMs(attempt);
+                LoggerUtil.warn("Proxmox " + request.getMethod() + " " + request.getURI().getPath()
+                        + " lỗi (" + e.getMessage() + "), thử lại sau " + delay + "ms");
+                sleepBeforeRetry(delay);
+                request.reset();
+            }
+        }
+    }
+    
+    // Một lần gửi qua limiter + circuit breaker; nếu ticket bị 401 thì đăng nhập lại (single-flight) và gửi lại một lần
+    private <T> T sendOnce(HttpRequestBase request, boolean mutating, ResponseHandler<T> handler) throws IOException {
+        // Circuit mở thì từ chối ngay, không xếp hàng chờ limiter
+        CircuitBreaker.Permit permit = circuitBreaker.acquire();
+        try {
+            limiter.acquire(mutating);
+        } catch (IOException e) {
+            circuitBreaker.onIgnored(permit);
+            throw e;
+        }
         
-        CloseableHttpResponse response = httpClient.execute(delete);
-        return EntityUtils.toString(response.getEntity());
+        long start = System.nanoTime();
+        RequestLimiter.Outcome outcome = RequestLimiter.Outcome.IGNORE;
+        try {
+            int generation = auth.apply(request, mutating);
+            T result;
+            try {
+                result = transport.execute(request, handler);
+            } catch (ProxmoxApiException e) {
+                if (e.getStatusCode() != 401 || auth.isApiToken()) throw e;
+                
+                LoggerUtil.warn("Proxmox 401, đăng nhập lại: " + request.getURI().getPath());
+                auth.onUnauthorized(generation);
+                auth.apply(request, mutating);
+                result = transport.execute(request, handler);
+            }
+            circuitBreaker.onSuccess(permit);
+            outcome = RequestLimiter.Outcome.SUCCESS;
+            return result;
+            
+        } catch (IOException e) {
+            if (RetryPolicy.isHostFailure(e) && !isProbeTimeout(request, e)) {
+                circuitBreaker.onFailure(permit, e);
+                outcome = RequestLimiter.Outcome.OVERLOAD;
+            } else if (e instanceof ProxmoxApiException || e instanceof ProxmoxDecodeException) {
+                circuitBreaker.onSuccess(permit);
+                outcome = RequestLimiter.Outcome.SUCCESS;
+            } else {
+                circuitBreaker.onIgnored(permit);
+            }
+            throw e;
+            
+        } catch (RuntimeException | Error e) {
+            // Lỗi ngoài dự kiến (decoder, auth...) vẫn phải trả lượt thăm dò HALF_OPEN
+            circuitBreaker.onIgnored(permit);
+            throw e;
+            
+        } finally {
+            long nanos = System.nanoTime() - start;
+            limiter.release(mutating, nanos, outcome);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Proxmox request", "method", request.getMethod(), "endpoint", request.getURI().getPath(),
+                        "durationMs", nanos / 1_000_000, "outcome", outcome);
+            }
+        }
+    }
+    
+    // Timeout của request có timeout riêng (guest agent...) là chủ ý: không retry, không tính là host chết
+    private static boolean isProbeTimeout(HttpRequestBase request, IOException e) {
+        return request.getConfig() != null && e instanceof SocketTimeoutException;
+    }
+    
+    private static void sleepBeforeRetry(long delayMs) throws IOException {
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Bị ngắt khi chờ retry");
+        }
+    }
+    
+    // =========================================================
+    // ASYNC API
+    // =========================================================
+    
+    @FunctionalInterface
+    private interface IORequest<T> {
+        T call() throws IOException;
+    }
+    
+    private <T> CompletableFuture<T> submit(IORequest<T> request) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return request.call();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, asyncExecutor);
+    }
+    
+    public CompletableFuture<String> getAsync(String endpoint) {
+        return submit(() -> getRequest(endpoint));
+    }
+    
+    public CompletableFuture<String> getAsync(String endpoint, int timeoutMs) {
+        return submit(() -> getRequest(endpoint, timeoutMs));
+    }
+    
+    public <T> CompletableFuture<T> getAsync(String endpoint, JsonDecoder<T> decoder) {
+        return submit(() -> getRequest(endpoint, decoder));
+    }
+    
+    public <T> CompletableFuture<T> getAsync(String endpoint, int timeoutMs, JsonDecoder<T> decoder) {
+        return submit(() -> getRequest(endpoint, timeoutMs, decoder));
+    }
+    
+    public CompletableFuture<String> postAsync(String endpoint, JsonObject data) {
+        return submit(() -> postRequest(endpoint, data));
+    }
+    
+    public CompletableFuture<String> putAsync(String endpoint, JsonObject data) {
+        return submit(() -> putRequest(endpoint, data));
+    }
+    
+    public CompletableFuture<String> deleteAsync(String endpoint) {
+        return submit(() -> deleteRequest(endpoint));
+    }
+    
+    /**
+     * Executor dùng cho các request async, giới hạn bởi maxInFlight
+     */
+    public Executor getAsyncExecutor() {
+        return asyncExecutor;
     }
     
     /**
@@ -256,13 +399,50 @@ public class ProxmoxAPIClient {
         }
     }
     
+    /**
+     * Thống kê connection pool (leased / available / pending)
+     * @return PoolStats hiện tại
+     */
+    public PoolStats getPoolStats() {
+        return transport.getPoolStats();
+    }
+    
+    public String describePoolStats() {
+        return transport.describePoolStats();
+    }
+    
+    /**
+     * Trạng thái circuit breaker của host (CLOSED / OPEN / HALF_OPEN)
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+    
+    /**
+     * Limiter tải tới pveproxy (limit hiện tại, số request đang chờ)
+     */
+    public RequestLimiter getRequestLimiter() {
+        return limiter;
+    }
+    
+    public String describeLimiterStats() {
+        return limiter.describe();
+    }
+    
+    /**
+     * Cache response GET (hit/miss, invalidate thủ công)
+     */
+    public ProxmoxResponseCache getResponseCache() {
+        return cache;
+    }
+    
+    public String describeCacheStats() {
+        return cache.describeStats();
+    }
+    
     public void close() {
-        try {
-            if (httpClient != null) {
-                httpClient.close();
-            }
-        } catch (IOException e) {
-            LoggerUtil.error("Lỗi đóng HTTP client", e);
-        }
+        cache.clear();
+        asyncExecutor.shutdownNow();
+        transport.close();
     }
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.vmmanager.services.proxmox;
+
+import java.io.IOException;
+
+/**
+ * Lỗi HTTP trả về từ Proxmox API (status >= 300).
+ * Giữ lại status code để tầng trên phân loại lỗi (401, 5xx...).
+ */
+public class ProxmoxApiException extends IOException {
+
+    private final int statusCode;
+    private final String responseBody;
+
+    public ProxmoxApiException(int statusCode, String reason, String responseBody) {
+        super("HTTP " + statusCode + (reason != null ? " " + reason : ""));
+        this.statusCode = statusCode;
+        this.responseBody = responseBody;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getResponseBody() {
+        return responseBody;
+    }
+}
@@ -0,0 +1,197 @@
+package com.vmmanager.services.proxmox;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.message.BasicNameValuePair;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.vmmanager.utils.AppLogger;
+import com.vmmanager.utils.LoggerUtil;
+
+/**
+ * Quản lý vòng đời ticket PVE (hết hạn sau 2 giờ).
+ *
+ * - Ticket được gia hạn trước khi hết hạn (sau {@link #RENEW_AFTER_MS})
+ * - Khi nhiều request cùng nhận 401, chỉ một request đăng nhập lại;
+ *   các request khác thấy generation đã đổi và dùng luôn ticket mới
+ * - Với API token chỉ cần gắn header, không có ticket
+ */
+class ProxmoxAuth {
+
+    private static final AppLogger LOG = LoggerUtil.getLogger("proxmox.auth");
+
+    static final long RENEW_AFTER_MS = 90 * 60 * 1000L;
+    static final long TICKET_LIFETIME_MS = 2 * 60 * 60 * 1000L;
+
+    private static final class Session {
+        final String ticket;
+        final String csrfToken;
+        final long issuedAt;
+        final int generation;
+
+        Session(String ticket, String csrfToken, int generation) {
+            this.ticket = ticket;
+            this.csrfToken = csrfToken;
+            this.issuedAt = System.currentTimeMillis();
+            this.generation = generation;
+        }
+
+        long age() {
+            return System.currentTimeMillis() - issuedAt;
+        }
+    }
+
+    private final ProxmoxCredentials credentials;
+    private final String apiUrl;
+    private final ProxmoxTransport transport;
+    private final Object lock = new Object();
+    private volatile Session session;
+
+    private final AtomicLong logins = new AtomicLong();
+    private final AtomicLong renewals = new AtomicLong();
+
+    ProxmoxAuth(ProxmoxCredentials credentials, String apiUrl, ProxmoxTransport transport) {
+        this.credentials = credentials;
+        this.apiUrl = apiUrl;
+        this.transport = transport;
+    }
+
+    boolean isApiToken() {
+        return credentials.isApiToken();
+    }
+
+    /**
+     * Đăng nhập lần đầu. Với API token không cần gọi /access/ticket.
+     */
+    void login() throws IOException {
+        if (credentials.isApiToken()) {
+            LoggerUtil.info("Dùng Proxmox API token: " + credentials.getTokenId());
+            return;
+        }
+        synchronized (lock) {
+            session = passwordLogin(session != null ? session.generation + 1 : 1);
+        }
+    }
+
+    /**
+     * Gắn header xác thực vào request, gia hạn ticket nếu sắp hết hạn.
+     * @return generation của ticket đã dùng (truyền lại cho {@link #onUnauthorized})
+     */
+    int apply(HttpRequestBase request, boolean mutating) throws IOException {
+        if (credentials.isApiToken()) {
+            request.setHeader("Authorization", credentials.authorizationHeader());
+            return 0;
+        }
+
+        Session s = session;
+        if (s == null || s.age() > RENEW_AFTER_MS) {
+            s = refresh(s != null ? s.generation : 0);
+        }
+
+        request.setHeader("Cookie", "PVEAuthCookie=" + s.ticket);
+        if (mutating) {
+            request.setHeader("CSRFPreventionToken", s.csrfToken);
+        }
+        return s.generation;
+    }
+
+    /**
+     * Request dùng ticket {@code generation} bị 401 → đăng nhập lại (single-flight).
+     */
+    void onUnauthorized(int generation) throws IOException {
+        if (!credentials.isApiToken()) {
+            refresh(generation);
+        }
+    }
+
+    private Session refresh(int seenGeneration) throws IOException {
+        synchronized (lock) {
+            Session current = session;
+
+            // Thread khác đã gia hạn trong lúc chờ lock
+            if (current != null && current.generation != seenGeneration && current.age() < RENEW_AFTER_MS) {
+                return current;
+            }
+
+            int next = (current != null ? current.generation : 0) + 1;
+            Session renewed = null;
+
+            if (current != null && current.age() < TICKET_LIFETIME_MS) {
+                try {
+                    renewed = requestTicket(fullUserName(), current.ticket, null, next);
+                    renewals.incrementAndGet();
+                    LoggerUtil.info("Gia hạn ticket Proxmox: " + credentials.describe());
+                } catch (IOException e) {
+                    LoggerUtil.warn("Gia hạn ticket thất bại, đăng nhập lại: " + e.getMessage());
+                }
+            }
+
+            if (renewed == null) {
+                renewed = passwordLogin(next);
+            }
+
+            session = renewed;
+            return renewed;
+        }
+    }
+
+    private Session passwordLogin(int generation) throws IOException {
+        LoggerUtil.info("Đang đăng nhập Proxmox: " + credentials.describe());
+        Session s = requestTicket(credentials.getUser(), credentials.getPassword(), credentials.getRealm(), generation);
+        logins.incrementAndGet();
+        LoggerUtil.info("Đăng nhập Proxmox thành công: " + credentials.getUser());
+        return s;
+    }
+
+    // Gia hạn: gửi ticket hiện tại làm password
+    private Session requestTicket(String username, String password, String realm, int generation) throws IOException {
+        HttpPost post = new HttpPost(apiUrl + "/access/ticket");
+
+        List<NameValuePair> form = new ArrayList<>();
+        form.add(new BasicNameValuePair("username", username));
+        form.add(new BasicNameValuePair("password", password));
+        if (realm != null) form.add(new BasicNameValuePair("realm", realm));
+        post.setEntity(new UrlEncodedFormEntity(form, StandardCharsets.UTF_8));
+
+        String jsonResponse = transport.execute(post, ProxmoxTransport.STRING_BODY);
+
+        // Không log nguyên body: chứa ticket + CSRF token
+        LOG.debug(() -> "Proxmox auth response: " + jsonResponse.length() + " bytes");
+
+        JsonObject json = JsonParser.parseString(jsonResponse).getAsJsonObject();
+
+        if (!json.has("data") || !json.get("data").isJsonObject()) {
+            String errorMsg = json.has("errors") ?
+                json.get("errors").toString() :
+                "Không có data trong response";
+            throw new IOException("Đăng nhập thất bại: " + errorMsg);
+        }
+
+        JsonObject data = json.getAsJsonObject("data");
+
+        return new Session(
+                data.get("ticket").getAsString(),
+                data.get("CSRFPreventionToken").getAsString(),
+                generation);
+    }
+
+    private String fullUserName() {
+        String user = credentials.getUser();
+        return user.contains("@") ? user : user + "@" + credentials.getRealm();
+    }
+
+    long getLoginCount() {
+        return logins.get();
+    }
+
+    long getRenewalCount() {
+        return renewals.get();
+    }
+}
@@ -0,0 +1,58 @@
+package com.vmmanager.services.proxmox;
+
+/**
+ * Thông tin đăng nhập Proxmox: user/password (ticket) hoặc API token.
+ *
+ * API token có dạng USER@REALM!TOKENID, gửi qua header
+ * "Authorization: PVEAPIToken=USER@REALM!TOKENID=SECRET" nên không cần ticket/CSRF.
+ */
+public final class ProxmoxCredentials {
+
+    private final String user;
+    private final String password;
+    private final String realm;
+    private final String tokenId;
+    private final String tokenSecret;
+
+    private ProxmoxCredentials(String user, String password, String realm,
+                               String tokenId, String tokenSecret) {
+        this.user = user;
+        this.password = password;
+        this.realm = realm;
+        this.tokenId = tokenId;
+        this.tokenSecret = tokenSecret;
+    }
+
+    public static ProxmoxCredentials password(String user, String password, String realm) {
+        return new ProxmoxCredentials(user, password, realm != null ? realm : "pam", null, null);
+    }
+
+    /**
+     * @param tokenId Dạng root@pam!iac
+     * @param secret  UUID secret của token
+     */
+    public static ProxmoxCredentials apiToken(String tokenId, String secret) {
+        return new ProxmoxCredentials(null, null, null, tokenId, secret);
+    }
+
+    public boolean isApiToken() {
+        return tokenId != null;
+    }
+
+    public String getUser() { return user; }
+
+    public String getPassword() { return password; }
+
+    public String getRealm() { return realm; }
+
+    public String getTokenId() { return tokenId; }
+
+    String authorizationHeader() {
+        return "PVEAPIToken=" + tokenId + "=" + tokenSecret;
+    }
+
+    /** Tên hiển thị trong log, không chứa bí mật */
+    public String describe() {
+        return isApiToken() ? "token " + tokenId : user + "@" + realm;
+    }
+}
@@ -0,0 +1,14 @@
+package com.vmmanager.services.proxmox;
+
+import java.io.IOException;
+
+/**
+ * Response 2xx nhưng body không đúng định dạng decoder mong đợi.
+ * Host vẫn trả lời bình thường nên không retry và không tính vào circuit breaker.
+ */
+public class ProxmoxDecodeException extends IOException {
+
+    public ProxmoxDecodeException(Throwable cause) {
+        super("Response Proxmox không đúng định dạng: " + cause.getMessage(), cause);
+    }
+}
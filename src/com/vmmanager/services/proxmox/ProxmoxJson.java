@@ -0,0 +1,427 @@
+package com.vmmanager.services.proxmox;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.vmmanager.models.ClusterInventory;
+import com.vmmanager.models.ProxmoxVM;
+import com.vmmanager.models.enums.VMStatus;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decoder streaming cho các response Proxmox mà app dùng.
+ *
+ * Mọi response có dạng {"data": ...}; decoder đọc thẳng từ {@link JsonReader}
+ * vào model, bỏ qua các trường không dùng bằng skipValue() nên không tạo
+ * String body hay cây JsonObject trung gian.
+ */
+public final class ProxmoxJson {
+
+    private static final long GB = 1024L * 1024 * 1024;
+
+    private ProxmoxJson() {
+    }
+
+    // =========================================================
+    // DECODERS
+    // =========================================================
+
+    /** /cluster/resources → VM, template, storage, node */
+    public static final JsonDecoder<ClusterInventory> INVENTORY =
+            r -> orElse(readData(r, ProxmoxJson::readInventory), new ClusterInventory());
+
+    /** /nodes → tên các node */
+    public static final JsonDecoder<List<String>> NODE_NAMES =
+            r -> orElse(readData(r, a -> readStringField(a, "node", null, null)), new ArrayList<>());
+
+    /** /nodes/{node}/storage → tên storage */
+    public static final JsonDecoder<List<String>> STORAGE_NAMES =
+            r -> orElse(readData(r, a -> readStringField(a, "storage", null, null)), new ArrayList<>());
+
+    /** /nodes/{node}/network → tên các bridge */
+    public static final JsonDecoder<List<String>> BRIDGE_NAMES =
+            r -> orElse(readData(r, a -> readStringField(a, "iface", "type", "bridge")), new ArrayList<>());
+
+    /** /nodes/{node}/qemu/{vmid}/agent/network-get-interfaces → IPv4 đầu tiên (không phải loopback) */
+    public static final JsonDecoder<String> AGENT_IP =
+            r -> readData(r, ProxmoxJson::readAgentData);
+
+    /** /nodes/{node}/tasks/{upid}/status → exitstatus khi task đã dừng, null khi còn chạy */
+    public static final JsonDecoder<String> TASK_EXIT_STATUS =
+            r -> readData(r, ProxmoxJson::readTaskStatus);
+
+    /** /cluster/tasks → upid → exit status của các task đã kết thúc */
+    public static final JsonDecoder<Map<String, String>> FINISHED_TASKS =
+            r -> orElse(readData(r, ProxmoxJson::readFinishedTasks), new HashMap<>());
+
+    /** /nodes/{node}/qemu/{vmid}/status/current → trạng thái một VM */
+    public static JsonDecoder<ProxmoxVM> vmStatus(String node) {
+        return r -> readData(r, a -> {
+            ProxmoxVM vm = new ProxmoxVM();
+            vm.setNode(node);
+            vm.setName("unknown");
+            readQemuObject(a, vm);
+            return vm;
+        });
+    }
+
+    /**
+     * Lấy UPID từ response của POST/DELETE tạo task ({"data":"UPID:..."}).
+     * @return null nếu response không chứa UPID
+     */
+    public static String readUpid(String body) {
+        if (body == null || body.isBlank()) return null;
+        try (JsonReader reader = new JsonReader(new StringReader(body))) {
+            String upid = readData(reader, ProxmoxJson::nextString);
+            return upid != null && upid.startsWith("UPID:") ? upid : null;
+        } catch (IOException | IllegalStateException e) {
+            return null;
+        }
+    }
+
+    /** /nodes/{node}/qemu → mọi VM (kể cả template) */
+    public static JsonDecoder<List<ProxmoxVM>> qemuList(String node) {
+        return r -> orElse(readData(r, a -> readQemuList(a, node, false)), new ArrayList<>());
+    }
+
+    /** /nodes/{node}/qemu → chỉ template */
+    public static JsonDecoder<List<ProxmoxVM>> templates(String node) {
+        return r -> orElse(readData(r, a -> readQemuList(a, node, true)), new ArrayList<>());
+    }
+
+    // =========================================================
+    // ENVELOPE
+    // =========================================================
+
+    /**
+     * Đọc giá trị của trường "data", bỏ qua các trường khác.
+     * @return null nếu không có data
+     */
+    public static <T> T readData(JsonReader reader, JsonDecoder<T> dataDecoder) throws IOException {
+        T result = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("data".equals(reader.nextName()) && reader.peek() != JsonToken.NULL) {
+                result = dataDecoder.decode(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return result;
+    }
+
+    // Bytes → GB làm tròn lên: VM 512 MB hiện 1 GB, 1.5 GB hiện 2 GB (không hiện 0 / 1)
+    private static int toGB(long bytes) {
+        return (int) ((bytes + GB - 1) / GB);
+    }
+
+    private static <T> T orElse(T value, T fallback) {
+        return value != null ? value : fallback;
+    }
+
+    // =========================================================
+    // CLUSTER RESOURCES
+    // =========================================================
+
+    private static ClusterInventory readInventory(JsonReader r) throws IOException {
+        ClusterInventory inventory = new ClusterInventory();
+
+        r.beginArray();
+        while (r.hasNext()) {
+            String type = null, node = null, name = null, status = null, storage = null;
+            int vmid = -1, maxcpu = 0;
+            long maxmem = 0, maxdisk = 0, uptime = 0;
+            boolean template = false;
+
+            r.beginObject();
+            while (r.hasNext()) {
+                switch (r.nextName()) {
+                    case "type" -> type = nextString(r);
+                    case "node" -> node = nextString(r);
+                    case "name" -> name = nextString(r);
+                    case "status" -> status = nextString(r);
+                    case "storage" -> storage = nextString(r);
+                    case "vmid" -> vmid = (int) nextLong(r);
+                    case "maxcpu" -> maxcpu = (int) nextLong(r);
+                    case "maxmem" -> maxmem = nextLong(r);
+                    case "maxdisk" -> maxdisk = nextLong(r);
+                    case "uptime" -> uptime = nextLong(r);
+                    case "template" -> template = nextLong(r) == 1;
+                    default -> r.skipValue();
+                }
+            }
+            r.endObject();
+
+            if (type == null) continue;
+
+            switch (type) {
+                case "node" -> {
+                    if (node != null) inventory.addNode(node);
+                }
+                case "storage" -> {
+                    if (node != null && storage != null) inventory.addStorage(node, storage);
+                }
+                case "qemu" -> {
+                    ProxmoxVM vm = new ProxmoxVM();
+                    vm.setVmid(vmid);
+                    vm.setName(name != null ? name : "unknown");
+                    vm.setNode(node);
+                    vm.setCpuCores(maxcpu);
+                    vm.setMemoryGB(toGB(maxmem));
+                    vm.setDiskGB(toGB(maxdisk));
+                    vm.setStatus(parseStatus(status));
+                    vm.setUptime(uptime);
+
+                    if (template) inventory.addTemplate(vm);
+                    else inventory.addVM(vm);
+                }
+                default -> {
+                    // lxc, sdn, pool... app không quản lý
+                }
+            }
+        }
+        r.endArray();
+
+        return inventory;
+    }
+
+    // =========================================================
+    // QEMU LIST
+    // =========================================================
+
+    private static List<ProxmoxVM> readQemuList(JsonReader r, String node, boolean templatesOnly) throws IOException {
+        List<ProxmoxVM> list = new ArrayList<>();
+
+        r.beginArray();
+        while (r.hasNext()) {
+            ProxmoxVM vm = new ProxmoxVM();
+            vm.setNode(node);
+            vm.setName("unknown");
+
+            boolean template = readQemuObject(r, vm);
+
+            if (!templatesOnly || template) list.add(vm);
+        }
+        r.endArray();
+
+        return list;
+    }
+
+    // Đọc một object qemu vào vm, trả về true nếu là template
+    private static boolean readQemuObject(JsonReader r, ProxmoxVM vm) throws IOException {
+        String status = "stopped";
+        boolean template = false;
+
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "vmid" -> vm.setVmid((int) nextLong(r));
+                case "name" -> vm.setName(nextString(r));
+                case "cpus" -> vm.setCpuCores((int) nextLong(r));
+                case "maxmem" -> vm.setMemoryGB(toGB(nextLong(r)));
+                case "maxdisk" -> vm.setDiskGB(toGB(nextLong(r)));
+                case "status" -> status = nextString(r);
+                case "uptime" -> vm.setUptime(nextLong(r));
+                case "template" -> template = nextLong(r) == 1;
+                default -> r.skipValue();
+            }
+        }
+        r.endObject();
+
+        vm.setStatus(parseStatus(status));
+        return template;
+    }
+
+    // =========================================================
+    // TASKS
+    // =========================================================
+
+    private static String readTaskStatus(JsonReader r) throws IOException {
+        String status = null, exitStatus = null;
+
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "status" -> status = nextString(r);
+                case "exitstatus" -> exitStatus = nextString(r);
+                default -> r.skipValue();
+            }
+        }
+        r.endObject();
+
+        if (!"stopped".equals(status)) return null;
+        return exitStatus != null ? exitStatus : "unknown";
+    }
+
+    private static Map<String, String> readFinishedTasks(JsonReader r) throws IOException {
+        Map<String, String> finished = new HashMap<>();
+
+        r.beginArray();
+        while (r.hasNext()) {
+            String upid = null, status = null;
+            boolean ended = false;
+
+            r.beginObject();
+            while (r.hasNext()) {
+                switch (r.nextName()) {
+                    case "upid" -> upid = nextString(r);
+                    case "status" -> status = nextString(r);
+                    case "endtime" -> ended = nextLong(r) > 0;
+                    default -> r.skipValue();
+                }
+            }
+            r.endObject();
+
+            if (upid != null && ended) finished.put(upid, status != null ? status : "unknown");
+        }
+        r.endArray();
+
+        return finished;
+    }
+
+    // =========================================================
+    // SIMPLE LISTS
+    // =========================================================
+
+    // Lấy trường `field` của mỗi phần tử, tuỳ chọn lọc theo filterField == filterValue
+    private static List<String> readStringField(JsonReader r, String field,
+                                                String filterField, String filterValue) throws IOException {
+        List<String> list = new ArrayList<>();
+
+        r.beginArray();
+        while (r.hasNext()) {
+            String value = null;
+            boolean matches = filterField == null;
+
+            r.beginObject();
+            while (r.hasNext()) {
+                String name = r.nextName();
+                if (name.equals(field)) {
+                    value = nextString(r);
+                } else if (name.equals(filterField)) {
+                    matches = filterValue.equals(nextString(r));
+                } else {
+                    r.skipValue();
+                }
+            }
+            r.endObject();
+
+            if (matches && value != null) list.add(value);
+        }
+        r.endArray();
+
+        return list;
+    }
+
+    // =========================================================
+    // GUEST AGENT
+    // =========================================================
+
+    private static String readAgentData(JsonReader r) throws IOException {
+        String found = null;
+
+        r.beginObject();
+        while (r.hasNext()) {
+            if (!"result".equals(r.nextName()) || r.peek() != JsonToken.BEGIN_ARRAY) {
+                r.skipValue();
+                continue;
+            }
+
+            r.beginArray();
+            while (r.hasNext()) {
+                r.beginObject();
+                while (r.hasNext()) {
+                    if (!"ip-addresses".equals(r.nextName()) || r.peek() != JsonToken.BEGIN_ARRAY) {
+                        r.skipValue();
+                        continue;
+                    }
+
+                    r.beginArray();
+                    while (r.hasNext()) {
+                        String ip = null, type = null;
+
+                        r.beginObject();
+                        while (r.hasNext()) {
+                            switch (r.nextName()) {
+                                case "ip-address" -> ip = nextString(r);
+                                case "ip-address-type" -> type = nextString(r);
+                                default -> r.skipValue();
+                            }
+                        }
+                        r.endObject();
+
+                        if (found == null && ip != null && "ipv4".equals(type) && !ip.startsWith("127.")) {
+                            found = ip;
+                        }
+                    }
+                    r.endArray();
+                }
+                r.endObject();
+            }
+            r.endArray();
+        }
+        r.endObject();
+
+        return found;
+    }
+
+    // =========================================================
+    // HELPERS
+    // =========================================================
+
+    public static VMStatus parseStatus(String s) {
+        if (s == null) return VMStatus.STOPPED;
+        return switch (s) {
+            case "running" -> VMStatus.RUNNING;
+            case "stopped" -> VMStatus.STOPPED;
+            default -> VMStatus.PENDING;
+        };
+    }
+
+    private static String nextString(JsonReader r) throws IOException {
+        if (r.peek() == JsonToken.NULL) {
+            r.nextNull();
+            return null;
+        }
+        if (r.peek() == JsonToken.BEGIN_OBJECT || r.peek() == JsonToken.BEGIN_ARRAY) {
+            r.skipValue();
+            return null;
+        }
+        return r.nextString();
+    }
+
+    // Proxmox đôi khi trả số dạng string hoặc số thực → chấp nhận cả hai
+    private static long nextLong(JsonReader r) throws IOException {
+        JsonToken t = r.peek();
+
+        if (t == JsonToken.NUMBER) {
+            try {
+                return r.nextLong();
+            } catch (NumberFormatException e) {
+                return (long) r.nextDouble();
+            }
+        }
+
+        if (t == JsonToken.STRING) {
+            String s = r.nextString();
+            try {
+                return Long.parseLong(s);
+            } catch (NumberFormatException e) {
+                try {
+                    return (long) Double.parseDouble(s);
+                } catch (NumberFormatException ignored) {
+                    return 0;
+                }
+            }
+        }
+
+        r.skipValue();
+        return 0;
+    }
+}
@@ -0,0 +1,279 @@
+package com.vmmanager.services.proxmox;
+
+import com.vmmanager.utils.LoggerUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Cache response GET của các endpoint chỉ đọc, theo TTL của từng endpoint.
+ *
+ * - Lưu body dạng byte[] nên cả getRequest(String) lẫn decoder streaming dùng chung
+ * - Giới hạn số entry và tổng số byte, entry ít dùng nhất bị bỏ trước (LRU)
+ * - Nhiều thread GET cùng endpoint cùng lúc chỉ tạo một request (single-flight)
+ * - Request ghi (POST/PUT/DELETE) xóa các entry có {@link Policy#invalidateOnWrite}
+ */
+public class ProxmoxResponseCache {
+
+    /** Loader thực hiện GET thật khi cache miss */
+    @FunctionalInterface
+    interface Loader {
+        byte[] load() throws IOException;
+    }
+
+    /**
+     * TTL cho một nhóm endpoint.
+     */
+    public static final class Policy {
+        final Pattern pattern;
+        final long ttlMs;
+        final boolean invalidateOnWrite;
+
+        public Policy(String regex, long ttlMs, boolean invalidateOnWrite) {
+            this.pattern = Pattern.compile(regex);
+            this.ttlMs = ttlMs;
+            this.invalidateOnWrite = invalidateOnWrite;
+        }
+
+        boolean matches(String endpoint) {
+            return pattern.matcher(endpoint).matches();
+        }
+    }
+
+    /**
+     * TTL mặc định: danh sách node/storage/bridge gần như không đổi,
+     * danh sách VM và /cluster/resources ngắn để không che thay đổi từ ngoài.
+     */
+    public static List<Policy> defaultPolicies() {
+        List<Policy> policies = new ArrayList<>();
+        policies.add(new Policy("/version", 300_000, false));
+        policies.add(new Policy("/nodes", 60_000, false));
+        policies.add(new Policy("/nodes/[^/]+/storage", 60_000, false));
+        policies.add(new Policy("/nodes/[^/]+/network", 60_000, false));
+        policies.add(new Policy("/nodes/[^/]+/qemu", 5_000, true));
+        policies.add(new Policy("/cluster/resources", 2_000, true));
+        return policies;
+    }
+
+    private static final class Entry {
+        final byte[] body;
+        final long expiresAt;
+        final Policy policy;
+
+        Entry(byte[] body, long expiresAt, Policy policy) {
+            this.body = body;
+            this.expiresAt = expiresAt;
+            this.policy = policy;
+        }
+    }
+
+    private final List<Policy> policies;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final Map<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    // Truy cập qua synchronized (this), accessOrder = true → thứ tự LRU
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+    // Tăng sau mỗi request ghi; GET bắt đầu trước đó không được ghi đè entry mới bị xóa
+    private long writeEpoch;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ProxmoxResponseCache(int maxEntries, long maxBytes) {
+        this(defaultPolicies(), maxEntries, maxBytes);
+    }
+
+    public ProxmoxResponseCache(List<Policy> policies, int maxEntries, long maxBytes) {
+        this.policies = new ArrayList<>(policies);
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxBytes = Math.max(1, maxBytes);
+    }
+
+    // =========================================================
+    // LOOKUP
+    // =========================================================
+
+    /**
+     * Trả body từ cache nếu còn hạn, nếu không thì gọi loader.
+     * Endpoint không có policy thì luôn gọi loader và không cache.
+     */
+    byte[] get(String endpoint, Loader loader) throws IOException {
+        Policy policy = policyFor(endpoint);
+        if (policy == null) {
+            return loader.load();
+        }
+
+        byte[] cached = lookup(endpoint);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        CompletableFuture<byte[]> mine = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = inFlight.putIfAbsent(endpoint, mine);
+
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return await(existing);
+        }
+
+        misses.incrementAndGet();
+        long epoch = currentEpoch();
+        try {
+            byte[] body = loader.load();
+            store(endpoint, body, policy, epoch);
+            mine.complete(body);
+            return body;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(endpoint, mine);
+        }
+    }
+
+    /** Endpoint có policy TTL hay không */
+    boolean isCacheable(String endpoint) {
+        return policyFor(endpoint) != null;
+    }
+
+    private Policy policyFor(String endpoint) {
+        for (Policy p : policies) {
+            if (p.ttlMs > 0 && p.matches(endpoint)) return p;
+        }
+        return null;
+    }
+
+    private synchronized byte[] lookup(String endpoint) {
+        Entry e = entries.get(endpoint);
+        if (e == null) return null;
+
+        if (System.currentTimeMillis() >= e.expiresAt) {
+            removeEntry(endpoint);
+            return null;
+        }
+        return e.body;
+    }
+
+    private synchronized long currentEpoch() {
+        return writeEpoch;
+    }
+
+    private synchronized void store(String endpoint, byte[] body, Policy policy, long epoch) {
+        if (body.length > maxBytes) return;
+        if (policy.invalidateOnWrite && epoch != writeEpoch) return;
+
+        removeEntry(endpoint);
+        entries.put(endpoint, new Entry(body, System.currentTimeMillis() + policy.ttlMs, policy));
+        totalBytes += body.length;
+
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || totalBytes > maxBytes) && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            totalBytes -= eldest.getValue().body.length;
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void removeEntry(String endpoint) {
+        Entry old = entries.remove(endpoint);
+        if (old != null) totalBytes -= old.body.length;
+    }
+
+    // Thread đi sau chờ kết quả của request đang chạy, lỗi IO được ném lại nguyên dạng
+    private static byte[] await(CompletableFuture<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Bị ngắt khi chờ request đang chạy", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        } catch (CancellationException e) {
+            throw new IOException("Request đang chạy bị hủy", e);
+        }
+    }
+
+    // =========================================================
+    // INVALIDATION
+    // =========================================================
+
+    /**
+     * Gọi sau mỗi request ghi: xóa các entry có thể đã cũ (danh sách VM, /cluster/resources).
+     */
+    public synchronized void onWrite(String endpoint) {
+        writeEpoch++;
+        int before = entries.size();
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry e = it.next().getValue();
+            if (e.policy.invalidateOnWrite) {
+                totalBytes -= e.body.length;
+                it.remove();
+            }
+        }
+        if (entries.size() != before) {
+            LoggerUtil.debug(() -> "Cache invalidated after write " + endpoint + ": " + (before - entries.size()) + " entries");
+        }
+    }
+
+    /** Xóa các entry có endpoint bắt đầu bằng prefix */
+    public synchronized void invalidate(String prefix) {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> e = it.next();
+            if (e.getKey().startsWith(prefix)) {
+                totalBytes -= e.getValue().body.length;
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    // =========================================================
+    // STATS
+    // =========================================================
+
+    public long getHits() { return hits.get(); }
+
+    public long getMisses() { return misses.get(); }
+
+    /** Số request đi chung với một request đang chạy thay vì gửi mới */
+    public long getCoalesced() { return coalesced.get(); }
+
+    public long getEvictions() { return evictions.get(); }
+
+    public synchronized int size() { return entries.size(); }
+
+    public synchronized long getTotalBytes() { return totalBytes; }
+
+    public String describeStats() {
+        long h = hits.get(), m = misses.get(), c = coalesced.get();
+        long total = h + m + c;
+        int hitPct = total == 0 ? 0 : (int) ((h + c) * 100 / total);
+        return "Cache: " + hitPct + "% hit (" + h + " hit / " + c + " shared / " + m + " miss), "
+                + size() + " entries";
+    }
+}
@@ -0,0 +1,61 @@
+package com.vmmanager.services.proxmox;
+
+import java.time.Duration;
+
+/**
+ * Một task Proxmox (clone, start, stop, delete...) định danh bằng UPID.
+ *
+ * UPID có dạng UPID:{node}:{pid}:{pstart}:{starttime}:{type}:{id}:{user}:
+ */
+public class ProxmoxTask {
+
+    private final String upid;
+    private final String node;
+    private final String type;
+    private final String targetId;
+    private final long submittedAt;
+    private volatile long finishedAt;
+    private volatile String exitStatus;
+
+    public ProxmoxTask(String upid) {
+        this.upid = upid;
+        String[] parts = upid != null ? upid.split(":") : new String[0];
+        this.node = parts.length > 1 ? parts[1] : null;
+        this.type = parts.length > 5 ? parts[5] : null;
+        this.targetId = parts.length > 6 ? parts[6] : null;
+        this.submittedAt = System.currentTimeMillis();
+    }
+
+    void finish(String exitStatus) {
+        this.exitStatus = exitStatus;
+        this.finishedAt = System.currentTimeMillis();
+    }
+
+    public String getUpid() { return upid; }
+
+    public String getNode() { return node; }
+
+    /** Loại task: qmclone, qmstart, qmshutdown, qmdestroy... */
+    public String getType() { return type; }
+
+    /** VMID mà task tác động (nếu có) */
+    public String getTargetId() { return targetId; }
+
+    public boolean isFinished() { return finishedAt != 0; }
+
+    /** "OK" khi thành công, ngược lại là thông báo lỗi của Proxmox */
+    public String getExitStatus() { return exitStatus; }
+
+    public boolean isOk() { return "OK".equals(exitStatus); }
+
+    public Duration getDuration() {
+        long end = finishedAt != 0 ? finishedAt : System.currentTimeMillis();
+        return Duration.ofMillis(end - submittedAt);
+    }
+
+    @Override
+    public String toString() {
+        return type + "(" + targetId + ")@" + node
+                + (isFinished() ? " " + exitStatus + " in " + getDuration().toMillis() + "ms" : " running");
+    }
+}
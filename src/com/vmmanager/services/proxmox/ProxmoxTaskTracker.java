@@ -0,0 +1,196 @@
+package com.vmmanager.services.proxmox;
+
+import com.vmmanager.utils.LoggerUtil;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Theo dõi task Proxmox theo UPID cho tới khi kết thúc.
+ *
+ * Mỗi task được poll với back-off tăng dần (250ms → 5s) nên task ngắn như
+ * start/stop xong gần như ngay, còn clone dài không tốn nhiều request.
+ * Khi có nhiều task đến hạn cùng lúc, một request /cluster/tasks thay cho
+ * từng request /nodes/{node}/tasks/{upid}/status.
+ */
+public class ProxmoxTaskTracker {
+
+    private static final long TICK_MS = 100;
+    private static final long INITIAL_INTERVAL_MS = 250;
+    private static final long MAX_INTERVAL_MS = 5_000;
+    private static final double BACKOFF_FACTOR = 1.6;
+    private static final long TASK_TIMEOUT_MS = 2 * 60 * 60 * 1000L;
+    private static final int BATCH_THRESHOLD = 4;
+    private static final int MAX_BATCH_MISSES = 3;
+
+    private static final class Tracked {
+        final ProxmoxTask task;
+        final CompletableFuture<ProxmoxTask> future = new CompletableFuture<>();
+        volatile long interval = INITIAL_INTERVAL_MS;
+        volatile long nextPollAt;
+        volatile int batchMisses;
+        volatile boolean polling;
+
+        Tracked(ProxmoxTask task) {
+            this.task = task;
+            this.nextPollAt = System.currentTimeMillis() + INITIAL_INTERVAL_MS;
+        }
+
+        void backoff(long now) {
+            interval = Math.min(MAX_INTERVAL_MS, (long) (interval * BACKOFF_FACTOR));
+            nextPollAt = now + interval;
+        }
+    }
+
+    private final ProxmoxAPIClient apiClient;
+    private final Map<String, Tracked> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> ticker;
+    private volatile boolean batchInFlight;
+
+    public ProxmoxTaskTracker(ProxmoxAPIClient apiClient) {
+        this.apiClient = apiClient;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "proxmox-task-tracker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Bắt đầu theo dõi task.
+     * @return future hoàn thành khi task kết thúc (kể cả khi exit status là lỗi)
+     */
+    public CompletableFuture<ProxmoxTask> track(String upid) {
+        if (upid == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("UPID null"));
+        }
+
+        Tracked t = pending.computeIfAbsent(upid, id -> new Tracked(new ProxmoxTask(id)));
+        ensureTicking();
+        return t.future;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    // =========================================================
+    // POLLING
+    // =========================================================
+
+    private synchronized void ensureTicking() {
+        if (ticker == null && !scheduler.isShutdown()) {
+            ticker = scheduler.scheduleWithFixedDelay(this::tick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void stopTickingIfIdle() {
+        if (pending.isEmpty() && ticker != null) {
+            ticker.cancel(false);
+            ticker = null;
+        }
+    }
+
+    private void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            List<Tracked> due = new ArrayList<>();
+
+            for (Tracked t : pending.values()) {
+                if (t.task.getDuration().toMillis() > TASK_TIMEOUT_MS) {
+                    complete(t, null, new TimeoutException("Task timeout: " + t.task.getUpid()));
+                } else if (!t.polling && now >= t.nextPollAt) {
+                    due.add(t);
+                }
+            }
+
+            if (due.size() >= BATCH_THRESHOLD && !batchInFlight) {
+                pollBatch(due);
+            } else {
+                for (Tracked t : due) pollOne(t);
+            }
+
+            stopTickingIfIdle();
+
+        } catch (Exception e) {
+            LoggerUtil.error("Task tracker tick error", e);
+        }
+    }
+
+    private void pollOne(Tracked t) {
+        t.polling = true;
+        String endpoint = "/nodes/" + t.task.getNode() + "/tasks/"
+                + URLEncoder.encode(t.task.getUpid(), StandardCharsets.UTF_8) + "/status";
+
+        apiClient.getAsync(endpoint, ProxmoxJson.TASK_EXIT_STATUS)
+                .whenComplete((exitStatus, ex) -> {
+                    t.polling = false;
+                    if (ex != null) {
+                        LoggerUtil.debug(() -> "Task status error " + t.task.getUpid() + ": " + ex.getMessage());
+                        t.backoff(System.currentTimeMillis());
+                    } else if (exitStatus != null) {
+                        complete(t, exitStatus, null);
+                    } else {
+                        t.backoff(System.currentTimeMillis());
+                    }
+                });
+    }
+
+    // Một request cho nhiều task; task không có trong danh sách sẽ poll riêng sau vài lần miss
+    private void pollBatch(List<Tracked> due) {
+        batchInFlight = true;
+        for (Tracked t : due) t.polling = true;
+
+        apiClient.getAsync("/cluster/tasks", ProxmoxJson.FINISHED_TASKS)
+                .whenComplete((finished, ex) -> {
+                    batchInFlight = false;
+                    long now = System.currentTimeMillis();
+
+                    for (Tracked t : due) {
+                        t.polling = false;
+                        String exitStatus = finished != null ? finished.get(t.task.getUpid()) : null;
+
+                        if (exitStatus != null) {
+                            complete(t, exitStatus, null);
+                        } else if (ex != null || ++t.batchMisses >= MAX_BATCH_MISSES) {
+                            t.batchMisses = 0;
+                            pollOne(t);
+                        } else {
+                            t.backoff(now);
+                        }
+                    }
+                });
+    }
+
+    private void complete(Tracked t, String exitStatus, Throwable error) {
+        if (pending.remove(t.task.getUpid()) == null) return;
+
+        if (error != null) {
+            t.future.completeExceptionally(error);
+            return;
+        }
+
+        t.task.finish(exitStatus);
+        LoggerUtil.info("Task " + t.task);
+        t.future.complete(t.task);
+    }
+
+    public void close() {
+        scheduler.shutdownNow();
+        for (Tracked t : pending.values()) {
+            t.future.cancel(false);
+        }
+        pending.clear();
+    }
+}
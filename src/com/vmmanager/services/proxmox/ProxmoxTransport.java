@@ -0,0 +1,264 @@
+package com.vmmanager.services.proxmox;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.ssl.TrustStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.ssl.SSLContextBuilder;
+import org.apache.http.util.EntityUtils;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+import com.vmmanager.utils.LoggerUtil;
+
+/**
+ * Tầng HTTP dùng chung cho mọi request tới pveproxy (:8006).
+ *
+ * - Connection pool có giới hạn tổng / theo route, dọn kết nối idle định kỳ
+ * - Keep-alive theo header của server, mặc định theo {@link Settings#keepAliveSeconds}
+ * - Cache TLS session để kết nối mới không phải handshake đầy đủ
+ * - Response luôn được đọc hết và trả kết nối về pool qua {@link ResponseHandler}
+ */
+public class ProxmoxTransport {
+
+    /**
+     * Cấu hình transport, giá trị mặc định phù hợp với một cluster vừa và nhỏ.
+     */
+    public static class Settings {
+        public int maxTotal = 50;
+        public int maxPerRoute = 20;
+        public int connectTimeoutMs = 5_000;
+        public int socketTimeoutMs = 30_000;
+        public int connectionRequestTimeoutMs = 10_000;
+        public int keepAliveSeconds = 30;
+        public int idleEvictSeconds = 30;
+        public int validateAfterInactivityMs = 2_000;
+        public int tlsSessionCacheSize = 64;
+        public int tlsSessionTimeoutSeconds = 3_600;
+        /** Số request async chạy đồng thời tối đa (nên <= maxPerRoute) */
+        public int maxInFlight = 16;
+        /** Giới hạn cache response GET (xem {@link ProxmoxResponseCache}) */
+        public int responseCacheMaxEntries = 256;
+        public long responseCacheMaxBytes = 32L * 1024 * 1024;
+        /** Retry (xem {@link RetryPolicy}): số lần gửi tối đa, back-off cơ sở / tối đa */
+        public int maxAttempts = 3;
+        public int retryBaseDelayMs = 200;
+        public int retryMaxDelayMs = 2_000;
+        /** Circuit breaker (xem {@link CircuitBreaker}) */
+        public int breakerFailureThreshold = 5;
+        public int breakerOpenMs = 10_000;
+        public int breakerMaxOpenMs = 60_000;
+        /** Giới hạn tải (xem {@link RequestLimiter}): request/giây và số request đồng thời đọc / ghi */
+        public double requestsPerSecond = 50;
+        public int requestBurst = 50;
+        public int readConcurrency = 8;
+        public int maxReadConcurrency = 16;
+        public int writeConcurrency = 2;
+        public int maxWriteConcurrency = 4;
+    }
+
+    /** Đọc body dạng String, ném {@link ProxmoxApiException} khi status >= 300. */
+    public static final ResponseHandler<String> STRING_BODY = response -> {
+        int status = response.getStatusLine().getStatusCode();
+        HttpEntity entity = response.getEntity();
+        String body = entity != null ? EntityUtils.toString(entity, StandardCharsets.UTF_8) : "";
+
+        if (status >= 300) {
+            throw new ProxmoxApiException(status, response.getStatusLine().getReasonPhrase(), body);
+        }
+        return body;
+    };
+
+    /** Đọc body dạng byte[] để lưu cache, ném {@link ProxmoxApiException} khi status >= 300. */
+    public static final ResponseHandler<byte[]> BYTE_BODY = response -> {
+        int status = response.getStatusLine().getStatusCode();
+        HttpEntity entity = response.getEntity();
+
+        if (status >= 300) {
+            String body = entity != null ? EntityUtils.toString(entity, StandardCharsets.UTF_8) : "";
+            throw new ProxmoxApiException(status, response.getStatusLine().getReasonPhrase(), body);
+        }
+        return entity != null ? EntityUtils.toByteArray(entity) : new byte[0];
+    };
+
+    /** Decode body đã có trong bộ nhớ (từ cache) bằng cùng decoder streaming */
+    public static <T> T decode(byte[] body, JsonDecoder<T> decoder) throws IOException {
+        return decode(new ByteArrayInputStream(body), decoder);
+    }
+
+    /**
+     * Decode JSON trực tiếp từ InputStream của entity, không copy body ra String.
+     * Response lỗi vẫn được đọc thành String để đưa vào {@link ProxmoxApiException}.
+     */
+    public static <T> ResponseHandler<T> streaming(JsonDecoder<T> decoder) {
+        return response -> {
+            int status = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity();
+
+            if (status >= 300) {
+                String body = entity != null ? EntityUtils.toString(entity, StandardCharsets.UTF_8) : "";
+                throw new ProxmoxApiException(status, response.getStatusLine().getReasonPhrase(), body);
+            }
+            if (entity == null) {
+                throw new ClientProtocolException("Response không có body");
+            }
+
+            return decode(entity.getContent(), decoder);
+        };
+    }
+
+    // Lỗi cú pháp / kiểu dữ liệu của Gson được bọc thành ProxmoxDecodeException;
+    // IOException khác (socket reset giữa chừng...) giữ nguyên là lỗi mạng
+    private static <T> T decode(InputStream in, JsonDecoder<T> decoder) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return decoder.decode(reader);
+        } catch (MalformedJsonException | EOFException | IllegalStateException | NumberFormatException e) {
+            throw new ProxmoxDecodeException(e);
+        }
+    }
+
+    private final Settings settings;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final RequestConfig defaultRequestConfig;
+    private final CloseableHttpClient httpClient;
+
+    public ProxmoxTransport(Settings settings) {
+        this.settings = settings != null ? settings : new Settings();
+
+        Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", createSocketFactoryAcceptingAllCerts())
+                .build();
+
+        this.connectionManager = new PoolingHttpClientConnectionManager(registry);
+        connectionManager.setMaxTotal(this.settings.maxTotal);
+        connectionManager.setDefaultMaxPerRoute(this.settings.maxPerRoute);
+        connectionManager.setValidateAfterInactivity(this.settings.validateAfterInactivityMs);
+
+        this.defaultRequestConfig = RequestConfig.custom()
+                .setConnectTimeout(this.settings.connectTimeoutMs)
+                .setSocketTimeout(this.settings.socketTimeoutMs)
+                .setConnectionRequestTimeout(this.settings.connectionRequestTimeoutMs)
+                .build();
+
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(defaultRequestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy())
+                // Không gắn user token cho kết nối TLS, để mọi request dùng lại được pool
+                .disableConnectionState()
+                .evictExpiredConnections()
+                .evictIdleConnections(this.settings.idleEvictSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    // Tạo socket factory chấp nhận tất cả chứng chỉ SSL (pveproxy thường dùng cert tự ký)
+    private SSLConnectionSocketFactory createSocketFactoryAcceptingAllCerts() {
+        try {
+            TrustStrategy acceptingTrustStrategy = (X509Certificate[] chain, String authType) -> true;
+
+            SSLContext sslContext = SSLContextBuilder.create()
+                    .loadTrustMaterial(null, acceptingTrustStrategy)
+                    .build();
+
+            SSLSessionContext sessions = sslContext.getClientSessionContext();
+            sessions.setSessionCacheSize(settings.tlsSessionCacheSize);
+            sessions.setSessionTimeout(settings.tlsSessionTimeoutSeconds);
+
+            return new SSLConnectionSocketFactory(sslContext, NoopHostnameVerifier.INSTANCE);
+
+        } catch (Exception e) {
+            LoggerUtil.error("Lỗi tạo SSL context cho Proxmox", e);
+            return SSLConnectionSocketFactory.getSocketFactory(); // fallback
+        }
+    }
+
+    // Dùng timeout trong header Keep-Alive nếu server gửi, ngược lại dùng cấu hình
+    private ConnectionKeepAliveStrategy keepAliveStrategy() {
+        return (response, context) -> {
+            HeaderElementIterator it = new BasicHeaderElementIterator(
+                    response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+
+            while (it.hasNext()) {
+                HeaderElement he = it.nextElement();
+                if ("timeout".equalsIgnoreCase(he.getName()) && he.getValue() != null) {
+                    try {
+                        return Long.parseLong(he.getValue()) * 1000;
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+            }
+            return settings.keepAliveSeconds * 1000L;
+        };
+    }
+
+    /**
+     * Thực thi request, handler đọc response; entity luôn được consume
+     * và kết nối trả về pool kể cả khi handler ném exception.
+     */
+    public <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> handler) throws IOException {
+        return httpClient.execute(request, handler);
+    }
+
+    /**
+     * RequestConfig mặc định nhưng với timeout đọc / chờ pool ngắn hơn,
+     * dùng cho các call có thể treo lâu (vd: qemu guest agent).
+     */
+    public RequestConfig requestConfigWithTimeout(int timeoutMs) {
+        return RequestConfig.copy(defaultRequestConfig)
+                .setSocketTimeout(timeoutMs)
+                .setConnectionRequestTimeout(timeoutMs)
+                .build();
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Thống kê pool: leased / available / pending / max.
+     */
+    public PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    public String describePoolStats() {
+        PoolStats s = getPoolStats();
+        return String.format("leased=%d available=%d pending=%d max=%d",
+                s.getLeased(), s.getAvailable(), s.getPending(), s.getMax());
+    }
+
+    public void close() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            LoggerUtil.error("Lỗi đóng HTTP client", e);
+        }
+    }
+}
@@ -1,23 +1,46 @@
 package com.vmmanager.services.proxmox;
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.vmmanager.models.ClusterInventory;
 import com.vmmanager.models.ProxmoxVM;
 import com.vmmanager.models.enums.VMStatus;
+import com.vmmanager.utils.AppLogger;
 import com.vmmanager.utils.LoggerUtil;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BooleanSupplier;
 
 public class ProxmoxVMService {
 
+    private static final AppLogger LOG = LoggerUtil.getLogger("proxmox.vm");
+
     private final ProxmoxAPIClient apiClient;
+    private final VMIpResolver ipResolver;
+    private final ProxmoxTaskTracker taskTracker;
+    private final Map<Integer, String> templateNodes = new ConcurrentHashMap<>();
     private String node;
 
     public ProxmoxVMService(String host, String user, String password, String realm, String configNode) {
-        this.apiClient = new ProxmoxAPIClient(host, user, password, realm);
+        this(host, user, password, realm, configNode, new ProxmoxTransport.Settings());
+    }
+
+    public ProxmoxVMService(String host, String user, String password, String realm, String configNode,
+                            ProxmoxTransport.Settings settings) {
+        this(host, ProxmoxCredentials.password(user, password, realm), configNode, settings);
+    }
+
+    public ProxmoxVMService(String host, ProxmoxCredentials credentials, String configNode,
+                            ProxmoxTransport.Settings settings) {
+        this.apiClient = new ProxmoxAPIClient(host, credentials, settings);
+        this.ipResolver = new VMIpResolver(apiClient);
+        this.taskTracker = new ProxmoxTaskTracker(apiClient);
 
         String autoNode = detectNode();
         this.node = (autoNode != null) ? autoNode : configNode;
@@ -30,14 +53,9 @@ public class ProxmoxVMService {
     // =========================================================
     private String detectNode() {
         try {
-            String res = apiClient.getRequest("/nodes");
-            JsonArray data = JsonParser.parseString(res)
-                    .getAsJsonObject()
-                    .getAsJsonArray("data");
-
-            if (data.size() > 0) {
-                return data.get(0).getAsJsonObject()
-                        .get("node").getAsString();
+            List<String> nodes = apiClient.getRequest("/nodes", ProxmoxJson.NODE_NAMES);
+            if (!nodes.isEmpty()) {
+                return nodes.get(0);
             }
         } catch (Exception e) {
             LoggerUtil.error("Detect node error", e);
@@ -50,67 +68,32 @@ public class ProxmoxVMService {
     }
 
     public List<String> getAllNodes() {
-        List<String> nodes = new ArrayList<>();
         try {
-            String res = apiClient.getRequest("/nodes");
-            JsonArray data = JsonParser.parseString(res)
-                    .getAsJsonObject()
-                    .getAsJsonArray("data");
-
-            for (int i = 0; i < data.size(); i++) {
-                nodes.add(data.get(i)
-                        .getAsJsonObject()
-                        .get("node")
-                        .getAsString());
-            }
+            return apiClient.getRequest("/nodes", ProxmoxJson.NODE_NAMES);
         } catch (Exception e) {
             LoggerUtil.error("Get nodes error", e);
+            return new ArrayList<>();
         }
-        return nodes;
     }
 
     public boolean testConnection() {
         return apiClient.testConnection();
     }
 
-    // =========================================================
-    // 🔥 GET VM IP FROM QEMU AGENT
-    // =========================================================
-    private String getVMIPAddress(int vmid) {
-        try {
-            String res = apiClient.getRequest(
-                    "/nodes/" + node + "/qemu/" + vmid + "/agent/network-get-interfaces"
-            );
-
-            JsonObject root = JsonParser.parseString(res).getAsJsonObject();
-            JsonArray ifaces = root
-                    .getAsJsonObject("data")
-                    .getAsJsonArray("result");
-
-            for (int i = 0; i < ifaces.size(); i++) {
-                JsonObject iface = ifaces.get(i).getAsJsonObject();
-
-                if (!iface.has("ip-addresses")) continue;
-
-                JsonArray ips = iface.getAsJsonArray("ip-addresses");
-
-                for (int j = 0; j < ips.size(); j++) {
-                    JsonObject ipObj = ips.get(j).getAsJsonObject();
-
-                    String ip = ipObj.get("ip-address").getAsString();
-                    String type = ipObj.get("ip-address-type").getAsString();
+    public String describePoolStats() {
+        return apiClient.describePoolStats();
+    }
 
-                    if ("ipv4".equals(type) && !ip.startsWith("127.")) {
-                        return ip;
-                    }
-                }
-            }
+    public String describeCacheStats() {
+        return apiClient.describeCacheStats();
+    }
 
-        } catch (Exception e) {
-            // VM chưa có agent hoặc chưa có IP → ignore
-        }
+    public String describeLimiterStats() {
+        return apiClient.describeLimiterStats();
+    }
 
-        return null;
+    public void invalidateCache() {
+        apiClient.getResponseCache().clear();
     }
 
     // =========================================================
@@ -118,28 +101,10 @@ public class ProxmoxVMService {
     // =========================================================
     public boolean createVM(ProxmoxVM vm) {
         try {
-            if (vm.getTemplate() == null || vm.getTemplate().isBlank()) {
-                LoggerUtil.error("Template VMID missing");
-                return false;
-            }
-
-            int templateId = Integer.parseInt(vm.getTemplate());
-
-            JsonObject data = new JsonObject();
-            data.addProperty("newid", vm.getVmid());
-            data.addProperty("name", vm.getName());
-            data.addProperty("full", 1);
-
-            if (vm.getStorage() != null)
-                data.addProperty("storage", vm.getStorage());
+            JsonObject data = buildCloneRequest(vm);
+            if (data == null) return false;
 
-            if (vm.getNode() != null)
-                data.addProperty("target", vm.getNode());
-
-            apiClient.postRequest(
-                    "/nodes/" + node + "/qemu/" + templateId + "/clone",
-                    data
-            );
+            apiClient.postRequest(cloneEndpoint(vm), data);
 
             LoggerUtil.info("✅ Clone VM success: " + vm.getName());
             return true;
@@ -150,189 +115,315 @@ public class ProxmoxVMService {
         }
     }
 
+    public CompletableFuture<Boolean> createVMAsync(ProxmoxVM vm) {
+        JsonObject data;
+        String endpoint;
+        try {
+            data = buildCloneRequest(vm);
+            if (data == null) return CompletableFuture.completedFuture(false);
+            endpoint = cloneEndpoint(vm);
+        } catch (Exception e) {
+            LoggerUtil.error("Clone VM error", e);
+            return CompletableFuture.completedFuture(false);
+        }
+
+        return apiClient.postAsync(endpoint, data)
+                .handle((res, ex) -> {
+                    if (ex != null) {
+                        LoggerUtil.error("Clone VM error", unwrap(ex));
+                        return false;
+                    }
+                    LoggerUtil.info("✅ Clone VM success: " + vm.getName());
+                    return true;
+                });
+    }
+
+    // Clone phải gọi trên node đang chứa template
+    private String cloneEndpoint(ProxmoxVM vm) {
+        int templateId = Integer.parseInt(vm.getTemplate());
+        String templateNode = templateNodes.getOrDefault(templateId, node);
+        return "/nodes/" + templateNode + "/qemu/" + templateId + "/clone";
+    }
+
+    private JsonObject buildCloneRequest(ProxmoxVM vm) {
+        if (vm.getTemplate() == null || vm.getTemplate().isBlank()) {
+            LoggerUtil.error("Template VMID missing");
+            return null;
+        }
+
+        JsonObject data = new JsonObject();
+        data.addProperty("newid", vm.getVmid());
+        data.addProperty("name", vm.getName());
+        data.addProperty("full", 1);
+
+        if (vm.getStorage() != null)
+            data.addProperty("storage", vm.getStorage());
+
+        if (vm.getNode() != null)
+            data.addProperty("target", vm.getNode());
+
+        return data;
+    }
+
     // =========================================================
     // START / STOP / DELETE
     // =========================================================
     public boolean startVM(int vmid) {
+        return startVM(node, vmid);
+    }
+
+    public boolean startVM(String vmNode, int vmid) {
         try {
             apiClient.postRequest(
-                    "/nodes/" + node + "/qemu/" + vmid + "/status/start",
+                    "/nodes/" + nodeOrDefault(vmNode) + "/qemu/" + vmid + "/status/start",
                     new JsonObject()
             );
             return true;
         } catch (IOException e) {
-            LoggerUtil.error("Start VM error", e);
+            LOG.error("Start VM error", e, "vmid", vmid, "node", nodeOrDefault(vmNode));
             return false;
         }
     }
 
     public boolean stopVM(int vmid) {
+        return stopVM(node, vmid);
+    }
+
+    public boolean stopVM(String vmNode, int vmid) {
         try {
             apiClient.postRequest(
-                    "/nodes/" + node + "/qemu/" + vmid + "/status/shutdown",
+                    "/nodes/" + nodeOrDefault(vmNode) + "/qemu/" + vmid + "/status/shutdown",
                     new JsonObject()
             );
+            ipResolver.invalidate(vmid);
             return true;
         } catch (IOException e) {
-            LoggerUtil.error("Stop VM error", e);
+            LOG.error("Stop VM error", e, "vmid", vmid, "node", nodeOrDefault(vmNode));
             return false;
         }
     }
 
     public boolean deleteVM(int vmid) {
+        return deleteVM(node, vmid);
+    }
+
+    public boolean deleteVM(String vmNode, int vmid) {
         try {
-            apiClient.deleteRequest("/nodes/" + node + "/qemu/" + vmid);
+            apiClient.deleteRequest("/nodes/" + nodeOrDefault(vmNode) + "/qemu/" + vmid);
+            ipResolver.invalidate(vmid);
             return true;
         } catch (IOException e) {
-            LoggerUtil.error("Delete VM error", e);
+            LOG.error("Delete VM error", e, "vmid", vmid, "node", nodeOrDefault(vmNode));
             return false;
         }
     }
 
-    // =========================================================
-    // 🔥 LIST VMs (WITH IP)
-    // =========================================================
-    public List<ProxmoxVM> listVMs() {
-        List<ProxmoxVM> list = new ArrayList<>();
+    public CompletableFuture<Boolean> startVMAsync(int vmid) {
+        return startVMAsync(node, vmid);
+    }
 
-        try {
-            String res = apiClient.getRequest("/nodes/" + node + "/qemu");
-            JsonArray data = JsonParser.parseString(res)
-                    .getAsJsonObject()
-                    .getAsJsonArray("data");
+    public CompletableFuture<Boolean> startVMAsync(String vmNode, int vmid) {
+        return toResult(apiClient.postAsync(
+                "/nodes/" + nodeOrDefault(vmNode) + "/qemu/" + vmid + "/status/start",
+                new JsonObject()
+        ), "Start VM error");
+    }
 
-            for (int i = 0; i < data.size(); i++) {
-                JsonObject vmJson = data.get(i).getAsJsonObject();
+    public CompletableFuture<Boolean> stopVMAsync(int vmid) {
+        return stopVMAsync(node, vmid);
+    }
 
-                ProxmoxVM vm = new ProxmoxVM();
-                vm.setVmid(vmJson.get("vmid").getAsInt());
-                vm.setName(vmJson.has("name") ? vmJson.get("name").getAsString() : "unknown");
-                vm.setNode(node);
+    public CompletableFuture<Boolean> stopVMAsync(String vmNode, int vmid) {
+        ipResolver.invalidate(vmid);
+        return toResult(apiClient.postAsync(
+                "/nodes/" + nodeOrDefault(vmNode) + "/qemu/" + vmid + "/status/shutdown",
+                new JsonObject()
+        ), "Stop VM error");
+    }
 
-                if (vmJson.has("cores"))
-                    vm.setCpuCores(vmJson.get("cores").getAsInt());
+    public CompletableFuture<Boolean> deleteVMAsync(int vmid) {
+        return deleteVMAsync(node, vmid);
+    }
 
-                if (vmJson.has("maxmem")) {
-                    long mem = vmJson.get("maxmem").getAsLong();
-                    vm.setMemoryGB((int) (mem / 1024 / 1024));
-                }
+    public CompletableFuture<Boolean> deleteVMAsync(String vmNode, int vmid) {
+        ipResolver.invalidate(vmid);
+        return toResult(apiClient.deleteAsync(
+                "/nodes/" + nodeOrDefault(vmNode) + "/qemu/" + vmid
+        ), "Delete VM error");
+    }
 
-                if (vmJson.has("maxdisk")) {
-                    long disk = vmJson.get("maxdisk").getAsLong();
-                    vm.setDiskGB((int) (disk / 1024 / 1024 / 1024));
-                }
+    // =========================================================
+    // 🔥 TASK (UPID) - HOÀN THÀNH KHI PROXMOX BÁO XONG
+    // =========================================================
+    public CompletableFuture<ProxmoxTask> cloneVMTask(ProxmoxVM vm) {
+        try {
+            JsonObject data = buildCloneRequest(vm);
+            if (data == null)
+                return CompletableFuture.failedFuture(new IllegalArgumentException("Template VMID missing"));
+            return trackTask(apiClient.postAsync(cloneEndpoint(vm), data));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 
-                String status = vmJson.has("status")
-                        ? vmJson.get("status").getAsString()
-                        : "stopped";
+    public CompletableFuture<ProxmoxTask> startVMTask(String vmNode, int vmid) {
+        return trackTask(apiClient.postAsync(
+                "/nodes/" + nodeOrDefault(vmNode) + "/qemu/" + vmid + "/status/start",
+                new JsonObject()
+        ));
+    }
 
-                vm.setStatus(parseStatus(status));
+    public CompletableFuture<ProxmoxTask> stopVMTask(String vmNode, int vmid) {
+        ipResolver.invalidate(vmid);
+        return trackTask(apiClient.postAsync(
+                "/nodes/" + nodeOrDefault(vmNode) + "/qemu/" + vmid + "/status/shutdown",
+                new JsonObject()
+        ));
+    }
 
-                // 🔥 LẤY IP NẾU VM RUNNING
-                if ("running".equalsIgnoreCase(status)) {
-                    String ip = getVMIPAddress(vm.getVmid());
-                    vm.setIpAddress(ip);
-                }
+    public CompletableFuture<ProxmoxTask> deleteVMTask(String vmNode, int vmid) {
+        ipResolver.invalidate(vmid);
+        return trackTask(apiClient.deleteAsync(
+                "/nodes/" + nodeOrDefault(vmNode) + "/qemu/" + vmid
+        ));
+    }
 
-                list.add(vm);
+    // Lấy UPID từ response rồi theo dõi tới khi task kết thúc
+    private CompletableFuture<ProxmoxTask> trackTask(CompletableFuture<String> request) {
+        return request.thenCompose(body -> {
+            String upid = ProxmoxJson.readUpid(body);
+            if (upid == null)
+                return CompletableFuture.failedFuture(new IOException("Response không có UPID: " + body));
+            return taskTracker.track(upid);
+        });
+    }
+
+    /**
+     * Trạng thái hiện tại của một VM (/status/current), dùng để cập nhật
+     * riêng VM đó sau khi task xong thay vì tải lại toàn bộ danh sách.
+     */
+    public CompletableFuture<ProxmoxVM> getVMStatusAsync(String vmNode, int vmid) {
+        String n = nodeOrDefault(vmNode);
+        return apiClient.getAsync("/nodes/" + n + "/qemu/" + vmid + "/status/current", ProxmoxJson.vmStatus(n));
+    }
+
+    private String nodeOrDefault(String vmNode) {
+        return (vmNode != null && !vmNode.isBlank()) ? vmNode : node;
+    }
+
+    private CompletableFuture<Boolean> toResult(CompletableFuture<String> request, String errorMessage) {
+        return request.handle((res, ex) -> {
+            if (ex != null) {
+                LoggerUtil.error(errorMessage, unwrap(ex));
+                return false;
             }
+            return true;
+        });
+    }
 
+    private static Exception unwrap(Throwable t) {
+        Throwable cause = (t instanceof CompletionException && t.getCause() != null) ? t.getCause() : t;
+        return cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+    }
+
+    // =========================================================
+    // 🔥 LIST VMs (WITH IP)
+    // =========================================================
+    public List<ProxmoxVM> listVMs() {
+        try {
+            List<ProxmoxVM> list = apiClient.getRequest("/nodes/" + node + "/qemu", ProxmoxJson.qemuList(node));
+            ipResolver.resolve(running(list)).join();
+            return list;
         } catch (Exception e) {
             LoggerUtil.error("List VMs error", e);
+            return new ArrayList<>();
         }
+    }
 
-        return list;
+    public CompletableFuture<List<ProxmoxVM>> listVMsAsync() {
+        return apiClient.getAsync("/nodes/" + node + "/qemu", ProxmoxJson.qemuList(node))
+                .thenCompose(list -> ipResolver.resolve(running(list)).thenApply(v -> list))
+                .exceptionally(ex -> {
+                    LoggerUtil.error("List VMs error", unwrap(ex));
+                    return new ArrayList<>();
+                });
+    }
+
+    // 🔥 IP chỉ lấy cho VM đang chạy (qua VMIpResolver, song song + cache)
+    private static List<ProxmoxVM> running(List<ProxmoxVM> list) {
+        List<ProxmoxVM> running = new ArrayList<>();
+        for (ProxmoxVM vm : list) {
+            if (vm.getStatus() == VMStatus.RUNNING) running.add(vm);
+        }
+        return running;
     }
 
     // =========================================================
-    // LIST TEMPLATES
+    // 🔥 CLUSTER INVENTORY (1 REQUEST CHO TOÀN CLUSTER)
     // =========================================================
-    public List<ProxmoxVM> listTemplates() {
-        List<ProxmoxVM> list = new ArrayList<>();
-
-        try {
-            String res = apiClient.getRequest("/nodes/" + node + "/qemu");
-            JsonArray data = JsonParser.parseString(res)
-                    .getAsJsonObject()
-                    .getAsJsonArray("data");
+    public ClusterInventory loadInventory() throws IOException {
+        return loadInventory(() -> true);
+    }
 
-            for (int i = 0; i < data.size(); i++) {
-                JsonObject vmJson = data.get(i).getAsJsonObject();
+    /**
+     * Như loadInventory, mỗi request guest agent (IP) phải được ipPermit cho phép
+     * (poll nền tính vào ngân sách request của poller); VM chưa được hỏi để lượt sau
+     */
+    public ClusterInventory loadInventory(BooleanSupplier ipPermit) throws IOException {
+        ClusterInventory inventory = apiClient.getRequest("/cluster/resources", ProxmoxJson.INVENTORY);
+        rememberTemplateNodes(inventory);
+        ipResolver.resolve(running(inventory.getVMs()), ipPermit).join();
+        return inventory;
+    }
 
-                if (vmJson.has("template") &&
-                        vmJson.get("template").getAsInt() == 1) {
+    public CompletableFuture<ClusterInventory> loadInventoryAsync() {
+        return apiClient.getAsync("/cluster/resources", ProxmoxJson.INVENTORY)
+                .thenCompose(inv -> {
+                    rememberTemplateNodes(inv);
+                    return ipResolver.resolve(running(inv.getVMs())).thenApply(v -> inv);
+                });
+    }
 
-                    ProxmoxVM vm = new ProxmoxVM();
-                    vm.setVmid(vmJson.get("vmid").getAsInt());
-                    vm.setName(vmJson.get("name").getAsString());
-                    list.add(vm);
-                }
-            }
+    private void rememberTemplateNodes(ClusterInventory inventory) {
+        for (ProxmoxVM t : inventory.getTemplates()) {
+            templateNodes.put(t.getVmid(), t.getNode());
+        }
+    }
 
+    // =========================================================
+    // LIST TEMPLATES
+    // =========================================================
+    public List<ProxmoxVM> listTemplates() {
+        try {
+            return apiClient.getRequest("/nodes/" + node + "/qemu", ProxmoxJson.templates(node));
         } catch (Exception e) {
             LoggerUtil.error("List templates error", e);
+            return new ArrayList<>();
         }
-
-        return list;
     }
 
     // =========================================================
     // STORAGES
     // =========================================================
     public List<String> listStorages() {
-        List<String> list = new ArrayList<>();
         try {
-            String res = apiClient.getRequest("/nodes/" + node + "/storage");
-            JsonArray data = JsonParser.parseString(res)
-                    .getAsJsonObject()
-                    .getAsJsonArray("data");
-
-            for (int i = 0; i < data.size(); i++) {
-                list.add(data.get(i)
-                        .getAsJsonObject()
-                        .get("storage")
-                        .getAsString());
-            }
-
+            return apiClient.getRequest("/nodes/" + node + "/storage", ProxmoxJson.STORAGE_NAMES);
         } catch (Exception e) {
             LoggerUtil.error("List storages error", e);
+            return new ArrayList<>();
         }
-        return list;
     }
 
     // =========================================================
     // NETWORK BRIDGES
     // =========================================================
     public List<String> listBridges() {
-        List<String> list = new ArrayList<>();
         try {
-            String res = apiClient.getRequest("/nodes/" + node + "/network");
-            JsonArray data = JsonParser.parseString(res)
-                    .getAsJsonObject()
-                    .getAsJsonArray("data");
-
-            for (int i = 0; i < data.size(); i++) {
-                JsonObject net = data.get(i).getAsJsonObject();
-                if ("bridge".equals(net.get("type").getAsString())) {
-                    list.add(net.get("iface").getAsString());
-                }
-            }
-
+            return apiClient.getRequest("/nodes/" + node + "/network", ProxmoxJson.BRIDGE_NAMES);
         } catch (Exception e) {
             LoggerUtil.error("List bridges error", e);
+            return new ArrayList<>();
         }
-        return list;
-    }
-
-    // =========================================================
-    // STATUS
-    // =========================================================
-    private VMStatus parseStatus(String s) {
-        return switch (s) {
-            case "running" -> VMStatus.RUNNING;
-            case "stopped" -> VMStatus.STOPPED;
-            default -> VMStatus.PENDING;
-        };
     }
 
     public Integer getNextVMID() {
@@ -350,6 +441,7 @@ public class ProxmoxVMService {
     
 
     public void close() {
+        taskTracker.close();
         apiClient.close();
     }
 }
@@ -0,0 +1,218 @@
+package com.vmmanager.services.proxmox;
+
+import com.vmmanager.utils.LoggerUtil;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+
+/**
+ * Giới hạn tải gửi tới pveproxy (worker pool nhỏ, quá tải sẽ trả 5xx hoặc treo).
+ *
+ * - Token bucket: tổng số request/giây (đọc + ghi)
+ * - Giới hạn đồng thời thích ứng (AIMD) riêng cho đọc và ghi:
+ *   tăng dần +1/limit khi request nhanh và limit đang được dùng hết,
+ *   giảm theo tỉ lệ khi gặp 5xx / timeout hoặc latency gần đây vượt xa trung bình dài hạn
+ * - Request chờ quá {@code maxWaitMs} bị từ chối bằng {@link ConnectionPoolTimeoutException}
+ */
+public class RequestLimiter {
+
+    /** Kết quả request, dùng để điều chỉnh limit */
+    enum Outcome { SUCCESS, OVERLOAD, IGNORE }
+
+    private static final double BACKOFF_RATIO = 0.7;
+    private static final double LATENCY_BACKOFF_RATIO = 0.9;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double SHORT_ALPHA = 0.2;
+    private static final double LONG_ALPHA = 0.02;
+    private static final double MIN_LATENCY_SIGNAL_MS = 50;
+
+    /**
+     * Token bucket cho phép "nợ" token: request lấy chỗ rồi ngủ ngoài lock tới lượt mình.
+     */
+    static final class TokenBucket {
+        private final double tokensPerNano;
+        private final double burst;
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+
+        TokenBucket(double perSecond, int burst) {
+            this.tokensPerNano = perSecond / TimeUnit.SECONDS.toNanos(1);
+            this.burst = Math.max(1, burst);
+            this.tokens = this.burst;
+        }
+
+        /** @return số nano phải chờ (0 nếu có token ngay), hoặc -1 nếu phải chờ lâu hơn maxWaitNanos */
+        synchronized long reserve(long maxWaitNanos) {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+
+            long wait = tokens >= 1 ? 0 : (long) ((1 - tokens) / tokensPerNano);
+            if (wait > maxWaitNanos) return -1;
+
+            tokens -= 1;
+            return wait;
+        }
+    }
+
+    /**
+     * Giới hạn số request đồng thời, tự điều chỉnh theo latency và lỗi.
+     */
+    static final class AdaptiveLimit {
+        private final String name;
+        private final int minLimit;
+        private final int maxLimit;
+
+        private double limit;
+        private int inFlight;
+        private int waiting;
+        private double shortRttMs = -1;
+        private double longRttMs = -1;
+        private int samplesSinceDecrease;
+        private long rejected;
+
+        AdaptiveLimit(String name, int initial, int minLimit, int maxLimit) {
+            this.name = name;
+            this.minLimit = Math.max(1, minLimit);
+            this.maxLimit = Math.max(this.minLimit, maxLimit);
+            this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initial));
+        }
+
+        synchronized void acquire(long maxWaitMs) throws IOException {
+            long deadline = System.currentTimeMillis() + maxWaitMs;
+            waiting++;
+            try {
+                while (inFlight >= (int) limit) {
+                    long left = deadline - System.currentTimeMillis();
+                    if (left <= 0) {
+                        rejected++;
+                        throw new ConnectionPoolTimeoutException(
+                                "Quá nhiều request " + name + " tới Proxmox (limit " + (int) limit + ")");
+                    }
+                    wait(left);
+                }
+                inFlight++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Bị ngắt khi chờ limiter");
+            } finally {
+                waiting--;
+            }
+        }
+
+        synchronized void release(long rttNanos, Outcome outcome) {
+            inFlight--;
+
+            if (outcome == Outcome.OVERLOAD) {
+                decrease(BACKOFF_RATIO, "overload");
+            } else if (outcome == Outcome.SUCCESS) {
+                onSample(rttNanos / 1_000_000.0);
+            }
+            notifyAll();
+        }
+
+        private void onSample(double rttMs) {
+            // So latency gần đây với trung bình dài hạn: endpoint chậm sẵn (guest agent)
+            // nằm trong cả hai nên chỉ có latency tăng đột ngột mới làm giảm limit
+            if (shortRttMs < 0) {
+                shortRttMs = longRttMs = rttMs;
+            } else {
+                shortRttMs += SHORT_ALPHA * (rttMs - shortRttMs);
+                longRttMs += LONG_ALPHA * (rttMs - longRttMs);
+            }
+            samplesSinceDecrease++;
+
+            boolean slow = shortRttMs > longRttMs * LATENCY_TOLERANCE && shortRttMs > MIN_LATENCY_SIGNAL_MS;
+            if (slow && samplesSinceDecrease >= limit) {
+                // Giảm tối đa một lần cho mỗi "vòng" limit request
+                decrease(LATENCY_BACKOFF_RATIO, "latency " + (int) shortRttMs + "ms / " + (int) longRttMs + "ms");
+            } else if (!slow && (inFlight + 1) * 2 >= limit) {
+                // Chỉ tăng khi limit hiện tại thực sự được dùng
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        }
+
+        private void decrease(double ratio, String reason) {
+            samplesSinceDecrease = 0;
+            double before = limit;
+            limit = Math.max(minLimit, limit * ratio);
+            if ((int) before != (int) limit) {
+                LoggerUtil.debug(() -> "Limiter " + name + " " + (int) before + " → " + (int) limit + " (" + reason + ")");
+            }
+        }
+
+        synchronized int getLimit() { return (int) limit; }
+
+        synchronized int getInFlight() { return inFlight; }
+
+        synchronized int getWaiting() { return waiting; }
+
+        synchronized long getRejected() { return rejected; }
+
+        synchronized String describe() {
+            return name + " " + inFlight + "/" + (int) limit + (waiting > 0 ? " (+" + waiting + " chờ)" : "");
+        }
+    }
+
+    private final TokenBucket bucket;
+    private final AdaptiveLimit reads;
+    private final AdaptiveLimit writes;
+    private final long maxWaitMs;
+
+    public RequestLimiter(ProxmoxTransport.Settings s) {
+        this.bucket = new TokenBucket(s.requestsPerSecond, s.requestBurst);
+        this.reads = new AdaptiveLimit("read", s.readConcurrency, 1, s.maxReadConcurrency);
+        this.writes = new AdaptiveLimit("write", s.writeConcurrency, 1, s.maxWriteConcurrency);
+        this.maxWaitMs = s.connectionRequestTimeoutMs;
+    }
+
+    /**
+     * Chờ tới lượt gửi request. Mỗi lần acquire thành công phải gọi đúng một lần {@link #release}.
+     */
+    void acquire(boolean mutating) throws IOException {
+        AdaptiveLimit l = mutating ? writes : reads;
+        l.acquire(maxWaitMs);
+
+        long wait = bucket.reserve(TimeUnit.MILLISECONDS.toNanos(maxWaitMs));
+        if (wait < 0) {
+            l.release(0, Outcome.IGNORE);
+            throw new ConnectionPoolTimeoutException("Vượt giới hạn request/giây tới Proxmox");
+        }
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                l.release(0, Outcome.IGNORE);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Bị ngắt khi chờ limiter");
+            }
+        }
+    }
+
+    void release(boolean mutating, long rttNanos, Outcome outcome) {
+        (mutating ? writes : reads).release(rttNanos, outcome);
+    }
+
+    // =========================================================
+    // STATS
+    // =========================================================
+
+    public int getReadLimit() { return reads.getLimit(); }
+
+    public int getWriteLimit() { return writes.getLimit(); }
+
+    public int getReadsInFlight() { return reads.getInFlight(); }
+
+    public int getWritesInFlight() { return writes.getInFlight(); }
+
+    /** Số request đang chờ tới lượt (đọc + ghi) */
+    public int getQueueDepth() { return reads.getWaiting() + writes.getWaiting(); }
+
+    public long getRejectedCount() { return reads.getRejected() + writes.getRejected(); }
+
+    public String describe() {
+        return "Limit: " + reads.describe() + ", " + writes.describe();
+    }
+}
@@ -0,0 +1,86 @@
+package com.vmmanager.services.proxmox;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.net.ssl.SSLException;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+
+/**
+ * Quyết định request lỗi có được gửi lại không và chờ bao lâu.
+ *
+ * - GET: gửi lại khi lỗi mạng hoặc pveproxy trả 502/503/504/595/596
+ * - POST/PUT/DELETE: chỉ gửi lại khi chưa kết nối được (request chắc chắn chưa tới server),
+ *   vì clone/start gửi hai lần sẽ tạo hai task
+ * - Thời gian chờ: exponential back-off với full jitter (random trong [0, base * 2^n])
+ */
+public class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+
+    public RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMs = Math.max(1, baseDelayMs);
+        this.maxDelayMs = Math.max(this.baseDelayMs, maxDelayMs);
+    }
+
+    /**
+     * @param attempt Số lần đã gửi (bắt đầu từ 1)
+     */
+    public boolean shouldRetry(IOException e, boolean mutating, int attempt) {
+        if (attempt >= maxAttempts) return false;
+        // Circuit mở hoặc limiter / pool đã đầy: gửi lại chỉ làm tăng tải
+        if (e instanceof CircuitOpenException || e instanceof ConnectionPoolTimeoutException) return false;
+
+        return mutating ? isConnectFailure(e) : isTransient(e);
+    }
+
+    /** Thời gian chờ trước lần gửi thứ attempt + 1 */
+    public long backoffMs(int attempt) {
+        long cap = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    // Lỗi tạm thời: mạng chập chờn hoặc pveproxy quá tải / node proxy không trả lời
+    static boolean isTransient(IOException e) {
+        if (e instanceof ProxmoxApiException) {
+            return isTransientStatus(((ProxmoxApiException) e).getStatusCode());
+        }
+        // Body sai định dạng thì gửi lại vẫn sai
+        if (e instanceof ProxmoxDecodeException) return false;
+        return !(e instanceof UnknownHostException) && !(e instanceof SSLException);
+    }
+
+    static boolean isTransientStatus(int status) {
+        return status == 502 || status == 503 || status == 504 || status == 595 || status == 596;
+    }
+
+    // Lỗi ở bước kết nối: request chưa được gửi đi nên gửi lại không gây tác dụng phụ
+    static boolean isConnectFailure(IOException e) {
+        return e instanceof ConnectException
+                || e instanceof ConnectTimeoutException
+                || e instanceof NoRouteToHostException;
+    }
+
+    // Lỗi cho thấy host có vấn đề (dùng cho circuit breaker), khác với lỗi nghiệp vụ 4xx/500
+    static boolean isHostFailure(IOException e) {
+        if (e instanceof ProxmoxApiException) {
+            return isTransientStatus(((ProxmoxApiException) e).getStatusCode());
+        }
+        // Hết connection trong pool hoặc thread bị ngắt là lỗi phía client
+        if (e instanceof CircuitOpenException || e instanceof ConnectionPoolTimeoutException) return false;
+        // Host đã trả lời, chỉ là body không decode được
+        if (e instanceof ProxmoxDecodeException) return false;
+        return e.getClass() != InterruptedIOException.class;
+    }
+}
@@ -0,0 +1,167 @@
+package com.vmmanager.services.proxmox;
+
+import com.vmmanager.models.ProxmoxVM;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Lấy IP của VM qua qemu guest agent, chạy song song có giới hạn và cache kết quả.
+ *
+ * Cache theo vmid + thời điểm boot (now - uptime): boot time tiến lên nghĩa là VM đã
+ * khởi động lại nên entry bị bỏ, kể cả khi lần poll sau reboot đã thấy uptime lớn.
+ * VM không trả lời (chưa có agent, timeout) được cache âm và chỉ thử lại sau
+ * một khoảng back-off tăng dần. Mỗi lần hỏi agent có thể phải xin phép (ngân sách
+ * request của poller nền); hết phép thì các VM còn lại để lượt sau.
+ */
+public class VMIpResolver {
+
+    private static final int DEFAULT_CONCURRENCY = 8;
+    private static final int DEFAULT_TIMEOUT_MS = 3_000;
+    private static final long BASE_BACKOFF_MS = 30_000;
+    private static final long MAX_BACKOFF_MS = 5 * 60_000;
+    // uptime tính bằng giây và có thể trễ một nhịp cache → boot time lệch vài giây vẫn là cùng một lần boot
+    private static final long BOOT_TOLERANCE_MS = 15_000;
+
+    private static final class Entry {
+        final String ip;
+        final long bootAt; // 0 = không biết (uptime chưa có)
+        final long retryAt;
+        final int failures;
+
+        Entry(String ip, long bootAt, long retryAt, int failures) {
+            this.ip = ip;
+            this.bootAt = bootAt;
+            this.retryAt = retryAt;
+            this.failures = failures;
+        }
+    }
+
+    private final ProxmoxAPIClient apiClient;
+    private final int concurrency;
+    private final int timeoutMs;
+    private final Map<Integer, Entry> cache = new ConcurrentHashMap<>();
+
+    public VMIpResolver(ProxmoxAPIClient apiClient) {
+        this(apiClient, DEFAULT_CONCURRENCY, DEFAULT_TIMEOUT_MS);
+    }
+
+    public VMIpResolver(ProxmoxAPIClient apiClient, int concurrency, int timeoutMs) {
+        this.apiClient = apiClient;
+        this.concurrency = Math.max(1, concurrency);
+        this.timeoutMs = timeoutMs;
+    }
+
+    // =========================================================
+    // RESOLVE
+    // =========================================================
+
+    /**
+     * Gán IP cho các VM đang chạy. VM có cache hợp lệ không tốn request nào,
+     * các VM còn lại được hỏi agent với tối đa {@code concurrency} request cùng lúc.
+     */
+    public CompletableFuture<Void> resolve(Collection<ProxmoxVM> runningVMs) {
+        return resolve(runningVMs, () -> true);
+    }
+
+    /**
+     * Như resolve nhưng mỗi request agent phải được permit cho phép; permit trả false
+     * thì dừng, VM chưa hỏi không bị cache âm và sẽ được hỏi ở lần resolve sau.
+     */
+    public CompletableFuture<Void> resolve(Collection<ProxmoxVM> runningVMs, BooleanSupplier permit) {
+        Queue<ProxmoxVM> pending = new ConcurrentLinkedQueue<>();
+        long now = System.currentTimeMillis();
+        boolean allowed = true;
+
+        for (ProxmoxVM vm : runningVMs) {
+            Entry e = cache.get(vm.getVmid());
+
+            long bootAt = bootAt(vm, now);
+            if (e != null && e.bootAt > 0 && bootAt > e.bootAt + BOOT_TOLERANCE_MS) {
+                // Boot time tiến lên → VM đã restart, bỏ cache
+                cache.remove(vm.getVmid());
+                e = null;
+            }
+
+            if (e != null && e.ip != null) {
+                vm.setIpAddress(e.ip);
+            } else if (e == null || now >= e.retryAt) {
+                // Hết phép thì không hỏi thêm, nhưng VM sau vẫn được gán IP từ cache
+                allowed = allowed && permit.getAsBoolean();
+                if (allowed) pending.add(vm);
+            }
+        }
+
+        if (pending.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        int lanes = Math.min(concurrency, pending.size());
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[lanes];
+        for (int i = 0; i < lanes; i++) {
+            workers[i] = drain(pending);
+        }
+        return CompletableFuture.allOf(workers);
+    }
+
+    // Mỗi lane lấy lần lượt từng VM trong hàng đợi, không block thread nào
+    private CompletableFuture<Void> drain(Queue<ProxmoxVM> pending) {
+        ProxmoxVM vm = pending.poll();
+        if (vm == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return lookup(vm).thenCompose(v -> drain(pending));
+    }
+
+    private CompletableFuture<Void> lookup(ProxmoxVM vm) {
+        String endpoint = "/nodes/" + vm.getNode() + "/qemu/" + vm.getVmid()
+                + "/agent/network-get-interfaces";
+
+        return apiClient.getAsync(endpoint, timeoutMs, ProxmoxJson.AGENT_IP)
+                .handle((ip, ex) -> {
+                    record(vm, ex == null ? ip : null);
+                    return null;
+                });
+    }
+
+    private static long bootAt(ProxmoxVM vm, long now) {
+        return vm.getUptime() > 0 ? now - vm.getUptime() * 1000 : 0;
+    }
+
+    private void record(ProxmoxVM vm, String ip) {
+        long now = System.currentTimeMillis();
+        if (ip != null) {
+            vm.setIpAddress(ip);
+            cache.put(vm.getVmid(), new Entry(ip, bootAt(vm, now), 0, 0));
+            return;
+        }
+
+        // VM chưa có agent hoặc chưa có IP → cache âm với back-off tăng dần
+        Entry prev = cache.get(vm.getVmid());
+        int failures = prev != null ? prev.failures + 1 : 1;
+        long backoff = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(failures - 1, 10));
+        cache.put(vm.getVmid(),
+                new Entry(null, bootAt(vm, now), now + backoff, failures));
+    }
+
+    // =========================================================
+    // CACHE
+    // =========================================================
+
+    public void invalidate(int vmid) {
+        cache.remove(vmid);
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+}
@@ -0,0 +1,208 @@
+package com.vmmanager.ui;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.swing.AbstractListModel;
+
+import com.vmmanager.utils.LogEntry;
+import com.vmmanager.utils.LoggerUtil.Level;
+
+/**
+ * Model màn hình Logs: ring buffer cố định capacity dòng, đầy thì bỏ dòng cũ nhất.
+ *
+ * - Dòng hiển thị = danh sách số thứ tự (long) của các dòng khớp bộ lọc, cũng là ring:
+ *   thêm ở cuối / bỏ ở đầu không dịch mảng, sự kiện chỉ phát cho khoảng dòng thêm / bỏ
+ * - Lọc theo level tối thiểu, nguồn (logger) và chuỗi tìm kiếm không phân biệt hoa thường
+ * - Gõ thêm ký tự vào ô tìm chỉ lọc lại trên các dòng đang hiển thị, không quét lại cả buffer
+ *
+ * Chỉ dùng trên EDT.
+ */
+public class LogListModel extends AbstractListModel<LogEntry> {
+
+    private final LogEntry[] ring;
+    private long first; // số thứ tự dòng cũ nhất còn giữ
+    private long next;  // số thứ tự dòng kế tiếp
+
+    // Dòng hiển thị (số thứ tự trong ring), vòng tròn cùng sức chứa
+    private final long[] view;
+    private int viewHead;
+    private int viewSize;
+
+    private Level minLevel = Level.DEBUG;
+    private String source;      // null = mọi nguồn
+    private String query = "";
+    private final Set<String> sources = new LinkedHashSet<>();
+    private long evicted;
+
+    public LogListModel(int capacity) {
+        ring = new LogEntry[capacity];
+        view = new long[capacity];
+    }
+
+    // =========================================================
+    // LIST MODEL
+    // =========================================================
+
+    @Override
+    public int getSize() {
+        return viewSize;
+    }
+
+    @Override
+    public LogEntry getElementAt(int index) {
+        return entry(view[(viewHead + index) % view.length]);
+    }
+
+    private LogEntry entry(long seq) {
+        return ring[(int) (seq % ring.length)];
+    }
+
+    // =========================================================
+    // THÊM DÒNG
+    // =========================================================
+
+    /** Thêm một lô dòng; trả true nếu xuất hiện nguồn mới */
+    public boolean append(List<LogEntry> batch) {
+        int oldSize = viewSize;
+        int removed = 0;
+        boolean newSource = false;
+
+        for (LogEntry e : batch) {
+            if (next - first == ring.length) {
+                // Đầy: bỏ dòng cũ nhất (và khỏi danh sách hiển thị nếu nó đang hiện)
+                if (viewSize > 0 && view[viewHead] == first) {
+                    viewHead = (viewHead + 1) % view.length;
+                    viewSize--;
+                    removed++;
+                }
+                ring[(int) (first % ring.length)] = null;
+                first++;
+                evicted++;
+            }
+            ring[(int) (next % ring.length)] = e;
+            if (matches(e)) pushView(next);
+            newSource |= sources.add(e.getSource());
+            next++;
+        }
+
+        // Dòng cũ còn lại đứng trước dòng mới còn lại
+        int removedOld = Math.min(removed, oldSize);
+        int keptOld = oldSize - removedOld;
+        if (removedOld > 0) fireIntervalRemoved(this, 0, removedOld - 1);
+        if (viewSize > keptOld) fireIntervalAdded(this, keptOld, viewSize - 1);
+        return newSource;
+    }
+
+    private void pushView(long seq) {
+        view[(viewHead + viewSize) % view.length] = seq;
+        viewSize++;
+    }
+
+    public void clear() {
+        int oldSize = viewSize;
+        Arrays.fill(ring, null);
+        first = next;
+        viewHead = 0;
+        viewSize = 0;
+        if (oldSize > 0) fireIntervalRemoved(this, 0, oldSize - 1);
+    }
+
+    // =========================================================
+    // LỌC
+    // =========================================================
+
+    public void setFilter(Level level, String source) {
+        Level l = level == null ? Level.DEBUG : level;
+        if (l == minLevel && Objects.equals(source, this.source)) return;
+        minLevel = l;
+        this.source = source;
+        rebuild();
+    }
+
+    /** Chuỗi tìm kiếm; nếu chỉ gõ thêm vào chuỗi cũ thì lọc tiếp trên dòng đang hiện */
+    public void setQuery(String text) {
+        String q = text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+        if (q.equals(query)) return;
+        boolean narrowing = q.startsWith(query);
+        query = q;
+        if (narrowing) narrow();
+        else rebuild();
+    }
+
+    private boolean matches(LogEntry e) {
+        return e.getLevel().ordinal() >= minLevel.ordinal()
+                && (source == null || source.equals(e.getSource()))
+                && contains(e.getText());
+    }
+
+    // contains không phân biệt hoa thường, không tạo chuỗi lowercase cho mỗi dòng;
+    // so ký tự đầu trước, chỉ gọi regionMatches ở vị trí có thể khớp
+    private boolean contains(String s) {
+        int n = query.length();
+        if (n == 0) return true;
+        char lower = query.charAt(0);
+        char upper = Character.toUpperCase(lower);
+        for (int i = 0, last = s.length() - n; i <= last; i++) {
+            char c = s.charAt(i);
+            if ((c == lower || c == upper) && s.regionMatches(true, i + 1, query, 1, n - 1)) return true;
+        }
+        return false;
+    }
+
+    // Giữ lại các dòng đang hiện còn khớp (dồn về đầu vòng, giữ thứ tự)
+    private void narrow() {
+        int oldSize = viewSize;
+        int kept = 0;
+        for (int i = 0; i < oldSize; i++) {
+            long seq = view[(viewHead + i) % view.length];
+            if (contains(entry(seq).getText())) view[(viewHead + kept++) % view.length] = seq;
+        }
+        viewSize = kept;
+        fireReplaced(oldSize);
+    }
+
+    private void rebuild() {
+        int oldSize = viewSize;
+        viewHead = 0;
+        viewSize = 0;
+        for (long seq = first; seq < next; seq++) {
+            if (matches(entry(seq))) pushView(seq);
+        }
+        fireReplaced(oldSize);
+    }
+
+    private void fireReplaced(int oldSize) {
+        if (viewSize < oldSize) fireIntervalRemoved(this, viewSize, oldSize - 1);
+        if (viewSize > oldSize) fireIntervalAdded(this, oldSize, viewSize - 1);
+        int common = Math.min(oldSize, viewSize);
+        if (common > 0) fireContentsChanged(this, 0, common - 1);
+    }
+
+    // =========================================================
+    // THÔNG TIN
+    // =========================================================
+
+    /** Các nguồn đã gặp, theo thứ tự xuất hiện */
+    public Set<String> getSources() {
+        return sources;
+    }
+
+    /** Số dòng đang giữ trong buffer (trước khi lọc) */
+    public int getBuffered() {
+        return (int) (next - first);
+    }
+
+    /** Số dòng đã bị bỏ vì buffer đầy */
+    public long getEvicted() {
+        return evicted;
+    }
+
+    public int getCapacity() {
+        return ring.length;
+    }
+}
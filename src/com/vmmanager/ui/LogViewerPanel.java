@@ -0,0 +1,160 @@
+package com.vmmanager.ui;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.util.List;
+
+import javax.swing.BoundedRangeModel;
+import javax.swing.DefaultComboBoxModel;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+import com.vmmanager.utils.LogEntry;
+import com.vmmanager.utils.LoggerUtil.Level;
+
+/**
+ * Màn hình Logs: JList trên LogListModel (buffer giới hạn), chỉ vẽ các dòng đang thấy.
+ *
+ * Chiều cao / rộng ô cố định nên JList không đo từng dòng; dòng mới được thêm theo lô
+ * (append gọi từ sink của UiUpdateDispatcher) và tự cuộn xuống cuối nếu đang ở cuối.
+ * Rộng ô theo dòng dài nhất đã gặp (đo một dòng mỗi lô), dòng dài thì cuộn ngang;
+ * Ctrl+C copy nguyên văn các dòng đang chọn.
+ */
+public class LogViewerPanel extends JPanel {
+
+    private static final String ALL_SOURCES = "Tất cả nguồn";
+    private static final int MIN_CELL_WIDTH = 100;
+    private static final int CELL_PADDING = 8;
+
+    private final LogListModel model;
+    private final JList<LogEntry> list;
+    private final JScrollPane scroll;
+    private final JComboBox<Level> levelCombo = new JComboBox<>(
+            new Level[]{Level.DEBUG, Level.INFO, Level.WARN, Level.ERROR});
+    private final DefaultComboBoxModel<String> sourceModel = new DefaultComboBoxModel<>(new String[]{ALL_SOURCES});
+    private final JComboBox<String> sourceCombo = new JComboBox<>(sourceModel);
+    private final JTextField searchField = new JTextField(20);
+    private final JLabel countLabel = new JLabel();
+    private int widestChars; // số ký tự của dòng dài nhất đã gặp
+
+    public LogViewerPanel(int capacity) {
+        super(new BorderLayout(5, 5));
+        model = new LogListModel(capacity);
+
+        list = new JList<>(model);
+        list.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        list.setFixedCellHeight(list.getFontMetrics(list.getFont()).getHeight() + 2);
+        // Rộng cố định: JList không duyệt mọi dòng để đo; nhỏ hơn viewport thì ô giãn theo viewport
+        list.setFixedCellWidth(MIN_CELL_WIDTH);
+        list.setCellRenderer(new LevelRenderer());
+        scroll = new JScrollPane(list);
+
+        levelCombo.addActionListener(e -> applyFilter());
+        sourceCombo.addActionListener(e -> applyFilter());
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { applyQuery(); }
+            public void removeUpdate(DocumentEvent e) { applyQuery(); }
+            public void changedUpdate(DocumentEvent e) { applyQuery(); }
+        });
+
+        JButton clearBtn = new JButton("🗑 Xoá");
+        clearBtn.addActionListener(e -> {
+            model.clear();
+            widestChars = 0;
+            list.setFixedCellWidth(MIN_CELL_WIDTH);
+            updateCount();
+        });
+
+        JPanel bar = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        bar.add(new JLabel("Level"));
+        bar.add(levelCombo);
+        bar.add(sourceCombo);
+        bar.add(new JLabel("🔍"));
+        bar.add(searchField);
+        bar.add(clearBtn);
+        bar.add(countLabel);
+
+        add(bar, BorderLayout.NORTH);
+        add(scroll, BorderLayout.CENTER);
+        updateCount();
+    }
+
+    /** Thêm một lô dòng (EDT) */
+    public void append(List<LogEntry> batch) {
+        BoundedRangeModel v = scroll.getVerticalScrollBar().getModel();
+        boolean atBottom = v.getValue() + v.getExtent() >= v.getMaximum() - list.getFixedCellHeight();
+
+        growCellWidth(batch);
+        if (model.append(batch)) {
+            for (String s : model.getSources()) {
+                if (sourceModel.getIndexOf(s) < 0) sourceModel.addElement(s);
+            }
+        }
+        if (atBottom && model.getSize() > 0) list.ensureIndexIsVisible(model.getSize() - 1);
+        updateCount();
+    }
+
+    // Font monospaced: dòng nhiều ký tự nhất là dòng rộng nhất, chỉ đo pixel dòng đó
+    private void growCellWidth(List<LogEntry> batch) {
+        LogEntry widest = null;
+        for (LogEntry e : batch) {
+            if (e.getText().length() > widestChars) {
+                widestChars = e.getText().length();
+                widest = e;
+            }
+        }
+        if (widest == null) return;
+        int width = list.getFontMetrics(list.getFont()).stringWidth(widest.getText()) + CELL_PADDING;
+        if (width > list.getFixedCellWidth()) list.setFixedCellWidth(width);
+    }
+
+    private void applyFilter() {
+        String src = (String) sourceCombo.getSelectedItem();
+        model.setFilter((Level) levelCombo.getSelectedItem(), ALL_SOURCES.equals(src) ? null : src);
+        updateCount();
+    }
+
+    private void applyQuery() {
+        model.setQuery(searchField.getText());
+        updateCount();
+    }
+
+    private void updateCount() {
+        countLabel.setText(model.getSize() + " / " + model.getBuffered() + " dòng"
+                + (model.getEvicted() > 0 ? " (bỏ " + model.getEvicted() + " dòng cũ)" : ""));
+    }
+
+    // Tô màu theo level; text đã dựng sẵn trong LogEntry
+    private static final class LevelRenderer extends DefaultListCellRenderer {
+        private static final Color WARN_COLOR = new Color(0xB36B00);
+        private static final Color ERROR_COLOR = new Color(0xC62828);
+        private static final Color DEBUG_COLOR = Color.GRAY;
+
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                      boolean selected, boolean focused) {
+            LogEntry e = (LogEntry) value;
+            super.getListCellRendererComponent(list, e.getText(), index, selected, focused);
+            if (!selected) {
+                switch (e.getLevel()) {
+                    case WARN -> setForeground(WARN_COLOR);
+                    case ERROR -> setForeground(ERROR_COLOR);
+                    case DEBUG -> setForeground(DEBUG_COLOR);
+                    default -> { }
+                }
+            }
+            return this;
+        }
+    }
+}
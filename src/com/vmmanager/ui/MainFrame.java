@@ -2,21 +2,37 @@ package com.vmmanager.ui;
 
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.TableColumn;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import com.vmmanager.controllers.VMController;
+import com.vmmanager.inventory.VMChange;
 import com.vmmanager.config.ConfigService;
 import com.vmmanager.config.GlobalConfig;
+import com.vmmanager.utils.LogEntry;
+import com.vmmanager.utils.LoggerUtil;
 
 public class MainFrame extends JFrame {
 
     private VMController vmController;
     private GlobalConfig config;
+    // Cập nhật từ thread nền được gom lại, đẩy lên EDT mỗi 50ms
+    private final UiUpdateDispatcher ui = new UiUpdateDispatcher();
+    // Mọi việc chặn (API, ansible) chạy ở đây, không chạy trên EDT
+    private final TaskRunner tasks = new TaskRunner(8, ui);
 
     private JTable vmTable;
-    private DefaultTableModel tableModel;
+    private VMTableModel tableModel;
+    private JTextField vmFilterField;
     private JLabel statusNodeLabel;
+    private JLabel statusPoolLabel;
 
     private JTextField nameField;
     private JSpinner idSpinner, cpuSpinner, ramSpinner, diskSpinner;
@@ -28,20 +44,33 @@ public class MainFrame extends JFrame {
     private JTextArea extraVarsArea;
 
     // LOG
-    private JTextArea logArea;
+    private LogViewerPanel logViewer;
 
     // GLOBAL CONFIG FIELDS
     private JTextField proxHost, proxUser, proxPass;
+    private JTextField proxTokenId, proxTokenSecret;
     private JTextField ansUser, ansKey;
     private JCheckBox realApiBox;
+    private JCheckBox compactBox;
 
     public MainFrame() {
         config = ConfigService.load();
         vmController = new VMController();
-        vmController.setGlobalConfig(config);
 
         initUI();
 
+        // VM thay đổi (task xong, sync inventory, poller) → gộp theo VM, cập nhật bảng mỗi khung
+        ui.setVMSink(this::applyVMChanges);
+        ui.setLogSink(LOG_STREAM, logViewer::append);
+        LoggerUtil.addListener(logListener);
+        vmController.getRegistry().addListener(changes -> {
+            ui.postVMChanges(changes);
+            ui.post("status", this::updateStatusBar);
+        });
+
+        // Kết nối Proxmox chạy nền: cửa sổ hiện ngay với dữ liệu mock
+        applyConfig();
+
         // 🔴 HANDLE CLOSE PROPERLY
         setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
 
@@ -49,6 +78,9 @@ public class MainFrame extends JFrame {
             @Override
             public void windowClosing(java.awt.event.WindowEvent e) {
 
+                tasks.shutdown();
+                LoggerUtil.removeListener(logListener);
+                ui.close();
                 vmController.shutdown();  // kill ansible + proxmox
 
                 dispose();
@@ -94,11 +126,14 @@ public class MainFrame extends JFrame {
         proxHost = new JTextField(config.proxmoxHost);
         proxUser = new JTextField(config.proxmoxUser);
         proxPass = new JTextField(config.proxmoxPassword);
+        proxTokenId = new JTextField(config.proxmoxTokenId);
+        proxTokenSecret = new JTextField(config.proxmoxTokenSecret);
 
         ansUser  = new JTextField(config.ansibleUser);
         ansKey   = new JTextField(config.ansibleKey);
 
         realApiBox = new JCheckBox("Use Real API", config.useRealApi);
+        compactBox = new JCheckBox("Compact inventory (large fleets)", config.compactInventory);
 
         g.gridx=0; g.gridy=y; form.add(new JLabel("Proxmox Host"),g);
         g.gridx=1; form.add(proxHost,g); y++;
@@ -109,13 +144,21 @@ public class MainFrame extends JFrame {
         g.gridx=0; g.gridy=y; form.add(new JLabel("Password"),g);
         g.gridx=1; form.add(proxPass,g); y++;
 
+        g.gridx=0; g.gridy=y; form.add(new JLabel("API Token ID"),g);
+        g.gridx=1; form.add(proxTokenId,g); y++;
+
+        g.gridx=0; g.gridy=y; form.add(new JLabel("API Token Secret"),g);
+        g.gridx=1; form.add(proxTokenSecret,g); y++;
+
         g.gridx=0; g.gridy=y; form.add(new JLabel("Ansible User"),g);
         g.gridx=1; form.add(ansUser,g); y++;
 
         g.gridx=0; g.gridy=y; form.add(new JLabel("SSH Key Path"),g);
         g.gridx=1; form.add(ansKey,g); y++;
 
-        g.gridx=1; g.gridy=y; form.add(realApiBox,g);
+        g.gridx=1; g.gridy=y; form.add(realApiBox,g); y++;
+
+        g.gridx=1; g.gridy=y; form.add(compactBox,g);
 
         p.add(form,BorderLayout.CENTER);
 
@@ -146,39 +189,31 @@ public class MainFrame extends JFrame {
     
     private void refreshCreateTab(){
 
-        if(templateCombo != null){
-            templateCombo.setModel(
-                new DefaultComboBoxModel<>(
-                    vmController.getAllTemplates()
-                )
-            );
-        }
+        // Danh sách bridge cần gọi API → lấy dữ liệu ở thread nền, gán model trên EDT
+        tasks.submit("Tải template / storage / network", h -> new String[][]{
+                vmController.getAllTemplates(),
+                vmController.getAllStorages(),
+                vmController.getAllNetworks(),
+                vmController.getAllNodes()
+        }, opts -> {
 
-        if(storageCombo != null){
-            storageCombo.setModel(
-                new DefaultComboBoxModel<>(
-                    vmController.getAllStorages()
-                )
-            );
-        }
+            if(templateCombo != null){
+                templateCombo.setModel(new DefaultComboBoxModel<>(opts[0]));
+            }
 
-        if(networkCombo != null){
-            networkCombo.setModel(
-                new DefaultComboBoxModel<>(
-                    vmController.getAllNetworks()
-                )
-            );
-        }
+            if(storageCombo != null){
+                storageCombo.setModel(new DefaultComboBoxModel<>(opts[1]));
+            }
 
-        if(nodeCombo != null){
-            nodeCombo.setModel(
-                new DefaultComboBoxModel<>(
-                    vmController.getAllNodes()
-                )
-            );
+            if(networkCombo != null){
+                networkCombo.setModel(new DefaultComboBoxModel<>(opts[2]));
+            }
 
-            nodeCombo.setSelectedItem(vmController.getCurrentNode());
-        }
+            if(nodeCombo != null){
+                nodeCombo.setModel(new DefaultComboBoxModel<>(opts[3]));
+                nodeCombo.setSelectedItem(vmController.getCurrentNode());
+            }
+        });
     }
     
     
@@ -190,22 +225,38 @@ public class MainFrame extends JFrame {
         config.proxmoxHost = proxHost.getText();
         config.proxmoxUser = proxUser.getText();
         config.proxmoxPassword = proxPass.getText();
+        config.proxmoxTokenId = proxTokenId.getText();
+        config.proxmoxTokenSecret = proxTokenSecret.getText();
 
         config.ansibleUser = ansUser.getText();
         config.ansibleKey = ansKey.getText();
 
         config.useRealApi = realApiBox.isSelected();
+        config.compactInventory = compactBox.isSelected();
 
         ConfigService.save(config);
-        vmController.setGlobalConfig(config);
-        
-        // ✅ REFRESH UI
-        refreshVMTable();
-        refreshAnsibleTab();
-        refreshCreateTab();
-        updateStatusBar(); 
-
         appendLog("✅ Saved global config");
+
+        applyConfig();
+    }
+
+    // Kết nối lại với config hiện tại (test connection + tải inventory) ở thread nền
+    private void applyConfig(){
+
+        GlobalConfig cfg = config;
+
+        tasks.submit("Kết nối " + (cfg.useRealApi ? cfg.proxmoxHost : "mock"), h -> {
+            h.progress("đang kết nối và tải inventory");
+            vmController.setGlobalConfig(cfg);
+            return vmController.getCurrentNode();
+        }, node -> {
+            // ✅ REFRESH UI
+            refreshVMTable();
+            refreshAnsibleTab();
+            refreshCreateTab();
+            updateStatusBar();
+            appendLog("🔌 Node: " + node);
+        });
     }
 
     // ================= CREATE VM =================
@@ -291,15 +342,16 @@ public class MainFrame extends JFrame {
         String net      = (String) networkCombo.getSelectedItem();
         String node     = (String) nodeCombo.getSelectedItem();
 
-        boolean ok = vmController.createVM(
+        // Clone chạy nền; VM hiện PENDING trong bảng cho tới khi task Proxmox xong
+        CompletableFuture<Boolean> clone = vmController.createVMAsync(
                 name, vmid, cpu, ram, disk,
                 "", template, storage, net, node);
 
-        if(ok){
-            clearForm();
-            refreshVMTable();
-            appendLog("✅ Đã tạo VM: " + name);
-        }
+        if(clone.isDone() && !clone.getNow(false)) return;
+
+        clearForm();
+        tasks.submitAsync("Tạo VM " + name, () -> clone, ok ->
+                appendLog(ok ? "✅ Đã tạo VM: " + name : "❌ Tạo VM thất bại: " + name));
     }
 
     private void clearForm(){
@@ -321,15 +373,35 @@ public class MainFrame extends JFrame {
         title.setFont(new Font("Arial", Font.BOLD, 18));
         panel.add(title, BorderLayout.NORTH);
 
-        String[] cols = {"ID","Name","CPU","RAM","Disk","IP","Status","Node"};
-        tableModel = new DefaultTableModel(cols,0){
-            public boolean isCellEditable(int r,int c){ return false; }
-        };
+        // Model đọc thẳng từ registry; sắp xếp / lọc nằm trong model (không dùng TableRowSorter)
+        tableModel = new VMTableModel();
 
         vmTable = new JTable(tableModel);
         vmTable.setRowHeight(28);
+        vmTable.getTableHeader().setReorderingAllowed(false);
+        vmTable.getTableHeader().addMouseListener(new java.awt.event.MouseAdapter() {
+            @Override
+            public void mouseClicked(java.awt.event.MouseEvent e) {
+                int c = vmTable.columnAtPoint(e.getPoint());
+                if(c >= 0) sortVMTable(vmTable.convertColumnIndexToModel(c));
+            }
+        });
+
+        vmFilterField = new JTextField();
+        vmFilterField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e){ filterVMTable(); }
+            public void removeUpdate(DocumentEvent e){ filterVMTable(); }
+            public void changedUpdate(DocumentEvent e){ filterVMTable(); }
+        });
+
+        JPanel center = new JPanel(new BorderLayout(5,5));
+        JPanel filterBar = new JPanel(new BorderLayout(5,0));
+        filterBar.add(new JLabel("🔍 Lọc"), BorderLayout.WEST);
+        filterBar.add(vmFilterField, BorderLayout.CENTER);
+        center.add(filterBar, BorderLayout.NORTH);
+        center.add(new JScrollPane(vmTable), BorderLayout.CENTER);
 
-        panel.add(new JScrollPane(vmTable), BorderLayout.CENTER);
+        panel.add(center, BorderLayout.CENTER);
 
         JPanel bar = new JPanel();
         JButton refreshBtn = new JButton("🔄 Refresh");
@@ -343,30 +415,79 @@ public class MainFrame extends JFrame {
         bar.add(deleteBtn);
         panel.add(bar, BorderLayout.SOUTH);
 
-        refreshBtn.addActionListener(e -> refreshVMTable());
-        startBtn.addActionListener(e -> actionVM(vmController::startVM));
-        stopBtn.addActionListener(e -> actionVM(vmController::stopVM));
-        deleteBtn.addActionListener(e -> actionVM(vmController::deleteVM));
+        refreshBtn.addActionListener(e ->
+                // Bảng tự cập nhật qua sự kiện của registry
+                tasks.submit("Refresh inventory", h -> vmController.refreshInventory(),
+                        ok -> updateStatusBar()));
+        startBtn.addActionListener(e -> actionVM("Start", vmController::startVMAsync));
+        stopBtn.addActionListener(e -> actionVM("Stop", vmController::stopVMAsync));
+        deleteBtn.addActionListener(e -> actionVM("Delete", vmController::deleteVMAsync));
 
         refreshVMTable();
         return panel;
     }
 
-    private interface VMAction { boolean run(String id); }
-
-    private void actionVM(VMAction act){
+    private void actionVM(String label, Function<String, CompletableFuture<Boolean>> act){
         int r = vmTable.getSelectedRow();
         if(r<0){ JOptionPane.showMessageDialog(this,"Chọn VM"); return; }
-        String id = tableModel.getValueAt(r,0).toString();
-        act.run(id);
-        refreshVMTable();
+        String id = String.valueOf(tableModel.vmAt(r).getVmid());
+        tasks.submitAsync(label + " VM " + id, () -> act.apply(id), ok -> {
+            if(!ok) appendLog("❌ " + label + " VM " + id + " thất bại");
+        });
     }
 
     private void refreshVMTable(){
         if(tableModel==null) return;
-        tableModel.setRowCount(0);
-        Object[][] data = vmController.getVMTableData();
-        for(Object[] row : data) tableModel.addRow(row);
+        keepSelection(() -> tableModel.reload(vmController.getRegistry().all()));
+    }
+
+    private void sortVMTable(int column){
+        keepSelection(() -> tableModel.toggleSort(column, vmController.getRegistry().all()));
+
+        // Cập nhật mũi tên ▲▼ trên header mà không dựng lại cột (giữ độ rộng)
+        for(int i = 0; i < vmTable.getColumnCount(); i++){
+            TableColumn col = vmTable.getColumnModel().getColumn(i);
+            col.setHeaderValue(tableModel.getColumnName(col.getModelIndex()));
+        }
+        vmTable.getTableHeader().repaint();
+    }
+
+    private void filterVMTable(){
+        keepSelection(() -> tableModel.setFilter(vmFilterField.getText(), vmController.getRegistry().all()));
+    }
+
+    // Dựng lại toàn bộ làm mất selection → chọn lại theo vmid, cuộn tới dòng đầu tiên được chọn
+    private void keepSelection(Runnable rebuild){
+        List<Integer> selected = new ArrayList<>();
+        for(int r : vmTable.getSelectedRows()) selected.add(tableModel.vmAt(r).getVmid());
+
+        rebuild.run();
+
+        int first = -1;
+        for(int vmid : selected){
+            int r = tableModel.rowOf(vmid);
+            if(r < 0) continue;
+            vmTable.addRowSelectionInterval(r, r);
+            if(first < 0) first = r;
+        }
+        if(first >= 0) vmTable.scrollRectToVisible(vmTable.getCellRect(first, 0, true));
+    }
+
+    // Chỉ phát sự kiện cho các dòng đã đổi / thêm / xoá; RESET hoặc lô lớn thì dựng lại và giữ selection
+    private void applyVMChanges(List<VMChange> changes){
+        if(tableModel==null) return;
+
+        if(tableModel.isLargeBatch(changes.size())){
+            refreshVMTable();
+            return;
+        }
+        for(VMChange c : changes){
+            if(c.getType() == VMChange.Type.RESET){
+                refreshVMTable();
+                return;
+            }
+        }
+        tableModel.apply(changes, vmController.getRegistry().all());
     }
 
     // ================= ANSIBLE =================
@@ -428,11 +549,18 @@ public class MainFrame extends JFrame {
         // ===== RUN BUTTON =====
         JPanel btns = new JPanel();
         JButton run = new JButton("▶ Run Playbook");
+        JButton stopAll = new JButton("⏹ Stop All");
         btns.add(run);
+        btns.add(stopAll);
         panel.add(btns,BorderLayout.SOUTH);
 
         // actions
         run.addActionListener(e -> runAnsible());
+        stopAll.addActionListener(e -> {
+            // Task tương ứng trên thanh trạng thái kết thúc theo future của job
+            vmController.cancelPlaybook();
+            appendLog("⏹ Ansible: huỷ mọi job");
+        });
         addPb.addActionListener(e -> addCustomPlaybook());
         editPb.addActionListener(e -> editCustomPlaybook());
         delPb.addActionListener(e -> deleteCustomPlaybook());
@@ -558,25 +686,32 @@ public class MainFrame extends JFrame {
         String vmId = vmSel.split(" ")[0];
         String extra = extraVarsArea.getText();
 
-        boolean ok = vmController.runPlaybookOnVM(vmId, play, extra);
+        appendLog("▶ Ansible: "+play+" → "+vmSel);
 
-        if(ok) appendLog("✅ Ansible OK: "+play+" → "+vmSel);
-        else appendLog("❌ Ansible FAIL");
+        // Job chạy trong pool của Ansible engine (song song); huỷ việc = huỷ job, kill ansible-playbook
+        tasks.submitAsync("Ansible " + play + " → " + vmId,
+                () -> vmController.runPlaybookOnVMAsync(vmId, play, extra), ok -> {
+            if(ok) appendLog("✅ Ansible OK: "+play+" → "+vmSel);
+            else appendLog("❌ Ansible FAIL");
+        });
     }
 
     // ================= LOG =================
 
     private JPanel createLogPanel(){
-        JPanel p=new JPanel(new BorderLayout());
-        logArea=new JTextArea();
-        logArea.setFont(new Font("Monospaced",Font.PLAIN,12));
-        p.add(new JScrollPane(logArea));
-        return p;
+        logViewer = new LogViewerPanel(LOG_CAPACITY);
+        return logViewer;
     }
 
+    private static final String LOG_STREAM = "app";
+    private static final int LOG_CAPACITY = 50_000;
+
+    // Mọi dòng LoggerUtil (proxmox, ansible, poller...) cũng hiện ở tab Logs
+    private final Consumer<LogEntry> logListener = e -> ui.postLog(LOG_STREAM, e);
+
+    // Gọi được từ mọi thread: dòng được gom và thêm vào tab Logs một lần mỗi khung
     private void appendLog(String s){
-        if(logArea==null) return;
-        logArea.append(s+"\n");
+        ui.postLog(LOG_STREAM, new LogEntry(System.currentTimeMillis(), LoggerUtil.Level.INFO, "ui", s));
     }
     
     private void updateStatusBar(){
@@ -589,6 +724,17 @@ public class MainFrame extends JFrame {
             node = "not connected";
 
         statusNodeLabel.setText("Node: " + node);
+
+        String pool = vmController.getConnectionPoolStats();
+        String cache = vmController.getResponseCacheStats();
+        String limiter = vmController.getRequestLimiterStats();
+        statusPoolLabel.setText(pool != null ? "| Pool: " + pool + (cache != null ? " | " + cache : "") : "");
+        StringBuilder tip = new StringBuilder("<html>");
+        for(String line : new String[]{limiter, vmController.getPollerStats(), vmController.getAnsibleStats(),
+                ui.describe(), LoggerUtil.describe()}){
+            if(line != null) tip.append(line).append("<br>");
+        }
+        statusPoolLabel.setToolTipText(tip.append("</html>").toString());
     }
 
     private void createStatusBar(){
@@ -597,6 +743,11 @@ public class MainFrame extends JFrame {
         statusNodeLabel = new JLabel("Node: not connected");
         s.add(statusNodeLabel);
 
+        statusPoolLabel = new JLabel("");
+        s.add(statusPoolLabel);
+
+        s.add(new TaskStatusPanel(tasks));
+
         add(s, BorderLayout.SOUTH);
     }
 
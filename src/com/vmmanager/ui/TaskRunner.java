@@ -0,0 +1,244 @@
+package com.vmmanager.ui;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import javax.swing.SwingUtilities;
+
+import com.vmmanager.utils.LoggerUtil;
+
+/**
+ * Chạy việc chặn (HTTP, ansible-playbook, tải inventory) ngoài EDT.
+ *
+ * - Pool thread daemon cố định; việc vượt quá số thread xếp hàng (QUEUED)
+ * - Mỗi việc có Handle: trạng thái, thông điệp tiến độ, huỷ
+ * - Callback kết quả và listener luôn chạy trên EDT; việc đã huỷ không gọi callback
+ * - Tiến độ báo dồn dập chỉ làm listener chạy tối đa một lần mỗi khung của UiUpdateDispatcher
+ */
+public class TaskRunner {
+
+    public enum State { QUEUED, RUNNING, DONE, FAILED, CANCELLED }
+
+    /** Việc chạy nền; ném exception = FAILED (đã log) */
+    public interface Work<T> {
+        T run(Handle handle) throws Exception;
+    }
+
+    /** Một việc đang / đã chạy */
+    public final class Handle {
+        private final String name;
+        private final long started = System.currentTimeMillis();
+        private volatile State state = State.QUEUED;
+        private volatile String status = "";
+        private volatile Future<?> future;
+        private final List<Runnable> cancelHooks = new CopyOnWriteArrayList<>();
+
+        private Handle(String name) {
+            this.name = name;
+        }
+
+        public String getName() { return name; }
+        public State getState() { return state; }
+        public String getStatus() { return status; }
+        public long getElapsedMs() { return System.currentTimeMillis() - started; }
+
+        public boolean isActive() {
+            return state == State.QUEUED || state == State.RUNNING;
+        }
+
+        public boolean isCancelled() {
+            return state == State.CANCELLED;
+        }
+
+        /** Cập nhật thông điệp tiến độ (gọi được từ bất kỳ thread nào) */
+        public void progress(String message) {
+            status = message != null ? message : "";
+            changed();
+        }
+
+        /**
+         * Việc cần dừng tài nguyên bên ngoài khi huỷ (vd. kill process ansible);
+         * interrupt thread không dừng được I/O chặn.
+         */
+        public void onCancel(Runnable hook) {
+            cancelHooks.add(hook);
+            if (isCancelled()) runHook(hook);
+        }
+
+        public void cancel() {
+            if (!finish(State.CANCELLED)) return;
+            LoggerUtil.info("⏹ Cancelled: " + name);
+            Future<?> f = future;
+            if (f != null) f.cancel(true);
+            for (Runnable hook : cancelHooks) runHook(hook);
+        }
+
+        private void runHook(Runnable hook) {
+            try {
+                hook.run();
+            } catch (RuntimeException e) {
+                LoggerUtil.error("Cancel hook error: " + name, e);
+            }
+        }
+
+        // Chỉ chuyển trạng thái một lần sang trạng thái kết thúc
+        private boolean finish(State end) {
+            synchronized (this) {
+                if (!isActive()) return false;
+                state = end;
+            }
+            active.remove(this);
+            changed();
+            return true;
+        }
+
+        private void changed() {
+            fireChanged();
+        }
+
+        @Override
+        public String toString() {
+            return name + (status.isEmpty() ? "" : " — " + status);
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final UiUpdateDispatcher ui;
+    private final List<Handle> active = new CopyOnWriteArrayList<>();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicInteger threadSeq = new AtomicInteger();
+
+    public TaskRunner(int threads, UiUpdateDispatcher ui) {
+        this.ui = ui;
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "ui-task-" + threadSeq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    // =========================================================
+    // SUBMIT
+    // =========================================================
+
+    /**
+     * Chạy work trên pool; onSuccess nhận kết quả trên EDT (bỏ qua nếu đã huỷ)
+     */
+    public <T> Handle submit(String name, Work<T> work, Consumer<? super T> onSuccess) {
+        Handle h = register(name);
+        h.future = executor.submit(() -> {
+            synchronized (h) {
+                if (!h.isActive()) return;
+                h.state = State.RUNNING;
+            }
+            h.changed();
+            try {
+                T result = work.run(h);
+                complete(h, result, onSuccess);
+            } catch (Exception e) {
+                fail(h, e);
+            }
+        });
+        return h;
+    }
+
+    /**
+     * Theo dõi một thao tác vốn đã bất đồng bộ (task Proxmox) mà không giữ thread nào.
+     * Huỷ chỉ ngừng chờ kết quả; task đã gửi lên Proxmox vẫn chạy tiếp.
+     * Future bị huỷ từ bên ngoài (vd. job Ansible bị cancelAll) → handle CANCELLED.
+     */
+    public <T> Handle submitAsync(String name, Supplier<CompletableFuture<T>> start,
+                                  Consumer<? super T> onSuccess) {
+        Handle h = register(name);
+        h.state = State.RUNNING;
+        CompletableFuture<T> f;
+        try {
+            f = start.get();
+        } catch (RuntimeException e) {
+            f = CompletableFuture.failedFuture(e);
+        }
+        h.future = f;
+        f.whenComplete((result, ex) -> {
+            if (ex == null) complete(h, result, onSuccess);
+            else if (isCancellation(ex)) cancelled(h);
+            else fail(h, ex);
+        });
+        return h;
+    }
+
+    private Handle register(String name) {
+        Handle h = new Handle(name);
+        active.add(h);
+        h.changed();
+        return h;
+    }
+
+    private <T> void complete(Handle h, T result, Consumer<? super T> onSuccess) {
+        if (!h.finish(State.DONE)) return;
+        if (onSuccess != null) {
+            SwingUtilities.invokeLater(() -> {
+                try {
+                    onSuccess.accept(result);
+                } catch (RuntimeException e) {
+                    LoggerUtil.error("Task callback error: " + h.name, e);
+                }
+            });
+        }
+    }
+
+    private static boolean isCancellation(Throwable ex) {
+        return ex instanceof CancellationException
+                || (ex instanceof CompletionException && ex.getCause() instanceof CancellationException);
+    }
+
+    // Huỷ không qua Handle.cancel (Handle.cancel đã tự chuyển trạng thái thì finish trả false)
+    private void cancelled(Handle h) {
+        if (h.finish(State.CANCELLED)) LoggerUtil.info("⏹ Cancelled: " + h.name);
+    }
+
+    private void fail(Handle h, Throwable ex) {
+        if (ex instanceof CompletionException && ex.getCause() != null) ex = ex.getCause();
+        if (!h.finish(State.FAILED)) return;
+        if (ex instanceof Exception e) LoggerUtil.error("Task failed: " + h.name, e);
+        else LoggerUtil.error("Task failed: " + h.name + " - " + ex);
+    }
+
+    // =========================================================
+    // STATE
+    // =========================================================
+
+    /** Việc đang chờ / đang chạy, cũ nhất trước */
+    public List<Handle> getActive() {
+        return new ArrayList<>(active);
+    }
+
+    /** Listener chạy trên EDT mỗi khi có việc bắt đầu / kết thúc / báo tiến độ */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    private void fireChanged() {
+        if (listeners.isEmpty()) return;
+        ui.post(this, () -> {
+            for (Runnable l : listeners) l.run();
+        });
+    }
+
+    public void shutdown() {
+        for (Handle h : getActive()) h.cancel();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,79 @@
+package com.vmmanager.ui;
+
+import java.awt.FlowLayout;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JMenuItem;
+import javax.swing.JPanel;
+import javax.swing.JPopupMenu;
+import javax.swing.JProgressBar;
+
+/**
+ * Thanh trạng thái các việc nền: số việc đang chạy, tiến độ việc mới nhất,
+ * nút mở danh sách để huỷ từng việc.
+ */
+public class TaskStatusPanel extends JPanel {
+
+    private final TaskRunner runner;
+    private final JProgressBar bar = new JProgressBar();
+    private final JLabel label = new JLabel();
+    private final JButton cancelBtn = new JButton("✖");
+
+    public TaskStatusPanel(TaskRunner runner) {
+        super(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        this.runner = runner;
+
+        bar.setIndeterminate(true);
+        bar.setPreferredSize(new java.awt.Dimension(80, 14));
+        cancelBtn.setToolTipText("Huỷ việc đang chạy");
+        cancelBtn.setMargin(new java.awt.Insets(0, 4, 0, 4));
+        cancelBtn.addActionListener(e -> showCancelMenu());
+
+        add(bar);
+        add(label);
+        add(cancelBtn);
+
+        runner.addListener(this::refresh);
+        refresh();
+    }
+
+    private void refresh() {
+        List<TaskRunner.Handle> active = runner.getActive();
+        boolean busy = !active.isEmpty();
+
+        bar.setVisible(busy);
+        cancelBtn.setVisible(busy);
+
+        if (!busy) {
+            label.setText("");
+            label.setToolTipText(null);
+            return;
+        }
+
+        TaskRunner.Handle latest = active.get(active.size() - 1);
+        label.setText("| ⏳ " + (active.size() > 1 ? active.size() + " việc: " : "") + latest);
+
+        StringBuilder tip = new StringBuilder("<html>");
+        for (TaskRunner.Handle h : active) {
+            tip.append(h.getState()).append(" ").append(h.getElapsedMs() / 1000).append("s · ")
+               .append(escape(h.toString())).append("<br>");
+        }
+        label.setToolTipText(tip.append("</html>").toString());
+    }
+
+    private void showCancelMenu() {
+        JPopupMenu menu = new JPopupMenu();
+        for (TaskRunner.Handle h : runner.getActive()) {
+            JMenuItem item = new JMenuItem("Huỷ: " + h.getName());
+            item.addActionListener(e -> h.cancel());
+            menu.add(item);
+        }
+        if (menu.getComponentCount() > 0) menu.show(cancelBtn, 0, cancelBtn.getHeight());
+    }
+
+    private static String escape(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
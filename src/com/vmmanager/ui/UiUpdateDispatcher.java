@@ -0,0 +1,312 @@
+package com.vmmanager.ui;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.swing.SwingUtilities;
+
+import com.vmmanager.inventory.VMChange;
+import com.vmmanager.utils.LoggerUtil;
+
+/**
+ * Gom cập nhật từ thread nền rồi đẩy lên EDT theo từng khung hình (mặc định 50ms),
+ * thay vì một invokeLater cho mỗi sự kiện.
+ *
+ * - VM: gộp theo vmid (CHANGED cộng dồn trường, ADDED rồi REMOVED triệt tiêu);
+ *   quá maxPendingVMs thì thu lại thành một RESET (bảng dựng lại một lần)
+ * - Log: hàng đợi dòng (chuỗi hoặc LogEntry...) theo từng stream, giới hạn maxLogLines, tràn thì bỏ dòng cũ nhất
+ * - Việc có khoá (status bar, panel task...): chỉ lần post cuối cùng mỗi khoá được chạy
+ *
+ * Mọi post* gọi được từ bất kỳ thread nào; sink / việc chạy trên EDT.
+ */
+public class UiUpdateDispatcher implements AutoCloseable {
+
+    /** Cấu hình dispatcher */
+    public static class Settings {
+        public long frameMs = 50;
+        public int maxPendingVMs = 10_000;
+        public int maxLogLines = 5_000;
+    }
+
+    private final Settings settings;
+    private final Object lock = new Object();
+    private final ScheduledExecutorService timer;
+
+    private Consumer<List<VMChange>> vmSink;
+    private final Map<String, Consumer<List<Object>>> logSinks = new LinkedHashMap<>();
+
+    // ===== pending (khoá lock) =====
+    private final Map<Integer, Slot> pendingVMs = new LinkedHashMap<>();
+    private boolean resetPending;
+    private final Map<String, ArrayDeque<Object>> pendingLogs = new LinkedHashMap<>();
+    private final Map<Object, Runnable> pendingTasks = new LinkedHashMap<>();
+    private boolean scheduled;
+    private long lastFlush;
+
+    // ===== thống kê (khoá lock, trừ phần do EDT ghi) =====
+    private long posted;
+    private long merged;
+    private long dropped;
+    private long overflowResets;
+    private volatile long flushes;
+    private volatile long edtNanosTotal;
+    private volatile long edtNanosMax;
+    private volatile int lastBatch;
+
+    // Thay đổi đang chờ của một VM: REMOVED của object cũ (nếu có) + thay đổi của object hiện tại
+    private static final class Slot {
+        VMChange removed;
+        VMChange current;
+    }
+
+    public UiUpdateDispatcher() {
+        this(new Settings());
+    }
+
+    public UiUpdateDispatcher(Settings settings) {
+        this.settings = settings;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ui-dispatcher");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // =========================================================
+    // SINKS (gọi khi dựng UI)
+    // =========================================================
+
+    public void setVMSink(Consumer<List<VMChange>> sink) {
+        synchronized (lock) {
+            vmSink = sink;
+        }
+    }
+
+    /** Sink nhận các dòng của stream theo đúng kiểu đã post (một stream chỉ nên post một kiểu) */
+    @SuppressWarnings("unchecked")
+    public <T> void setLogSink(String stream, Consumer<List<T>> sink) {
+        synchronized (lock) {
+            logSinks.put(stream, (Consumer<List<Object>>) (Consumer<?>) sink);
+        }
+    }
+
+    // =========================================================
+    // POST
+    // =========================================================
+
+    public void postVMChanges(List<VMChange> changes) {
+        synchronized (lock) {
+            posted += changes.size();
+            for (VMChange c : changes) {
+                if (c.getType() == VMChange.Type.RESET) {
+                    merged += countPending();
+                    pendingVMs.clear();
+                    resetPending = true;
+                } else if (resetPending) {
+                    // Bảng sẽ dựng lại từ registry: sự kiện lẻ không còn cần
+                    merged++;
+                } else {
+                    mergeVM(c);
+                }
+            }
+            if (pendingVMs.size() > settings.maxPendingVMs) {
+                dropped += countPending();
+                overflowResets++;
+                pendingVMs.clear();
+                resetPending = true;
+            }
+            schedule();
+        }
+    }
+
+    private void mergeVM(VMChange c) {
+        Slot slot = pendingVMs.computeIfAbsent(c.getVm().getVmid(), id -> new Slot());
+        VMChange cur = slot.current;
+
+        switch (c.getType()) {
+            case ADDED -> {
+                if (cur != null) merged++;
+                slot.current = c;
+            }
+            case CHANGED -> {
+                if (cur != null && cur.getVm() == c.getVm()) {
+                    slot.current = cur.absorb(c);
+                    merged++;
+                } else {
+                    slot.current = c;
+                }
+            }
+            case REMOVED -> {
+                if (cur != null) merged++;
+                slot.current = null;
+                if (cur != null && cur.getType() == VMChange.Type.ADDED) {
+                    // Thêm rồi xoá trong cùng khung: bảng chưa từng thấy object này
+                    merged++;
+                } else if (slot.removed == null) {
+                    slot.removed = c;
+                } else {
+                    merged++;
+                }
+                if (slot.removed == null) pendingVMs.remove(c.getVm().getVmid());
+            }
+            default -> { }
+        }
+    }
+
+    private int countPending() {
+        int n = 0;
+        for (Slot s : pendingVMs.values()) {
+            if (s.removed != null) n++;
+            if (s.current != null) n++;
+        }
+        return n;
+    }
+
+    /** Thêm dòng log (gọi được từ thread nền); tràn hàng đợi thì bỏ dòng cũ nhất */
+    public void postLog(String stream, Object line) {
+        synchronized (lock) {
+            posted++;
+            ArrayDeque<Object> q = pendingLogs.computeIfAbsent(stream, s -> new ArrayDeque<>());
+            if (q.size() >= settings.maxLogLines) {
+                q.pollFirst();
+                dropped++;
+            }
+            q.addLast(line);
+            schedule();
+        }
+    }
+
+    /** Chạy task trên EDT ở lần flush tới; post lại cùng khoá trước đó thì chỉ bản cuối được chạy */
+    public void post(Object key, Runnable task) {
+        synchronized (lock) {
+            posted++;
+            if (pendingTasks.put(key, task) != null) merged++;
+            schedule();
+        }
+    }
+
+    // Hẹn một lần flush, cách lần trước ít nhất frameMs
+    private void schedule() {
+        if (scheduled) return;
+        scheduled = true;
+        long wait = Math.max(0, settings.frameMs - (System.nanoTime() - lastFlush) / 1_000_000);
+        try {
+            timer.schedule(() -> SwingUtilities.invokeLater(this::flush), wait, TimeUnit.MILLISECONDS);
+        } catch (java.util.concurrent.RejectedExecutionException e) {
+            // Đã đóng: bỏ cập nhật
+        }
+    }
+
+    // =========================================================
+    // FLUSH (EDT)
+    // =========================================================
+
+    private void flush() {
+        List<VMChange> vmBatch;
+        Map<String, ArrayDeque<Object>> logs;
+        List<Runnable> tasks;
+        Consumer<List<VMChange>> sinkVM;
+        Map<String, Consumer<List<Object>>> sinksLog;
+
+        synchronized (lock) {
+            scheduled = false;
+            lastFlush = System.nanoTime();
+
+            if (resetPending) {
+                vmBatch = List.of(VMChange.RESET);
+            } else {
+                vmBatch = new ArrayList<>(pendingVMs.size());
+                for (Slot s : pendingVMs.values()) {
+                    if (s.removed != null) vmBatch.add(s.removed);
+                    if (s.current != null) vmBatch.add(s.current);
+                }
+            }
+            resetPending = false;
+            pendingVMs.clear();
+
+            logs = new LinkedHashMap<>(pendingLogs);
+            pendingLogs.clear();
+            tasks = new ArrayList<>(pendingTasks.values());
+            pendingTasks.clear();
+
+            sinkVM = vmSink;
+            sinksLog = new LinkedHashMap<>(logSinks);
+        }
+
+        long start = System.nanoTime();
+        int batch = vmBatch.size() + tasks.size();
+
+        if (!vmBatch.isEmpty() && sinkVM != null) run(() -> sinkVM.accept(vmBatch));
+
+        for (Map.Entry<String, ArrayDeque<Object>> e : logs.entrySet()) {
+            Consumer<List<Object>> sink = sinksLog.get(e.getKey());
+            List<Object> lines = new ArrayList<>(e.getValue());
+            batch += lines.size();
+            if (sink != null) run(() -> sink.accept(lines));
+        }
+
+        for (Runnable t : tasks) run(t);
+
+        long nanos = System.nanoTime() - start;
+        flushes++;
+        edtNanosTotal += nanos;
+        if (nanos > edtNanosMax) edtNanosMax = nanos;
+        lastBatch = batch;
+    }
+
+    private static void run(Runnable r) {
+        try {
+            r.run();
+        } catch (RuntimeException e) {
+            LoggerUtil.error("UI update error", e);
+        }
+    }
+
+    // =========================================================
+    // STATS
+    // =========================================================
+
+    public long getPosted() {
+        synchronized (lock) {
+            return posted;
+        }
+    }
+
+    public long getMerged() {
+        synchronized (lock) {
+            return merged;
+        }
+    }
+
+    public long getDropped() {
+        synchronized (lock) {
+            return dropped;
+        }
+    }
+
+    public long getFlushes() {
+        return flushes;
+    }
+
+    public String describe() {
+        long f = flushes;
+        synchronized (lock) {
+            return String.format("UI: %d posted, %d merged, %d dropped (%d overflow reset), %d flushes, "
+                            + "EDT avg %.2fms max %.2fms, last batch %d",
+                    posted, merged, dropped, overflowResets, f,
+                    f == 0 ? 0 : edtNanosTotal / 1e6 / f, edtNanosMax / 1e6, lastBatch);
+        }
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+}
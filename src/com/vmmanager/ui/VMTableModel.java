@@ -0,0 +1,441 @@
+package com.vmmanager.ui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.swing.table.AbstractTableModel;
+
+import com.vmmanager.inventory.VMChange;
+import com.vmmanager.models.ProxmoxVM;
+
+/**
+ * Model bảng VM đọc thẳng từ object trong registry (không copy ô, không Vector).
+ *
+ * - Dòng hiển thị = danh sách VM đã lọc + sắp xếp; giá trị ô đọc qua getter khi JTable vẽ
+ * - Sắp xếp toàn bộ bằng khoá nguyên tính sẵn (giá trị / hạng của cột + vị trí) trong long[]:
+ *   sort mảng primitive thay vì Comparator trên object
+ * - Sự kiện registry được áp tại chỗ và chỉ phát sự kiện cho đúng khoảng dòng bị ảnh hưởng
+ *   (sửa ô / chèn / xoá), nên selection và vị trí cuộn được giữ; lô quá lớn so với số dòng
+ *   thì dựng lại toàn bộ (sort một lần rẻ hơn quét dòng cho từng sự kiện)
+ *
+ * Chỉ dùng trên EDT.
+ */
+public class VMTableModel extends AbstractTableModel {
+
+    public static final int COL_ID = 0, COL_NAME = 1, COL_CPU = 2, COL_RAM = 3,
+            COL_DISK = 4, COL_IP = 5, COL_STATUS = 6, COL_NODE = 7;
+
+    private static final String[] COLUMNS = {"ID", "Name", "CPU", "RAM", "Disk", "IP", "Status", "Node"};
+
+    // Trường VMChange ảnh hưởng tới từng cột (để biết thay đổi có làm lệch thứ tự không)
+    private static final int[] COLUMN_FIELDS = {
+            0, VMChange.NAME, VMChange.CPU, VMChange.MEMORY,
+            VMChange.DISK, VMChange.IP, VMChange.STATUS, VMChange.NODE};
+
+    private static final int FILTER_FIELDS = VMChange.NAME | VMChange.IP | VMChange.STATUS | VMChange.NODE;
+
+    // Khoá sort: giá trị cột ở bit cao, vị trí dòng ở INDEX_BITS bit thấp
+    private static final int INDEX_BITS = 21;
+    private static final long NON_IPV4 = 1L << 32;
+    private static final long NO_IP = 1L << 33;
+
+    // Áp tại chỗ tốn ~ số sự kiện × số dòng (mỗi sự kiện quét ids); quá mức này dựng lại toàn bộ
+    private static final long INCREMENTAL_BUDGET = 2_000_000;
+
+    // Dòng hiển thị + mảng vmid song song: tìm dòng của một VM là quét int[] liền mạch
+    // (không chạm object VM nằm rải rác trên heap), chèn / xoá là một lần arraycopy
+    private ProxmoxVM[] rows = new ProxmoxVM[0];
+    private int[] ids = new int[0];
+    private int size;
+
+    private int sortColumn = COL_ID;
+    private boolean ascending = true;
+    private String filter = "";
+
+    // =========================================================
+    // TABLE MODEL
+    // =========================================================
+
+    @Override
+    public int getRowCount() {
+        return size;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int c) {
+        if (c != sortColumn) return COLUMNS[c];
+        return COLUMNS[c] + (ascending ? " ▲" : " ▼");
+    }
+
+    @Override
+    public Class<?> getColumnClass(int c) {
+        return switch (c) {
+            case COL_ID, COL_CPU, COL_RAM, COL_DISK -> Integer.class;
+            default -> String.class;
+        };
+    }
+
+    @Override
+    public Object getValueAt(int r, int c) {
+        return value(vmAt(r), c);
+    }
+
+    private static Object value(ProxmoxVM vm, int c) {
+        return switch (c) {
+            case COL_ID -> vm.getVmid();
+            case COL_NAME -> vm.getName();
+            case COL_CPU -> vm.getCpuCores();
+            case COL_RAM -> vm.getMemoryGB();
+            case COL_DISK -> vm.getDiskGB();
+            case COL_IP -> vm.getIpAddress();
+            case COL_STATUS -> vm.getStatus() != null ? vm.getStatus().name() : null;
+            case COL_NODE -> vm.getNode();
+            default -> null;
+        };
+    }
+
+    public ProxmoxVM vmAt(int row) {
+        if (row >= size) throw new IndexOutOfBoundsException(row);
+        return rows[row];
+    }
+
+    /** Dòng đang hiển thị VM, -1 nếu bị lọc / không có */
+    public int rowOf(int vmid) {
+        int[] a = ids;
+        for (int i = 0, n = size; i < n; i++) {
+            if (a[i] == vmid) return i;
+        }
+        return -1;
+    }
+
+    private void setRows(ProxmoxVM[] vms, int n) {
+        rows = vms;
+        size = n;
+        ids = new int[vms.length];
+        for (int i = 0; i < n; i++) ids[i] = vms[i].getVmid();
+    }
+
+    public int getSortColumn() {
+        return sortColumn;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    // =========================================================
+    // RELOAD / SORT / FILTER (dựng lại toàn bộ)
+    // =========================================================
+
+    /** Thay toàn bộ dữ liệu (RESET, đổi config, đổi sắp xếp / lọc) */
+    public void reload(Collection<? extends ProxmoxVM> vms) {
+        ProxmoxVM[] visible = new ProxmoxVM[vms.size() + 16];
+        int n = 0;
+        for (ProxmoxVM vm : vms) {
+            if (matches(vm)) visible[n++] = vm;
+        }
+        setRows(sortRows(visible, n), n);
+        fireTableDataChanged();
+    }
+
+    /** Bấm lại cùng cột thì đảo chiều */
+    public void toggleSort(int column, Collection<? extends ProxmoxVM> vms) {
+        if (column == sortColumn) {
+            ascending = !ascending;
+        } else {
+            sortColumn = column;
+            ascending = true;
+        }
+        reload(vms);
+    }
+
+    /** Lọc không phân biệt hoa thường theo ID, tên, IP, trạng thái, node */
+    public void setFilter(String text, Collection<? extends ProxmoxVM> vms) {
+        String f = text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+        if (f.equals(filter)) return;
+        filter = f;
+        reload(vms);
+    }
+
+    private boolean matches(ProxmoxVM vm) {
+        if (filter.isEmpty()) return true;
+        return contains(vm.getName())
+                || contains(vm.getIpAddress())
+                || contains(vm.getNode())
+                || (vm.getStatus() != null && contains(vm.getStatus().name()))
+                || (Character.isDigit(filter.charAt(0)) && contains(Integer.toString(vm.getVmid())));
+    }
+
+    // contains không phân biệt hoa thường, không tạo chuỗi lowercase cho mỗi ô
+    private boolean contains(String s) {
+        if (s == null) return false;
+        int n = filter.length();
+        for (int i = 0, last = s.length() - n; i <= last; i++) {
+            if (s.regionMatches(true, i, filter, 0, n)) return true;
+        }
+        return false;
+    }
+
+    // Trả mảng mới cùng sức chứa, n phần tử đầu đã sắp xếp
+    private ProxmoxVM[] sortRows(ProxmoxVM[] vms, int n) {
+        if (n >= 1 << INDEX_BITS) {
+            Arrays.sort(vms, 0, n, this::compare);
+            return vms;
+        }
+
+        // Lượt 1 theo vmid, lượt 2 theo cột: hoà nhau thì giữ thứ tự vmid như compare()
+        ProxmoxVM[] src = sortByKey(vms, n, idKeys(vms, n));
+        if (sortColumn != COL_ID) src = sortByKey(src, n, columnKeys(src, n, sortColumn));
+
+        if (!ascending) {
+            for (int i = 0, j = n - 1; i < j; i++, j--) {
+                ProxmoxVM t = src[i];
+                src[i] = src[j];
+                src[j] = t;
+            }
+        }
+        return src;
+    }
+
+    private static ProxmoxVM[] sortByKey(ProxmoxVM[] src, int n, long[] key) {
+        long[] packed = new long[n];
+        for (int i = 0; i < n; i++) packed[i] = (key[i] << INDEX_BITS) | i;
+        Arrays.sort(packed);
+
+        ProxmoxVM[] out = new ProxmoxVM[src.length];
+        long mask = (1L << INDEX_BITS) - 1;
+        for (int i = 0; i < n; i++) out[i] = src[(int) (packed[i] & mask)];
+        return out;
+    }
+
+    private static long[] idKeys(ProxmoxVM[] vms, int n) {
+        long[] key = new long[n];
+        for (int i = 0; i < n; i++) key[i] = vms[i].getVmid() & 0xffffffffL;
+        return key;
+    }
+
+    // Khoá của cột: cột số dùng chính giá trị, IPv4 dùng giá trị 32 bit,
+    // cột chuỗi dùng hạng trong tập giá trị khác nhau (null xếp cuối)
+    private static long[] columnKeys(ProxmoxVM[] vms, int n, int column) {
+        long[] key = new long[n];
+
+        switch (column) {
+            case COL_CPU -> { for (int i = 0; i < n; i++) key[i] = Math.max(0, vms[i].getCpuCores()); return key; }
+            case COL_RAM -> { for (int i = 0; i < n; i++) key[i] = Math.max(0, vms[i].getMemoryGB()); return key; }
+            case COL_DISK -> { for (int i = 0; i < n; i++) key[i] = Math.max(0, vms[i].getDiskGB()); return key; }
+            default -> { }
+        }
+
+        // Hạng chuỗi: chỉ các giá trị khác nhau (không phải IPv4) được so bằng Comparator
+        boolean[] ranked = new boolean[n];
+        TreeMap<String, Long> distinct = new TreeMap<>(stringOrder(column));
+        for (int i = 0; i < n; i++) {
+            String s = (String) value(vms[i], column);
+            if (s == null) {
+                key[i] = column == COL_IP ? NO_IP : -1;
+                continue;
+            }
+            if (column == COL_IP) {
+                long ip = ipv4(s);
+                if (ip != Long.MAX_VALUE) {
+                    key[i] = ip;
+                    continue;
+                }
+            }
+            ranked[i] = true;
+            distinct.putIfAbsent(s, 0L);
+        }
+
+        long next = column == COL_IP ? NON_IPV4 : 0;
+        for (Map.Entry<String, Long> e : distinct.entrySet()) e.setValue(next++);
+
+        for (int i = 0; i < n; i++) {
+            if (ranked[i]) key[i] = distinct.get((String) value(vms[i], column));
+            else if (key[i] < 0) key[i] = next; // null của cột chuỗi
+        }
+        return key;
+    }
+
+    private static Comparator<String> stringOrder(int column) {
+        if (column == COL_IP) {
+            // IPv4 theo số (10.0.0.9 < 10.0.0.10), địa chỉ khác xếp sau theo chữ
+            return Comparator.comparingLong(VMTableModel::ipv4).thenComparing(Comparator.naturalOrder());
+        }
+        return (a, b) -> {
+            int c = a.compareToIgnoreCase(b);
+            return c != 0 ? c : a.compareTo(b);
+        };
+    }
+
+    private static long ipv4(String ip) {
+        long v = 0;
+        int parts = 0, octet = -1;
+        for (int i = 0; i <= ip.length(); i++) {
+            char ch = i < ip.length() ? ip.charAt(i) : '.';
+            if (ch == '.') {
+                if (octet < 0) return Long.MAX_VALUE;
+                v = (v << 8) | octet;
+                parts++;
+                octet = -1;
+            } else if (ch >= '0' && ch <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (ch - '0');
+                if (octet > 255) return Long.MAX_VALUE;
+            } else {
+                return Long.MAX_VALUE;
+            }
+        }
+        return parts == 4 ? v : Long.MAX_VALUE;
+    }
+
+    // Cùng thứ tự với sortRows (giá trị cột, rồi vmid); dùng để chèn / kiểm tra vị trí một dòng
+    private int compare(ProxmoxVM a, ProxmoxVM b) {
+        int c = compareColumn(a, b);
+        if (c == 0) c = Integer.compare(a.getVmid(), b.getVmid());
+        return ascending ? c : -c;
+    }
+
+    private int compareColumn(ProxmoxVM a, ProxmoxVM b) {
+        return switch (sortColumn) {
+            case COL_ID -> 0;
+            case COL_CPU -> Integer.compare(Math.max(0, a.getCpuCores()), Math.max(0, b.getCpuCores()));
+            case COL_RAM -> Integer.compare(Math.max(0, a.getMemoryGB()), Math.max(0, b.getMemoryGB()));
+            case COL_DISK -> Integer.compare(Math.max(0, a.getDiskGB()), Math.max(0, b.getDiskGB()));
+            default -> Comparator.nullsLast(stringOrder(sortColumn))
+                    .compare((String) value(a, sortColumn), (String) value(b, sortColumn));
+        };
+    }
+
+    // =========================================================
+    // INCREMENTAL
+    // =========================================================
+
+    /**
+     * Áp một lô sự kiện registry. Trả false nếu phải dựng lại toàn bộ (RESET) –
+     * khi đó selection bị xoá, caller tự khôi phục nếu cần.
+     */
+    public boolean apply(List<VMChange> changes, Collection<? extends ProxmoxVM> all) {
+        boolean reset = isLargeBatch(changes.size());
+        for (int i = 0; i < changes.size() && !reset; i++) {
+            reset = changes.get(i).getType() == VMChange.Type.RESET;
+        }
+        if (reset) {
+            reload(all);
+            return false;
+        }
+
+        int sortField = COLUMN_FIELDS[sortColumn];
+        int moved = 0;
+        for (VMChange c : changes) {
+            if (c.getType() == VMChange.Type.CHANGED && c.changed(sortField)) moved++;
+        }
+
+        // Lượt 1: xoá dòng bị xoá / đổi chỗ / ẩn đi. Sau lượt này chỉ còn dòng có khoá sort
+        // không đổi nên mảng đúng thứ tự; giữ VM chứ không giữ chỉ số dòng vì xoá làm dịch dòng
+        List<ProxmoxVM> updated = new ArrayList<>();
+        List<ProxmoxVM> pending = new ArrayList<>();
+        for (VMChange c : changes) {
+            ProxmoxVM vm = c.getVm();
+            switch (c.getType()) {
+                case REMOVED -> removeAt(rowOf(vm.getVmid()));
+                case ADDED -> pending.add(vm);
+                case CHANGED -> {
+                    int r = rowOf(vm.getVmid());
+                    boolean visible = !c.changed(FILTER_FIELDS) ? r >= 0 : matches(vm);
+                    // Nhiều dòng cùng đổi khoá: hàng xóm có thể chưa đúng chỗ nên không kiểm tra tại chỗ
+                    boolean inPlace = !c.changed(sortField) || (moved == 1 && inOrder(r, vm));
+
+                    if (r >= 0 && visible && inPlace) {
+                        updated.add(vm);
+                    } else {
+                        removeAt(r);
+                        if (visible) pending.add(vm);
+                    }
+                }
+                default -> { }
+            }
+        }
+
+        // Lượt 2: chèn đúng chỗ bằng tìm kiếm nhị phân
+        for (ProxmoxVM vm : pending) {
+            if (rowOf(vm.getVmid()) < 0) insert(vm);
+        }
+        fireUpdated(updated);
+        return true;
+    }
+
+    /** Lô này nên dựng lại toàn bộ thay vì áp từng sự kiện (caller giữ selection như RESET) */
+    public boolean isLargeBatch(int changes) {
+        return (long) changes * Math.max(size, 1) > INCREMENTAL_BUDGET;
+    }
+
+    // Dòng r vẫn đứng đúng chỗ so với hai hàng xóm sau khi giá trị đổi
+    private boolean inOrder(int r, ProxmoxVM vm) {
+        if (r < 0) return false;
+        return (r == 0 || compare(rows[r - 1], vm) <= 0)
+                && (r == size - 1 || compare(vm, rows[r + 1]) <= 0);
+    }
+
+    private void removeAt(int r) {
+        if (r < 0) return;
+        int tail = size - r - 1;
+        System.arraycopy(rows, r + 1, rows, r, tail);
+        System.arraycopy(ids, r + 1, ids, r, tail);
+        rows[--size] = null;
+        fireTableRowsDeleted(r, r);
+    }
+
+    private void insert(ProxmoxVM vm) {
+        if (!matches(vm)) return;
+
+        // Tìm kiếm nhị phân theo cùng thứ tự với sortRows
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(rows[mid], vm) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+
+        if (size == rows.length) {
+            int cap = Math.max(16, size + (size >> 1));
+            rows = Arrays.copyOf(rows, cap);
+            ids = Arrays.copyOf(ids, cap);
+        }
+        System.arraycopy(rows, lo, rows, lo + 1, size - lo);
+        System.arraycopy(ids, lo, ids, lo + 1, size - lo);
+        rows[lo] = vm;
+        ids[lo] = vm.getVmid();
+        size++;
+        fireTableRowsInserted(lo, lo);
+    }
+
+    // Một lượt quét ids cho cả lô (dòng ra theo thứ tự tăng), gộp dòng liên tiếp thành một sự kiện
+    private void fireUpdated(List<ProxmoxVM> updated) {
+        if (updated.isEmpty()) return;
+        int[] vmids = new int[updated.size()];
+        for (int i = 0; i < vmids.length; i++) vmids[i] = updated.get(i).getVmid();
+        Arrays.sort(vmids);
+
+        int start = -1, end = -1;
+        for (int i = 0; i < size; i++) {
+            if (Arrays.binarySearch(vmids, ids[i]) < 0) continue;
+            if (start >= 0 && i == end + 1) {
+                end = i;
+                continue;
+            }
+            if (start >= 0) fireTableRowsUpdated(start, end);
+            start = end = i;
+        }
+        if (start >= 0) fireTableRowsUpdated(start, end);
+    }
+}
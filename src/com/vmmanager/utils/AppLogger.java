@@ -0,0 +1,102 @@
+package com.vmmanager.utils;
+
+import java.util.function.Supplier;
+
+import com.vmmanager.utils.LoggerUtil.Level;
+
+/**
+ * Logger có tên, lấy qua LoggerUtil.getLogger("proxmox.api").
+ *
+ * - Ngưỡng level đọc một biến volatile, đổi được lúc chạy (LoggerUtil.setLevel)
+ * - Bản Supplier chỉ dựng message khi level đang bật
+ * - Bản có fields ghi cặp key / value (vmid, node, endpoint, durationMs...):
+ *   text thì thành " key=value", JSON lines thì thành trường riêng.
+ *   Mảng varargs được tạo trước khi kiểm tra level, nên trên đường nóng bọc bằng isDebugEnabled()
+ */
+public final class AppLogger {
+
+    private final String name;
+    private volatile int threshold;
+
+    AppLogger(String name, Level level) {
+        this.name = name;
+        this.threshold = level.ordinal();
+    }
+
+    void setThreshold(Level level) {
+        threshold = level.ordinal();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Level getLevel() {
+        return Level.values()[threshold];
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.ordinal() >= threshold && level != Level.OFF;
+    }
+
+    public boolean isDebugEnabled() {
+        return threshold == 0;
+    }
+
+    // =========================================================
+    // MESSAGE
+    // =========================================================
+
+    public void debug(String message) {
+        log(Level.DEBUG, message, null, null);
+    }
+
+    public void debug(Supplier<String> message) {
+        if (isDebugEnabled()) log(Level.DEBUG, message.get(), null, null);
+    }
+
+    public void info(String message) {
+        log(Level.INFO, message, null, null);
+    }
+
+    public void info(Supplier<String> message) {
+        if (isEnabled(Level.INFO)) log(Level.INFO, message.get(), null, null);
+    }
+
+    public void warn(String message) {
+        log(Level.WARN, message, null, null);
+    }
+
+    public void error(String message) {
+        log(Level.ERROR, message, null, null);
+    }
+
+    public void error(String message, Throwable error) {
+        log(Level.ERROR, message, error, null);
+    }
+
+    // =========================================================
+    // STRUCTURED (fields = key1, value1, key2, value2...)
+    // =========================================================
+
+    public void debug(String message, Object... fields) {
+        log(Level.DEBUG, message, null, fields);
+    }
+
+    public void info(String message, Object... fields) {
+        log(Level.INFO, message, null, fields);
+    }
+
+    public void warn(String message, Object... fields) {
+        log(Level.WARN, message, null, fields);
+    }
+
+    public void error(String message, Throwable error, Object... fields) {
+        log(Level.ERROR, message, error, fields);
+    }
+
+    public void log(Level level, String message, Throwable error, Object[] fields) {
+        if (!isEnabled(level)) return;
+        LoggerUtil.publish(level, name, message, error, fields);
+    }
+}
@@ -0,0 +1,434 @@
+package com.vmmanager.utils;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pipeline log bất đồng bộ: thread gọi log chỉ chép tham chiếu vào ring buffer,
+ * một thread nền định dạng và ghi theo lô.
+ *
+ * - Ring buffer nhiều producer / một consumer, không khoá: mỗi ô có số thứ tự riêng
+ *   (producer giành vị trí bằng CAS, ghi ô rồi công bố bằng số thứ tự)
+ * - Producer không cấp phát: ô được tạo sẵn, chỉ gán level / thời gian / message / exception
+ * - Consumer gom cả lô vào một StringBuilder, ghi console + file một lần, flush theo chính sách
+ * - Đầy buffer: WARN / ERROR luôn chờ (không mất lỗi); INFO / DEBUG theo Overflow
+ */
+public final class AsyncLogWriter {
+
+    public enum Overflow {
+        /** Chờ tới khi có chỗ (không mất log, thread gọi có thể bị chậm) */
+        BLOCK,
+        /** Bỏ message mới */
+        DROP,
+        /** Bỏ phần lớn, giữ 1 trên sampleRate message (giữ được nhịp của luồng log) */
+        SAMPLE
+    }
+
+    /** Cấu hình writer */
+    public static class Settings {
+        /** Số ô ring buffer (làm tròn lên luỹ thừa 2) */
+        public int capacity = 8192;
+        public Overflow overflow = Overflow.BLOCK;
+        public int sampleRate = 100;
+        /** Số message tối đa mỗi lần ghi */
+        public int batchSize = 512;
+        /** 0 = flush sau mỗi lô khi buffer trống; &gt; 0 = flush tối đa mỗi khoảng này (ERROR luôn flush ngay) */
+        public long flushIntervalMs = 0;
+        public boolean console = true;
+        /** File ghi JSON lines ({"ts":..,"level":..,"logger":..,"msg":..,&lt;fields&gt;}) thay cho dòng text */
+        public boolean jsonFile = false;
+    }
+
+    /** Nhận từng message đã ghi, gọi trên thread log-writer */
+    public interface Listener {
+        void onRecord(long time, byte level, String logger, String message, Throwable error);
+    }
+
+    static final byte DEBUG = 0, INFO = 1, WARN = 2, ERROR = 3;
+    private static final String[] LEVEL_NAMES = {"DEBUG", "INFO", "WARN", "ERROR"};
+
+    // Ô tạo sẵn, dùng lại vòng tròn
+    private static final class Slot {
+        long time;
+        byte level;
+        String logger;
+        String message;
+        Throwable error;
+        Object[] fields;
+    }
+
+    // Nội dung một lô: console (text), file (text hoặc JSON), stack trace cho stderr
+    private static final class Batch {
+        final StringBuilder console = new StringBuilder(16 * 1024);
+        final StringBuilder file = new StringBuilder(16 * 1024);
+        final StringBuilder err = new StringBuilder();
+
+        void clear() {
+            console.setLength(0);
+            file.setLength(0);
+            err.setLength(0);
+        }
+    }
+
+    private final Settings settings;
+    private final Slot[] slots;
+    private final AtomicLongArray sequence;
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // chỉ consumer
+    private final Writer file;
+    private final CachedTimestamp timestamps = new CachedTimestamp();
+
+    private final Thread consumer;
+    private volatile boolean consumerParked;
+    private volatile boolean running = true;
+    private volatile Listener listener;
+
+    // ===== thống kê =====
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong sampled = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+    private final AtomicLong overflowSeen = new AtomicLong();
+    private long lastFlush = System.nanoTime();
+    private boolean dirty;
+
+    public AsyncLogWriter(Settings settings, Writer file) {
+        this.settings = settings;
+        int cap = Integer.highestOneBit(Math.max(2, settings.capacity - 1)) << 1;
+        this.slots = new Slot[cap];
+        this.sequence = new AtomicLongArray(cap);
+        this.mask = cap - 1;
+        for (int i = 0; i < cap; i++) {
+            slots[i] = new Slot();
+            sequence.set(i, i);
+        }
+        this.file = file;
+
+        consumer = new Thread(this::drainLoop, "log-writer");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    // =========================================================
+    // PRODUCER
+    // =========================================================
+
+    /** Đưa message vào buffer; false nếu bị bỏ theo chính sách tràn */
+    public boolean publish(byte level, String message, Throwable error) {
+        return publish(level, null, message, error, null);
+    }
+
+    /**
+     * Đưa message vào buffer; false nếu bị bỏ theo chính sách tràn.
+     * @param logger tên logger (null = root, không in tên)
+     * @param fields cặp key / value xen kẽ, có thể null
+     */
+    public boolean publish(byte level, String logger, String message, Throwable error, Object[] fields) {
+        long now = System.currentTimeMillis();
+        boolean mustKeep = level >= WARN || settings.overflow == Overflow.BLOCK;
+        boolean countedBlock = false;
+
+        while (true) {
+            if (!running) {
+                writeDirect(now, level, logger, message, error, fields);
+                return true;
+            }
+
+            long pos = tail.get();
+            int idx = (int) (pos & mask);
+            long diff = sequence.get(idx) - pos;
+
+            if (diff == 0) {
+                if (!tail.compareAndSet(pos, pos + 1)) continue;
+                Slot s = slots[idx];
+                s.time = now;
+                s.level = level;
+                s.logger = logger;
+                s.message = message;
+                s.error = error;
+                s.fields = fields;
+                // Công bố ô cho consumer (ghi có thứ tự sau các trường ở trên)
+                sequence.set(idx, pos + 1);
+                if (consumerParked || level == ERROR) LockSupport.unpark(consumer);
+                return true;
+            }
+
+            if (diff > 0) continue; // producer khác vừa giành vị trí này
+
+            // Buffer đầy
+            if (!mustKeep) {
+                long n = overflowSeen.incrementAndGet();
+                if (settings.overflow == Overflow.DROP || n % Math.max(1, settings.sampleRate) != 0) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+                sampled.incrementAndGet();
+                mustKeep = true;
+            }
+            if (!countedBlock) {
+                blocked.incrementAndGet();
+                countedBlock = true;
+            }
+            LockSupport.unpark(consumer);
+            LockSupport.parkNanos(50_000);
+        }
+    }
+
+    // =========================================================
+    // CONSUMER
+    // =========================================================
+
+    private void drainLoop() {
+        Batch batch = new Batch();
+
+        while (running || head != tail.get()) {
+            int n = drain(batch);
+
+            if (n == 0) {
+                flushIfDue(true, false);
+                consumerParked = true;
+                // Kiểm tra lại sau khi bật cờ: producer có thể vừa ghi xong trước khi thấy cờ
+                if (!hasReady()) LockSupport.parkNanos(idleParkNanos());
+                consumerParked = false;
+            }
+        }
+        flushIfDue(true, true);
+    }
+
+    // Khi flush theo chu kỳ, thức dậy đúng hạn flush dù không có log mới
+    private long idleParkNanos() {
+        return settings.flushIntervalMs > 0 && dirty
+                ? settings.flushIntervalMs * 1_000_000L
+                : 100_000_000L;
+    }
+
+    private boolean hasReady() {
+        return sequence.get((int) (head & mask)) == head + 1;
+    }
+
+    /** Ghi một lô; trả số message đã lấy ra */
+    private int drain(Batch batch) {
+        batch.clear();
+        int n = 0;
+        boolean hasError = false;
+
+        while (n < settings.batchSize) {
+            int idx = (int) (head & mask);
+            if (sequence.get(idx) != head + 1) break;
+
+            Slot s = slots[idx];
+            append(batch, s.time, s.level, s.logger, s.message, s.error, s.fields);
+            notify(s.time, s.level, s.logger, s.message, s.error);
+            hasError |= s.level == ERROR;
+
+            s.logger = null;
+            s.message = null;
+            s.error = null;
+            s.fields = null;
+            // Trả ô cho producer ở vòng sau
+            sequence.set(idx, head + slots.length);
+            head++;
+            n++;
+        }
+
+        if (n > 0) {
+            write(batch);
+            written.addAndGet(n);
+            dirty = true;
+            flushIfDue(false, hasError);
+        }
+        return n;
+    }
+
+    // idle: buffer vừa trống; force: có ERROR hoặc đang đóng
+    private void flushIfDue(boolean idle, boolean force) {
+        if (!dirty || file == null) return;
+        long interval = settings.flushIntervalMs * 1_000_000L;
+        boolean due = force || (interval <= 0 ? idle : System.nanoTime() - lastFlush >= interval);
+        if (!due) return;
+        try {
+            file.flush();
+        } catch (IOException e) {
+            System.err.println("Log flush error: " + e.getMessage());
+        }
+        lastFlush = System.nanoTime();
+        dirty = false;
+    }
+
+    private void append(Batch b, long time, byte level, String logger, String message,
+                        Throwable error, Object[] fields) {
+        String stack = error != null ? stackTrace(error) : null;
+        if (stack != null) b.err.append(stack);
+
+        if (settings.console) formatText(b.console, time, level, logger, message, error, fields);
+        if (file == null) return;
+        if (settings.jsonFile) {
+            formatJson(b.file, time, level, logger, message, error, stack, fields);
+        } else {
+            formatText(b.file, time, level, logger, message, error, fields);
+            if (stack != null) b.file.append(stack);
+        }
+    }
+
+    private void notify(long time, byte level, String logger, String message, Throwable error) {
+        Listener l = listener;
+        if (l == null) return;
+        try {
+            l.onRecord(time, level, logger, message, error);
+        } catch (RuntimeException e) {
+            // Không log lại qua chính pipeline này (tránh vòng lặp)
+            System.err.println("Log listener error: " + e);
+        }
+    }
+
+    private void formatText(StringBuilder sb, long time, byte level, String logger, String message,
+                            Throwable error, Object[] fields) {
+        sb.append('[').append(timestamps.format(time)).append("] ").append(LEVEL_NAMES[level]);
+        if (logger != null) sb.append(' ').append(logger);
+        sb.append(": ").append(message);
+        if (error != null) sb.append(" - ").append(error.getMessage());
+        if (fields != null) {
+            for (int i = 0; i + 1 < fields.length; i += 2) {
+                sb.append(' ').append(fields[i]).append('=').append(fields[i + 1]);
+            }
+        }
+        sb.append(System.lineSeparator());
+    }
+
+    private void formatJson(StringBuilder sb, long time, byte level, String logger, String message,
+                            Throwable error, String stack, Object[] fields) {
+        sb.append("{\"ts\":\"");
+        timestamps.appendIso(sb, time);
+        sb.append("\",\"level\":\"").append(LEVEL_NAMES[level]).append('"');
+        if (logger != null) jsonField(sb, "logger", logger);
+        jsonField(sb, "msg", message);
+        if (fields != null) {
+            for (int i = 0; i + 1 < fields.length; i += 2) {
+                jsonField(sb, String.valueOf(fields[i]), fields[i + 1]);
+            }
+        }
+        if (error != null) {
+            jsonField(sb, "error", String.valueOf(error.getMessage()));
+            jsonField(sb, "stack", stack);
+        }
+        sb.append('}').append('\n');
+    }
+
+    private static void jsonField(StringBuilder sb, String key, Object value) {
+        sb.append(',');
+        jsonString(sb, key);
+        sb.append(':');
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+        } else {
+            jsonString(sb, value.toString());
+        }
+    }
+
+    private static void jsonString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    private static String stackTrace(Throwable t) {
+        StringWriter sw = new StringWriter();
+        t.printStackTrace(new PrintWriter(sw));
+        return sw.toString();
+    }
+
+    private void write(Batch b) {
+        // Lấy System.out mỗi lần: benchmark / load test có thể chuyển hướng console lúc chạy
+        if (settings.console) System.out.print(b.console);
+        if (b.err.length() > 0) System.err.print(b.err);
+        if (file != null) {
+            try {
+                file.append(b.file);
+            } catch (IOException e) {
+                System.err.println("Log write error: " + e.getMessage());
+            }
+        }
+    }
+
+    // Sau khi đóng: ghi thẳng, đồng bộ
+    private synchronized void writeDirect(long time, byte level, String logger, String message,
+                                          Throwable error, Object[] fields) {
+        Batch b = new Batch();
+        append(b, time, level, logger, message, error, fields);
+        notify(time, level, logger, message, error);
+        write(b);
+        try {
+            if (file != null) file.flush();
+        } catch (IOException e) {
+            System.err.println("Log flush error: " + e.getMessage());
+        }
+        written.incrementAndGet();
+    }
+
+    // =========================================================
+    // LIFECYCLE / STATS
+    // =========================================================
+
+    /** Ghi hết phần còn trong buffer rồi dừng thread nền (log sau đó ghi đồng bộ) */
+    public void close() {
+        running = false;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!consumer.isAlive()) {
+            // Producer giành ô ngay trước khi running = false: ghi nốt
+            synchronized (this) {
+                Batch batch = new Batch();
+                while (drain(batch) > 0) { }
+                flushIfDue(true, true);
+            }
+        }
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public long getQueued() {
+        return Math.max(0, tail.get() - written.get());
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public String describe() {
+        return String.format("Log: %d written, %d queued, %d dropped, %d sampled, %d blocked (%s, %d slots)",
+                written.get(), getQueued(), dropped.get(), sampled.get(), blocked.get(),
+                settings.overflow, slots.length);
+    }
+}
@@ -0,0 +1,62 @@
+package com.vmmanager.utils;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Định dạng thời gian log "yyyy-MM-dd HH:mm:ss" (text) / ISO-8601 có mili giây (JSON),
+ * chỉ format lại khi sang giây mới.
+ *
+ * An toàn đa luồng: giây + chuỗi đã format nằm chung một object bất biến, đọc / thay qua volatile.
+ */
+public final class CachedTimestamp {
+
+    private static final DateTimeFormatter FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+    private static final DateTimeFormatter ISO_SECOND =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss").withZone(ZoneId.systemDefault());
+    private static final DateTimeFormatter ISO_OFFSET =
+            DateTimeFormatter.ofPattern("xxx").withZone(ZoneId.systemDefault());
+
+    private static final class Entry {
+        final long second;
+        final String text;
+        final String isoSecond;
+        final String isoOffset;
+
+        Entry(long second) {
+            Instant t = Instant.ofEpochSecond(second);
+            this.second = second;
+            this.text = FORMAT.format(t);
+            this.isoSecond = ISO_SECOND.format(t);
+            this.isoOffset = ISO_OFFSET.format(t);
+        }
+    }
+
+    private volatile Entry last = new Entry(0);
+
+    private Entry entry(long epochMillis) {
+        long second = Math.floorDiv(epochMillis, 1000);
+        Entry e = last;
+        if (e.second != second) {
+            e = new Entry(second);
+            last = e;
+        }
+        return e;
+    }
+
+    public String format(long epochMillis) {
+        return entry(epochMillis).text;
+    }
+
+    /** Nối "yyyy-MM-ddTHH:mm:ss.SSS+hh:mm" vào sb */
+    public void appendIso(StringBuilder sb, long epochMillis) {
+        Entry e = entry(epochMillis);
+        int ms = (int) Math.floorMod(epochMillis, 1000L);
+        sb.append(e.isoSecond).append('.');
+        if (ms < 100) sb.append('0');
+        if (ms < 10) sb.append('0');
+        sb.append(ms).append(e.isoOffset);
+    }
+}
@@ -256,9 +256,9 @@ public class ConfigLoader {
         properties.forEach((key, value) -> {
             // Che giấu password khi log
             if (key.toString().contains("password")) {
-                LoggerUtil.debug("  " + key + " = ********");
+                LoggerUtil.debug(() -> "  " + key + " = ********");
             } else {
-                LoggerUtil.debug("  " + key + " = " + value);
+                LoggerUtil.debug(() -> "  " + key + " = " + value);
             }
         });
     }
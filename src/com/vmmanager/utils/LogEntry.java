@@ -0,0 +1,41 @@
+package com.vmmanager.utils;
+
+import com.vmmanager.utils.LoggerUtil.Level;
+
+/**
+ * Một dòng log đã ghi, giao cho người nghe (LoggerUtil.addListener) và màn hình Logs.
+ *
+ * Chuỗi hiển thị được dựng một lần lúc tạo (ở thread log-writer / thread gọi),
+ * không dựng lại mỗi lần vẽ.
+ */
+public final class LogEntry {
+
+    private static final CachedTimestamp TIMESTAMPS = new CachedTimestamp();
+
+    private final long time;
+    private final Level level;
+    private final String source;
+    private final String message;
+    private final String text;
+
+    public LogEntry(long time, Level level, String source, String message) {
+        this.time = time;
+        this.level = level;
+        this.source = source;
+        this.message = message;
+        this.text = "[" + TIMESTAMPS.format(time) + "] " + level + " " + source + ": " + message;
+    }
+
+    public long getTime() { return time; }
+    public Level getLevel() { return level; }
+    public String getSource() { return source; }
+    public String getMessage() { return message; }
+
+    /** Dòng hiển thị: "[thời gian] LEVEL nguồn: message" */
+    public String getText() { return text; }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -1,56 +1,197 @@
 package com.vmmanager.utils;
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+/**
+ * Log của ứng dụng (console + app.log).
+ *
+ * Thread gọi chỉ đưa message vào ring buffer của AsyncLogWriter, việc format / ghi file
+ * do thread "log-writer" làm theo lô. Cấu hình qua system property:
+ * vmmanager.log.buffer (số ô), vmmanager.log.overflow (block | drop | sample),
+ * vmmanager.log.flushMs (0 = flush mỗi khi buffer trống).
+ *
+ * File log xoay vòng theo ngày / dung lượng (RollingLogFile): vmmanager.log.dir,
+ * vmmanager.log.maxFileMB, vmmanager.log.maxArchives, vmmanager.log.maxTotalMB.
+ *
+ * Level: vmmanager.log.level (root, mặc định INFO) và vmmanager.log.level.&lt;tên&gt; cho từng logger
+ * (khớp theo tiền tố có dấu chấm: "proxmox" áp cho "proxmox.api"); đổi lúc chạy bằng setLevel.
+ * vmmanager.log.format=json: file ghi JSON lines, console vẫn là text.
+ */
 public class LoggerUtil {
-    private static final SimpleDateFormat dateFormat = 
-        new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-    private static PrintWriter fileWriter;
-    
+
+    public enum Level { DEBUG, INFO, WARN, ERROR, OFF }
+
+    private static final String LEVEL_PROPERTY = "vmmanager.log.level";
+
+    // Level cấu hình theo tên ("" = root) và các logger đã tạo
+    private static final Map<String, Level> levels = new ConcurrentHashMap<>();
+    private static final Map<String, AppLogger> loggers = new ConcurrentHashMap<>();
+    private static final AppLogger root;
+
     static {
+        levels.put("", parseLevel(System.getProperty(LEVEL_PROPERTY), Level.INFO));
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith(LEVEL_PROPERTY + ".")) {
+                Level l = parseLevel(System.getProperty(key), null);
+                if (l != null) levels.put(key.substring(LEVEL_PROPERTY.length() + 1), l);
+            }
+        }
+        root = new AppLogger(null, levels.get(""));
+    }
+
+    private static final AsyncLogWriter writer = createWriter();
+    private static final List<Consumer<LogEntry>> listeners = new CopyOnWriteArrayList<>();
+    private static final String ROOT_SOURCE = "app";
+    private static final Level[] LEVELS = Level.values();
+
+    private static AsyncLogWriter createWriter() {
+        AsyncLogWriter.Settings s = new AsyncLogWriter.Settings();
+        s.capacity = Integer.getInteger("vmmanager.log.buffer", s.capacity);
+        s.flushIntervalMs = Long.getLong("vmmanager.log.flushMs", s.flushIntervalMs);
+        s.jsonFile = "json".equalsIgnoreCase(System.getProperty("vmmanager.log.format"));
+        String overflow = System.getProperty("vmmanager.log.overflow");
+        if (overflow != null) {
+            try {
+                s.overflow = AsyncLogWriter.Overflow.valueOf(overflow.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.err.println("Unknown vmmanager.log.overflow: " + overflow);
+            }
+        }
+
+        RollingLogFile.Settings r = new RollingLogFile.Settings();
+        r.dir = Path.of(System.getProperty("vmmanager.log.dir", "."));
+        r.maxFileBytes = Long.getLong("vmmanager.log.maxFileMB", r.maxFileBytes >> 20) << 20;
+        r.maxArchives = Integer.getInteger("vmmanager.log.maxArchives", r.maxArchives);
+        r.maxTotalBytes = Long.getLong("vmmanager.log.maxTotalMB", r.maxTotalBytes >> 20) << 20;
+
+        Writer file = null;
         try {
-            fileWriter = new PrintWriter(new FileWriter("app.log", true));
+            file = new RollingLogFile(r);
         } catch (IOException e) {
             e.printStackTrace();
         }
+
+        AsyncLogWriter w = new AsyncLogWriter(s, file);
+        // Ghi hết buffer trước khi JVM thoát
+        Runtime.getRuntime().addShutdownHook(new Thread(w::close, "log-shutdown"));
+        return w;
+    }
+
+    private static Level parseLevel(String value, Level fallback) {
+        if (value == null) return fallback;
+        try {
+            return Level.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown log level: " + value);
+            return fallback;
+        }
+    }
+
+    // =========================================================
+    // LOGGER / LEVEL
+    // =========================================================
+
+    /** Logger theo tên (vd "proxmox.api"), dùng chung một instance cho mỗi tên */
+    public static AppLogger getLogger(String name) {
+        return loggers.computeIfAbsent(name, n -> new AppLogger(n, resolve(n)));
+    }
+
+    /** Đổi level lúc chạy cho tên (và các logger con); null / "" = root */
+    public static void setLevel(String name, Level level) {
+        String key = name == null ? "" : name;
+        if (level == null && !key.isEmpty()) levels.remove(key);
+        else if (level != null) levels.put(key, level);
+
+        root.setThreshold(levels.get(""));
+        for (AppLogger l : loggers.values()) l.setThreshold(resolve(l.getName()));
+    }
+
+    // Level của tiền tố dài nhất có cấu hình: a.b.c → a.b → a → root
+    private static Level resolve(String name) {
+        String n = name;
+        while (true) {
+            Level l = levels.get(n);
+            if (l != null) return l;
+            int dot = n.lastIndexOf('.');
+            if (dot < 0) return levels.get("");
+            n = n.substring(0, dot);
+        }
     }
-    
+
+    public static boolean isDebugEnabled() {
+        return root.isDebugEnabled();
+    }
+
+    static void publish(Level level, String logger, String message, Throwable error, Object[] fields) {
+        writer.publish((byte) level.ordinal(), logger, message, error, fields);
+    }
+
+    // =========================================================
+    // ROOT LOGGER
+    // =========================================================
+
     public static void info(String message) {
-        log("INFO", message);
+        root.info(message);
     }
-    
+
     public static void warn(String message) {
-        log("WARN", message);
+        root.warn(message);
     }
-    
+
     public static void error(String message) {
-        log("ERROR", message);
+        root.error(message);
     }
-    
+
     public static void error(String message, Exception e) {
-        log("ERROR", message + " - " + e.getMessage());
-        e.printStackTrace();
+        root.error(message, e);
     }
-    
+
     public static void debug(String message) {
-        log("DEBUG", message);
-    }
-    
-    private static void log(String level, String message) {
-        String timestamp = dateFormat.format(new Date());
-        String logMessage = String.format("[%s] %s: %s", timestamp, level, message);
-        
-        // In ra console
-        System.out.println(logMessage);
-        
-        // Ghi ra file
-        if (fileWriter != null) {
-            fileWriter.println(logMessage);
-            fileWriter.flush();
-        }
+        root.debug(message);
+    }
+
+    /** Chỉ dựng message khi DEBUG đang bật */
+    public static void debug(Supplier<String> message) {
+        root.debug(message);
+    }
+
+    // =========================================================
+    // LISTENER
+    // =========================================================
+
+    /** Nhận mọi dòng log đã ghi (gọi trên thread log-writer, không được chặn lâu) */
+    public static void addListener(Consumer<LogEntry> listener) {
+        listeners.add(listener);
+        writer.setListener(LoggerUtil::dispatch);
+    }
+
+    public static void removeListener(Consumer<LogEntry> listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) writer.setListener(null);
+    }
+
+    private static void dispatch(long time, byte level, String logger, String message, Throwable error) {
+        LogEntry entry = new LogEntry(time, LEVELS[level], logger != null ? logger : ROOT_SOURCE,
+                error != null ? message + " - " + error.getMessage() : message);
+        for (Consumer<LogEntry> l : listeners) l.accept(entry);
+    }
+
+    /** Thống kê pipeline log (đã ghi / đang chờ / bị bỏ) */
+    public static String describe() {
+        return writer.describe();
+    }
+
+    /** Ghi hết log đang chờ; log sau đó ghi đồng bộ */
+    public static void shutdown() {
+        writer.close();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,306 @@
+package com.vmmanager.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * File log xoay vòng: app.log là đoạn đang ghi, sang ngày mới hoặc vượt maxFileBytes
+ * thì đổi tên thành app-yyyy-MM-dd.N.log rồi nén gzip ở thread nền (app-yyyy-MM-dd.N.log.gz).
+ *
+ * - Chỉ ghi nối đuôi qua FileChannel, buffer encode UTF-8 cấp sẵn (không cấp phát mỗi lần ghi)
+ * - Xoay vòng ở ranh giới lần ghi (AsyncLogWriter ghi cả lô dòng một lần, nên không cắt giữa dòng)
+ * - Giữ tối đa maxArchives file nén và maxTotalBytes tổng dung lượng, xoá bản cũ nhất trước
+ *
+ * Chỉ một thread ghi (thread "log-writer"); nén / dọn chạy trên thread "log-archiver".
+ */
+public class RollingLogFile extends Writer {
+
+    /** Cấu hình xoay vòng */
+    public static class Settings {
+        public Path dir = Path.of(".");
+        public String baseName = "app";
+        public long maxFileBytes = 10L * 1024 * 1024;
+        public int maxArchives = 30;
+        public long maxTotalBytes = 200L * 1024 * 1024;
+        /** Kích thước buffer byte cấp sẵn */
+        public int bufferBytes = 64 * 1024;
+    }
+
+    private static final long ROLL_RETRY_MS = 60_000;
+
+    private final Settings settings;
+    private final Path active;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final ByteBuffer buffer;
+
+    private FileChannel channel;
+    private long size;
+    private LocalDate segmentDate;
+    private long nextDayMillis;
+    private long nextRollRetry; // xoay vòng lỗi: tạm không xoay theo kích thước tới lúc này
+
+    private final ExecutorService archiver = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "log-archiver");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public RollingLogFile(Settings settings) throws IOException {
+        this.settings = settings;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(4096, settings.bufferBytes));
+        Files.createDirectories(settings.dir);
+        this.active = settings.dir.resolve(settings.baseName + ".log");
+
+        // Đoạn cũ của ngày trước: xoay ngay để app.log chỉ chứa log hôm nay
+        if (Files.exists(active)) {
+            LocalDate modified = LocalDate.ofInstant(Files.getLastModifiedTime(active).toInstant(), zone);
+            if (modified.isBefore(LocalDate.now(zone)) && Files.size(active) > 0) {
+                archive(modified);
+            }
+        }
+        open();
+
+        // Đoạn đã xoay nhưng chưa kịp nén (app tắt giữa chừng)
+        archiver.execute(this::compressPending);
+    }
+
+    // =========================================================
+    // GHI (thread log-writer)
+    // =========================================================
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        write(CharBuffer.wrap(cbuf, off, len));
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        write(CharBuffer.wrap(str, off, off + len));
+    }
+
+    @Override
+    public Writer append(CharSequence csq) throws IOException {
+        write(CharBuffer.wrap(csq));
+        return this;
+    }
+
+    private void write(CharBuffer chars) throws IOException {
+        if (channel == null) throw new IOException("Log file closed");
+        // Lần mở lại trước bị lỗi: thử mở lại, ghi tiếp khi đĩa / quyền đã ổn
+        if (!channel.isOpen()) open();
+        rollIfNeeded();
+
+        while (true) {
+            CoderResult r = encoder.encode(chars, buffer, true);
+            if (r.isOverflow()) {
+                drainBuffer();
+                continue;
+            }
+            if (r.isError()) {
+                // Ký tự không hợp lệ (surrogate lẻ): bỏ qua ký tự đó
+                chars.position(chars.position() + r.length());
+                continue;
+            }
+            break;
+        }
+        encoder.reset();
+    }
+
+    private void rollIfNeeded() throws IOException {
+        boolean newDay = System.currentTimeMillis() >= nextDayMillis;
+        boolean full = size + buffer.position() >= settings.maxFileBytes
+                && System.currentTimeMillis() >= nextRollRetry;
+        if (!newDay && !full) return;
+
+        drainBuffer();
+        if (size == 0) {
+            // Đoạn rỗng: chỉ cập nhật ngày
+            if (newDay) updateDay();
+            return;
+        }
+        channel.close();
+        try {
+            archive(segmentDate);
+        } catch (IOException e) {
+            // Đổi tên lỗi (file bị khoá, đầy đĩa, quyền...): ghi tiếp vào file cũ, chỉ bỏ lượt xoay này
+            System.err.println("Log roll error: " + active + " - " + e.getMessage());
+            nextRollRetry = System.currentTimeMillis() + ROLL_RETRY_MS;
+        }
+        open();
+    }
+
+    private void drainBuffer() throws IOException {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) size += channel.write(buffer);
+        } finally {
+            // Luôn trả buffer về chế độ ghi; lỗi giữa chừng: giữ phần chưa ghi, không lặp phần đã ghi
+            buffer.compact();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (channel != null && channel.isOpen()) drainBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel == null) return;
+        try {
+            if (channel.isOpen()) drainBuffer();
+        } finally {
+            channel.close();
+            channel = null;
+            archiver.shutdown();
+            try {
+                archiver.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // =========================================================
+    // XOAY VÒNG
+    // =========================================================
+
+    private void open() throws IOException {
+        channel = FileChannel.open(active, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        size = channel.size();
+        updateDay();
+    }
+
+    private void updateDay() {
+        segmentDate = LocalDate.now(zone);
+        nextDayMillis = segmentDate.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    // Đổi tên đoạn hiện tại thành app-<ngày>.<n>.log rồi giao cho thread nén
+    private void archive(LocalDate date) throws IOException {
+        String prefix = settings.baseName + "-" + date + ".";
+        int index = 1;
+        while (Files.exists(settings.dir.resolve(prefix + index + ".log"))
+                || Files.exists(settings.dir.resolve(prefix + index + ".log.gz"))) {
+            index++;
+        }
+        Path rolled = settings.dir.resolve(prefix + index + ".log");
+        Files.move(active, rolled, StandardCopyOption.ATOMIC_MOVE);
+        try {
+            archiver.execute(() -> {
+                compress(rolled);
+                applyRetention();
+            });
+        } catch (java.util.concurrent.RejectedExecutionException e) {
+            // Đang đóng: để bản chưa nén, lần chạy sau sẽ nén
+        }
+    }
+
+    private void compressPending() {
+        for (Path p : list(".log")) {
+            if (!p.equals(active)) compress(p);
+        }
+        applyRetention();
+    }
+
+    private void compress(Path file) {
+        if (!Files.exists(file)) return; // đã nén ở lượt trước
+        Path gz = file.resolveSibling(file.getFileName() + ".gz");
+        Path tmp = file.resolveSibling(file.getFileName() + ".gz.tmp");
+        try (InputStream in = Files.newInputStream(file);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp), 64 * 1024)) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            System.err.println("Log compress error: " + file + " - " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(tmp, gz, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(file);
+        } catch (IOException e) {
+            System.err.println("Log compress error: " + file + " - " + e.getMessage());
+        }
+    }
+
+    // Xoá file nén cũ nhất tới khi thoả số lượng và tổng dung lượng
+    private void applyRetention() {
+        List<Path> archives = list(".log.gz");
+        archives.sort(Comparator.comparingLong(RollingLogFile::modifiedMillis)
+                .thenComparing(p -> p.getFileName().toString()));
+
+        long total = 0;
+        for (Path p : archives) total += sizeOf(p);
+
+        int i = 0;
+        while (i < archives.size()
+                && (archives.size() - i > settings.maxArchives || total > settings.maxTotalBytes)) {
+            Path p = archives.get(i++);
+            total -= sizeOf(p);
+            try {
+                Files.deleteIfExists(p);
+            } catch (IOException e) {
+                System.err.println("Log retention error: " + p + " - " + e.getMessage());
+            }
+        }
+    }
+
+    private List<Path> list(String suffix) {
+        List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(settings.dir, settings.baseName + "-*" + suffix)) {
+            for (Path p : ds) result.add(p);
+        } catch (IOException e) {
+            System.err.println("Log list error: " + e.getMessage());
+        }
+        return result;
+    }
+
+    private static long sizeOf(Path p) {
+        try {
+            return Files.size(p);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long modifiedMillis(Path p) {
+        try {
+            return Files.getLastModifiedTime(p).toMillis();
+        } catch (IOException e) {
+            return Instant.EPOCH.toEpochMilli();
+        }
+    }
+
+    public long getSize() {
+        return size + buffer.position();
+    }
+
+    public Path getActivePath() {
+        return active;
+    }
+}
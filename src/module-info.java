@@ -7,4 +7,14 @@ module iacGUI {
     requires org.apache.httpcomponents.httpmime;
     requires commons.logging;
     opens com.vmmanager.config to com.google.gson;
+
+    // Chỉ cho module benchmark / stub (bench/) dùng, không phải API công khai
+    exports com.vmmanager.config to iacGUI.bench;
+    exports com.vmmanager.controllers to iacGUI.bench;
+    exports com.vmmanager.inventory to iacGUI.bench;
+    exports com.vmmanager.models to iacGUI.bench;
+    exports com.vmmanager.models.enums to iacGUI.bench;
+    exports com.vmmanager.services.proxmox to iacGUI.bench;
+    exports com.vmmanager.ui to iacGUI.bench;
+    exports com.vmmanager.utils to iacGUI.bench;
 }